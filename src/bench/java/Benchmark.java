@@ -0,0 +1,543 @@
+import org.sqlite.Function;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Bancs d'essai des étapes du médiateur (intégration des sources, décomposition des requêtes, exécution)
+ * sur des jeux de données synthétiques de taille croissante
+ * <p>
+ * Arguments : --rows 10000,100000 --warmup 2 --iterations 5 --filter regex --output fichier.csv
+ * --compare résultats_précédents.csv
+ */
+public class Benchmark {
+    /**
+     * Fichiers CSV fournis et tables associées
+     */
+    private static final String[][] DATASETS = {
+            {"fontaine", "fontaines.csv"},
+            {"activite", "equipements_activites.csv"},
+            {"parc", "espaces_verts.csv"}};
+
+    /**
+     * Délimiteur des fichiers CSV fournis
+     */
+    private static final char DELIMITER = ';';
+
+    /**
+     * Nombre de tuples au-delà duquel les sources sont intégrées en mode flux
+     */
+    private static final int STREAMING_THRESHOLD = 100000;
+
+    /**
+     * Base de données des bancs d'essai d'intégration
+     */
+    private static final String INGESTION_DB = "BENCHMARK";
+
+    /**
+     * Nombre de parcours des attributs par itération du banc d'essai de recherche des types
+     */
+    private static final int TYPE_LOOKUPS = 10000;
+
+    /**
+     * Nombre de requêtes de test exécutées par itération des bancs d'essai de débit
+     */
+    private static final int THROUGHPUT_QUERIES = 96;
+
+    /**
+     * Nombre de fils d'exécution des bancs d'essai de débit
+     */
+    private static final int[] THROUGHPUT_THREADS = {1, 2, 4, 8};
+
+    /**
+     * Nombre de coordonnées comparées à chaque coordonnée du jeu de données par les bancs d'essai
+     * des fonctions de proximité
+     */
+    private static final int SPATIAL_INNER_ROWS = 100;
+
+    /**
+     * Rayon des bancs d'essai des fonctions de proximité (m)
+     */
+    private static final int SPATIAL_RADIUS = 200;
+
+    /**
+     * Requête de sélection simple, évaluée par SQLite puis par le cache colonnaire
+     */
+    private static final String SCAN_QUERY = "SELECT ID, MODELE, VOIE FROM FONTAINE " +
+            "WHERE TYPE = 'BORNE_FONTAINE' AND FONTAINE.MODELE = 'BF Bayard'";
+
+    /**
+     * Opération mesurée
+     */
+    private interface Operation {
+        /**
+         * Exécuter l'opération
+         *
+         * @return valeur dépendant du travail effectué (évite que l'opération soit ignorée)
+         * @throws Exception erreur
+         */
+        long run() throws Exception;
+    }
+
+    /**
+     * Nombre de tuples des jeux de données
+     */
+    private final List<Integer> rows = new ArrayList<>(List.of(10000));
+
+    /**
+     * Nombre d'itérations de chauffe et mesurées
+     */
+    private int warmup = 2;
+    private int iterations = 5;
+
+    /**
+     * Filtre sur le nom des bancs d'essai
+     */
+    private Pattern filter = Pattern.compile(".*");
+
+    /**
+     * Fichier des résultats
+     */
+    private File output = new File("results-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+
+    /**
+     * Résultats précédents à comparer
+     */
+    private File compare;
+
+    /**
+     * Résultats
+     */
+    private final List<BenchmarkResult> results = new ArrayList<>();
+
+    /**
+     * Accumulateur des valeurs renvoyées par les opérations
+     */
+    private long blackhole;
+
+    public static void main(String[] args) throws Exception {
+        Benchmark benchmark = new Benchmark();
+        benchmark.parseArguments(args);
+        benchmark.run();
+    }
+
+    /**
+     * Lire les arguments
+     *
+     * @param args arguments
+     */
+    private void parseArguments(String[] args) {
+        if (args.length % 2 != 0) Utils.throwException("Arguments invalides.");
+        for (int i = 0; i < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--rows":
+                    rows.clear();
+                    for (String count : value.split(",")) rows.add(Integer.parseInt(count.trim()));
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--filter":
+                    filter = Pattern.compile(value);
+                    break;
+                case "--output":
+                    output = new File(value);
+                    break;
+                case "--compare":
+                    compare = new File(value);
+                    break;
+                default:
+                    Utils.throwException("Argument inconnu : " + args[i]);
+            }
+        }
+        if (warmup < 0 || iterations < 1) Utils.throwException("Nombre d'itérations invalide.");
+    }
+
+    /**
+     * Exécuter les bancs d'essai pour chaque taille de jeu de données
+     *
+     * @throws Exception erreur
+     */
+    private void run() throws Exception {
+        DatasetGenerator generator = new DatasetGenerator(new File("data"));
+        for (int row_count : rows) {
+            System.out.println("> Génération des jeux de données (" + row_count + " tuples)...");
+            Map<String, String> files = new LinkedHashMap<>();
+            for (String[] dataset : DATASETS)
+                files.put(dataset[0], generator.generate(dataset[1], DELIMITER, row_count));
+            runIngestionBenchmarks(files, row_count);
+            runQueryBenchmarks(files, row_count);
+            runSpatialBenchmarks(row_count);
+        }
+        BenchmarkResult.write(results, output);
+        System.out.println("\n> Résultats enregistrés dans " + output);
+        if (compare != null) {
+            System.out.println("\n> Comparaison avec " + compare + " :");
+            Map<String, BenchmarkResult> previous = BenchmarkResult.read(compare);
+            for (BenchmarkResult result : results)
+                if (previous.containsKey(result.getKey()))
+                    System.out.println(result.compareTo(previous.get(result.getKey())));
+        }
+        // Empêche l'élimination du travail mesuré
+        if (blackhole == 42) System.out.print("");
+    }
+
+    /**
+     * Bancs d'essai de l'intégration des sources : chargement complet, en mode flux, fichier inchangé,
+     * puis fichiers JSON Lines et colonnaire contenant les mêmes tuples
+     *
+     * @param files     fichiers générés par table
+     * @param row_count nombre de tuples
+     * @throws Exception erreur
+     */
+    private void runIngestionBenchmarks(Map<String, String> files, int row_count) throws Exception {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            String table = file.getKey().toUpperCase();
+            String name = "ingestion." + file.getKey();
+            // Chargement complet en mémoire (les grands jeux de données ne sont intégrés qu'en mode flux)
+            if (row_count <= STREAMING_THRESHOLD)
+                measure(name, row_count, this::dropIngestionDB, () -> new WrapperCSV(INGESTION_DB, table,
+                        file.getValue(), DELIMITER, Wrapper.DEFAULT_BATCH_SIZE, false, 0, false).attributes.size());
+            measure(name + ".streaming", row_count, this::dropIngestionDB, () -> new WrapperCSV(INGESTION_DB, table,
+                    file.getValue(), DELIMITER, Wrapper.DEFAULT_BATCH_SIZE, true, 0, false).attributes.size());
+            // Fichier inchangé depuis la dernière intégration : seule l'empreinte est vérifiée
+            measure(name + ".unchanged", row_count, null, () -> new WrapperCSV(INGESTION_DB, table,
+                    file.getValue(), DELIMITER, Wrapper.DEFAULT_BATCH_SIZE, true, 0, false).attributes.size());
+            // Recherche du type de chaque attribut (répétée, une recherche seule étant trop courte pour être mesurée)
+            Wrapper wrapper = new WrapperCSV(INGESTION_DB, table, file.getValue(), DELIMITER,
+                    Wrapper.DEFAULT_BATCH_SIZE, true, 0, false);
+            measure("attribute_type." + file.getKey(), row_count, null, () -> {
+                long found = 0;
+                for (int i = 0; i < TYPE_LOOKUPS; i++)
+                    for (String attribute : wrapper.attributes)
+                        if (wrapper.getAttributeType(attribute) != null) found++;
+                return found;
+            });
+            // Mêmes données dans les autres formats (conversion non mesurée)
+            if (!filter.matcher(name + ".jsonl").matches() && !filter.matcher(name + ".columnar").matches()) continue;
+            String base_path = file.getValue().replaceAll("\\.csv$", "");
+            convertSource(wrapper, base_path + ".jsonl", base_path + ".col");
+            measure(name + ".jsonl", row_count, this::dropIngestionDB, () -> new WrapperJSON(INGESTION_DB, table,
+                    base_path + ".jsonl", Wrapper.DEFAULT_BATCH_SIZE, false).attributes.size());
+            measure(name + ".columnar", row_count, this::dropIngestionDB, () -> new WrapperColumnar(INGESTION_DB,
+                    table, base_path + ".col", Wrapper.DEFAULT_BATCH_SIZE, false).attributes.size());
+        }
+        dropIngestionDB();
+    }
+
+    /**
+     * Convertir une source intégrée en fichiers JSON Lines et colonnaire
+     *
+     * @param wrapper       source intégrée dans la base de données des bancs d'essai
+     * @param json_path     chemin du fichier JSON Lines
+     * @param columnar_path chemin du fichier colonnaire
+     * @throws SQLException erreur de lecture de la source
+     * @throws IOException  erreur d'écriture
+     */
+    private static void convertSource(Wrapper wrapper, String json_path, String columnar_path)
+            throws SQLException, IOException {
+        List<Object[]> tuples = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + INGESTION_DB + ".db");
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT " + String.join(",", wrapper.attributes) +
+                     " FROM \"" + wrapper.table_name + "\"")) {
+            while (rs.next()) {
+                Object[] tuple = new Object[wrapper.attributes.size()];
+                for (int i = 0; i < tuple.length; i++) tuple[i] = rs.getObject(i + 1);
+                tuples.add(tuple);
+            }
+        }
+        try (PrintWriter writer = new PrintWriter(new File(json_path), StandardCharsets.UTF_8)) {
+            for (Object[] tuple : tuples) {
+                StringBuilder line = new StringBuilder("{");
+                for (int i = 0; i < tuple.length; i++) {
+                    if (i > 0) line.append(",");
+                    line.append(toJSON(wrapper.attributes.get(i))).append(":");
+                    line.append(tuple[i] == null ? "null" :
+                            tuple[i] instanceof Number ? tuple[i].toString() : toJSON(tuple[i].toString()));
+                }
+                writer.println(line.append("}"));
+            }
+        }
+        WrapperColumnar.write(columnar_path, wrapper.attributes, wrapper.attributes_types, tuples);
+    }
+
+    /**
+     * Convertir un texte en chaîne JSON
+     *
+     * @param text texte
+     * @return chaîne JSON
+     */
+    private static String toJSON(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < ' ') sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Bancs d'essai des requêtes de test : décomposition seule puis exécution complète
+     * (plan en cache et connexions prêtes), débit des requêtes de test exécutées en parallèle par un nombre
+     * croissant de fils, puis sélection simple et requête de rayon (requête de test 3)
+     * sans et avec le cache colonnaire, requêtes de test 1 et 2 sur la vue matérialisée des espaces verts
+     * et requêtes de test servies par le cache des résultats
+     *
+     * @param files     fichiers générés par table
+     * @param row_count nombre de tuples
+     * @throws Exception erreur
+     */
+    private void runQueryBenchmarks(Map<String, String> files, int row_count) throws Exception {
+        List<String> queries = Main.getSampleSQLQueries();
+        boolean selected = false;
+        for (int i = 1; i <= queries.size(); i++)
+            selected |= filter.matcher("query" + i).matches() || filter.matcher("decomposition.query" + i).matches();
+        for (int threads : THROUGHPUT_THREADS) selected |= filter.matcher("throughput.threads" + threads).matches();
+        for (String mode : new String[]{"sqlite", "columnar"})
+            selected |= filter.matcher("scan." + mode).matches() || filter.matcher("radius." + mode).matches();
+        // Intégration des sources évitée si aucun banc d'essai de requête n'est retenu
+        if (!selected) return;
+        Mediator mediator = new Mediator(false);
+        mediator.setStreamingMode(row_count > STREAMING_THRESHOLD, 0);
+        for (Map.Entry<String, String> file : files.entrySet())
+            mediator.addDataFromCSV(file.getKey(), file.getValue(), DELIMITER);
+        Main.createSQLFunctions(mediator);
+        mediator.awaitSources();
+        for (int i = 0; i < queries.size(); i++) {
+            String query = queries.get(i);
+            measure("decomposition.query" + (i + 1), row_count, null,
+                    () -> mediator.compileSelectRequest(query).sql.length());
+            measure("query" + (i + 1), row_count, null, () -> {
+                // Parcours complet du résultat, sans le conserver
+                try (ResultCursor cursor = mediator.openSelectRequest(query)) {
+                    long count = 0;
+                    while (cursor.hasNext()) count += cursor.next().length;
+                    return count;
+                }
+            });
+        }
+        // Débit : les fils partagent le médiateur, chacun lit le catalogue publié et emprunte sa connexion
+        for (int threads : THROUGHPUT_THREADS) {
+            BenchmarkResult result = measure("throughput.threads" + threads, row_count, null,
+                    () -> scanConcurrently(mediator, queries, threads));
+            if (result != null)
+                System.out.printf(Locale.ROOT, "%-32s %10s %12.1f requêtes/s%n", "", "",
+                        THROUGHPUT_QUERIES * 1000 / result.mean);
+        }
+        measure("scan.sqlite", row_count, null, () -> scan(mediator, SCAN_QUERY));
+        measure("radius.sqlite", row_count, null, () -> scan(mediator, queries.get(2)));
+        mediator.cacheTable("fontaine");
+        measure("scan.columnar", row_count, null, () -> scan(mediator, SCAN_QUERY));
+        measure("radius.columnar", row_count, null, () -> scan(mediator, queries.get(2)));
+        mediator.materializeTable("parc");
+        for (int i = 0; i < 2; i++) {
+            String query = queries.get(i);
+            measure("query" + (i + 1) + ".materialized", row_count, null, () -> scan(mediator, query));
+        }
+        // Requêtes identiques sur des sources inchangées : résultats servis par le cache
+        mediator.setResultCache(Main.RESULT_CACHE_SIZE, 0);
+        for (int i = 0; i < queries.size(); i++) {
+            String query = queries.get(i);
+            measure("query" + (i + 1) + ".cached", row_count, null, () -> scan(mediator, query));
+        }
+        mediator.close();
+    }
+
+    /**
+     * Bancs d'essai des fonctions de proximité : coût par couple du calcul de distance (Utils.distance,
+     * prédicat de rayon avec filtre en degrés) puis des fonctions SQL correspondantes sur une jointure sans index,
+     * comparées à la fonction DISTANCE sans mémorisation, et enfin précédées de la boîte englobante ajoutée
+     * par le médiateur (SpatialPredicate)
+     *
+     * @param row_count nombre de coordonnées de la table externe
+     * @throws Exception erreur
+     */
+    private void runSpatialBenchmarks(int row_count) throws Exception {
+        boolean selected = false;
+        for (String name : new String[]{"utils", "within", "sql.legacy", "sql.distance", "sql.within", "sql.bounded"})
+            selected |= filter.matcher("spatial." + name).matches();
+        if (!selected) return;
+        // Coordonnées réparties sur Paris, la table interne étant parcourue pour chaque coordonnée externe
+        Random random = new Random(row_count);
+        double[][] outer = new double[row_count][];
+        double[][] inner = new double[SPATIAL_INNER_ROWS][];
+        for (double[][] points : new double[][][]{outer, inner})
+            for (int i = 0; i < points.length; i++)
+                points[i] = new double[]{48.81 + random.nextDouble() * 0.09, 2.25 + random.nextDouble() * 0.17};
+        long calls = (long) row_count * SPATIAL_INNER_ROWS;
+        printPerCall(measure("spatial.utils", row_count, null, () -> {
+            long found = 0;
+            for (double[] o : outer)
+                for (double[] i : inner)
+                    if (Utils.distance(o[0], o[1], i[0], i[1]) <= SPATIAL_RADIUS) found++;
+            return found;
+        }), calls);
+        printPerCall(measure("spatial.within", row_count, null, () -> {
+            long found = 0;
+            for (double[] o : outer)
+                for (double[] i : inner)
+                    if (Utils.isWithinDistance(o[0], o[1], i[0], i[1], SPATIAL_RADIUS)) found++;
+            return found;
+        }), calls);
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("CREATE TABLE OUTER_POINTS (LATITUDE REAL, LONGITUDE REAL)");
+                statement.executeUpdate("CREATE TABLE INNER_POINTS (LATITUDE REAL, LONGITUDE REAL)");
+            }
+            for (String table : new String[]{"OUTER_POINTS", "INNER_POINTS"}) {
+                List<Object[]> tuples = new ArrayList<>();
+                for (double[] point : table.equals("OUTER_POINTS") ? outer : inner)
+                    tuples.add(new Object[]{point[0], point[1]});
+                JDBC.batchUpdateDB(connection, "INSERT INTO " + table + " VALUES (?, ?)", tuples,
+                        Wrapper.DEFAULT_BATCH_SIZE);
+            }
+            // Fonction DISTANCE précédente : conversion des quatre arguments à chaque appel
+            Function.create(connection, "LEGACY_DISTANCE", new Function() {
+                @Override
+                protected void xFunc() throws SQLException {
+                    result(Utils.distance(value_double(0), value_double(1), value_double(2), value_double(3)));
+                }
+            });
+            Function.create(connection, SpatialFunctions.DISTANCE, new SpatialFunctions.Distance());
+            Function.create(connection, SpatialFunctions.WITHIN_DISTANCE, new SpatialFunctions.WithinDistance());
+            String join = "SELECT COUNT(*) FROM OUTER_POINTS O CROSS JOIN INNER_POINTS I WHERE ";
+            String arguments = "(O.LATITUDE, O.LONGITUDE, I.LATITUDE, I.LONGITUDE";
+            printPerCall(measure("spatial.sql.legacy", row_count, null, () -> count(connection,
+                    join + "LEGACY_DISTANCE" + arguments + ") <= " + SPATIAL_RADIUS)), calls);
+            printPerCall(measure("spatial.sql.distance", row_count, null, () -> count(connection,
+                    join + SpatialFunctions.DISTANCE + arguments + ") <= " + SPATIAL_RADIUS)), calls);
+            printPerCall(measure("spatial.sql.within", row_count, null, () -> count(connection,
+                    join + SpatialFunctions.WITHIN_DISTANCE + arguments + ", " + SPATIAL_RADIUS + ")")), calls);
+            // Boîte englobante en degrés évaluée par SQLite : la fonction n'est appelée que pour les couples proches
+            double delta = (SPATIAL_RADIUS + 1) * 180 / (Math.PI * SpatialPredicate.EARTH_RADIUS);
+            String box = String.format(Locale.ROOT, "I.LATITUDE BETWEEN O.LATITUDE - %1$s AND O.LATITUDE + %1$s " +
+                    "AND I.LONGITUDE BETWEEN O.LONGITUDE - %2$s AND O.LONGITUDE + %2$s AND ", delta,
+                    delta / Math.cos(Math.toRadians(49)));
+            printPerCall(measure("spatial.sql.bounded", row_count, null, () -> count(connection,
+                    join + box + SpatialFunctions.WITHIN_DISTANCE + arguments + ", " + SPATIAL_RADIUS + ")")), calls);
+        }
+    }
+
+    /**
+     * Exécuter une requête de comptage
+     *
+     * @param connection connexion
+     * @param query      requête SELECT COUNT(*)
+     * @return nombre de tuples comptés
+     * @throws SQLException erreur SQL
+     */
+    private static long count(Connection connection, String query) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(query);
+             ResultSet rs = statement.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Afficher le coût moyen d'un appel d'un banc d'essai
+     *
+     * @param result résultat (null si le banc d'essai n'est pas retenu)
+     * @param calls  nombre d'appels par itération
+     */
+    private static void printPerCall(BenchmarkResult result, long calls) {
+        if (result != null)
+            System.out.printf(Locale.ROOT, "%-32s %10s %12.1f ns/appel%n", "", "", result.mean * 1e6 / calls);
+    }
+
+    /**
+     * Parcourir le résultat d'une requête
+     *
+     * @param mediator médiateur
+     * @param query    requête
+     * @return nombre de valeurs lues
+     */
+    private static long scan(Mediator mediator, String query) {
+        try (ResultCursor cursor = mediator.openSelectRequest(query)) {
+            long count = 0;
+            while (cursor.hasNext()) count += cursor.next().length;
+            return count;
+        }
+    }
+
+    /**
+     * Parcourir les résultats des requêtes de test (THROUGHPUT_QUERIES requêtes, à tour de rôle)
+     * répartis entre plusieurs fils d'exécution
+     *
+     * @param mediator médiateur
+     * @param queries  requêtes
+     * @param threads  nombre de fils d'exécution
+     * @return nombre de valeurs lues
+     * @throws Exception échec d'une requête
+     */
+    private static long scanConcurrently(Mediator mediator, List<String> queries, int threads) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < THROUGHPUT_QUERIES; i++) {
+                String query = queries.get(i % queries.size());
+                results.add(executor.submit(() -> scan(mediator, query)));
+            }
+            long count = 0;
+            for (Future<Long> result : results) count += result.get();
+            return count;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Mesurer une opération : itérations de chauffe puis itérations mesurées
+     *
+     * @param name      nom du banc d'essai
+     * @param row_count nombre de tuples
+     * @param setup     préparation exécutée avant chaque itération, non mesurée (facultative)
+     * @param operation opération
+     * @return résultat, ou null si le banc d'essai n'est pas retenu
+     * @throws Exception erreur
+     */
+    private BenchmarkResult measure(String name, int row_count, Runnable setup, Operation operation)
+            throws Exception {
+        if (!filter.matcher(name).matches()) return null;
+        double[] samples = new double[iterations];
+        for (int i = -warmup; i < iterations; i++) {
+            if (setup != null) setup.run();
+            long start = System.nanoTime();
+            blackhole += operation.run();
+            long duration = System.nanoTime() - start;
+            if (i >= 0) samples[i] = duration;
+        }
+        BenchmarkResult result = BenchmarkResult.of(name, row_count, samples);
+        results.add(result);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * Supprimer la base de données des bancs d'essai d'intégration
+     */
+    private void dropIngestionDB() {
+        File database = new File(INGESTION_DB + ".db");
+        if (database.exists() && !database.delete())
+            throw new IllegalStateException("Suppression impossible : " + database);
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Résultat d'un banc d'essai : durées mesurées d'une opération, enregistrées au format CSV
+ * pour être comparées d'une exécution à l'autre
+ */
+public class BenchmarkResult {
+    /**
+     * En-tête du fichier de résultats
+     */
+    public static final String HEADER = "BENCHMARK;ROWS;ITERATIONS;MEAN_MS;STDDEV_MS;MIN_MS;MAX_MS";
+
+    /**
+     * Nom du banc d'essai
+     */
+    public final String name;
+
+    /**
+     * Nombre de tuples des jeux de données
+     */
+    public final int rows;
+
+    /**
+     * Nombre d'itérations mesurées
+     */
+    public final int iterations;
+
+    /**
+     * Statistiques des durées d'une opération (ms)
+     */
+    public final double mean;
+    public final double stddev;
+    public final double min;
+    public final double max;
+
+    /**
+     * Constructeur
+     *
+     * @param _name       nom du banc d'essai
+     * @param _rows       nombre de tuples
+     * @param _iterations nombre d'itérations
+     * @param _mean       durée moyenne
+     * @param _stddev     écart type
+     * @param _min        durée minimum
+     * @param _max        durée maximum
+     */
+    public BenchmarkResult(String _name, int _rows, int _iterations, double _mean, double _stddev, double _min,
+                           double _max) {
+        name = _name;
+        rows = _rows;
+        iterations = _iterations;
+        mean = _mean;
+        stddev = _stddev;
+        min = _min;
+        max = _max;
+    }
+
+    /**
+     * Calculer le résultat à partir des durées mesurées
+     *
+     * @param name    nom du banc d'essai
+     * @param rows    nombre de tuples
+     * @param samples durées d'une opération pour chaque itération (ns)
+     * @return résultat
+     */
+    public static BenchmarkResult of(String name, int rows, double[] samples) {
+        double sum = 0;
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (double sample : samples) {
+            sum += sample;
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+        }
+        double mean = sum / samples.length;
+        double variance = 0;
+        for (double sample : samples) variance += (sample - mean) * (sample - mean);
+        double stddev = samples.length > 1 ? Math.sqrt(variance / (samples.length - 1)) : 0;
+        return new BenchmarkResult(name, rows, samples.length, mean / 1e6, stddev / 1e6, min / 1e6, max / 1e6);
+    }
+
+    /**
+     * Clé identifiant le banc d'essai d'une exécution à l'autre
+     *
+     * @return clé
+     */
+    public String getKey() {
+        return name + "@" + rows;
+    }
+
+    /**
+     * Ligne du fichier de résultats
+     *
+     * @return ligne CSV
+     */
+    public String toCSV() {
+        return String.format(Locale.ROOT, "%s;%d;%d;%.6f;%.6f;%.6f;%.6f", name, rows, iterations, mean, stddev,
+                min, max);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%-32s %10d %12.3f ms ± %.3f", name, rows, mean, stddev);
+    }
+
+    /**
+     * Enregistrer des résultats
+     *
+     * @param results résultats
+     * @param file    fichier CSV
+     */
+    public static void write(List<BenchmarkResult> results, File file) {
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8))) {
+            writer.println(HEADER);
+            for (BenchmarkResult result : results) writer.println(result.toCSV());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lire des résultats enregistrés
+     *
+     * @param file fichier CSV
+     * @return résultats par clé
+     */
+    public static Map<String, BenchmarkResult> read(File file) {
+        Map<String, BenchmarkResult> results = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) throw new IllegalStateException("Fichier de résultats invalide : " + file);
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                String[] fields = line.split(";");
+                BenchmarkResult result = new BenchmarkResult(fields[0], Integer.parseInt(fields[1]),
+                        Integer.parseInt(fields[2]), Double.parseDouble(fields[3]), Double.parseDouble(fields[4]),
+                        Double.parseDouble(fields[5]), Double.parseDouble(fields[6]));
+                results.put(result.getKey(), result);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return results;
+    }
+
+    /**
+     * Comparer à un résultat précédent : une différence plus grande que les écarts types cumulés est signalée
+     *
+     * @param previous résultat précédent
+     * @return ligne de comparaison
+     */
+    public String compareTo(BenchmarkResult previous) {
+        double ratio = mean / previous.mean;
+        String verdict = "";
+        if (Math.abs(mean - previous.mean) > stddev + previous.stddev)
+            verdict = ratio > 1 ? "  RÉGRESSION" : "  AMÉLIORATION";
+        return String.format(Locale.ROOT, "%-32s %10d %12.3f ms -> %12.3f ms (x%.2f)%s", name, rows,
+                previous.mean, mean, ratio, verdict);
+    }
+}
@@ -0,0 +1,130 @@
+import com.opencsv.*;
+import com.opencsv.exceptions.CsvException;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Générateur de jeux de données synthétiques : un fichier CSV fourni est répété jusqu'au nombre de tuples
+ * demandé, avec des identifiants uniques et des coordonnées GPS légèrement décalées à chaque répétition
+ */
+public class DatasetGenerator {
+    /**
+     * Décalage maximum des coordonnées d'une répétition (degrés, environ 1 km)
+     */
+    private static final double MAX_OFFSET = 0.01;
+
+    /**
+     * Graine du générateur aléatoire (les jeux générés sont identiques d'une exécution à l'autre)
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Dossier des fichiers générés
+     */
+    private final File directory;
+
+    /**
+     * Constructeur
+     *
+     * @param _directory dossier des fichiers générés
+     */
+    public DatasetGenerator(File _directory) {
+        directory = _directory;
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IllegalStateException("Création du dossier impossible : " + directory);
+    }
+
+    /**
+     * Générer (ou réutiliser s'il existe déjà) un jeu de données à partir d'un fichier CSV fourni
+     *
+     * @param resource  nom du fichier CSV fourni
+     * @param delimiter délimiteur
+     * @param rows      nombre de tuples
+     * @return chemin du fichier généré
+     */
+    public String generate(String resource, char delimiter, int rows) {
+        File file = new File(directory, resource.replace(".csv", "_" + rows + ".csv"));
+        if (file.isFile()) return file.getPath();
+        List<String[]> source = readResource(resource, delimiter);
+        String[] header = source.remove(0);
+        int latitude = indexOf(header, Wrapper.LATITUDE_ATTRIBUTE);
+        int longitude = indexOf(header, Wrapper.LONGITUDE_ATTRIBUTE);
+        Random random = new Random(SEED);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        try (ICSVWriter writer = new CSVWriterBuilder(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(temporary), StandardCharsets.UTF_8))).withSeparator(delimiter).build()) {
+            writer.writeNext(header, false);
+            double latitude_offset = 0;
+            double longitude_offset = 0;
+            for (int i = 0; i < rows; i++) {
+                // Nouvelle répétition du fichier fourni : nouveau décalage des coordonnées
+                if (i % source.size() == 0 && i > 0) {
+                    latitude_offset = (random.nextDouble() * 2 - 1) * MAX_OFFSET;
+                    longitude_offset = (random.nextDouble() * 2 - 1) * MAX_OFFSET;
+                }
+                String[] tuple = source.get(i % source.size()).clone();
+                tuple[0] = String.valueOf(i + 1);
+                shift(tuple, latitude, latitude_offset);
+                shift(tuple, longitude, longitude_offset);
+                writer.writeNext(tuple, false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Le fichier n'apparaît qu'une fois complet
+        if (!temporary.renameTo(file)) throw new IllegalStateException("Renommage impossible : " + file);
+        return file.getPath();
+    }
+
+    /**
+     * Lire un fichier CSV fourni
+     *
+     * @param resource  nom du fichier
+     * @param delimiter délimiteur
+     * @return tuples (en-tête compris)
+     */
+    private static List<String[]> readResource(String resource, char delimiter) {
+        URL url = Utils.getFileURL(resource);
+        if (url == null) throw new IllegalStateException("Fichier CSV introuvable : " + resource);
+        CSVParser parser = new CSVParserBuilder().withSeparator(delimiter).build();
+        try (CSVReader reader = new CSVReaderBuilder(new BufferedReader(new InputStreamReader(url.openStream())))
+                .withCSVParser(parser).build()) {
+            return reader.readAll();
+        } catch (IOException | CsvException e) {
+            throw new IllegalStateException("Lecture impossible : " + resource, e);
+        }
+    }
+
+    /**
+     * Position d'un attribut dans l'en-tête
+     *
+     * @param header    en-tête
+     * @param attribute attribut
+     * @return position (-1 si absent)
+     */
+    private static int indexOf(String[] header, String attribute) {
+        for (int i = 0; i < header.length; i++)
+            if (header[i].equals(attribute)) return i;
+        return -1;
+    }
+
+    /**
+     * Décaler une coordonnée numérique
+     *
+     * @param tuple  tuple
+     * @param index  position de la coordonnée (-1 si absente)
+     * @param offset décalage
+     */
+    private static void shift(String[] tuple, int index, double offset) {
+        if (index < 0 || offset == 0 || tuple[index].isEmpty()) return;
+        try {
+            tuple[index] = String.valueOf(Double.parseDouble(tuple[index]) + offset);
+        } catch (NumberFormatException e) {
+            // Coordonnée non numérique conservée telle quelle
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Statistiques d'un attribut, calculées en une passe lors de l'inférence des types
+ */
+public class AttributeStatistics {
+    /**
+     * Types détectés
+     */
+    public enum Type {
+        INTEGER("INTEGER"),
+        REAL("REAL"),
+        BOOLEAN("TEXT"),
+        DATE("TEXT"),
+        TEXT("TEXT");
+
+        /**
+         * Type SQL de stockage (SQLite ne dispose pas de type booléen ou date :
+         * les valeurs restent textuelles pour ne pas modifier les comparaisons des requêtes)
+         */
+        public final String sql_type;
+
+        Type(String _sql_type) {
+            sql_type = _sql_type;
+        }
+    }
+
+    /**
+     * Nom de l'attribut
+     */
+    public final String name;
+
+    /**
+     * Nombre de valeurs analysées
+     */
+    long count;
+
+    /**
+     * Nombre de valeurs nulles (vides)
+     */
+    long null_count;
+
+    /**
+     * Nombre de valeurs entières
+     */
+    long integer_count;
+
+    /**
+     * Nombre de valeurs réelles (hors entiers)
+     */
+    long real_count;
+
+    /**
+     * Nombre de valeurs booléennes
+     */
+    long boolean_count;
+
+    /**
+     * Nombre de dates
+     */
+    long date_count;
+
+    /**
+     * Valeur numérique minimale
+     */
+    double min = Double.POSITIVE_INFINITY;
+
+    /**
+     * Valeur numérique maximale
+     */
+    double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Longueur minimale des valeurs non nulles
+     */
+    int min_length = Integer.MAX_VALUE;
+
+    /**
+     * Longueur maximale des valeurs non nulles
+     */
+    int max_length;
+
+    /**
+     * Constructeur
+     *
+     * @param _name nom de l'attribut
+     */
+    public AttributeStatistics(String _name) {
+        name = _name;
+    }
+
+    /**
+     * Obtenir le type détecté
+     *
+     * @return type
+     */
+    public Type getType() {
+        long non_null_count = count - null_count;
+        if (non_null_count == 0) return Type.TEXT;
+        if (integer_count == non_null_count) return Type.INTEGER;
+        if (integer_count + real_count == non_null_count) return Type.REAL;
+        if (boolean_count == non_null_count) return Type.BOOLEAN;
+        if (date_count == non_null_count) return Type.DATE;
+        return Type.TEXT;
+    }
+
+    /**
+     * Obtenir la déclaration SQL du type
+     *
+     * @param sampled statistiques calculées sur un échantillon
+     * @return type SQL
+     */
+    public String getSQLType(boolean sampled) {
+        // Un échantillon ne permet pas de garantir l'absence de valeurs nulles
+        return getType().sql_type + (null_count == 0 && !sampled ? " NOT NULL" : "");
+    }
+
+    /**
+     * L'attribut contient-il des valeurs nulles
+     *
+     * @return vrai si au moins une valeur est nulle
+     */
+    public boolean isNullable() {
+        return null_count > 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + getType() + " (" + count + " valeurs, " + null_count + " nulles" +
+                (integer_count + real_count > 0 ? ", min " + min + ", max " + max : "") + ")";
+    }
+}
@@ -0,0 +1,48 @@
+import com.opencsv.CSVWriterBuilder;
+import com.opencsv.ICSVWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Écriture d'un résultat au format CSV, tuple par tuple
+ */
+public class CSVResultWriter implements ResultWriter {
+    /**
+     * Écrivain CSV
+     */
+    private final ICSVWriter csv_writer;
+
+    /**
+     * Constructeur
+     *
+     * @param writer    destination
+     * @param delimiter délimiteur
+     */
+    public CSVResultWriter(Writer writer, char delimiter) {
+        csv_writer = new CSVWriterBuilder(writer).withSeparator(delimiter).build();
+    }
+
+    @Override
+    public void writeHeader(List<String> attributes) {
+        csv_writer.writeNext(attributes.toArray(new String[0]), false);
+    }
+
+    @Override
+    public void writeRow(Object[] row) {
+        String[] line = new String[row.length];
+        for (int i = 0; i < row.length; i++) line[i] = ResultWriter.format(row[i]);
+        csv_writer.writeNext(line, false);
+    }
+
+    @Override
+    public void flush() {
+        try {
+            csv_writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.*;
+
+/**
+ * Catalogue du médiateur figé lors de sa publication : sources intégrées et attributs des tables globales ;
+ * une requête lit un seul catalogue du début à la fin de sa compilation et de son exécution, tandis que
+ * les intégrations et déclarations publient un nouveau catalogue (les plans compilés lui sont propres)
+ */
+public final class Catalog {
+    /**
+     * Nombre maximum de plans d'exécution conservés
+     */
+    private static final int MAX_QUERY_PLANS = 256;
+
+    /**
+     * Version du catalogue, incrémentée à chaque publication
+     */
+    public final long version;
+
+    /**
+     * Sources intégrées, dans l'ordre d'ajout
+     */
+    public final List<Wrapper> sources;
+
+    /**
+     * Liaison table - attributs (union des attributs des sources, dans l'ordre de leur découverte)
+     */
+    public final Map<String, Set<String>> tables_attributes;
+
+    /**
+     * Sources par numéro d'ajout
+     */
+    private final NavigableMap<Integer, Wrapper> ordered_sources;
+
+    /**
+     * Plans d'exécution compilés sur ce catalogue (requête normalisée - plan), du moins au plus récemment utilisé
+     */
+    private final Map<String, QueryPlan> query_plans;
+
+    /**
+     * Catalogue vide
+     */
+    public Catalog() {
+        this(0, new TreeMap<>());
+    }
+
+    /**
+     * Constructeur
+     *
+     * @param _version         version
+     * @param _ordered_sources sources par numéro d'ajout (non copiées : ne doivent plus être modifiées)
+     */
+    private Catalog(long _version, NavigableMap<Integer, Wrapper> _ordered_sources) {
+        version = _version;
+        ordered_sources = Collections.unmodifiableNavigableMap(_ordered_sources);
+        sources = List.copyOf(_ordered_sources.values());
+        Map<String, Set<String>> attributes = new HashMap<>();
+        for (Wrapper source : sources)
+            attributes.computeIfAbsent(source.table_name, table -> new LinkedHashSet<>()).addAll(source.attributes);
+        for (Map.Entry<String, Set<String>> entry : attributes.entrySet())
+            entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+        tables_attributes = Collections.unmodifiableMap(attributes);
+        query_plans = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryPlan> eldest) {
+                return size() > MAX_QUERY_PLANS;
+            }
+        });
+    }
+
+    /**
+     * Nouveau catalogue contenant une source supplémentaire
+     *
+     * @param position numéro d'ajout de la source
+     * @param source   source intégrée
+     * @return catalogue
+     */
+    public Catalog withSource(int position, Wrapper source) {
+        NavigableMap<Integer, Wrapper> next_sources = new TreeMap<>(ordered_sources);
+        next_sources.put(position, source);
+        return new Catalog(version + 1, next_sources);
+    }
+
+    /**
+     * Nouveau catalogue contenant les mêmes sources, sans plan compilé
+     * (les déclarations du médiateur modifiant la compilation des requêtes ont changé)
+     *
+     * @return catalogue
+     */
+    public Catalog invalidated() {
+        return new Catalog(version + 1, new TreeMap<>(ordered_sources));
+    }
+
+    /**
+     * Obtenir un plan compilé sur ce catalogue
+     *
+     * @param key requête normalisée
+     * @return plan, ou null
+     */
+    public QueryPlan getPlan(String key) {
+        return query_plans.get(key);
+    }
+
+    /**
+     * Conserver un plan compilé sur ce catalogue
+     *
+     * @param key  requête normalisée
+     * @param plan plan
+     */
+    public void putPlan(String key, QueryPlan plan) {
+        query_plans.put(key, plan);
+    }
+
+    /**
+     * Obtenir les sources d'une table globale
+     *
+     * @param table table globale
+     * @return sources, dans l'ordre d'ajout
+     */
+    public List<Wrapper> getSources(String table) {
+        List<Wrapper> table_sources = new ArrayList<>();
+        for (Wrapper source : sources)
+            if (source.table_name.equals(table)) table_sources.add(source);
+        return table_sources;
+    }
+
+    /**
+     * Vérifier si un nom désigne une table ou un attribut du catalogue
+     *
+     * @param name nom
+     * @return vrai si le nom est connu
+     */
+    public boolean isIdentifier(String name) {
+        String upper_name = name.toUpperCase();
+        if (tables_attributes.containsKey(upper_name)) return true;
+        for (Set<String> attributes : tables_attributes.values())
+            if (attributes.contains(upper_name)) return true;
+        return false;
+    }
+
+    /**
+     * Vérifier si un fichier est déjà intégré dans une table globale
+     *
+     * @param file_path chemin du fichier
+     * @param table     table globale
+     * @return vrai si une source correspond
+     */
+    public boolean contains(String file_path, String table) {
+        for (Wrapper source : sources)
+            if (source.file_path.equals(file_path) && source.table_name.equals(table)) return true;
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "catalogue v" + version + " (" + sources.size() + " sources, " + tables_attributes.size() + " tables)";
+    }
+}
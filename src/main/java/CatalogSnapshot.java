@@ -0,0 +1,204 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Instantané binaire du catalogue du médiateur : pour chaque source intégrée, sa description, ses attributs et
+ * leurs types, l'empreinte de son fichier, l'emprise de son index spatial, ses statistiques et ses index ;
+ * relu par projection en mémoire au démarrage, il permet de publier les sources sans relire leurs fichiers
+ * ni leurs bases de données
+ * <p>
+ * Format (entiers gros-boutistes, chaînes UTF-8 précédées de leur longueur, -1 pour null) : signature, version,
+ * nombre de sources puis chaque source (description, base de données, table, fichier, chemin de la base,
+ * table de la source, capacités, attributs et types, empreinte, emprise, statistiques, index)
+ */
+public class CatalogSnapshot {
+    /**
+     * Signature des instantanés ("MWCS")
+     */
+    private static final int MAGIC = 0x4D574353;
+
+    /**
+     * Version du format
+     */
+    private static final short FORMAT_VERSION = 1;
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * Enregistrer un instantané (écrit dans un fichier temporaire puis renommé : un instantané existant
+     * n'est jamais lu à moitié écrit)
+     *
+     * @param file_path   chemin de l'instantané
+     * @param sources     sources intégrées
+     * @param descriptors descriptions des sources ajoutées (base de données - description)
+     * @param indexes     index présents dans la base de données de chaque source
+     * @throws IOException erreur d'écriture
+     */
+    public static void write(String file_path, List<Wrapper> sources, Map<String, String> descriptors,
+                             Map<Wrapper, List<String>> indexes) throws IOException {
+        Path path = Paths.get(file_path).toAbsolutePath();
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporary), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeShort(FORMAT_VERSION);
+            List<Wrapper> described = new ArrayList<>();
+            for (Wrapper source : sources)
+                if (descriptors.containsKey(source.db_name)) described.add(source);
+            output.writeInt(described.size());
+            for (Wrapper source : described) writeSource(output, source, descriptors.get(source.db_name),
+                    indexes.getOrDefault(source, List.of()));
+        } catch (IOException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Écrire une source
+     *
+     * @param output     flux de l'instantané
+     * @param source     source intégrée
+     * @param descriptor description de la source ajoutée
+     * @param indexes    index présents dans sa base de données
+     * @throws IOException erreur d'écriture
+     */
+    private static void writeSource(DataOutputStream output, Wrapper source, String descriptor,
+                                    List<String> indexes) throws IOException {
+        writeString(output, descriptor);
+        writeString(output, source.db_name);
+        writeString(output, source.table_name);
+        writeString(output, source.file_path);
+        writeString(output, source.getDatabasePath());
+        writeString(output, source.getSourceTable());
+        int capabilities = 0;
+        for (Wrapper.Capability capability : source.getCapabilities()) capabilities |= 1 << capability.ordinal();
+        output.writeInt(capabilities);
+        output.writeInt(source.attributes.size());
+        for (int i = 0; i < source.attributes.size(); i++) {
+            writeString(output, source.attributes.get(i));
+            writeString(output, source.attributes_types.get(i));
+        }
+        writeString(output, source.fingerprint.file_path);
+        output.writeLong(source.fingerprint.size);
+        output.writeLong(source.fingerprint.modified);
+        writeString(output, source.fingerprint.getKnownHash());
+        output.writeBoolean(source.spatial_bounds != null);
+        if (source.spatial_bounds != null)
+            for (double bound : source.spatial_bounds) output.writeDouble(bound);
+        output.writeBoolean(source.statistics != null);
+        if (source.statistics != null) source.statistics.write(output);
+        output.writeInt(indexes.size());
+        for (String index : indexes) writeString(output, index);
+    }
+
+    /**
+     * Lire un instantané : le fichier est projeté en mémoire et les sources décodées directement depuis la projection
+     *
+     * @param file_path  chemin de l'instantané
+     * @param debug_mode mode de débugage des sources restaurées
+     * @return sources restaurées par base de données (vide si l'instantané n'existe pas)
+     * @throws IOException erreur de lecture ou instantané invalide
+     */
+    public static Map<String, WrapperSnapshot> read(String file_path, boolean debug_mode) throws IOException {
+        Map<String, WrapperSnapshot> sources = new LinkedHashMap<>();
+        Path path = Paths.get(file_path);
+        if (!Files.isRegularFile(path)) return sources;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC) throw new IOException("signature invalide");
+            short version = buffer.getShort();
+            if (version != FORMAT_VERSION) throw new IOException("version " + version + " non supportée");
+            int sources_count = buffer.getInt();
+            for (int i = 0; i < sources_count; i++) {
+                WrapperSnapshot source = readSource(buffer, debug_mode);
+                sources.put(source.db_name, source);
+            }
+            if (buffer.hasRemaining()) throw new IOException("données inattendues en fin de fichier");
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("instantané tronqué ou invalide", e);
+        }
+        return sources;
+    }
+
+    /**
+     * Lire une source
+     *
+     * @param buffer     contenu de l'instantané, positionné sur la source
+     * @param debug_mode mode de débugage
+     * @return source restaurée
+     */
+    private static WrapperSnapshot readSource(ByteBuffer buffer, boolean debug_mode) {
+        String descriptor = readString(buffer);
+        String db_name = readString(buffer);
+        String table_name = readString(buffer);
+        String file_path = readString(buffer);
+        String database_path = readString(buffer);
+        String source_table = readString(buffer);
+        int capabilities_mask = buffer.getInt();
+        Set<Wrapper.Capability> capabilities = EnumSet.noneOf(Wrapper.Capability.class);
+        for (Wrapper.Capability capability : Wrapper.Capability.values())
+            if ((capabilities_mask & 1 << capability.ordinal()) != 0) capabilities.add(capability);
+        int attributes_count = buffer.getInt();
+        List<String> attributes = new ArrayList<>(attributes_count);
+        List<String> attributes_types = new ArrayList<>(attributes_count);
+        for (int i = 0; i < attributes_count; i++) {
+            attributes.add(readString(buffer));
+            attributes_types.add(readString(buffer));
+        }
+        SourceFingerprint fingerprint = new SourceFingerprint(readString(buffer), buffer.getLong(), buffer.getLong(),
+                readString(buffer));
+        double[] spatial_bounds = null;
+        if (buffer.get() != 0) {
+            spatial_bounds = new double[4];
+            for (int i = 0; i < spatial_bounds.length; i++) spatial_bounds[i] = buffer.getDouble();
+        }
+        SourceStatistics statistics = buffer.get() != 0 ? SourceStatistics.read(buffer) : null;
+        int indexes_count = buffer.getInt();
+        List<String> indexes = new ArrayList<>(indexes_count);
+        for (int i = 0; i < indexes_count; i++) indexes.add(readString(buffer));
+        return new WrapperSnapshot(descriptor, db_name, table_name, file_path, database_path, source_table,
+                capabilities, attributes, attributes_types, fingerprint, spatial_bounds, statistics, indexes,
+                debug_mode);
+    }
+
+    /**
+     * Écrire une chaîne (longueur en octets puis UTF-8, -1 pour null)
+     *
+     * @param output flux de l'instantané
+     * @param value  chaîne
+     * @throws IOException erreur d'écriture
+     */
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Lire une chaîne
+     *
+     * @param buffer contenu de l'instantané, positionné sur la chaîne
+     * @return chaîne, ou null
+     */
+    static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        if (length > buffer.remaining()) throw new BufferUnderflowException();
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
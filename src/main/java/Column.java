@@ -0,0 +1,288 @@
+import java.util.*;
+
+/**
+ * Colonne typée du cache colonnaire d'une source : valeurs primitives, chaînes encodées par dictionnaire
+ * ou valeurs quelconques, et masque des valeurs nulles
+ */
+public abstract class Column {
+    /**
+     * Nombre maximum d'entrées d'un dictionnaire
+     */
+    private static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    /**
+     * Valeurs nulles
+     */
+    protected final BitSet nulls;
+
+    /**
+     * Nombre de valeurs
+     */
+    protected final int size;
+
+    /**
+     * Constructeur
+     *
+     * @param _nulls valeurs nulles
+     * @param _size  nombre de valeurs
+     */
+    protected Column(BitSet _nulls, int _size) {
+        nulls = _nulls;
+        size = _size;
+    }
+
+    /**
+     * Vérifier si une valeur est nulle
+     *
+     * @param row position
+     * @return vrai si la valeur est nulle
+     */
+    public boolean isNull(int row) {
+        return nulls.get(row);
+    }
+
+    /**
+     * Obtenir une valeur, typée comme le pilote SQLite (Integer ou Long, Double, String, null)
+     *
+     * @param row position
+     * @return valeur
+     */
+    public abstract Object get(int row);
+
+    /**
+     * Estimer la mémoire occupée par la colonne
+     *
+     * @return taille (octets)
+     */
+    public abstract long estimateBytes();
+
+    /**
+     * Colonne d'entiers
+     */
+    public static class LongColumn extends Column {
+        public final long[] values;
+
+        LongColumn(long[] _values, BitSet _nulls, int _size) {
+            super(_nulls, _size);
+            values = _values;
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : box(values[row]);
+        }
+
+        /**
+         * Convertir un entier dans la même représentation que ResultSet.getObject
+         *
+         * @param value entier
+         * @return Integer ou Long
+         */
+        static Object box(long value) {
+            return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (Object) (int) value : (Object) value;
+        }
+
+        @Override
+        public long estimateBytes() {
+            return 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * Colonne de réels
+     */
+    public static class DoubleColumn extends Column {
+        public final double[] values;
+
+        DoubleColumn(double[] _values, BitSet _nulls, int _size) {
+            super(_nulls, _size);
+            values = _values;
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        @Override
+        public long estimateBytes() {
+            return 8L * values.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * Colonne de chaînes encodées par dictionnaire (codes des valeurs, -1 pour une valeur nulle)
+     */
+    public static class DictionaryColumn extends Column {
+        public final int[] codes;
+        public final String[] dictionary;
+
+        DictionaryColumn(int[] _codes, String[] _dictionary, BitSet _nulls, int _size) {
+            super(_nulls, _size);
+            codes = _codes;
+            dictionary = _dictionary;
+        }
+
+        @Override
+        public Object get(int row) {
+            return nulls.get(row) ? null : dictionary[codes[row]];
+        }
+
+        @Override
+        public long estimateBytes() {
+            long bytes = 4L * codes.length + nulls.size() / 8;
+            for (String value : dictionary) bytes += 40 + 2L * value.length();
+            return bytes;
+        }
+    }
+
+    /**
+     * Colonne de chaînes de forte cardinalité
+     */
+    public static class StringColumn extends Column {
+        public final String[] values;
+
+        StringColumn(String[] _values, BitSet _nulls, int _size) {
+            super(_nulls, _size);
+            values = _values;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public long estimateBytes() {
+            long bytes = 8L * values.length + nulls.size() / 8;
+            for (String value : values) if (value != null) bytes += 40 + 2L * value.length();
+            return bytes;
+        }
+    }
+
+    /**
+     * Colonne de valeurs de types différents (valeur non conforme au type déclaré de l'attribut)
+     */
+    public static class ObjectColumn extends Column {
+        public final Object[] values;
+
+        ObjectColumn(Object[] _values, BitSet _nulls, int _size) {
+            super(_nulls, _size);
+            values = _values;
+        }
+
+        @Override
+        public Object get(int row) {
+            return values[row];
+        }
+
+        @Override
+        public long estimateBytes() {
+            return 24L * values.length + nulls.size() / 8;
+        }
+    }
+
+    /**
+     * Construction d'une colonne valeur par valeur : le stockage suit le type déclaré de l'attribut
+     * et devient générique dès qu'une valeur n'y est pas conforme
+     */
+    public static class Builder {
+        private long[] longs;
+        private double[] doubles;
+        private String[] strings;
+        private Object[] objects;
+        private final BitSet nulls = new BitSet();
+        private int size;
+
+        /**
+         * Constructeur
+         *
+         * @param sql_type type SQL déclaré de l'attribut
+         */
+        public Builder(String sql_type) {
+            if (sql_type.startsWith("INTEGER")) longs = new long[16];
+            else if (sql_type.startsWith("REAL")) doubles = new double[16];
+            else strings = new String[16];
+        }
+
+        /**
+         * Ajouter une valeur lue depuis SQLite
+         *
+         * @param value valeur
+         */
+        public void add(Object value) {
+            if (value == null) nulls.set(size);
+            if (longs != null) {
+                if (value == null || value instanceof Integer || value instanceof Long) {
+                    if (size == longs.length) longs = Arrays.copyOf(longs, size * 2);
+                    longs[size++] = value == null ? 0 : ((Number) value).longValue();
+                    return;
+                }
+                toObjects();
+            } else if (doubles != null) {
+                if (value == null || value instanceof Double) {
+                    if (size == doubles.length) doubles = Arrays.copyOf(doubles, size * 2);
+                    doubles[size++] = value == null ? 0 : (Double) value;
+                    return;
+                }
+                toObjects();
+            } else if (strings != null) {
+                if (value == null || value instanceof String) {
+                    if (size == strings.length) strings = Arrays.copyOf(strings, size * 2);
+                    strings[size++] = (String) value;
+                    return;
+                }
+                toObjects();
+            }
+            if (size == objects.length) objects = Arrays.copyOf(objects, size * 2);
+            objects[size++] = value;
+        }
+
+        /**
+         * Passer au stockage générique
+         */
+        private void toObjects() {
+            objects = new Object[Math.max(16, size * 2)];
+            for (int i = 0; i < size; i++) {
+                if (nulls.get(i)) continue;
+                if (longs != null) objects[i] = LongColumn.box(longs[i]);
+                else if (doubles != null) objects[i] = doubles[i];
+                else objects[i] = strings[i];
+            }
+            longs = null;
+            doubles = null;
+            strings = null;
+        }
+
+        /**
+         * Terminer la colonne (les chaînes de faible cardinalité sont encodées par dictionnaire)
+         *
+         * @return colonne
+         */
+        public Column build() {
+            if (longs != null) return new LongColumn(Arrays.copyOf(longs, size), nulls, size);
+            if (doubles != null) return new DoubleColumn(Arrays.copyOf(doubles, size), nulls, size);
+            if (objects != null) return new ObjectColumn(Arrays.copyOf(objects, size), nulls, size);
+            Map<String, Integer> dictionary = new HashMap<>();
+            int[] codes = new int[size];
+            int max_size = Math.min(MAX_DICTIONARY_SIZE, Math.max(1, size / 2));
+            for (int i = 0; i < size; i++) {
+                if (strings[i] == null) {
+                    codes[i] = -1;
+                    continue;
+                }
+                Integer code = dictionary.get(strings[i]);
+                if (code == null) {
+                    // Trop de valeurs distinctes : le dictionnaire n'apporte rien
+                    if (dictionary.size() == max_size) return new StringColumn(Arrays.copyOf(strings, size), nulls, size);
+                    code = dictionary.size();
+                    dictionary.put(strings[i], code);
+                }
+                codes[i] = code;
+            }
+            String[] values = new String[dictionary.size()];
+            for (Map.Entry<String, Integer> entry : dictionary.entrySet()) values[entry.getValue()] = entry.getKey();
+            return new DictionaryColumn(codes, values, nulls, size);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+import java.util.*;
+
+/**
+ * Parcours du cache colonnaire d'une table globale : requête de la forme
+ * SELECT attributs FROM table WHERE attribut opérateur valeur AND ..., évaluée colonne par colonne
+ * avec les règles de comparaison de SQLite (affinité de type, ordre des classes de stockage, collation binaire) ;
+ * les prédicats de rayon DISTANCE(...) <= N sont évalués sur les tableaux de coordonnées (RadiusFilter)
+ */
+public class ColumnarScan {
+    /**
+     * Opérateurs de comparaison pris en charge
+     */
+    enum Operator {
+        EQ, NE, LT, LE, GT, GE, IS_NULL, IS_NOT_NULL;
+
+        /**
+         * Opérateur équivalent lorsque les opérandes sont inversés (valeur opérateur attribut)
+         *
+         * @return opérateur
+         */
+        Operator flip() {
+            switch (this) {
+                case LT:
+                    return GT;
+                case LE:
+                    return GE;
+                case GT:
+                    return LT;
+                case GE:
+                    return LE;
+                default:
+                    return this;
+            }
+        }
+
+        /**
+         * Tester le résultat d'une comparaison
+         *
+         * @param comparison signe de la comparaison entre la valeur de l'attribut et la constante
+         * @return vrai si la condition est satisfaite
+         */
+        boolean test(int comparison) {
+            switch (this) {
+                case EQ:
+                    return comparison == 0;
+                case NE:
+                    return comparison != 0;
+                case LT:
+                    return comparison < 0;
+                case LE:
+                    return comparison <= 0;
+                case GT:
+                    return comparison > 0;
+                case GE:
+                    return comparison >= 0;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        /**
+         * Opérateur de comparaison correspondant à un opérateur SQL
+         *
+         * @param operator opérateur d'une opération du plan logique
+         * @return opérateur, ou null s'il n'est pas pris en charge
+         */
+        static Operator of(String operator) {
+            switch (operator) {
+                case "=":
+                case "==":
+                    return EQ;
+                case "<>":
+                case "!=":
+                    return NE;
+                case "<":
+                    return LT;
+                case "<=":
+                    return LE;
+                case ">":
+                    return GT;
+                case ">=":
+                    return GE;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * Condition portant sur un attribut
+     */
+    static class Condition {
+        final String attribute;
+        final Operator operator;
+
+        /**
+         * Position du paramètre comparé (-1 pour IS NULL et IS NOT NULL)
+         */
+        final int parameter;
+
+        Condition(String _attribute, Operator _operator, int _parameter) {
+            attribute = _attribute;
+            operator = _operator;
+            parameter = _parameter;
+        }
+    }
+
+    /**
+     * Valeur constante ne pouvant pas être comparée à l'identique de SQLite (la requête passe alors par SQLite)
+     */
+    private static final Object UNSUPPORTED = new Object();
+
+    /**
+     * Attributs du résultat
+     */
+    private final List<String> projection;
+
+    /**
+     * Conditions (conjonction)
+     */
+    private final List<Condition> conditions;
+
+    /**
+     * Prédicats de rayon (conjonction, évalués après les conditions)
+     */
+    private final List<RadiusFilter> radius_filters;
+
+    /**
+     * Sources de la table, dans l'ordre de l'union
+     */
+    private final List<ColumnarTable> sources;
+
+    /**
+     * Constructeur
+     *
+     * @param _projection attributs du résultat
+     * @param _conditions     conditions
+     * @param _radius_filters prédicats de rayon
+     * @param _sources        sources
+     */
+    private ColumnarScan(List<String> _projection, List<Condition> _conditions, List<RadiusFilter> _radius_filters,
+                         List<ColumnarTable> _sources) {
+        projection = _projection;
+        conditions = _conditions;
+        radius_filters = _radius_filters;
+        sources = _sources;
+    }
+
+    /**
+     * Compiler le parcours d'une requête portant sur une seule table, à partir de son plan logique :
+     * projection d'attributs (sans DISTINCT) d'un parcours, éventuellement filtré par la clause WHERE
+     *
+     * @param plan             plan logique de la requête
+     * @param table_attributes attributs de la table globale
+     * @param sources          sources de la table en cache (l'union doit conserver les doublons)
+     * @return parcours, ou null si la forme de la requête n'est pas prise en charge
+     */
+    public static ColumnarScan compile(LogicalPlan plan, Collection<String> table_attributes,
+                                       List<ColumnarTable> sources) {
+        if (!(plan instanceof LogicalPlan.Project) || ((LogicalPlan.Project) plan).distinct) return null;
+        LogicalPlan.Project project = (LogicalPlan.Project) plan;
+        LogicalPlan input = project.input;
+        List<SQLExpression> conjuncts = List.of();
+        if (input instanceof LogicalPlan.Filter && !((LogicalPlan.Filter) input).having) {
+            conjuncts = ((LogicalPlan.Filter) input).conjuncts;
+            input = ((LogicalPlan.Filter) input).input;
+        }
+        if (!(input instanceof LogicalPlan.Scan)) return null;
+        LogicalPlan.Scan scan = (LogicalPlan.Scan) input;
+
+        // Attributs projetés, tels qu'ils nomment les colonnes du résultat
+        List<String> projection = new ArrayList<>();
+        for (SQLExpression item : project.items) {
+            if (item instanceof SQLExpression.Star) {
+                projection.addAll(table_attributes);
+                continue;
+            }
+            String attribute = resolve(item, scan, table_attributes);
+            // Le nom d'une colonne reprend le texte de la requête : seule la casse du catalogue est acceptée
+            if (attribute == null || !project.names.get(projection.size()).equals(attribute)) return null;
+            projection.add(attribute);
+        }
+
+        // Conjonction de comparaisons simples et de prédicats de rayon
+        List<Condition> conditions = new ArrayList<>();
+        List<RadiusFilter> radius_filters = new ArrayList<>();
+        for (SQLExpression conjunct : conjuncts) {
+            Condition condition = analyze(conjunct, scan, table_attributes);
+            if (condition != null) conditions.add(condition);
+            else {
+                RadiusFilter radius_filter = RadiusFilter.analyze(conjunct, scan, table_attributes);
+                if (radius_filter == null) return null;
+                radius_filters.add(radius_filter);
+            }
+        }
+
+        // Les comparaisons dépendent de l'affinité de l'attribut : elle doit être la même dans toutes les sources
+        for (Condition condition : conditions) {
+            String affinity = null;
+            for (ColumnarTable source : sources) {
+                String type = source.getAttributeType(condition.attribute);
+                if (type == null) continue;
+                type = type.split(" ")[0];
+                if (affinity != null && !affinity.equals(type)) return null;
+                affinity = type;
+            }
+        }
+        return new ColumnarScan(projection, conditions, radius_filters, sources);
+    }
+
+    /**
+     * Analyser un terme : attribut opérateur paramètre, paramètre opérateur attribut, attribut IS [NOT] NULL
+     *
+     * @param conjunct         terme
+     * @param scan             parcours de la table
+     * @param table_attributes attributs de la table globale
+     * @return condition, ou null si le terme n'est pas pris en charge
+     */
+    private static Condition analyze(SQLExpression conjunct, LogicalPlan.Scan scan,
+                                     Collection<String> table_attributes) {
+        if (!(conjunct instanceof SQLExpression.Operation)) return null;
+        SQLExpression.Operation operation = (SQLExpression.Operation) conjunct;
+        List<SQLExpression> operands = operation.operands;
+        String attribute = resolve(operands.get(0), scan, table_attributes);
+        switch (operation.operator) {
+            case "ISNULL":
+            case "NOTNULL":
+                return attribute == null ? null : new Condition(attribute,
+                        operation.operator.equals("ISNULL") ? Operator.IS_NULL : Operator.IS_NOT_NULL, -1);
+            case "IS":
+            case "IS NOT":
+                if (attribute == null || !isNull(operands.get(1))) return null;
+                return new Condition(attribute,
+                        operation.operator.equals("IS") ? Operator.IS_NULL : Operator.IS_NOT_NULL, -1);
+            default:
+                break;
+        }
+        Operator operator = Operator.of(operation.operator);
+        if (operator == null || operands.size() != 2) return null;
+        int parameter = parameter(operands.get(1));
+        if (attribute != null && parameter >= 0) return new Condition(attribute, operator, parameter);
+        attribute = resolve(operands.get(1), scan, table_attributes);
+        parameter = parameter(operands.get(0));
+        if (attribute != null && parameter >= 0) return new Condition(attribute, operator.flip(), parameter);
+        return null;
+    }
+
+    /**
+     * Reconnaître la constante NULL
+     *
+     * @param expression expression
+     * @return vrai si l'expression est NULL
+     */
+    private static boolean isNull(SQLExpression expression) {
+        return expression instanceof SQLExpression.Literal && expression.tokens.size() == 1
+                && expression.tokens.get(0).is("NULL");
+    }
+
+    /**
+     * Reconnaître une constante paramétrée
+     *
+     * @param expression expression
+     * @return position du paramètre, ou -1
+     */
+    private static int parameter(SQLExpression expression) {
+        if (!(expression instanceof SQLExpression.Literal) || expression.tokens.size() != 1) return -1;
+        SQLTokenizer.Token token = expression.tokens.get(0);
+        if (token.type != SQLTokenizer.TokenType.PARAMETER || token.text.length() < 2) return -1;
+        return Integer.parseInt(token.text.substring(1)) - 1;
+    }
+
+    /**
+     * Résoudre la référence à un attribut de la table (qualifiée ou non)
+     *
+     * @param expression       expression
+     * @param scan             parcours de la table
+     * @param table_attributes attributs de la table globale
+     * @return attribut du catalogue, ou null si l'expression n'est pas un attribut du parcours
+     */
+    static String resolve(SQLExpression expression, LogicalPlan.Scan scan, Collection<String> table_attributes) {
+        if (!(expression instanceof SQLExpression.Column) || ((SQLExpression.Column) expression).scan != scan)
+            return null;
+        String attribute = ((SQLExpression.Column) expression).name.toUpperCase();
+        return table_attributes.contains(attribute) ? attribute : null;
+    }
+
+    /**
+     * Ouvrir un curseur sur le résultat
+     *
+     * @param parameters valeurs des paramètres de la requête
+     * @return curseur, ou null si une valeur ne peut pas être comparée à l'identique de SQLite
+     */
+    public ResultCursor open(List<Object> parameters) {
+        // Constantes converties selon l'affinité de chaque source
+        List<Object[]> constants = new ArrayList<>();
+        for (ColumnarTable source : sources) {
+            Object[] source_constants = new Object[conditions.size()];
+            for (int c = 0; c < conditions.size(); c++) {
+                Condition condition = conditions.get(c);
+                String type = source.getAttributeType(condition.attribute);
+                if (condition.parameter < 0 || type == null) continue;
+                source_constants[c] = applyAffinity(parameters.get(condition.parameter), type);
+                if (source_constants[c] == UNSUPPORTED) return null;
+            }
+            constants.add(source_constants);
+            for (RadiusFilter radius_filter : radius_filters)
+                if (!radius_filter.supports(source)) return null;
+        }
+        List<double[]> radius_bounds = new ArrayList<>();
+        for (RadiusFilter radius_filter : radius_filters) {
+            double[] bound = radius_filter.bind(parameters);
+            if (bound == null) return null;
+            radius_bounds.add(bound);
+        }
+        Iterator<ColumnarTable> remaining_sources = sources.iterator();
+        Iterator<Object[]> remaining_constants = constants.iterator();
+        return new ResultCursor(projection, new ResultCursor.RowReader() {
+            private ColumnarTable source;
+            private Column[] columns;
+            private BitSet selection;
+            private int row = -1;
+
+            @Override
+            public Object[] read() {
+                // Tuples sélectionnés de la source courante, puis de la suivante (filtrée à son tour)
+                while (source == null || (row = selection.nextSetBit(row + 1)) < 0) {
+                    if (!remaining_sources.hasNext()) return null;
+                    source = remaining_sources.next();
+                    selection = filter(source, remaining_constants.next(), radius_bounds);
+                    columns = new Column[projection.size()];
+                    for (int p = 0; p < columns.length; p++) columns[p] = source.getColumn(projection.get(p));
+                    row = -1;
+                }
+                Object[] values = new Object[columns.length];
+                for (int p = 0; p < columns.length; p++) values[p] = columns[p] == null ? null : columns[p].get(row);
+                return values;
+            }
+        }, () -> {
+        });
+    }
+
+    /**
+     * Sélectionner les tuples d'une source satisfaisant toutes les conditions, colonne par colonne
+     *
+     * @param source        source
+     * @param constants     constantes des conditions
+     * @param radius_bounds positions et seuils des prédicats de rayon
+     * @return tuples sélectionnés
+     */
+    private BitSet filter(ColumnarTable source, Object[] constants, List<double[]> radius_bounds) {
+        BitSet selection = new BitSet(source.row_count);
+        selection.set(0, source.row_count);
+        for (int c = 0; c < conditions.size() && !selection.isEmpty(); c++) {
+            Condition condition = conditions.get(c);
+            Column column = source.getColumn(condition.attribute);
+            if (condition.operator == Operator.IS_NULL || condition.operator == Operator.IS_NOT_NULL) {
+                boolean keep_nulls = condition.operator == Operator.IS_NULL;
+                if (column == null) {
+                    // Attribut absent de la source : toujours nul
+                    if (!keep_nulls) selection.clear();
+                } else if (keep_nulls) selection.and(column.nulls);
+                else selection.andNot(column.nulls);
+                continue;
+            }
+            // Une comparaison avec une valeur nulle n'est jamais vraie
+            if (column == null) {
+                selection.clear();
+                continue;
+            }
+            selection.andNot(column.nulls);
+            filter(column, condition.operator, constants[c], selection);
+        }
+        for (int r = 0; r < radius_filters.size() && !selection.isEmpty(); r++)
+            selection = radius_filters.get(r).apply(source, radius_bounds.get(r), selection);
+        return selection;
+    }
+
+    /**
+     * Retirer de la sélection les tuples dont la valeur ne satisfait pas une comparaison
+     *
+     * @param column    colonne (valeurs nulles déjà retirées)
+     * @param operator  opérateur
+     * @param constant  constante, après application de l'affinité
+     * @param selection tuples sélectionnés
+     */
+    private static void filter(Column column, Operator operator, Object constant, BitSet selection) {
+        if (column instanceof Column.LongColumn && constant instanceof Long) {
+            long[] values = ((Column.LongColumn) column).values;
+            long value = (Long) constant;
+            for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1))
+                if (!operator.test(Long.compare(values[i], value))) selection.clear(i);
+        } else if (column instanceof Column.LongColumn && constant instanceof Double) {
+            long[] values = ((Column.LongColumn) column).values;
+            double value = (Double) constant;
+            for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1))
+                if (!operator.test(compareNumbers(values[i], value))) selection.clear(i);
+        } else if (column instanceof Column.DoubleColumn && constant instanceof Number) {
+            double[] values = ((Column.DoubleColumn) column).values;
+            double value = ((Number) constant).doubleValue();
+            for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1))
+                if (!operator.test(compareNumbers(values[i], value))) selection.clear(i);
+        } else if (column instanceof Column.DictionaryColumn) {
+            // Condition évaluée une seule fois par valeur distincte
+            Column.DictionaryColumn dictionary_column = (Column.DictionaryColumn) column;
+            boolean[] matches = new boolean[dictionary_column.dictionary.length];
+            for (int code = 0; code < matches.length; code++)
+                matches[code] = operator.test(compare(dictionary_column.dictionary[code], constant));
+            int[] codes = dictionary_column.codes;
+            for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1))
+                if (!matches[codes[i]]) selection.clear(i);
+        } else {
+            for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1))
+                if (!operator.test(compare(column.get(i), constant))) selection.clear(i);
+        }
+    }
+
+    /**
+     * Appliquer l'affinité d'un attribut à une constante, comme SQLite avant une comparaison
+     *
+     * @param value    constante
+     * @param sql_type type SQL déclaré de l'attribut
+     * @return constante convertie, ou UNSUPPORTED
+     */
+    static Object applyAffinity(Object value, String sql_type) {
+        if (value instanceof Integer) value = ((Integer) value).longValue();
+        if (sql_type.startsWith("INTEGER") || sql_type.startsWith("REAL")) {
+            // Affinité numérique : un texte représentant un nombre est converti
+            if (value instanceof String) {
+                Number number = parseNumber((String) value);
+                return number != null ? number : value;
+            }
+            return value instanceof Long || value instanceof Double ? value : UNSUPPORTED;
+        }
+        // Affinité textuelle : un réel serait converti avec le format de SQLite, non reproduit
+        if (value instanceof Long) return value.toString();
+        return value instanceof String ? value : UNSUPPORTED;
+    }
+
+    /**
+     * Lire un nombre écrit sous forme de texte (espaces autour tolérés, comme SQLite)
+     *
+     * @param text texte
+     * @return Long ou Double, ou null si le texte n'est pas un nombre
+     */
+    private static Number parseNumber(String text) {
+        String trimmed = text.trim();
+        if (trimmed.isEmpty() || !trimmed.matches("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?")) return null;
+        try {
+            return Long.parseLong(trimmed.startsWith("+") ? trimmed.substring(1) : trimmed);
+        } catch (NumberFormatException e) {
+            return Double.parseDouble(trimmed);
+        }
+    }
+
+    /**
+     * Comparer deux valeurs non nulles comme SQLite : nombres avant textes avant données binaires,
+     * nombres par valeur et textes octet par octet (UTF-8, soit point de code par point de code)
+     *
+     * @param value    valeur
+     * @param constant constante
+     * @return signe de la comparaison
+     */
+    static int compare(Object value, Object constant) {
+        int value_class = storageClass(value);
+        int constant_class = storageClass(constant);
+        if (value_class != constant_class) return Integer.compare(value_class, constant_class);
+        if (value_class == 1) {
+            if (value instanceof Double || constant instanceof Double)
+                return compareNumbers(((Number) value).doubleValue(), ((Number) constant).doubleValue());
+            return Long.compare(((Number) value).longValue(), ((Number) constant).longValue());
+        }
+        if (value_class == 2) {
+            String a = (String) value;
+            String b = (String) constant;
+            int i = 0;
+            int j = 0;
+            while (i < a.length() && j < b.length()) {
+                int ca = a.codePointAt(i);
+                int cb = b.codePointAt(j);
+                if (ca != cb) return Integer.compare(ca, cb);
+                i += Character.charCount(ca);
+                j += Character.charCount(cb);
+            }
+            return Integer.compare(a.length() - i, b.length() - j);
+        }
+        return Arrays.compareUnsigned((byte[]) value, (byte[]) constant);
+    }
+
+    /**
+     * Comparer deux nombres (0 et -0 sont égaux)
+     *
+     * @param a nombre
+     * @param b nombre
+     * @return signe de la comparaison
+     */
+    private static int compareNumbers(double a, double b) {
+        return a < b ? -1 : a > b ? 1 : 0;
+    }
+
+    /**
+     * Classe de stockage SQLite d'une valeur non nulle
+     *
+     * @param value valeur
+     * @return 1 pour un nombre, 2 pour un texte, 3 pour des données binaires
+     */
+    private static int storageClass(Object value) {
+        if (value instanceof Number) return 1;
+        if (value instanceof String) return 2;
+        return 3;
+    }
+}
@@ -0,0 +1,192 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copie en mémoire d'une source, stockée par colonnes typées
+ * (parcours rapide des tables fréquemment interrogées, sans passer par SQLite)
+ */
+public class ColumnarTable {
+    /**
+     * Base de données de la source
+     */
+    public final String db_name;
+
+    /**
+     * Attributs de la source
+     */
+    public final List<String> attributes;
+
+    /**
+     * Types SQL déclarés des attributs
+     */
+    public final List<String> attributes_types;
+
+    /**
+     * Colonnes, dans l'ordre des attributs
+     */
+    private final Column[] columns;
+
+    /**
+     * Nombre de tuples
+     */
+    public final int row_count;
+
+    /**
+     * Positions des tuples triées par valeur croissante (attribut - positions), construites à la demande
+     */
+    private final Map<String, int[]> sorted_rows;
+
+    /**
+     * Constructeur
+     *
+     * @param _db_name          base de données
+     * @param _attributes       attributs
+     * @param _attributes_types types déclarés
+     * @param _columns          colonnes
+     * @param _row_count        nombre de tuples
+     */
+    private ColumnarTable(String _db_name, List<String> _attributes, List<String> _attributes_types,
+                          Column[] _columns, int _row_count) {
+        db_name = _db_name;
+        attributes = _attributes;
+        attributes_types = _attributes_types;
+        columns = _columns;
+        row_count = _row_count;
+        sorted_rows = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Charger une source depuis sa base de données (attachée à la connexion), dans l'ordre de ses tuples
+     *
+     * @param connection connexion
+     * @param source     source
+     * @return table colonnaire
+     * @throws SQLException erreur SQL
+     */
+    public static ColumnarTable load(Connection connection, Wrapper source) throws SQLException {
+        List<String> attributes = new ArrayList<>(source.attributes);
+        List<String> types = new ArrayList<>(source.attributes_types);
+        Column.Builder[] builders = new Column.Builder[attributes.size()];
+        for (int i = 0; i < builders.length; i++) builders[i] = new Column.Builder(types.get(i));
+        int row_count = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT " + String.join(",", attributes) + " FROM " +
+                     source.db_name + ".\"" + source.getSourceTable() + "\" ORDER BY ROWID")) {
+            while (rs.next()) {
+                for (int i = 0; i < builders.length; i++) builders[i].add(rs.getObject(i + 1));
+                row_count++;
+            }
+        }
+        Column[] columns = new Column[builders.length];
+        for (int i = 0; i < columns.length; i++) columns[i] = builders[i].build();
+        return new ColumnarTable(source.db_name, Collections.unmodifiableList(attributes),
+                Collections.unmodifiableList(types), columns, row_count);
+    }
+
+    /**
+     * Obtenir la colonne d'un attribut
+     *
+     * @param attribute attribut
+     * @return colonne, ou null si la source n'a pas cet attribut
+     */
+    public Column getColumn(String attribute) {
+        int index = attributes.indexOf(attribute);
+        return index < 0 ? null : columns[index];
+    }
+
+    /**
+     * Obtenir le type déclaré d'un attribut
+     *
+     * @param attribute attribut
+     * @return type SQL, ou null si la source n'a pas cet attribut
+     */
+    public String getAttributeType(String attribute) {
+        int index = attributes.indexOf(attribute);
+        return index < 0 ? null : attributes_types.get(index);
+    }
+
+    /**
+     * Obtenir les positions des tuples triées par valeur croissante d'un attribut réel
+     * (construites au premier appel puis conservées)
+     *
+     * @param attribute attribut
+     * @return positions, ou null si l'attribut n'est pas stocké en réels
+     */
+    public int[] getSortedRows(String attribute) {
+        if (!(getColumn(attribute) instanceof Column.DoubleColumn)) return null;
+        return sorted_rows.computeIfAbsent(attribute,
+                key -> sortRows(((Column.DoubleColumn) getColumn(key)).values, row_count));
+    }
+
+    /**
+     * Trier les positions des tuples par valeur croissante (ordre de Double.compare, stable) : tri par base
+     * sur la représentation binaire ordonnée des réels, par chiffres de 16 bits, sans objet ni comparateur
+     * (les passes dont tous les tuples partagent le chiffre sont ignorées)
+     *
+     * @param values    valeurs
+     * @param row_count nombre de tuples
+     * @return positions triées
+     */
+    static int[] sortRows(double[] values, int row_count) {
+        long[] keys = new long[row_count];
+        int[] rows = new int[row_count];
+        for (int i = 0; i < row_count; i++) {
+            long bits = Double.doubleToLongBits(values[i]);
+            // Réels négatifs : tous les bits inversés ; positifs : bit de signe inversé (ordre non signé)
+            keys[i] = bits ^ (bits >> 63 | Long.MIN_VALUE);
+            rows[i] = i;
+        }
+        long[] next_keys = new long[row_count];
+        int[] next_rows = new int[row_count];
+        int[] counts = new int[1 << 16];
+        for (int shift = 0; shift < Long.SIZE; shift += 16) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < row_count; i++) counts[(int) (keys[i] >>> shift) & 0xFFFF]++;
+            if (row_count == 0 || counts[(int) (keys[0] >>> shift) & 0xFFFF] == row_count) continue;
+            for (int digit = 0, offset = 0; digit < counts.length; digit++) {
+                int count = counts[digit];
+                counts[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < row_count; i++) {
+                int position = counts[(int) (keys[i] >>> shift) & 0xFFFF]++;
+                next_keys[position] = keys[i];
+                next_rows[position] = rows[i];
+            }
+            long[] swapped_keys = keys;
+            keys = next_keys;
+            next_keys = swapped_keys;
+            int[] swapped_rows = rows;
+            rows = next_rows;
+            next_rows = swapped_rows;
+        }
+        return rows;
+    }
+
+    /**
+     * Estimer la mémoire occupée par la table
+     *
+     * @return taille (octets)
+     */
+    public long estimateBytes() {
+        long bytes = 0;
+        for (Column column : columns) bytes += column.estimateBytes();
+        for (int[] rows : sorted_rows.values()) bytes += 4L * rows.length;
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(db_name + " : " + row_count + " tuples, " +
+                estimateBytes() / 1024 + " Ko (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(attributes.get(i)).append(" ").append(columns[i].getClass().getSimpleName());
+        }
+        return sb.append(")").toString();
+    }
+}
@@ -0,0 +1,269 @@
+import org.sqlite.Function;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Réserve de connexions à la base de données en mémoire du médiateur
+ * (chaque connexion est préparée une seule fois : directives, fonctions SQL et bases de données attachées)
+ */
+public class ConnectionPool {
+    /**
+     * Nombre maximum de bases de données attachées à une connexion (limite par défaut de SQLite)
+     */
+    private static final int MAX_ATTACHED = 10;
+
+    /**
+     * Directives appliquées à chaque connexion
+     */
+    private static final String[] PRAGMAS = {"temp_store = MEMORY", "cache_size = -16000"};
+
+    /**
+     * Nombre maximum de requêtes préparées conservées par connexion
+     */
+    private static final int MAX_PREPARED_STATEMENTS = 64;
+
+    /**
+     * Connexions disponibles
+     */
+    private final BlockingQueue<Connection> idle_connections;
+
+    /**
+     * État des connexions ouvertes (connexion - état)
+     */
+    private final Map<Connection, ConnectionState> connections_states;
+
+    /**
+     * Limite du nombre de connexions ouvertes simultanément
+     */
+    private final Semaphore permits;
+
+    /**
+     * Bases de données pouvant être attachées (nom - chemin du fichier)
+     */
+    private final Map<String, String> databases;
+
+    /**
+     * Fonctions SQL à créer sur chaque connexion (nom - fabrique)
+     */
+    private final Map<String, Supplier<Function>> functions;
+
+    /**
+     * Génération courante : une connexion plus ancienne est recréée
+     */
+    private volatile long generation;
+
+    /**
+     * État d'une connexion
+     */
+    private static class ConnectionState {
+        /**
+         * Génération lors de la création
+         */
+        final long generation;
+
+        /**
+         * Bases de données attachées, de la moins à la plus récemment utilisée
+         */
+        final LinkedHashSet<String> attached = new LinkedHashSet<>();
+
+        /**
+         * Requêtes préparées (texte - requête), de la moins à la plus récemment utilisée
+         */
+        final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= MAX_PREPARED_STATEMENTS) return false;
+                try {
+                    eldest.getValue().close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+                return true;
+            }
+        };
+
+        ConnectionState(long _generation) {
+            generation = _generation;
+        }
+    }
+
+    /**
+     * Constructeur
+     *
+     * @param max_size nombre maximum de connexions ouvertes simultanément
+     */
+    public ConnectionPool(int max_size) {
+        idle_connections = new LinkedBlockingQueue<>();
+        connections_states = new ConcurrentHashMap<>();
+        permits = new Semaphore(max_size, true);
+        databases = new ConcurrentHashMap<>();
+        functions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Déclarer une base de données pouvant être attachée aux connexions
+     *
+     * @param name      nom de la base de données
+     * @param file_path chemin du fichier
+     */
+    public void registerDatabase(String name, String file_path) {
+        databases.put(name, file_path);
+    }
+
+    /**
+     * Déclarer une fonction SQL à créer sur chaque connexion
+     * (une fonction SQLite est liée à sa connexion : une instance est créée par connexion)
+     *
+     * @param name     nom de la fonction
+     * @param function fabrique de la fonction
+     */
+    public void registerFunction(String name, Supplier<Function> function) {
+        functions.put(name, function);
+        invalidate();
+    }
+
+    /**
+     * Invalider les connexions existantes (elles seront recréées)
+     */
+    public synchronized void invalidate() {
+        generation++;
+        Connection connection;
+        while ((connection = idle_connections.poll()) != null) closeConnection(connection);
+    }
+
+    /**
+     * Emprunter une connexion sur laquelle les bases de données demandées sont attachées
+     *
+     * @param required_databases bases de données nécessaires
+     * @return connexion (à rendre avec release)
+     */
+    public Connection borrow(Collection<String> required_databases) {
+        if (required_databases.size() > MAX_ATTACHED)
+            Utils.throwException("Trop de sources pour une même requête (" + required_databases.size() + ").");
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Attente d'une connexion interrompue.", e);
+        }
+        try {
+            Connection connection = idle_connections.poll();
+            if (connection != null && connections_states.get(connection).generation != generation) {
+                closeConnection(connection);
+                connection = null;
+            }
+            if (connection == null) connection = openConnection();
+            attachDatabases(connection, required_databases);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw new IllegalStateException("Préparation de la connexion impossible.", e);
+        }
+    }
+
+    /**
+     * Obtenir une requête préparée sur une connexion empruntée (préparée au premier appel puis réutilisée)
+     *
+     * @param connection connexion
+     * @param sql        requête
+     * @return requête préparée
+     * @throws SQLException erreur SQL
+     */
+    public PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        Map<String, PreparedStatement> statements = connections_states.get(connection).statements;
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * Rendre une connexion empruntée
+     *
+     * @param connection connexion
+     */
+    public void release(Connection connection) {
+        ConnectionState state = connections_states.get(connection);
+        try {
+            if (state == null || state.generation != generation || connection.isClosed()
+                    || !connection.getAutoCommit()) closeConnection(connection);
+            else idle_connections.offer(connection);
+        } catch (SQLException e) {
+            closeConnection(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Fermer toutes les connexions disponibles
+     */
+    public void close() {
+        invalidate();
+    }
+
+    /**
+     * Ouvrir et préparer une nouvelle connexion
+     *
+     * @return connexion
+     * @throws SQLException erreur SQL
+     */
+    private Connection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:");
+        JDBC.executePragmas(connection, PRAGMAS);
+        for (Map.Entry<String, Supplier<Function>> function : functions.entrySet())
+            Function.create(connection, function.getKey(), function.getValue().get());
+        connections_states.put(connection, new ConnectionState(generation));
+        return connection;
+    }
+
+    /**
+     * Attacher à une connexion les bases de données nécessaires qui ne le sont pas encore
+     * (les moins récemment utilisées sont détachées si la limite est atteinte)
+     *
+     * @param connection         connexion
+     * @param required_databases bases de données nécessaires
+     * @throws SQLException erreur SQL
+     */
+    private void attachDatabases(Connection connection, Collection<String> required_databases) throws SQLException {
+        LinkedHashSet<String> attached = connections_states.get(connection).attached;
+        try (Statement statement = connection.createStatement()) {
+            for (String database : required_databases) {
+                if (attached.remove(database)) {
+                    attached.add(database);
+                    continue;
+                }
+                String file_path = databases.get(database);
+                if (file_path == null) Utils.throwException("Base de données inconnue : " + database);
+                Iterator<String> least_recent = attached.iterator();
+                while (attached.size() >= MAX_ATTACHED) {
+                    String detached = least_recent.next();
+                    if (required_databases.contains(detached)) continue;
+                    statement.executeUpdate("DETACH DATABASE " + detached);
+                    least_recent.remove();
+                }
+                statement.executeUpdate("ATTACH DATABASE '" + file_path.replace("'", "''") + "' AS " + database);
+                attached.add(database);
+            }
+        }
+    }
+
+    /**
+     * Fermer une connexion
+     *
+     * @param connection connexion
+     */
+    private void closeConnection(Connection connection) {
+        connections_states.remove(connection);
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,481 @@
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conseiller d'index : les prédicats poussés dans les sources désignent des index (simples ou composites)
+ * dont le gain estimé est cumulé à chaque exécution ; un index est créé en arrière-plan dans la base
+ * de données d'une source lorsque le gain cumulé dépasse son coût de construction, et supprimé
+ * lorsque son gain, amorti au fil des exécutions, ne le justifie plus
+ */
+public class IndexAdvisor {
+    /**
+     * Séparateur entre le nom de la table et les attributs dans le nom d'un index créé par le conseiller
+     */
+    static final String INDEX_INFIX = "_IDX_";
+
+    /**
+     * Nombre maximum d'attributs d'un index composite
+     */
+    private static final int MAX_INDEX_ATTRIBUTES = 4;
+
+    /**
+     * Nombre d'exécutions après lequel les gains cumulés sont divisés par deux
+     */
+    private static final int DECAY_PERIOD = 256;
+
+    /**
+     * Part du coût de construction en dessous de laquelle un index n'est plus conservé
+     */
+    private static final double DROP_RATIO = 0.125;
+
+    /**
+     * Index candidat d'une table globale : attributs d'égalité, puis au plus un attribut d'intervalle
+     */
+    public static class Candidate {
+        /**
+         * Table globale
+         */
+        public final String table;
+
+        /**
+         * Attributs indexés, dans l'ordre de l'index
+         */
+        public final List<String> attributes;
+
+        /**
+         * Comparaison d'égalité de chaque attribut (sinon d'intervalle)
+         */
+        private final List<Boolean> equalities;
+
+        Candidate(String _table, List<String> _attributes, List<Boolean> _equalities) {
+            table = _table;
+            attributes = _attributes;
+            equalities = _equalities;
+        }
+
+        /**
+         * Nom de l'index dans la base de données d'une source
+         *
+         * @return nom
+         */
+        String getName() {
+            return table + INDEX_INFIX + String.join("_", attributes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Candidate)) return false;
+            return table.equals(((Candidate) o).table) && attributes.equals(((Candidate) o).attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(table, attributes);
+        }
+
+        @Override
+        public String toString() {
+            return table + "(" + String.join(", ", attributes) + ")";
+        }
+    }
+
+    /**
+     * État d'un index dans une source
+     */
+    private static class IndexState {
+        /**
+         * Gain cumulé (nombre de tuples dont la lecture est évitée, amorti)
+         */
+        double benefit;
+
+        /**
+         * Index présent dans la base de données
+         */
+        boolean built;
+
+        /**
+         * Construction de l'index en cours (non soumise à nouveau)
+         */
+        boolean building;
+
+        /**
+         * Index déclaré par l'utilisateur : jamais supprimé
+         */
+        boolean declared;
+    }
+
+    /**
+     * Mode de débugage
+     */
+    private final boolean debug_mode;
+
+    /**
+     * État des index de chaque source (source - nom de l'index - état)
+     */
+    private final Map<Wrapper, Map<String, IndexState>> states;
+
+    /**
+     * Index déclarés par table globale
+     */
+    private final Map<String, List<Candidate>> declared_indexes;
+
+    /**
+     * Nombre d'exécutions enregistrées depuis le dernier amortissement
+     */
+    private int executions;
+
+    /**
+     * Exécuteur des créations et suppressions d'index (un seul fil : une modification à la fois par base)
+     */
+    private ExecutorService executor;
+
+    /**
+     * Constructeur
+     *
+     * @param _debug_mode mode de débugage
+     */
+    public IndexAdvisor(boolean _debug_mode) {
+        debug_mode = _debug_mode;
+        states = new HashMap<>();
+        declared_indexes = new HashMap<>();
+    }
+
+    /**
+     * Déclarer un index à créer sur les sources d'une table globale, quelle que soit son utilisation
+     *
+     * @param table      table globale
+     * @param attributes attributs indexés, dans l'ordre de l'index
+     */
+    public synchronized void declareIndex(String table, List<String> attributes) {
+        List<Boolean> equalities = new ArrayList<>(Collections.nCopies(attributes.size(), true));
+        Candidate candidate = new Candidate(table, attributes, equalities);
+        declared_indexes.computeIfAbsent(table, key -> new ArrayList<>()).add(candidate);
+        for (Wrapper source : states.keySet())
+            if (source.table_name.equals(table)) declare(source, candidate);
+    }
+
+    /**
+     * Enregistrer une source intégrée : ses index créés lors d'une exécution précédente sont repris
+     * et les index déclarés sur sa table sont créés
+     *
+     * @param source source
+     */
+    public synchronized void registerSource(Wrapper source) {
+        List<String> built_indexes = new ArrayList<>();
+        Connection connection = JDBC.getDBConnection(source.db_name);
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT name FROM sqlite_master WHERE type = 'index' " +
+                     "AND tbl_name = '" + source.table_name + "'")) {
+            while (rs.next()) built_indexes.add(rs.getString(1));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        JDBC.closeConnection(source.db_name);
+        registerSource(source, built_indexes);
+    }
+
+    /**
+     * Enregistrer une source dont les index présents dans la base de données sont connus
+     * (source restaurée depuis l'instantané du catalogue)
+     *
+     * @param source        source
+     * @param built_indexes index présents dans la base de données de la source
+     */
+    public synchronized void registerSource(Wrapper source, List<String> built_indexes) {
+        Map<String, IndexState> source_states = new HashMap<>();
+        states.put(source, source_states);
+        for (String name : built_indexes) {
+            if (!name.startsWith(source.table_name + INDEX_INFIX)) continue;
+            IndexState state = new IndexState();
+            state.built = true;
+            // Gain initial : l'index n'est supprimé que s'il reste inutilisé pendant plusieurs amortissements
+            state.benefit = getBuildCost(source);
+            source_states.put(name, state);
+        }
+        if (debug_mode && !source_states.isEmpty())
+            System.out.println("> Index de " + source.db_name + " : " + source_states.keySet());
+        for (Candidate candidate : declared_indexes.getOrDefault(source.table_name, List.of()))
+            declare(source, candidate);
+    }
+
+    /**
+     * Obtenir les index présents dans la base de données d'une source (hors constructions en cours)
+     *
+     * @param source source
+     * @return noms des index
+     */
+    public synchronized List<String> getIndexes(Wrapper source) {
+        List<String> built_indexes = new ArrayList<>();
+        for (Map.Entry<String, IndexState> entry : states.getOrDefault(source, Map.of()).entrySet())
+            if (entry.getValue().built) built_indexes.add(entry.getKey());
+        Collections.sort(built_indexes);
+        return built_indexes;
+    }
+
+    /**
+     * Créer un index déclaré sur une source
+     *
+     * @param source    source
+     * @param candidate index
+     */
+    private void declare(Wrapper source, Candidate candidate) {
+        if (!source.attributes.containsAll(candidate.attributes)) return;
+        IndexState state = states.get(source).computeIfAbsent(candidate.getName(), name -> new IndexState());
+        state.declared = true;
+        if (!state.built && !state.building) build(source, candidate, state);
+    }
+
+    /**
+     * Déterminer l'index candidat de chaque table à partir des prédicats poussés dans ses sources
+     *
+     * @param predicates prédicats poussés, par table globale
+     * @param sources    sources du médiateur
+     * @return index candidats
+     */
+    public List<Candidate> advise(Map<String, List<Predicate>> predicates, List<Wrapper> sources) {
+        List<Candidate> advised = new ArrayList<>();
+        for (Map.Entry<String, List<Predicate>> entry : predicates.entrySet()) {
+            String table = entry.getKey();
+            // Égalités de la plus à la moins sélective, puis l'intervalle le plus sélectif
+            List<String> equality_attributes = new ArrayList<>();
+            String range_attribute = null;
+            boolean key_equality = false;
+            for (Predicate predicate : entry.getValue()) {
+                // La clé primaire est déjà indexée
+                if (predicate.index_attribute == null || isKey(table, predicate.index_attribute, sources)) {
+                    key_equality |= predicate.index_attribute != null && predicate.equality;
+                    continue;
+                }
+                if (predicate.equality) {
+                    if (!equality_attributes.contains(predicate.index_attribute))
+                        equality_attributes.add(predicate.index_attribute);
+                } else if (range_attribute == null || getDistinctCount(table, predicate.index_attribute, sources) >
+                        getDistinctCount(table, range_attribute, sources))
+                    range_attribute = predicate.index_attribute;
+            }
+            equality_attributes.sort(Comparator.comparingDouble(
+                    (String attribute) -> getDistinctCount(table, attribute, sources)).reversed());
+            List<String> attributes = new ArrayList<>(equality_attributes);
+            if (range_attribute != null && !attributes.contains(range_attribute)) attributes.add(range_attribute);
+            if (attributes.isEmpty() || key_equality) continue;
+            if (attributes.size() > MAX_INDEX_ATTRIBUTES) attributes = attributes.subList(0, MAX_INDEX_ATTRIBUTES);
+            List<Boolean> equalities = new ArrayList<>();
+            for (String attribute : attributes) equalities.add(equality_attributes.contains(attribute));
+            advised.add(new Candidate(table, List.copyOf(attributes), equalities));
+        }
+        return advised;
+    }
+
+    /**
+     * Enregistrer l'exécution d'une requête : le gain de ses index candidats est cumulé, les index
+     * rentables sont créés et, périodiquement, les gains sont amortis et les index inutiles supprimés
+     *
+     * @param advised index candidats de la requête
+     */
+    public synchronized void record(List<Candidate> advised) {
+        for (Candidate candidate : advised) {
+            for (Map.Entry<Wrapper, Map<String, IndexState>> entry : states.entrySet()) {
+                Wrapper source = entry.getKey();
+                if (!source.table_name.equals(candidate.table) || source.statistics == null
+                        || !source.attributes.containsAll(candidate.attributes)) continue;
+                IndexState state = entry.getValue().computeIfAbsent(candidate.getName(), name -> new IndexState());
+                state.benefit += getSavedRows(source, candidate);
+                if (!state.built && !state.building && state.benefit >= getBuildCost(source))
+                    build(source, candidate, state);
+            }
+        }
+        if (++executions < DECAY_PERIOD) return;
+        executions = 0;
+        for (Map.Entry<Wrapper, Map<String, IndexState>> entry : states.entrySet()) {
+            Wrapper source = entry.getKey();
+            for (Iterator<Map.Entry<String, IndexState>> it = entry.getValue().entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, IndexState> index = it.next();
+                IndexState state = index.getValue();
+                state.benefit /= 2;
+                // Un index en construction est conservé : sa création ne serait plus suivie
+                if (state.declared || state.building || state.benefit >= DROP_RATIO * getBuildCost(source))
+                    continue;
+                if (state.built) drop(source, index.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Estimer le nombre de tuples dont la lecture est évitée par un index lors d'une exécution
+     *
+     * @param source    source
+     * @param candidate index
+     * @return gain
+     */
+    private static double getSavedRows(Wrapper source, Candidate candidate) {
+        double rows = source.statistics.row_count;
+        double selectivity = 1;
+        for (int i = 0; i < candidate.attributes.size(); i++) {
+            SourceStatistics.Attribute attribute = source.statistics.getAttribute(candidate.attributes.get(i));
+            if (!candidate.equalities.get(i)) selectivity /= 3;
+            else if (attribute != null && attribute.distinct_count > 0) selectivity /= attribute.distinct_count;
+        }
+        // Parcours complet remplacé par une recherche dans l'index suivie de la lecture des tuples retenus
+        return Math.max(0, rows - (log2(rows + 2) + selectivity * rows));
+    }
+
+    /**
+     * Estimer le coût de construction d'un index sur une source (tri de ses tuples)
+     *
+     * @param source source
+     * @return coût, en nombre de tuples lus
+     */
+    private static double getBuildCost(Wrapper source) {
+        double rows = source.statistics != null ? source.statistics.row_count : 0;
+        return rows * log2(rows + 2);
+    }
+
+    /**
+     * Vérifier si un attribut est la clé primaire (premier attribut) de toutes les sources d'une table
+     *
+     * @param table     table globale
+     * @param attribute attribut
+     * @param sources   sources du médiateur
+     * @return vrai si l'attribut est la clé primaire
+     */
+    private static boolean isKey(String table, String attribute, List<Wrapper> sources) {
+        boolean key = false;
+        for (Wrapper source : sources) {
+            if (!source.table_name.equals(table)) continue;
+            if (!source.attributes.get(0).equals(attribute)) return false;
+            key = true;
+        }
+        return key;
+    }
+
+    /**
+     * Nombre de valeurs distinctes d'un attribut d'une table (plus grand nombre parmi ses sources)
+     *
+     * @param table     table globale
+     * @param attribute attribut
+     * @param sources   sources du médiateur
+     * @return nombre de valeurs distinctes
+     */
+    private static double getDistinctCount(String table, String attribute, List<Wrapper> sources) {
+        double distinct = 0;
+        for (Wrapper source : sources) {
+            if (!source.table_name.equals(table) || source.statistics == null) continue;
+            SourceStatistics.Attribute statistics = source.statistics.getAttribute(attribute);
+            if (statistics != null) distinct = Math.max(distinct, statistics.distinct_count);
+        }
+        return distinct;
+    }
+
+    /**
+     * Créer un index en arrière-plan : il n'est considéré présent qu'une fois créé, et sa création
+     * est retentée par une exécution ultérieure en cas d'échec (base de données verrouillée, par exemple)
+     *
+     * @param source    source
+     * @param candidate index
+     * @param state     état de l'index
+     */
+    private void build(Wrapper source, Candidate candidate, IndexState state) {
+        state.building = true;
+        String name = candidate.getName();
+        getExecutor().submit(() -> {
+            long start = System.currentTimeMillis();
+            boolean created = update(source, "CREATE INDEX IF NOT EXISTS \"" + name + "\" ON \"" +
+                    source.table_name + "\" (" + String.join(", ", candidate.attributes) + ")");
+            synchronized (this) {
+                state.building = false;
+                state.built = created;
+            }
+            if (created && debug_mode)
+                System.out.println("> Index " + name + " créé dans " + source.db_name + " (" +
+                        (System.currentTimeMillis() - start) + " ms).");
+        });
+    }
+
+    /**
+     * Supprimer un index en arrière-plan
+     *
+     * @param source source
+     * @param name   nom de l'index
+     */
+    private void drop(Wrapper source, String name) {
+        getExecutor().submit(() -> {
+            if (update(source, "DROP INDEX IF EXISTS \"" + name + "\"") && debug_mode)
+                System.out.println("> Index " + name + " supprimé de " + source.db_name + ".");
+        });
+    }
+
+    /**
+     * Modifier la structure de la base de données d'une source
+     * (les requêtes préparées par la réserve de connexions sont recompilées par SQLite)
+     *
+     * @param source source
+     * @param query  requête SQL
+     * @return vrai si la modification a réussi
+     */
+    private static boolean update(Wrapper source, String query) {
+        boolean updated = false;
+        Connection connection = JDBC.getDBConnection(source.db_name);
+        try (Statement statement = connection.createStatement()) {
+            long start = Metrics.start();
+            statement.executeUpdate(query);
+            Metrics.Stage.DDL.stop(start);
+            updated = true;
+        } catch (SQLException e) {
+            System.err.println("ATTENTION : Modification des index de " + source.db_name + " impossible (" +
+                    e.getMessage() + ").");
+        }
+        JDBC.closeConnection(source.db_name);
+        return updated;
+    }
+
+    /**
+     * Récupérer l'exécuteur des modifications d'index (créé à la première modification)
+     *
+     * @return exécuteur
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "index-advisor");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Attendre la fin des modifications d'index en cours et arrêter l'exécuteur
+     */
+    public void close() {
+        ExecutorService current;
+        synchronized (this) {
+            current = executor;
+            executor = null;
+        }
+        if (current == null) return;
+        current.shutdown();
+        try {
+            current.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Logarithme en base 2
+     *
+     * @param value valeur
+     * @return logarithme
+     */
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
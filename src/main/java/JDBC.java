@@ -29,7 +29,7 @@ public class JDBC {
      *
      * @return instance
      */
-    private static JDBC getInstance() {
+    private static synchronized JDBC getInstance() {
         if (instance == null) instance = new JDBC();
         return instance;
     }
@@ -55,30 +55,73 @@ public class JDBC {
      * @return résultat
      */
     public static List<List<String>> queryDB(Statement statement, String query) {
+        try (ResultSet rs = statement.executeQuery(query)) {
+            return readResultSet(rs);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Exécuter une requête préparée
+     *
+     * @param statement  requête préparée
+     * @param parameters valeurs des paramètres, dans l'ordre de leur numéro
+     * @return résultat
+     */
+    public static List<List<String>> queryDB(PreparedStatement statement, List<Object> parameters) {
         try {
-            ResultSet rs = statement.executeQuery(query);
-            ResultSetMetaData resultSetMetaData = rs.getMetaData();
-            final int columnCount = resultSetMetaData.getColumnCount();
-            List<List<String>> result = new ArrayList<>();
-            // Ajout de la liste des attributs en tête de liste
-            List<String> attributes = new ArrayList<>();
-            for (int i = 1; i <= columnCount; i++)
-                attributes.add(resultSetMetaData.getColumnName(i));
-            result.add(attributes);
-            // Parcours des tuples
-            while (rs.next()) {
-                List<String> tuple = new ArrayList<>();
-                for (int i = 1; i <= columnCount; i++)
-                    tuple.add(rs.getObject(i) == null ? "" : rs.getObject(i).toString());
-                result.add(tuple);
+            bindParameters(statement, parameters);
+            try (ResultSet rs = statement.executeQuery()) {
+                return readResultSet(rs);
             }
-            return result;
         } catch (SQLException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * Lier les valeurs des paramètres d'une requête préparée
+     *
+     * @param statement  requête préparée
+     * @param parameters valeurs des paramètres, dans l'ordre de leur numéro
+     * @throws SQLException erreur SQL
+     */
+    public static void bindParameters(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++)
+            statement.setObject(i + 1, parameters.get(i));
+    }
+
+    /**
+     * Lire l'intégralité d'un résultat
+     *
+     * @param rs résultat
+     * @return attributs suivis des tuples
+     * @throws SQLException erreur SQL
+     */
+    private static List<List<String>> readResultSet(ResultSet rs) throws SQLException {
+        ResultSetMetaData resultSetMetaData = rs.getMetaData();
+        final int columnCount = resultSetMetaData.getColumnCount();
+        List<List<String>> result = new ArrayList<>();
+        // Ajout de la liste des attributs en tête de liste
+        List<String> attributes = new ArrayList<>();
+        for (int i = 1; i <= columnCount; i++)
+            attributes.add(resultSetMetaData.getColumnName(i));
+        result.add(attributes);
+        // Parcours des tuples
+        while (rs.next()) {
+            List<String> tuple = new ArrayList<>();
+            for (int i = 1; i <= columnCount; i++) {
+                Object value = rs.getObject(i);
+                tuple.add(value == null ? "" : value.toString());
+            }
+            result.add(tuple);
+        }
+        return result;
+    }
+
     /**
      * Exécuter une mise à jour avec connexion
      *
@@ -104,6 +147,117 @@ public class JDBC {
         }
     }
 
+    /**
+     * Insérer des tuples par lots avec une requête préparée
+     *
+     * @param db_name    nom de la base de données
+     * @param query      requête d'insertion paramétrée
+     * @param tuples     tuples à insérer
+     * @param batch_size nombre de tuples par lot
+     * @return nombre de tuples insérés
+     * @throws SQLException erreur SQL (aucun tuple n'est alors inséré)
+     */
+    public static long batchUpdateDB(String db_name, String query, Iterable<? extends Object[]> tuples,
+                                     int batch_size) throws SQLException {
+        try {
+            return batchUpdateDB(getDBConnection(db_name), query, tuples, batch_size);
+        } finally {
+            closeConnection(db_name);
+        }
+    }
+
+    /**
+     * Insérer des tuples par lots avec une requête préparée sans connexion : les lots sont exécutés
+     * dans une seule transaction, annulée entièrement en cas d'erreur (SQL ou lecture des tuples) ;
+     * les attributs absents d'un tuple incomplet sont insérés à NULL, un tuple trop long est refusé
+     *
+     * @param connection connexion
+     * @param query      requête d'insertion paramétrée
+     * @param tuples     tuples à insérer
+     * @param batch_size nombre de tuples par lot
+     * @return nombre de tuples insérés
+     * @throws SQLException erreur SQL (aucun tuple n'est alors inséré)
+     */
+    public static long batchUpdateDB(Connection connection, String query, Iterable<? extends Object[]> tuples,
+                                     int batch_size) throws SQLException {
+        if (batch_size < 1) Utils.throwException("Taille de lot invalide.");
+        long count = 0;
+        // Le fichier source fait foi : pas besoin de synchronisation disque pendant le chargement
+        String synchronous = queryPragma(connection, "synchronous");
+        String journal_mode = queryPragma(connection, "journal_mode");
+        executePragmas(connection, "synchronous = OFF", "journal_mode = MEMORY");
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement prepared = connection.prepareStatement(query)) {
+                int parameters = prepared.getParameterMetaData().getParameterCount();
+                int pending = 0;
+                for (Object[] tuple : tuples) {
+                    if (tuple.length > parameters)
+                        throw new SQLException("Tuple de " + tuple.length + " valeurs pour " + parameters
+                                + " attributs : " + Arrays.toString(tuple));
+                    for (int i = 0; i < parameters; i++) {
+                        // Texte vide (fichier texte), valeur nulle (source typée) ou attribut absent d'une ligne
+                        // incomplète : valeur manquante (les paramètres du tuple précédent ne sont pas conservés)
+                        if (i >= tuple.length || tuple[i] == null || "".equals(tuple[i]))
+                            prepared.setNull(i + 1, Types.NULL);
+                        else prepared.setObject(i + 1, tuple[i]);
+                    }
+                    prepared.addBatch();
+                    if (++pending == batch_size) {
+                        prepared.executeBatch();
+                        count += pending;
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    prepared.executeBatch();
+                    count += pending;
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                // Annulation de tous les lots : la table n'est jamais chargée à moitié
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            executePragmas(connection, "synchronous = " + synchronous, "journal_mode = " + journal_mode);
+        }
+        return count;
+    }
+
+    /**
+     * Lire la valeur d'une directive PRAGMA
+     *
+     * @param connection connexion
+     * @param pragma     directive (sans le mot-clé PRAGMA)
+     * @return valeur
+     * @throws SQLException erreur SQL
+     */
+    private static String queryPragma(Connection connection, String pragma) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA " + pragma)) {
+            return rs.getString(1);
+        }
+    }
+
+    /**
+     * Exécuter des directives PRAGMA sur une connexion
+     *
+     * @param connection connexion
+     * @param pragmas    directives (sans le mot-clé PRAGMA)
+     * @throws SQLException erreur SQL
+     */
+    public static void executePragmas(Connection connection, String... pragmas) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma : pragmas) {
+                // Certaines directives renvoient un résultat qu'il faut refermer
+                if (statement.execute("PRAGMA " + pragma)) statement.getResultSet().close();
+            }
+        }
+    }
+
     /**
      * Créer une fonction sur la base de données
      *
@@ -143,7 +297,7 @@ public class JDBC {
      * @param db_name nom de la base de données
      * @return connexion
      */
-    public static Connection getDBConnection(String db_name) {
+    public static synchronized Connection getDBConnection(String db_name) {
         // Récupération des connexions mises en cache
         Map<String, Connection> cached_connections = getInstance().connections;
         Connection connection = null;
@@ -167,10 +321,11 @@ public class JDBC {
      *
      * @param db_name nom de la base de données
      */
-    public static void closeConnection(String db_name) {
+    public static synchronized void closeConnection(String db_name) {
         Connection connection = getDBConnection(db_name);
         try {
             if (connection != null) connection.close();
+            getInstance().connections.remove(db_name);
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -182,20 +337,10 @@ public class JDBC {
      * @param data données
      */
     public static void showQueryResult(List<List<String>> data) {
-        int[] column_spaces = new int[data.get(0).size()];
-        for (List<String> tuple : data) {
-            for (int i = 0; i < tuple.size(); i++) {
-                int value_length = tuple.get(i).length();
-                if (column_spaces[i] < value_length)
-                    column_spaces[i] = value_length;
-            }
-        }
-        for (List<String> tuple : data) {
-            for (int i = 0; i < tuple.size(); i++) {
-                int remaining_length = Math.abs(tuple.get(i).length() - column_spaces[i]) + 3;
-                System.out.print("| " + tuple.get(i) + " ".repeat(remaining_length));
-            }
-            System.out.println();
-        }
+        // Largeur des colonnes calculée sur toutes les lignes
+        TableResultWriter writer = new TableResultWriter(System.out, Integer.MAX_VALUE);
+        writer.writeHeader(data.get(0));
+        for (List<String> tuple : data.subList(1, data.size())) writer.writeRow(tuple.toArray());
+        writer.flush();
     }
 }
@@ -0,0 +1,625 @@
+import java.util.*;
+
+/**
+ * Ordonnancement des jointures du bloc principal d'une requête à partir des statistiques des sources :
+ * la cardinalité de chaque table est estimée après ses filtres, puis l'ordre de jointure le moins coûteux
+ * est recherché par programmation dynamique (jointures imbriquées : chaque table est parcourue pour chaque
+ * tuple des tables qui la précèdent, par un index si une condition de jointure le permet)
+ */
+public class JoinPlanner {
+    /**
+     * Sélectivité d'un prédicat qui ne peut pas être estimé
+     */
+    private static final double DEFAULT_SELECTIVITY = 1.0 / 3;
+
+    /**
+     * Nombre de tuples supposé d'une source sans statistiques
+     */
+    private static final long DEFAULT_ROW_COUNT = 1000;
+
+    /**
+     * Nombre maximum de tables ordonnées (la recherche parcourt tous les sous-ensembles de tables)
+     */
+    private static final int MAX_SCANS = 10;
+
+    /**
+     * Ordre de jointure retenu
+     */
+    public static class JoinOrder {
+        /**
+         * Tables dans l'ordre de parcours (la première est la table externe)
+         */
+        public final List<LogicalPlan.Scan> scans;
+
+        /**
+         * Conditions ON des jointures d'origine, appliquées à la jointure réordonnée
+         */
+        public final List<SQLExpression> conditions;
+
+        /**
+         * Lexèmes de la clause FROM d'origine
+         */
+        public final List<SQLTokenizer.Token> from_tokens;
+
+        /**
+         * Nombre de tuples estimé après chaque jointure
+         */
+        private final double[] cardinalities;
+
+        /**
+         * Coût estimé
+         */
+        private final double cost;
+
+        JoinOrder(List<LogicalPlan.Scan> _scans, List<SQLExpression> _conditions,
+                  List<SQLTokenizer.Token> _from_tokens, double[] _cardinalities, double _cost) {
+            scans = _scans;
+            conditions = _conditions;
+            from_tokens = _from_tokens;
+            cardinalities = _cardinalities;
+            cost = _cost;
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner sj = new StringJoiner(" -> ");
+            for (int i = 0; i < scans.size(); i++)
+                sj.add(scans.get(i).getName() + " (" + Math.round(cardinalities[i]) + " tuples)");
+            return sj + ", coût " + Math.round(cost);
+        }
+    }
+
+    /**
+     * Sources du médiateur
+     */
+    private final List<Wrapper> sources;
+
+    /**
+     * Valeurs des paramètres de la requête normalisée
+     */
+    private final List<Object> parameters;
+
+    /**
+     * Constructeur
+     *
+     * @param _sources    sources du médiateur
+     * @param _parameters valeurs des paramètres de la requête (l'ordre est conservé avec le plan en cache :
+     *                    les estimations portent sur les valeurs de la première exécution)
+     */
+    public JoinPlanner(List<Wrapper> _sources, List<Object> _parameters) {
+        sources = _sources;
+        parameters = _parameters;
+    }
+
+    /**
+     * Ordonner les jointures internes du bloc principal d'une requête
+     *
+     * @param plan           plan logique
+     * @param indexed_tables tables dont la sous-requête expose les bornes de l'index spatial
+     * @return ordre retenu, ou null si la clause FROM ne joint pas plusieurs tables par des jointures internes
+     * (jointure externe, CROSS JOIN explicite, NATURAL, USING ou sous-requête)
+     */
+    public JoinOrder plan(LogicalPlan plan, Set<String> indexed_tables) {
+        while (plan instanceof LogicalPlan.Limit || plan instanceof LogicalPlan.Sort) plan = plan.getInputs().get(0);
+        if (!(plan instanceof LogicalPlan.Project) || ((LogicalPlan.Project) plan).from_tokens == null) return null;
+        LogicalPlan node = ((LogicalPlan.Project) plan).input;
+        List<SQLExpression> conjuncts = new ArrayList<>();
+        while (node instanceof LogicalPlan.Filter || node instanceof LogicalPlan.Aggregate) {
+            if (node instanceof LogicalPlan.Filter && !((LogicalPlan.Filter) node).having)
+                conjuncts.addAll(((LogicalPlan.Filter) node).conjuncts);
+            node = node.getInputs().get(0);
+        }
+        List<LogicalPlan.Scan> scans = new ArrayList<>();
+        List<SQLExpression> conditions = new ArrayList<>();
+        if (!collectInnerJoins(node, scans, conditions) || scans.size() < 2 || scans.size() > MAX_SCANS) return null;
+        for (SQLExpression condition : conditions) conjuncts.addAll(condition.splitConjuncts());
+
+        // Cardinalité de chaque table après ses filtres, sélectivité et tables de chaque condition de jointure
+        int n = scans.size();
+        double[] cardinalities = new double[n];
+        for (int i = 0; i < n; i++) cardinalities[i] = getRowCount(scans.get(i).table);
+        List<Integer> join_masks = new ArrayList<>();
+        List<Double> join_selectivities = new ArrayList<>();
+        // Tables pouvant être parcourues par un index à partir des autres tables d'une condition
+        int[][] probes = new int[n][];
+        for (int i = 0; i < n; i++) probes[i] = new int[0];
+        for (SQLExpression conjunct : conjuncts) {
+            int mask = getScansMask(conjunct, scans);
+            if (mask <= 0) continue;
+            if (Integer.bitCount(mask) == 1) {
+                int i = Integer.numberOfTrailingZeros(mask);
+                cardinalities[i] *= estimateSelectivity(conjunct, scans.get(i));
+                continue;
+            }
+            join_masks.add(mask);
+            join_selectivities.add(estimateJoinSelectivity(conjunct));
+            for (int i = 0; i < n; i++)
+                if ((mask & 1 << i) != 0 && isIndexedBy(conjunct, scans.get(i), indexed_tables)) {
+                    probes[i] = Arrays.copyOf(probes[i], probes[i].length + 1);
+                    probes[i][probes[i].length - 1] = mask & ~(1 << i);
+                }
+        }
+
+        // Nombre de tuples de chaque sous-ensemble de tables joint
+        int subsets = 1 << n;
+        double[] rows = new double[subsets];
+        for (int mask = 1; mask < subsets; mask++) {
+            double estimate = 1;
+            for (int i = 0; i < n; i++) if ((mask & 1 << i) != 0) estimate *= cardinalities[i];
+            for (int k = 0; k < join_masks.size(); k++)
+                if ((mask & join_masks.get(k)) == join_masks.get(k)) estimate *= join_selectivities.get(k);
+            rows[mask] = estimate;
+        }
+
+        // Ordre le moins coûteux de chaque sous-ensemble (à coût égal, l'ordre de la requête est conservé)
+        double[] costs = new double[subsets];
+        int[] last = new int[subsets];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < n; i++) {
+            costs[1 << i] = cardinalities[i];
+            last[1 << i] = i;
+        }
+        for (int mask = 1; mask < subsets; mask++) {
+            if (Integer.bitCount(mask) < 2) continue;
+            for (int j = n - 1; j >= 0; j--) {
+                if ((mask & 1 << j) == 0) continue;
+                int outer = mask & ~(1 << j);
+                boolean indexed = false;
+                for (int probe : probes[j]) indexed |= (probe & outer) == probe;
+                // Parcours par index : construction (ou lecture) de l'index puis une recherche par tuple externe
+                double cost = costs[outer] + rows[mask] + (indexed ?
+                        cardinalities[j] + rows[outer] * log2(cardinalities[j] + 2) :
+                        rows[outer] * Math.max(cardinalities[j], 1));
+                if (cost < costs[mask]) {
+                    costs[mask] = cost;
+                    last[mask] = j;
+                }
+            }
+        }
+        LinkedList<LogicalPlan.Scan> order = new LinkedList<>();
+        double[] order_rows = new double[n];
+        for (int mask = subsets - 1, k = n - 1; mask != 0; k--) {
+            order.addFirst(scans.get(last[mask]));
+            order_rows[k] = rows[mask];
+            mask &= ~(1 << last[mask]);
+        }
+        return new JoinOrder(new ArrayList<>(order), conditions, ((LogicalPlan.Project) plan).from_tokens,
+                order_rows, costs[subsets - 1]);
+    }
+
+    /**
+     * Parcourir une clause FROM composée uniquement de jointures internes entre tables
+     *
+     * @param node       nœud de la clause FROM
+     * @param scans      liste à compléter avec les tables
+     * @param conditions liste à compléter avec les conditions ON
+     * @return faux si la clause contient une autre forme de jointure ou une sous-requête
+     */
+    private static boolean collectInnerJoins(LogicalPlan node, List<LogicalPlan.Scan> scans,
+                                             List<SQLExpression> conditions) {
+        if (node instanceof LogicalPlan.Scan) {
+            scans.add((LogicalPlan.Scan) node);
+            return true;
+        }
+        if (!(node instanceof LogicalPlan.Join)) return false;
+        LogicalPlan.Join join = (LogicalPlan.Join) node;
+        // CROSS JOIN : ordre imposé par la requête
+        if (!join.type.equals("INNER") || join.natural || !join.using.isEmpty()) return false;
+        if (!collectInnerJoins(join.left, scans, conditions) || !collectInnerJoins(join.right, scans, conditions))
+            return false;
+        if (join.condition != null) conditions.add(join.condition);
+        return true;
+    }
+
+    /**
+     * Obtenir les tables référencées par un terme
+     *
+     * @param conjunct terme
+     * @param scans    tables ordonnées
+     * @return masque des tables, ou -1 si le terme référence un attribut extérieur (alias du résultat par exemple)
+     */
+    private static int getScansMask(SQLExpression conjunct, List<LogicalPlan.Scan> scans) {
+        int mask = 0;
+        for (SQLExpression.Column column : conjunct.getColumns()) {
+            int index = -1;
+            for (int i = 0; i < scans.size(); i++)
+                if (scans.get(i) == column.scan) index = i;
+            if (index < 0) return -1;
+            mask |= 1 << index;
+        }
+        return mask;
+    }
+
+    /**
+     * Vérifier si une condition de jointure permet de parcourir une table par un index : égalité entre attributs
+     * (SQLite construit un index automatique sur la sous-requête) ou prédicat de proximité sur une table
+     * exposant les bornes de son index spatial
+     *
+     * @param conjunct       condition
+     * @param scan           table parcourue
+     * @param indexed_tables tables dont la sous-requête expose les bornes de l'index spatial
+     * @return vrai si la table peut être parcourue par un index
+     */
+    private boolean isIndexedBy(SQLExpression conjunct, LogicalPlan.Scan scan, Set<String> indexed_tables) {
+        if (getDistanceThreshold(conjunct) >= 0) return indexed_tables.contains(scan.table);
+        if (!isEquality(conjunct)) return false;
+        for (SQLExpression operand : ((SQLExpression.Operation) conjunct).operands)
+            if (operand instanceof SQLExpression.Column && ((SQLExpression.Column) operand).scan == scan) return true;
+        return false;
+    }
+
+    /**
+     * Vérifier si un terme est une égalité entre deux attributs
+     *
+     * @param conjunct terme
+     * @return vrai pour une égalité
+     */
+    private static boolean isEquality(SQLExpression conjunct) {
+        if (!(conjunct instanceof SQLExpression.Operation)) return false;
+        SQLExpression.Operation operation = (SQLExpression.Operation) conjunct;
+        return (operation.operator.equals("=") || operation.operator.equals("=="))
+                && operation.operands.get(0) instanceof SQLExpression.Column
+                && operation.operands.get(1) instanceof SQLExpression.Column;
+    }
+
+    /**
+     * Estimer la sélectivité d'une condition portant sur plusieurs tables
+     *
+     * @param conjunct condition
+     * @return sélectivité
+     */
+    private double estimateJoinSelectivity(SQLExpression conjunct) {
+        if (isEquality(conjunct)) {
+            // Chaque valeur de la plus petite table trouve ses correspondants parmi les valeurs de la plus grande
+            double distinct = 1;
+            for (SQLExpression operand : ((SQLExpression.Operation) conjunct).operands) {
+                SQLExpression.Column column = (SQLExpression.Column) operand;
+                distinct = Math.max(distinct, getDistinctCount(column.scan.table, column.name));
+            }
+            return 1 / distinct;
+        }
+        double threshold = getDistanceThreshold(conjunct);
+        if (threshold >= 0) {
+            // Probabilité qu'un couple de positions soit proche : disque de proximité rapporté à la plus grande emprise
+            double area = 0;
+            for (SQLExpression.Column column : conjunct.getColumns())
+                area = Math.max(area, getArea(column.scan.table));
+            if (area > 0) return Math.min(1, Math.PI * threshold * threshold / area);
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    /**
+     * Estimer la sélectivité d'un filtre sur une table, en pondérant chaque source par son nombre de tuples
+     *
+     * @param conjunct filtre
+     * @param scan     table filtrée
+     * @return sélectivité
+     */
+    private double estimateSelectivity(SQLExpression conjunct, LogicalPlan.Scan scan) {
+        double rows = 0;
+        double selected = 0;
+        for (Wrapper wrapper : sources) {
+            if (!wrapper.table_name.equals(scan.table)) continue;
+            if (wrapper.statistics == null) return DEFAULT_SELECTIVITY;
+            rows += wrapper.statistics.row_count;
+            selected += wrapper.statistics.row_count * estimateSelectivity(conjunct, wrapper);
+        }
+        return rows > 0 ? selected / rows : DEFAULT_SELECTIVITY;
+    }
+
+    /**
+     * Estimer la sélectivité d'un filtre sur une source
+     *
+     * @param expression filtre
+     * @param wrapper    source
+     * @return sélectivité
+     */
+    private double estimateSelectivity(SQLExpression expression, Wrapper wrapper) {
+        if (!(expression instanceof SQLExpression.Operation)) return DEFAULT_SELECTIVITY;
+        SQLExpression.Operation operation = (SQLExpression.Operation) expression;
+        List<SQLExpression> operands = operation.operands;
+        switch (operation.operator) {
+            case "()":
+                return operands.size() == 1 ? estimateSelectivity(operands.get(0), wrapper) : DEFAULT_SELECTIVITY;
+            case "AND":
+                return estimateSelectivity(operands.get(0), wrapper) * estimateSelectivity(operands.get(1), wrapper);
+            case "OR": {
+                double left = estimateSelectivity(operands.get(0), wrapper);
+                double right = estimateSelectivity(operands.get(1), wrapper);
+                return left + right - left * right;
+            }
+            case "NOT":
+                return 1 - estimateSelectivity(operands.get(0), wrapper);
+            case "ISNULL":
+            case "NOTNULL": {
+                SourceStatistics.Attribute attribute = getAttribute(operands.get(0), wrapper);
+                if (attribute == null) return DEFAULT_SELECTIVITY;
+                double nulls = getNullFraction(attribute, wrapper);
+                return operation.operator.equals("ISNULL") ? nulls : 1 - nulls;
+            }
+            case "=":
+            case "==":
+            case "IS":
+            case "!=":
+            case "<>":
+            case "IS NOT":
+                return estimateEquality(operation, wrapper);
+            case "<":
+            case "<=":
+            case ">":
+            case ">=": {
+                double threshold = getDistanceThreshold(operation);
+                if (threshold >= 0) {
+                    double area = getArea(wrapper.table_name);
+                    return area > 0 ? Math.min(1, Math.PI * threshold * threshold / area) : DEFAULT_SELECTIVITY;
+                }
+                // Attribut à gauche : attribut < valeur ; à droite, la comparaison est inversée
+                boolean column_left = operands.get(0) instanceof SQLExpression.Column;
+                SQLExpression column = operands.get(column_left ? 0 : 1);
+                double fraction = estimateBelow(column, getNumber(operands.get(column_left ? 1 : 0)), wrapper);
+                if (fraction < 0) return DEFAULT_SELECTIVITY;
+                boolean below = operation.operator.startsWith("<") == column_left;
+                return (1 - getNullFraction(getAttribute(column, wrapper), wrapper)) * (below ? fraction : 1 - fraction);
+            }
+            case "BETWEEN":
+            case "NOT BETWEEN": {
+                double low = estimateBelow(operands.get(0), getNumber(operands.get(1)), wrapper);
+                double high = estimateBelow(operands.get(0), getNumber(operands.get(2)), wrapper);
+                if (low < 0 || high < 0) return DEFAULT_SELECTIVITY;
+                double selectivity = (1 - getNullFraction(getAttribute(operands.get(0), wrapper), wrapper)) *
+                        Math.max(0, high - low);
+                return operation.operator.equals("BETWEEN") ? selectivity : 1 - selectivity;
+            }
+            case "IN":
+            case "NOT IN": {
+                SourceStatistics.Attribute attribute = getAttribute(operands.get(0), wrapper);
+                if (attribute == null || operands.size() == 2 && operands.get(1) instanceof SQLExpression.Subquery)
+                    return DEFAULT_SELECTIVITY;
+                double selectivity = Math.min(1, (operands.size() - 1) * getEqualFraction(attribute, wrapper));
+                return operation.operator.equals("IN") ? selectivity : 1 - selectivity;
+            }
+            default:
+                return DEFAULT_SELECTIVITY;
+        }
+    }
+
+    /**
+     * Estimer la sélectivité d'une égalité (ou d'une différence) entre un attribut et une constante
+     *
+     * @param operation comparaison
+     * @param wrapper   source
+     * @return sélectivité
+     */
+    private double estimateEquality(SQLExpression.Operation operation, Wrapper wrapper) {
+        SQLExpression left = operation.operands.get(0);
+        SQLExpression right = operation.operands.get(1);
+        SQLExpression column = left instanceof SQLExpression.Column ? left : right;
+        SQLExpression value = column == left ? right : left;
+        SourceStatistics.Attribute attribute = getAttribute(column, wrapper);
+        if (attribute == null || !isConstant(value)) return DEFAULT_SELECTIVITY;
+        boolean negated = operation.operator.equals("!=") || operation.operator.equals("<>")
+                || operation.operator.equals("IS NOT");
+        double selectivity;
+        if (isNull(value))
+            // = NULL n'est jamais vrai, IS NULL retient les valeurs nulles
+            selectivity = operation.operator.startsWith("IS") ? getNullFraction(attribute, wrapper) : 0;
+        else selectivity = getEqualFraction(attribute, wrapper);
+        return negated && !(isNull(value) && !operation.operator.startsWith("IS")) ? 1 - selectivity : selectivity;
+    }
+
+    /**
+     * Estimer la proportion des tuples dont un attribut est inférieur à une valeur
+     *
+     * @param column attribut
+     * @param value  valeur (null si elle n'est pas numérique)
+     * @param wrapper source
+     * @return proportion parmi les valeurs non nulles, ou -1 si elle ne peut pas être estimée
+     */
+    private static double estimateBelow(SQLExpression column, Double value, Wrapper wrapper) {
+        SourceStatistics.Attribute attribute = getAttribute(column, wrapper);
+        if (attribute == null || value == null) return -1;
+        // Attribut absent de la source (toujours nul) : aucune valeur à comparer
+        if (attribute.distinct_count == 0) return 0;
+        return attribute.getCumulativeFraction(value);
+    }
+
+    /**
+     * Obtenir les statistiques de l'attribut d'une source référencé par une expression
+     *
+     * @param expression expression
+     * @param wrapper    source
+     * @return statistiques (un attribut absent de la source est toujours nul), ou null
+     * si l'expression n'est pas un attribut
+     */
+    private static SourceStatistics.Attribute getAttribute(SQLExpression expression, Wrapper wrapper) {
+        if (!(expression instanceof SQLExpression.Column) || wrapper.statistics == null) return null;
+        SourceStatistics.Attribute attribute =
+                wrapper.statistics.getAttribute(((SQLExpression.Column) expression).name.toUpperCase());
+        return attribute != null ? attribute :
+                new SourceStatistics.Attribute(wrapper.statistics.row_count, 0, null, null, null);
+    }
+
+    /**
+     * Proportion des tuples d'une source dont un attribut est nul
+     *
+     * @param attribute statistiques de l'attribut
+     * @param wrapper   source
+     * @return proportion
+     */
+    private static double getNullFraction(SourceStatistics.Attribute attribute, Wrapper wrapper) {
+        long rows = wrapper.statistics.row_count;
+        return rows > 0 ? (double) attribute.null_count / rows : 0;
+    }
+
+    /**
+     * Proportion des tuples d'une source égaux à une valeur, supposée uniformément répartie
+     *
+     * @param attribute statistiques de l'attribut
+     * @param wrapper   source
+     * @return proportion
+     */
+    private static double getEqualFraction(SourceStatistics.Attribute attribute, Wrapper wrapper) {
+        if (attribute.distinct_count == 0) return 0;
+        return (1 - getNullFraction(attribute, wrapper)) / attribute.distinct_count;
+    }
+
+    /**
+     * Nombre de tuples d'une table (somme de ses sources)
+     *
+     * @param table table globale
+     * @return nombre de tuples
+     */
+    private double getRowCount(String table) {
+        double rows = 0;
+        for (Wrapper wrapper : sources)
+            if (wrapper.table_name.equals(table))
+                rows += wrapper.statistics != null ? wrapper.statistics.row_count : DEFAULT_ROW_COUNT;
+        return rows;
+    }
+
+    /**
+     * Nombre de valeurs distinctes d'un attribut d'une table (somme de ses sources, bornée par le nombre de tuples)
+     *
+     * @param table     table globale
+     * @param attribute attribut
+     * @return nombre de valeurs distinctes
+     */
+    private double getDistinctCount(String table, String attribute) {
+        double distinct = 0;
+        for (Wrapper wrapper : sources) {
+            if (!wrapper.table_name.equals(table)) continue;
+            if (wrapper.statistics == null) return 1 / DEFAULT_SELECTIVITY;
+            SourceStatistics.Attribute statistics = wrapper.statistics.getAttribute(attribute.toUpperCase());
+            if (statistics != null) distinct += statistics.distinct_count;
+        }
+        return Math.min(distinct, getRowCount(table));
+    }
+
+    /**
+     * Superficie de l'emprise des coordonnées d'une table (m²)
+     *
+     * @param table table globale
+     * @return superficie, ou 0 si une source n'a pas d'index spatial
+     */
+    private double getArea(String table) {
+        double[] bounds = null;
+        for (Wrapper wrapper : sources) {
+            if (!wrapper.table_name.equals(table)) continue;
+            if (wrapper.spatial_bounds == null) return 0;
+            if (bounds == null) bounds = wrapper.spatial_bounds.clone();
+            else {
+                bounds[0] = Math.min(bounds[0], wrapper.spatial_bounds[0]);
+                bounds[1] = Math.max(bounds[1], wrapper.spatial_bounds[1]);
+                bounds[2] = Math.min(bounds[2], wrapper.spatial_bounds[2]);
+                bounds[3] = Math.max(bounds[3], wrapper.spatial_bounds[3]);
+            }
+        }
+        if (bounds == null) return 0;
+        double height = Math.toRadians(bounds[1] - bounds[0]) * SpatialPredicate.EARTH_RADIUS;
+        double width = Math.toRadians(bounds[3] - bounds[2]) * SpatialPredicate.EARTH_RADIUS *
+                Math.cos(Math.toRadians((bounds[0] + bounds[1]) / 2));
+        return height * width;
+    }
+
+    /**
+     * Obtenir le seuil d'un prédicat de proximité DISTANCE(...) <= N (ou N >= DISTANCE(...), WITHIN_DISTANCE(..., N))
+     *
+     * @param conjunct terme
+     * @return seuil (m), ou -1 si le terme n'est pas un prédicat de proximité de seuil connu
+     */
+    private double getDistanceThreshold(SQLExpression conjunct) {
+        if (conjunct instanceof SQLExpression.Function) {
+            // WITHIN_DISTANCE(..., N)
+            SQLExpression.Function function = (SQLExpression.Function) conjunct;
+            if (!function.name.equals(SpatialPredicate.WITHIN_DISTANCE_FUNCTION) || function.arguments.size() != 5)
+                return -1;
+            Double threshold = getNumber(function.arguments.get(4));
+            return threshold == null ? -1 : Math.max(0, threshold);
+        }
+        if (!(conjunct instanceof SQLExpression.Operation)) return -1;
+        SQLExpression.Operation operation = (SQLExpression.Operation) conjunct;
+        if (operation.operands.size() != 2) return -1;
+        int call;
+        if (operation.operator.equals("<=") || operation.operator.equals("<")) call = 0;
+        else if (operation.operator.equals(">=") || operation.operator.equals(">")) call = 1;
+        else return -1;
+        SQLExpression function = operation.operands.get(call);
+        if (!(function instanceof SQLExpression.Function)
+                || !((SQLExpression.Function) function).name.equals(SpatialPredicate.DISTANCE_FUNCTION)) return -1;
+        Double threshold = getNumber(operation.operands.get(1 - call));
+        return threshold == null ? -1 : Math.max(0, threshold);
+    }
+
+    /**
+     * Vérifier si une expression est une constante (littéral ou paramètre, éventuellement signé)
+     *
+     * @param expression expression
+     * @return vrai si l'expression est constante
+     */
+    private static boolean isConstant(SQLExpression expression) {
+        if (expression instanceof SQLExpression.Literal) return true;
+        return expression instanceof SQLExpression.Operation && expression.getChildren().size() == 1
+                && (((SQLExpression.Operation) expression).operator.equals("-")
+                || ((SQLExpression.Operation) expression).operator.equals("+"))
+                && expression.getChildren().get(0) instanceof SQLExpression.Literal;
+    }
+
+    /**
+     * Vérifier si une expression est la constante NULL
+     *
+     * @param expression expression
+     * @return vrai pour NULL
+     */
+    private static boolean isNull(SQLExpression expression) {
+        return expression instanceof SQLExpression.Literal && expression.tokens.size() == 1
+                && expression.tokens.get(0).is("NULL");
+    }
+
+    /**
+     * Obtenir la valeur numérique d'une constante (la valeur d'un paramètre est celle de la requête compilée)
+     *
+     * @param expression expression
+     * @return valeur, ou null si l'expression n'est pas une constante numérique
+     */
+    private Double getNumber(SQLExpression expression) {
+        if (!isConstant(expression)) return null;
+        double sign = 1;
+        if (expression instanceof SQLExpression.Operation) {
+            if (((SQLExpression.Operation) expression).operator.equals("-")) sign = -1;
+            expression = expression.getChildren().get(0);
+        }
+        if (expression.tokens.size() != 1) return null;
+        SQLTokenizer.Token token = expression.tokens.get(0);
+        Object value;
+        if (token.type == SQLTokenizer.TokenType.NUMBER) value = token.number();
+        else if (token.type == SQLTokenizer.TokenType.STRING) value = token.unquoted();
+        else if (token.type == SQLTokenizer.TokenType.PARAMETER && token.text.length() > 1) {
+            int index;
+            try {
+                index = Integer.parseInt(token.text.substring(1)) - 1;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (index < 0 || index >= parameters.size()) return null;
+            value = parameters.get(index);
+        } else return null;
+        if (value instanceof Number) return sign * ((Number) value).doubleValue();
+        // Texte comparé à un attribut numérique : converti par l'affinité de l'attribut
+        try {
+            return sign * Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Logarithme en base 2
+     *
+     * @param value valeur
+     * @return logarithme
+     */
+    private static double log2(double value) {
+        return Math.log(value) / Math.log(2);
+    }
+}
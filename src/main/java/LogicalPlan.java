@@ -0,0 +1,436 @@
+import java.util.*;
+
+/**
+ * Plan logique d'une requête (parcours, filtre, jointure, agrégation, projection, tri, limite),
+ * construit par SQLParser : les optimisations du médiateur s'appuient sur ce plan
+ */
+public abstract class LogicalPlan {
+    /**
+     * Entrées du nœud
+     *
+     * @return entrées
+     */
+    public abstract List<LogicalPlan> getInputs();
+
+    /**
+     * Expressions du nœud (conditions, projections, clés...)
+     *
+     * @return expressions
+     */
+    public List<SQLExpression> getExpressions() {
+        return List.of();
+    }
+
+    /**
+     * Tables parcourues par le plan, y compris dans les sous-requêtes, dans l'ordre de la requête
+     *
+     * @return parcours
+     */
+    public List<Scan> getScans() {
+        List<Scan> scans = new ArrayList<>();
+        collectScans(scans);
+        return scans;
+    }
+
+    /**
+     * Ajouter les tables parcourues par le plan à une liste
+     *
+     * @param scans liste à compléter
+     */
+    private void collectScans(List<Scan> scans) {
+        if (this instanceof Scan) scans.add((Scan) this);
+        for (LogicalPlan input : getInputs()) input.collectScans(scans);
+        Deque<SQLExpression> expressions = new ArrayDeque<>(getExpressions());
+        while (!expressions.isEmpty()) {
+            SQLExpression expression = expressions.pop();
+            if (expression instanceof SQLExpression.Subquery && ((SQLExpression.Subquery) expression).plan != null)
+                ((SQLExpression.Subquery) expression).plan.collectScans(scans);
+            expressions.addAll(expression.getChildren());
+        }
+    }
+
+    /**
+     * Description du nœud (une ligne)
+     *
+     * @return description
+     */
+    protected abstract String describe();
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        explain(sb, 0);
+        return sb.toString();
+    }
+
+    /**
+     * Écrire le plan indenté
+     *
+     * @param sb    destination
+     * @param depth profondeur du nœud
+     */
+    private void explain(StringBuilder sb, int depth) {
+        sb.append("  ".repeat(depth)).append(describe()).append('\n');
+        for (LogicalPlan input : getInputs()) input.explain(sb, depth + 1);
+    }
+
+    /**
+     * Parcours d'une table globale du catalogue
+     */
+    public static class Scan extends LogicalPlan {
+        /**
+         * Table globale
+         */
+        public final String table;
+
+        /**
+         * Alias (null si absent)
+         */
+        public final String alias;
+
+        /**
+         * Lexème du nom de la table dans la requête (remplacé par la sous-requête décomposée)
+         */
+        public final SQLTokenizer.Token token;
+
+        /**
+         * Lexèmes de la table et de son alias dans la clause FROM
+         */
+        public final List<SQLTokenizer.Token> tokens;
+
+        /**
+         * Attributs utilisés par la requête
+         */
+        public final Set<String> attributes;
+
+        /**
+         * Tous les attributs sont utilisés (*)
+         */
+        public boolean all_attributes;
+
+        /**
+         * Les tuples de la table peuvent être complétés par des valeurs nulles (côté droit d'une jointure externe)
+         */
+        public boolean null_supplying;
+
+        public Scan(String _table, String _alias, List<SQLTokenizer.Token> _tokens) {
+            table = _table;
+            alias = _alias;
+            tokens = _tokens;
+            token = _tokens.get(0);
+            attributes = new LinkedHashSet<>();
+        }
+
+        /**
+         * Nom désignant la table dans la requête
+         *
+         * @return alias, ou nom de la table
+         */
+        public String getName() {
+            return alias != null ? alias : table;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return List.of();
+        }
+
+        @Override
+        protected String describe() {
+            return "Scan " + table + (alias != null ? " AS " + alias : "") + " " +
+                    (all_attributes ? "[*]" : attributes.toString());
+        }
+    }
+
+    /**
+     * Sous-requête de la clause FROM
+     */
+    public static class Derived extends LogicalPlan {
+        public final LogicalPlan input;
+
+        /**
+         * Alias (null si absent)
+         */
+        public final String alias;
+
+        public Derived(LogicalPlan _input, String _alias) {
+            input = _input;
+            alias = _alias;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return List.of(input);
+        }
+
+        @Override
+        protected String describe() {
+            return "Derived" + (alias != null ? " AS " + alias : "");
+        }
+    }
+
+    /**
+     * Jointure
+     */
+    public static class Join extends LogicalPlan {
+        public final LogicalPlan left;
+        public final LogicalPlan right;
+
+        /**
+         * Type de jointure (INNER, LEFT ou CROSS)
+         */
+        public final String type;
+
+        /**
+         * Condition ON (null si absente)
+         */
+        public final SQLExpression condition;
+
+        /**
+         * Attributs communs de USING ou NATURAL
+         */
+        public final List<String> using;
+
+        /**
+         * Jointure naturelle (attributs communs déterminés par SQLite à partir des colonnes des sous-requêtes)
+         */
+        public final boolean natural;
+
+        public Join(LogicalPlan _left, LogicalPlan _right, String _type, SQLExpression _condition,
+                    List<String> _using, boolean _natural) {
+            left = _left;
+            right = _right;
+            type = _type;
+            condition = _condition;
+            using = _using;
+            natural = _natural;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return List.of(left, right);
+        }
+
+        @Override
+        public List<SQLExpression> getExpressions() {
+            return condition == null ? List.of() : List.of(condition);
+        }
+
+        @Override
+        protected String describe() {
+            return "Join " + (natural ? "NATURAL " : "") + type + (condition != null ? " ON " + condition : "") +
+                    (using.isEmpty() ? "" : " USING " + using);
+        }
+    }
+
+    /**
+     * Filtre (clause WHERE ou HAVING), sous forme de conjonction
+     */
+    public static class Filter extends LogicalPlan {
+        /**
+         * Entrée (null pour une requête sans clause FROM)
+         */
+        public final LogicalPlan input;
+        public final List<SQLExpression> conjuncts;
+
+        /**
+         * Filtre appliqué après l'agrégation (HAVING)
+         */
+        public final boolean having;
+
+        public Filter(LogicalPlan _input, List<SQLExpression> _conjuncts, boolean _having) {
+            input = _input;
+            conjuncts = _conjuncts;
+            having = _having;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return input == null ? List.of() : List.of(input);
+        }
+
+        @Override
+        public List<SQLExpression> getExpressions() {
+            return conjuncts;
+        }
+
+        @Override
+        protected String describe() {
+            return (having ? "Having " : "Filter ") + conjuncts;
+        }
+    }
+
+    /**
+     * Agrégation (GROUP BY ou fonctions d'agrégation)
+     */
+    public static class Aggregate extends LogicalPlan {
+        /**
+         * Entrée (null pour une requête sans clause FROM)
+         */
+        public final LogicalPlan input;
+        public final List<SQLExpression> groups;
+
+        public Aggregate(LogicalPlan _input, List<SQLExpression> _groups) {
+            input = _input;
+            groups = _groups;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return input == null ? List.of() : List.of(input);
+        }
+
+        @Override
+        public List<SQLExpression> getExpressions() {
+            return groups;
+        }
+
+        @Override
+        protected String describe() {
+            return "Aggregate " + groups;
+        }
+    }
+
+    /**
+     * Projection (liste SELECT)
+     */
+    public static class Project extends LogicalPlan {
+        /**
+         * Entrée (null pour une requête sans clause FROM)
+         */
+        public final LogicalPlan input;
+        public final List<SQLExpression> items;
+
+        /**
+         * Noms des colonnes du résultat
+         */
+        public final List<String> names;
+
+        /**
+         * Élimination des doublons (DISTINCT)
+         */
+        public final boolean distinct;
+
+        /**
+         * Lexèmes de la clause FROM (null si absente)
+         */
+        public final List<SQLTokenizer.Token> from_tokens;
+
+        public Project(LogicalPlan _input, List<SQLExpression> _items, List<String> _names, boolean _distinct,
+                       List<SQLTokenizer.Token> _from_tokens) {
+            input = _input;
+            items = _items;
+            names = _names;
+            distinct = _distinct;
+            from_tokens = _from_tokens;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return input == null ? List.of() : List.of(input);
+        }
+
+        @Override
+        public List<SQLExpression> getExpressions() {
+            return items;
+        }
+
+        @Override
+        protected String describe() {
+            return "Project " + (distinct ? "DISTINCT " : "") + items;
+        }
+    }
+
+    /**
+     * Opération ensembliste (UNION, UNION ALL, EXCEPT, INTERSECT)
+     */
+    public static class SetOperation extends LogicalPlan {
+        public final LogicalPlan left;
+        public final LogicalPlan right;
+        public final String operator;
+
+        public SetOperation(LogicalPlan _left, LogicalPlan _right, String _operator) {
+            left = _left;
+            right = _right;
+            operator = _operator;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return List.of(left, right);
+        }
+
+        @Override
+        protected String describe() {
+            return operator;
+        }
+    }
+
+    /**
+     * Tri (ORDER BY)
+     */
+    public static class Sort extends LogicalPlan {
+        public final LogicalPlan input;
+        public final List<SQLExpression> keys;
+
+        /**
+         * Ordre décroissant de chaque clé
+         */
+        public final List<Boolean> descending;
+
+        public Sort(LogicalPlan _input, List<SQLExpression> _keys, List<Boolean> _descending) {
+            input = _input;
+            keys = _keys;
+            descending = _descending;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return List.of(input);
+        }
+
+        @Override
+        public List<SQLExpression> getExpressions() {
+            return keys;
+        }
+
+        @Override
+        protected String describe() {
+            return "Sort " + keys;
+        }
+    }
+
+    /**
+     * Limite (LIMIT et OFFSET)
+     */
+    public static class Limit extends LogicalPlan {
+        public final LogicalPlan input;
+        public final SQLExpression limit;
+
+        /**
+         * Décalage (null si absent)
+         */
+        public final SQLExpression offset;
+
+        public Limit(LogicalPlan _input, SQLExpression _limit, SQLExpression _offset) {
+            input = _input;
+            limit = _limit;
+            offset = _offset;
+        }
+
+        @Override
+        public List<LogicalPlan> getInputs() {
+            return List.of(input);
+        }
+
+        @Override
+        public List<SQLExpression> getExpressions() {
+            return offset == null ? List.of(limit) : List.of(limit, offset);
+        }
+
+        @Override
+        protected String describe() {
+            return "Limit " + limit + (offset != null ? " OFFSET " + offset : "");
+        }
+    }
+}
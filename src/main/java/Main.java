@@ -1,13 +1,35 @@
-import org.sqlite.Function;
-
-import java.sql.SQLException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 /**
  * Main
  */
 public class Main {
+    /**
+     * Taille maximale du cache des résultats (octets)
+     */
+    static final long RESULT_CACHE_SIZE = 16L << 20;
+
+    /**
+     * Propriétés système activant l'export des mesures
+     */
+    private static final String METRICS_PORT_PROPERTY = "metrics.port";
+    private static final String METRICS_HOST_PROPERTY = "metrics.host";
+    private static final String METRICS_FILE_PROPERTY = "metrics.file";
+
+    /**
+     * Propriété système fixant l'échéance de la requête de test (millisecondes)
+     */
+    private static final String QUERY_TIMEOUT_PROPERTY = "query.timeout";
+
+    /**
+     * Propriété système indiquant le fichier de l'instantané du catalogue (relu au démarrage puis mis à jour)
+     */
+    private static final String CATALOG_SNAPSHOT_PROPERTY = "catalog.snapshot";
+
     public static void main(String[] args) {
         if (args.length > 0 && args.length <= 2) {
             // Vérification du premier argument
@@ -32,14 +54,48 @@ public class Main {
 
             // Médiateur
             Mediator mediator = initializeMediator(debug_mode);
+            // Mesures exposées par JMX et HTTP (-Dmetrics.port=..., sur la machine locale sauf -Dmetrics.host=...)
+            // ou écrites dans un fichier (-Dmetrics.file=...)
+            String metrics_port = System.getProperty(METRICS_PORT_PROPERTY);
+            if (metrics_port != null) mediator.exportMetrics(getMetricsAddress(), Integer.parseInt(metrics_port));
 
-            // Exécution de la requête de test demandée
-            mediator.executeSelectRequest(getSampleSQLQueries().get(query_number - 1));
+            // Exécution de la requête de test demandée, interrompue à son échéance (-Dquery.timeout=...)
+            String sql_request = getSampleSQLQueries().get(query_number - 1);
+            String query_timeout = System.getProperty(QUERY_TIMEOUT_PROPERTY);
+            if (query_timeout == null) mediator.executeSelectRequest(sql_request);
+            else try {
+                mediator.executeSelectRequestAsync(sql_request, new TableResultWriter(System.out),
+                        Long.parseLong(query_timeout)).join();
+            } catch (CompletionException e) {
+                System.err.println("ATTENTION : Requête interrompue (" + e.getCause() + ").");
+            }
+            // Instantané du catalogue mis à jour (sources intégrées et index créés par cette exécution)
+            String catalog_snapshot = System.getProperty(CATALOG_SNAPSHOT_PROPERTY);
+            if (catalog_snapshot != null) mediator.saveCatalog(catalog_snapshot);
+            String metrics_file = System.getProperty(METRICS_FILE_PROPERTY);
+            if (metrics_file != null) mediator.writeMetrics(metrics_file);
+            mediator.close();
         } else Utils.throwException("Arguments invalides.\n" +
                 "Argument n°1 : numéro de la requête de test à exécuter.\n" +
                 "Argument n°2 (facultatif) : activer le mode de débugage avec \"--debug\")");
     }
 
+    /**
+     * Adresse d'écoute du point d'accès des mesures (-Dmetrics.host=..., machine locale par défaut)
+     *
+     * @return adresse d'écoute
+     */
+    private static InetAddress getMetricsAddress() {
+        String metrics_host = System.getProperty(METRICS_HOST_PROPERTY);
+        if (metrics_host == null) return InetAddress.getLoopbackAddress();
+        try {
+            return InetAddress.getByName(metrics_host);
+        } catch (UnknownHostException e) {
+            Utils.throwException("Adresse d'écoute des mesures invalide (" + metrics_host + ").");
+            return null;
+        }
+    }
+
     /**
      * Initialiser le médiateur
      *
@@ -48,35 +104,44 @@ public class Main {
      */
     private static Mediator initializeMediator(boolean debug_mode) {
         Mediator mediator = new Mediator(debug_mode);
+        // Sources inchangées publiées depuis l'instantané du catalogue (-Dcatalog.snapshot=...)
+        String catalog_snapshot = System.getProperty(CATALOG_SNAPSHOT_PROPERTY);
+        if (catalog_snapshot != null) mediator.loadCatalog(catalog_snapshot);
 
         // Intégration des fichiers CSV
         mediator.addDataFromCSV("fontaine", "fontaines.csv", ';');
         mediator.addDataFromCSV("activite", "equipements_activites.csv", ';');
         mediator.addDataFromCSV("parc", "espaces_verts.csv", ';');
 
-        // Création d'une fonction SQL "DISTANCE" pour obtenir la distance approximative entre deux coordonnées GPS
-        mediator.createSQLFunction("DISTANCE", new Function() {
-            @Override
-            protected void xFunc() throws SQLException {
-                if (args() == 4) {
-                    // Latitude 1, Longitude 1, Latitude 2, Longitude 2
-                    result(Utils.distance(value_double(0), value_double(1),
-                            value_double(2), value_double(3)));
-                } else {
-                    Utils.throwException("Nombre d'arguments invalides.");
-                }
-            }
-        });
+        // Fontaines interrogées par position GPS (requête 3) : évaluées sur le cache colonnaire
+        mediator.cacheTable("fontaine");
+        // Espaces verts joints par les requêtes 1 et 2 : lus dans leur vue matérialisée
+        mediator.materializeTable("parc");
+        // Rapports de proximité répétés : résultats conservés tant que les sources ne changent pas
+        mediator.setResultCache(RESULT_CACHE_SIZE, 0);
+
+        createSQLFunctions(mediator);
 
         return mediator;
     }
 
+    /**
+     * Créer les fonctions SQL utilisées par les requêtes de test
+     *
+     * @param mediator médiateur SQL
+     */
+    static void createSQLFunctions(Mediator mediator) {
+        // Création des fonctions SQL "DISTANCE" (distance approximative entre deux coordonnées GPS)
+        // et "WITHIN_DISTANCE" (distance inférieure à un rayon)
+        SpatialFunctions.register(mediator);
+    }
+
     /**
      * Liste des requêtes de test disponibles
      *
      * @return requêtes SQL
      */
-    private static List<String> getSampleSQLQueries() {
+    static List<String> getSampleSQLQueries() {
         List<String> available_queries = new ArrayList<>();
 
         // 1. Requête permettant de voir les parcs ouverts pendant la canicule
@@ -0,0 +1,314 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * Vue médiée matérialisée : table persistante contenant l'union des sources d'une table globale, projetée
+ * sur ses attributs globaux ; chaque tuple est marqué par sa source afin que seules les sources dont le fichier
+ * a changé soient rafraîchies, tuple par tuple, à partir de leur table intégrée
+ */
+public class MaterializedView {
+    /**
+     * Base de données des vues matérialisées
+     */
+    public static final String DB_NAME = "MV";
+
+    /**
+     * Table des empreintes des sources de chaque vue lors de son dernier rafraîchissement
+     */
+    private static final String VIEWS_TABLE = "_VIEWS";
+
+    /**
+     * Attribut indiquant la source d'un tuple de la vue
+     */
+    static final String SOURCE_ATTRIBUTE = "_SOURCE";
+
+    /**
+     * Table globale
+     */
+    public final String table;
+
+    /**
+     * Attributs de la vue (attributs de la table globale lors du dernier rafraîchissement)
+     */
+    private volatile List<String> attributes;
+
+    /**
+     * Emprise des coordonnées indexées (latitude min, latitude max, longitude min, longitude max),
+     * null si la vue n'a pas d'index spatial
+     */
+    volatile double[] spatial_bounds;
+
+    /**
+     * Constructeur
+     *
+     * @param _table table globale
+     */
+    public MaterializedView(String _table) {
+        table = _table;
+    }
+
+    /**
+     * La vue est-elle à jour (rafraîchie depuis l'intégration des sources)
+     *
+     * @return vrai si la vue peut remplacer ses sources
+     */
+    public boolean isReady() {
+        return attributes != null;
+    }
+
+    /**
+     * Rafraîchir la vue : elle est recréée si les attributs de la table globale ont changé, sinon seules
+     * les sources dont le fichier a changé depuis le dernier rafraîchissement sont comparées à la vue
+     *
+     * @param connection        connexion sur laquelle la base des vues et celles des sources sont attachées
+     * @param sources           sources de la table globale
+     * @param global_attributes attributs de la table globale
+     * @param debug_mode        mode de débugage
+     * @throws SQLException erreur SQL
+     */
+    public void refresh(Connection connection, List<Wrapper> sources, Collection<String> global_attributes,
+                        boolean debug_mode) throws SQLException {
+        attributes = null;
+        List<String> view_attributes = new ArrayList<>(global_attributes);
+        String view = DB_NAME + ".\"" + table + "\"";
+        boolean changed = false;
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + DB_NAME + "." + VIEWS_TABLE + " (" +
+                    "TABLE_NAME TEXT, SOURCE TEXT, FILE_PATH TEXT, FILE_SIZE INTEGER, FILE_MODIFIED INTEGER, " +
+                    "FILE_HASH TEXT, PRIMARY KEY (TABLE_NAME, SOURCE))");
+            List<String> stored_attributes = new ArrayList<>();
+            try (ResultSet rs = statement.executeQuery("PRAGMA " + DB_NAME + ".table_info(\"" + table + "\")")) {
+                while (rs.next()) stored_attributes.add(rs.getString(2));
+            }
+            List<String> expected_attributes = new ArrayList<>(view_attributes);
+            expected_attributes.add(SOURCE_ATTRIBUTE);
+            if (!stored_attributes.equals(expected_attributes)) {
+                // Structure modifiée : la vue est recréée et toutes les sources sont recopiées
+                if (debug_mode) System.out.println("> Création de la vue matérialisée " + table + "...");
+                statement.executeUpdate("DROP TABLE IF EXISTS " + view);
+                statement.executeUpdate("DELETE FROM " + DB_NAME + "." + VIEWS_TABLE + " WHERE TABLE_NAME = '" +
+                        table + "'");
+                StringBuilder columns = new StringBuilder();
+                for (String attribute : view_attributes)
+                    columns.append(attribute + " " + getAttributeType(attribute, sources) + ", ");
+                statement.executeUpdate("CREATE TABLE " + view + " (" + columns + SOURCE_ATTRIBUTE + " TEXT)");
+                changed = true;
+            }
+            // Index des clés des sources (rafraîchissement tuple par tuple)
+            Set<String> keys = new LinkedHashSet<>();
+            for (Wrapper source : sources) keys.add(source.attributes.get(0));
+            for (String key : keys)
+                statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + DB_NAME + ".\"" + table + "_" +
+                        SOURCE_ATTRIBUTE + "_" + key + "\" ON \"" + table + "\" (" + SOURCE_ATTRIBUTE + ", " + key + ")");
+
+            // Tuples des sources retirées du médiateur
+            StringJoiner source_names = new StringJoiner("', '", "('", "')");
+            for (Wrapper source : sources) source_names.add(source.db_name);
+            changed |= statement.executeUpdate("DELETE FROM " + view + " WHERE " + SOURCE_ATTRIBUTE + " NOT IN " +
+                    source_names) > 0;
+            statement.executeUpdate("DELETE FROM " + DB_NAME + "." + VIEWS_TABLE + " WHERE TABLE_NAME = '" + table +
+                    "' AND SOURCE NOT IN " + source_names);
+        }
+        for (Wrapper source : sources)
+            if (!source.fingerprint.matches(readFingerprint(connection, source))) {
+                if (debug_mode) System.out.println("> Rafraîchissement de la vue " + table + " (" +
+                        source.db_name + ")...");
+                refreshSource(connection, source, view);
+                saveFingerprint(connection, source);
+                changed = true;
+            }
+        buildSpatialIndex(connection, view_attributes, changed);
+        attributes = view_attributes;
+    }
+
+    /**
+     * Appliquer à la vue les modifications d'une source, identifiées par sa clé primaire (premier attribut)
+     *
+     * @param connection connexion
+     * @param source     source
+     * @param view       vue
+     * @throws SQLException erreur SQL
+     */
+    private void refreshSource(Connection connection, Wrapper source, String view) throws SQLException {
+        String source_table = source.db_name + ".\"" + source.getSourceTable() + "\"";
+        String key = source.attributes.get(0);
+        String source_condition = SOURCE_ATTRIBUTE + " = '" + source.db_name + "'";
+        StringBuilder assignments = new StringBuilder();
+        StringBuilder differences = new StringBuilder();
+        for (String attribute : source.attributes.subList(1, source.attributes.size())) {
+            assignments.append(attribute + " = S." + attribute + ",");
+            differences.append("\"" + table + "\"." + attribute + " IS NOT S." + attribute + " OR ");
+        }
+        boolean auto_commit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            // Anti-jointures NOT EXISTS : une clé nulle ne correspond à aucun tuple, au lieu d'annuler
+            // toute la comparaison comme NOT IN
+            statement.executeUpdate("DELETE FROM " + view + " WHERE " + source_condition + " AND NOT EXISTS " +
+                    "(SELECT 1 FROM " + source_table + " AS S WHERE S." + key + " = \"" + table + "\"." + key + ")");
+            if (assignments.length() > 0) {
+                assignments.setLength(assignments.length() - 1);
+                differences.setLength(differences.length() - 4);
+                statement.executeUpdate("UPDATE " + view + " SET " + assignments + " FROM " + source_table +
+                        " AS S WHERE \"" + table + "\"." + source_condition + " AND \"" + table + "\"." + key +
+                        " = S." + key + " AND (" + differences + ")");
+            }
+            String source_attributes = String.join(", ", source.attributes);
+            statement.executeUpdate("INSERT INTO " + view + " (" + source_attributes + ", " + SOURCE_ATTRIBUTE +
+                    ") SELECT " + source_attributes + ", '" + source.db_name + "' FROM " + source_table +
+                    " AS S WHERE NOT EXISTS (SELECT 1 FROM " + view + " AS V WHERE V." + source_condition +
+                    " AND V." + key + " = S." + key + ")");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(auto_commit);
+        }
+    }
+
+    /**
+     * Lire l'empreinte d'une source lors du dernier rafraîchissement de la vue
+     *
+     * @param connection connexion
+     * @param source     source
+     * @return empreinte, ou null si la source n'a jamais été copiée dans la vue
+     * @throws SQLException erreur SQL
+     */
+    private SourceFingerprint readFingerprint(Connection connection, Wrapper source) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT FILE_PATH, FILE_SIZE, FILE_MODIFIED, " +
+                "FILE_HASH FROM " + DB_NAME + "." + VIEWS_TABLE + " WHERE TABLE_NAME = ? AND SOURCE = ?")) {
+            select.setString(1, table);
+            select.setString(2, source.db_name);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? new SourceFingerprint(rs.getString(1), rs.getLong(2), rs.getLong(3),
+                        rs.getString(4)) : null;
+            }
+        }
+    }
+
+    /**
+     * Enregistrer l'empreinte d'une source copiée dans la vue
+     *
+     * @param connection connexion
+     * @param source     source
+     * @throws SQLException erreur SQL
+     */
+    private void saveFingerprint(Connection connection, Wrapper source) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT OR REPLACE INTO " + DB_NAME + "." +
+                VIEWS_TABLE + " (TABLE_NAME, SOURCE, FILE_PATH, FILE_SIZE, FILE_MODIFIED, FILE_HASH) " +
+                "VALUES (?, ?, ?, ?, ?, ?)")) {
+            insert.setString(1, table);
+            insert.setString(2, source.db_name);
+            insert.setString(3, source.fingerprint.file_path);
+            insert.setLong(4, source.fingerprint.size);
+            insert.setLong(5, source.fingerprint.modified);
+            insert.setString(6, source.fingerprint.getHash());
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * (Re)construire l'index spatial R-tree de la vue si elle a été modifiée, puis lire son emprise
+     *
+     * @param connection      connexion
+     * @param view_attributes attributs de la vue
+     * @param changed         vue modifiée par le rafraîchissement
+     * @throws SQLException erreur SQL
+     */
+    private void buildSpatialIndex(Connection connection, List<String> view_attributes, boolean changed)
+            throws SQLException {
+        spatial_bounds = null;
+        String index = DB_NAME + ".\"" + table + Wrapper.SPATIAL_INDEX_SUFFIX + "\"";
+        try (Statement statement = connection.createStatement()) {
+            if (!view_attributes.contains(Wrapper.LATITUDE_ATTRIBUTE)
+                    || !view_attributes.contains(Wrapper.LONGITUDE_ATTRIBUTE)) {
+                statement.executeUpdate("DROP TABLE IF EXISTS " + index);
+                return;
+            }
+            boolean exists;
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + DB_NAME + ".sqlite_master " +
+                    "WHERE name = '" + table + Wrapper.SPATIAL_INDEX_SUFFIX + "'")) {
+                exists = rs.getInt(1) > 0;
+            }
+            if (changed || !exists) {
+                statement.executeUpdate("DROP TABLE IF EXISTS " + index);
+                statement.executeUpdate("CREATE VIRTUAL TABLE " + index + " USING rtree(" + Wrapper.SPATIAL_ROWID +
+                        ", " + Wrapper.SPATIAL_MIN_LATITUDE + ", " + Wrapper.SPATIAL_MAX_LATITUDE + ", " +
+                        Wrapper.SPATIAL_MIN_LONGITUDE + ", " + Wrapper.SPATIAL_MAX_LONGITUDE + ")");
+                // Coordonnées non numériques (texte) exclues : l'index ne couvre que des positions valides
+                statement.executeUpdate("INSERT INTO " + index + " SELECT ROWID, " +
+                        Wrapper.LATITUDE_ATTRIBUTE + ", " + Wrapper.LATITUDE_ATTRIBUTE + ", " +
+                        Wrapper.LONGITUDE_ATTRIBUTE + ", " + Wrapper.LONGITUDE_ATTRIBUTE + " FROM " + DB_NAME + ".\"" +
+                        table + "\" WHERE typeof(" + Wrapper.LATITUDE_ATTRIBUTE + ") IN ('integer', 'real') AND " +
+                        "typeof(" + Wrapper.LONGITUDE_ATTRIBUTE + ") IN ('integer', 'real')");
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT MIN(" + Wrapper.SPATIAL_MIN_LATITUDE + "), MAX(" +
+                    Wrapper.SPATIAL_MAX_LATITUDE + "), MIN(" + Wrapper.SPATIAL_MIN_LONGITUDE + "), MAX(" +
+                    Wrapper.SPATIAL_MAX_LONGITUDE + ") FROM " + index)) {
+                if (rs.getObject(1) != null)
+                    spatial_bounds = new double[]{rs.getDouble(1), rs.getDouble(2), rs.getDouble(3), rs.getDouble(4)};
+            }
+        }
+    }
+
+    /**
+     * Obtenir le type d'un attribut global : celui de la première source qui le fournit
+     * (les autres sources peuvent ne pas le fournir, l'attribut accepte donc les valeurs nulles)
+     *
+     * @param attribute attribut
+     * @param sources   sources de la table globale
+     * @return type SQL
+     */
+    private static String getAttributeType(String attribute, List<Wrapper> sources) {
+        for (Wrapper source : sources) {
+            String type = source.getAttributeType(attribute);
+            if (type != null) return type.replace(" NOT NULL", "");
+        }
+        return "TEXT";
+    }
+
+    /**
+     * Écrire la sous-requête lisant la vue à la place des sources de la table globale
+     *
+     * @param query_attributes attributs utiles
+     * @param distinct         élimination des doublons entre sources (sources non disjointes)
+     * @param indexed          exposer les bornes de l'index spatial
+     * @param predicates       prédicats à appliquer
+     * @param sources          sources de la table globale
+     * @return sous-requête
+     */
+    public String select(Collection<String> query_attributes, boolean distinct, boolean indexed,
+                         List<Predicate> predicates, List<Wrapper> sources) {
+        StringBuilder query = new StringBuilder(distinct ? "  SELECT DISTINCT " : "  SELECT ");
+        query.append(String.join(",", query_attributes));
+        List<String> conditions = new ArrayList<>();
+        if (indexed) {
+            query.append("," + String.join(",", Wrapper.SPATIAL_MIN_LATITUDE, Wrapper.SPATIAL_MAX_LATITUDE,
+                    Wrapper.SPATIAL_MIN_LONGITUDE, Wrapper.SPATIAL_MAX_LONGITUDE));
+            query.append("\n  FROM " + DB_NAME + "." + table + ", " + DB_NAME + ".\"" + table +
+                    Wrapper.SPATIAL_INDEX_SUFFIX + "\"");
+            conditions.add(Wrapper.SPATIAL_ROWID + " = " + table + ".ROWID");
+        } else query.append("\n  FROM " + DB_NAME + "." + table);
+        // Comme lors de la décomposition, une source dont les attributs ne peuvent pas satisfaire un prédicat est ignorée
+        StringJoiner ignored_sources = new StringJoiner("', '", "('", "')");
+        ignored_sources.setEmptyValue("");
+        for (Predicate predicate : predicates) {
+            conditions.add(predicate.render(attributes));
+            for (Wrapper source : sources)
+                if (predicate.render(source.attributes) == null) ignored_sources.add(source.db_name);
+        }
+        if (ignored_sources.length() > 0) conditions.add(SOURCE_ATTRIBUTE + " NOT IN " + ignored_sources);
+        if (!conditions.isEmpty()) query.append("\n  WHERE " + String.join("\n    AND ", conditions));
+        return query.toString();
+    }
+
+    @Override
+    public String toString() {
+        return table + " (" + (isReady() ? String.join(", ", attributes) : "non rafraîchie") + ")";
+    }
+}
@@ -1,7 +1,15 @@
+import com.sun.net.httpserver.HttpServer;
 import org.sqlite.Function;
 
-import java.sql.Statement;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
 /**
  * Médiateur SQL
@@ -13,14 +21,143 @@ public class Mediator {
     private final boolean debug_mode;
 
     /**
-     * Liste des sources
+     * Catalogue publié (sources intégrées, attributs des tables et plans compilés) : une requête le lit une seule
+     * fois, les intégrations et déclarations en publient un nouveau
      */
-    private final ArrayList<Wrapper> sources;
+    private volatile Catalog catalog;
 
     /**
-     * Liaison table - attributs
+     * Verrou des publications du catalogue (une intégration ou une déclaration à la fois)
      */
-    private final Map<String, LinkedHashSet<String>> tables_attributes;
+    private final Object catalog_lock;
+
+    /**
+     * Fabriques des wrappers (format - fabrique)
+     */
+    private final Map<String, WrapperFactory> wrapper_factories;
+
+    /**
+     * Sources en cours d'intégration ou non encore signalées (emplacement et table de la source - intégration),
+     * dans l'ordre d'ajout
+     */
+    private final Map<String, PendingSource> pending_sources;
+
+    /**
+     * Descriptions des sources ajoutées (base de données - format, emplacement, table et options),
+     * enregistrées dans l'instantané du catalogue
+     */
+    private final Map<String, String> source_descriptors;
+
+    /**
+     * Sources restaurées depuis l'instantané du catalogue, non encore ajoutées (base de données - source)
+     */
+    private final Map<String, WrapperSnapshot> restored_sources;
+
+    /**
+     * Nombre de sources enregistrées (sert à nommer les bases de données S0, S1...)
+     */
+    private int sources_count;
+
+    /**
+     * Nombre maximum de sources intégrées en parallèle
+     */
+    private int ingestion_threads;
+
+    /**
+     * Exécuteur des intégrations de sources
+     */
+    private ExecutorService ingestion_executor;
+
+    /**
+     * Réserve de connexions utilisées pour exécuter les requêtes
+     */
+    private final ConnectionPool connection_pool;
+
+    /**
+     * Tables globales dont les sources sont déclarées disjointes (aucun tuple en commun)
+     */
+    private final Set<String> disjoint_tables;
+
+    /**
+     * Nombre de tuples insérés par lot lors de l'intégration des sources
+     */
+    private int batch_size;
+
+    /**
+     * Mode flux : les sources sont intégrées sans être chargées entièrement en mémoire
+     */
+    private boolean streaming_mode;
+
+    /**
+     * Nombre de tuples analysés pour inférer les types en mode flux (0 pour une première passe complète)
+     */
+    private int sample_size;
+
+    /**
+     * Tables globales fréquemment interrogées, dont les sources sont copiées dans le cache colonnaire
+     */
+    private final Set<String> hot_tables;
+
+    /**
+     * Cache colonnaire des sources des tables fréquemment interrogées
+     */
+    private final Map<Wrapper, ColumnarTable> columnar_tables;
+
+    /**
+     * Mode réparti : les sous-requêtes des sources d'une table sont exécutées en parallèle, chacune sur sa connexion,
+     * puis leurs résultats sont fusionnés par le médiateur
+     */
+    private boolean fan_out_mode;
+
+    /**
+     * Exécuteur des requêtes partielles du mode réparti
+     */
+    private ExecutorService query_executor;
+
+    /**
+     * Nombre de requêtes asynchrones pouvant attendre leur exécution par défaut
+     */
+    public static final int DEFAULT_QUEUED_QUERIES = 32;
+
+    /**
+     * Nombre maximum de requêtes asynchrones exécutées simultanément
+     */
+    private int running_queries;
+
+    /**
+     * Nombre maximum de requêtes asynchrones en attente d'exécution (les suivantes sont rejetées)
+     */
+    private int queued_queries;
+
+    /**
+     * Exécuteur des requêtes asynchrones, dont la file d'attente est bornée
+     */
+    private ExecutorService admission_executor;
+
+    /**
+     * Fonctions SQL d'agrégation déclarées (le résultat d'une agrégation ne se fusionne pas par concaténation)
+     */
+    private final Set<String> aggregate_functions;
+
+    /**
+     * Conseiller d'index des bases de données sources
+     */
+    private final IndexAdvisor index_advisor;
+
+    /**
+     * Vues matérialisées des tables globales fréquemment interrogées (table - vue)
+     */
+    private final Map<String, MaterializedView> materialized_views;
+
+    /**
+     * Cache des résultats des requêtes (null si désactivé)
+     */
+    private volatile ResultCache result_cache;
+
+    /**
+     * Point d'accès HTTP des mesures (null si non démarré)
+     */
+    private HttpServer metrics_endpoint;
 
     /**
      * Constructeur
@@ -29,284 +166,1391 @@ public class Mediator {
      */
     public Mediator(boolean _debug_mode) {
         debug_mode = _debug_mode;
-        sources = new ArrayList<>();
-        tables_attributes = new HashMap<>();
+        catalog = new Catalog();
+        catalog_lock = new Object();
+        pending_sources = Collections.synchronizedMap(new LinkedHashMap<>());
+        source_descriptors = new ConcurrentHashMap<>();
+        restored_sources = new ConcurrentHashMap<>();
+        wrapper_factories = new ConcurrentHashMap<>();
+        registerWrapper("csv", (db_name, table_name, location, options, settings) -> {
+            String delimiter = options.getOrDefault("delimiter", ",");
+            if (delimiter.length() != 1) throw new IllegalArgumentException("Délimiteur invalide : " + delimiter);
+            return new WrapperCSV(db_name, table_name, location, delimiter.charAt(0), settings.batch_size,
+                    settings.streaming_mode, settings.sample_size, settings.debug_mode);
+        });
+        registerWrapper("jsonl", (db_name, table_name, location, options, settings) ->
+                new WrapperJSON(db_name, table_name, location, settings.batch_size, settings.debug_mode));
+        registerWrapper("columnar", (db_name, table_name, location, options, settings) ->
+                new WrapperColumnar(db_name, table_name, location, settings.batch_size, settings.debug_mode));
+        registerWrapper("sqlite", (db_name, table_name, location, options, settings) ->
+                new WrapperSQLite(db_name, table_name, location, options.get("table"), settings.debug_mode));
+        ingestion_threads = Runtime.getRuntime().availableProcessors();
+        running_queries = Runtime.getRuntime().availableProcessors();
+        queued_queries = DEFAULT_QUEUED_QUERIES;
+        connection_pool = new ConnectionPool(Runtime.getRuntime().availableProcessors());
+        disjoint_tables = ConcurrentHashMap.newKeySet();
+        batch_size = Wrapper.DEFAULT_BATCH_SIZE;
+        hot_tables = ConcurrentHashMap.newKeySet();
+        columnar_tables = new ConcurrentHashMap<>();
+        aggregate_functions = ConcurrentHashMap.newKeySet();
+        aggregate_functions.addAll(List.of("COUNT", "SUM", "TOTAL", "AVG", "MIN", "MAX", "GROUP_CONCAT"));
+        index_advisor = new IndexAdvisor(_debug_mode);
+        materialized_views = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Modifier le nombre de tuples insérés par lot lors de l'intégration des sources
+     *
+     * @param _batch_size taille des lots
+     */
+    public void setBatchSize(int _batch_size) {
+        if (_batch_size < 1) Utils.throwException("Taille de lot invalide.");
+        batch_size = _batch_size;
+    }
+
+    /**
+     * Modifier le nombre maximum de sources intégrées en parallèle
+     *
+     * @param _ingestion_threads nombre de fils d'exécution
+     */
+    public void setIngestionThreads(int _ingestion_threads) {
+        if (_ingestion_threads < 1) Utils.throwException("Nombre de fils d'exécution invalide.");
+        if (ingestion_executor != null) Utils.throwException("Intégration des sources déjà démarrée.");
+        ingestion_threads = _ingestion_threads;
+    }
+
+    /**
+     * Activer ou désactiver le mode flux pour l'intégration des sources
+     *
+     * @param _streaming_mode mode flux
+     * @param _sample_size    nombre de tuples analysés pour inférer les types (0 pour une première passe complète)
+     */
+    public void setStreamingMode(boolean _streaming_mode, int _sample_size) {
+        if (_sample_size < 0) Utils.throwException("Taille d'échantillon invalide.");
+        streaming_mode = _streaming_mode;
+        sample_size = _sample_size;
+    }
+
+    /**
+     * Activer ou désactiver le mode réparti : une requête portant sur une table aux sources disjointes
+     * est exécutée source par source en parallèle (une connexion par source) et les résultats sont concaténés
+     *
+     * @param _fan_out_mode mode réparti
+     */
+    public void setFanOutMode(boolean _fan_out_mode) {
+        fan_out_mode = _fan_out_mode;
+    }
+
+    /**
+     * Modifier le contrôle d'admission des requêtes asynchrones : au-delà des requêtes exécutées simultanément,
+     * les requêtes attendent dans une file bornée ; une requête soumise alors que la file est pleine est rejetée
+     * (son résultat échoue aussitôt avec une RejectedExecutionException) afin de borner le temps de réponse
+     * des requêtes admises
+     *
+     * @param _running_queries nombre maximum de requêtes exécutées simultanément
+     * @param _queued_queries  nombre maximum de requêtes en attente (0 : rejet dès que toutes les places sont prises)
+     */
+    public void setAdmissionControl(int _running_queries, int _queued_queries) {
+        if (_running_queries < 1 || _queued_queries < 0) Utils.throwException("Contrôle d'admission invalide.");
+        if (admission_executor != null) Utils.throwException("Exécution des requêtes asynchrones déjà démarrée.");
+        running_queries = _running_queries;
+        queued_queries = _queued_queries;
+    }
+
+    /**
+     * Activer ou désactiver le cache des résultats : une requête identique (mêmes paramètres) sur des sources
+     * inchangées est servie sans exécution ; les résultats les moins récemment utilisés sont évincés
+     *
+     * @param max_size taille maximale du cache (octets, 0 pour le désactiver)
+     * @param ttl      durée de validité d'un résultat (millisecondes, 0 si illimitée)
+     */
+    public void setResultCache(long max_size, long ttl) {
+        if (max_size < 0 || ttl < 0) Utils.throwException("Paramètres du cache des résultats invalides.");
+        result_cache = max_size == 0 ? null : new ResultCache(max_size, ttl);
+    }
+
+    /**
+     * Exposer les mesures du médiateur (durée des étapes, tuples, caches) par JMX et,
+     * si un port est indiqué, par un point d'accès HTTP (GET /metrics, format texte de Prometheus)
+     * accessible depuis la machine locale seulement
+     *
+     * @param port port du point d'accès (-1 pour JMX seulement, 0 pour un port libre)
+     * @return port du point d'accès, ou -1
+     */
+    public int exportMetrics(int port) {
+        return exportMetrics(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Exposer les mesures du médiateur par JMX et, si un port est indiqué, par un point d'accès HTTP
+     * écoutant sur l'adresse indiquée
+     *
+     * @param address adresse d'écoute du point d'accès
+     * @param port    port du point d'accès (-1 pour JMX seulement, 0 pour un port libre)
+     * @return port du point d'accès, ou -1
+     */
+    public int exportMetrics(InetAddress address, int port) {
+        Metrics.registerMBean();
+        if (port < 0) return -1;
+        if (metrics_endpoint != null) Utils.throwException("Point d'accès des mesures déjà démarré.");
+        try {
+            metrics_endpoint = Metrics.startEndpoint(address, port);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Démarrage du point d'accès des mesures impossible.", e);
+        }
+        if (debug_mode) System.out.println("> Mesures exposées sur le port " + metrics_endpoint.getAddress().getPort());
+        return metrics_endpoint.getAddress().getPort();
+    }
+
+    /**
+     * Écrire les mesures du médiateur dans un fichier (format texte de Prometheus)
+     *
+     * @param file_path chemin du fichier
+     */
+    public void writeMetrics(String file_path) {
+        Metrics.writeFile(file_path);
+    }
+
+    /**
+     * Enregistrer le wrapper d'un format de source (remplace le wrapper déjà enregistré pour ce format) ;
+     * les formats csv, jsonl, columnar et sqlite sont enregistrés par défaut
+     *
+     * @param format  nom du format
+     * @param factory fabrique des wrappers
+     */
+    public void registerWrapper(String format, WrapperFactory factory) {
+        wrapper_factories.put(format.toLowerCase(), factory);
     }
 
     /**
      * Ajouter des données sources provenant d'un fichier CSV
+     * (l'intégration est lancée en arrière-plan, en parallèle des autres sources)
      *
      * @param table_name nom de la table
      * @param file_path  nom du fichier
      * @param delimiter  délimiteur
      */
     public void addDataFromCSV(String table_name, String file_path, char delimiter) {
-        // On vérifie que le fichier n'est pas déjà contenu dans les sources
-        for (Wrapper source : sources) {
-            if (source.file_path.equals(file_path)) {
+        addSource("csv", table_name, file_path, Map.of("delimiter", String.valueOf(delimiter)));
+    }
+
+    /**
+     * Ajouter une source d'un format enregistré
+     * (l'intégration est lancée en arrière-plan, en parallèle des autres sources)
+     *
+     * @param format     nom du format
+     * @param table_name nom de la table globale
+     * @param location   emplacement de la source (chemin du fichier)
+     * @param options    options propres au format
+     */
+    public void addSource(String format, String table_name, String location, Map<String, String> options) {
+        WrapperFactory factory = wrapper_factories.get(format.toLowerCase());
+        if (factory == null) Utils.throwException("Format de source inconnu : " + format + ".");
+        String table = table_name.toUpperCase();
+        String key = location + " (" + table + ")";
+        Map<String, String> source_options = Map.copyOf(options);
+        String descriptor = format.toLowerCase() + ":" + key + " " + new TreeMap<>(options);
+        WrapperFactory.Settings settings = new WrapperFactory.Settings(batch_size, streaming_mode, sample_size,
+                debug_mode);
+        synchronized (pending_sources) {
+            // On vérifie que la source n'est pas déjà contenue dans les sources
+            if (pending_sources.containsKey(key) || catalog.contains(location, table)) {
                 System.err.println("ATTENTION : Source déjà importée.");
                 return;
             }
+            // Ajout des sources cas échéant : la source est publiée dans le catalogue dès la fin de son intégration
+            int position = sources_count++;
+            String db_name = "S" + position;
+            source_descriptors.put(db_name, descriptor);
+            pending_sources.put(key, new PendingSource(table, getIngestionExecutor().submit(() -> {
+                Wrapper source = restoreSource(db_name, descriptor);
+                if (source == null) source = factory.create(db_name, table, location, source_options, settings);
+                return publishSource(position, source);
+            })));
         }
-        // Ajout des sources cas échéant
-        Wrapper source = new WrapperCSV("S" + sources.size(), table_name.toUpperCase(),
-                file_path, delimiter, debug_mode);
-        sources.add(source);
-        generateSourceCapacities(source);
     }
 
     /**
-     * Générer les capacités d'une source
+     * Obtenir la source restaurée depuis l'instantané du catalogue pour une source ajoutée, si elle correspond
+     * (même base de données, format, emplacement, table et options) et que son fichier est inchangé
      *
-     * @param source source
+     * @param db_name    base de données de la source ajoutée
+     * @param descriptor description de la source ajoutée
+     * @return source restaurée, ou null si la source doit être intégrée
      */
-    private void generateSourceCapacities(Wrapper source) {
-        if (!tables_attributes.containsKey(source.table_name))
-            tables_attributes.put(source.table_name, new LinkedHashSet<>());
-        tables_attributes.get(source.table_name).addAll(source.attributes);
+    private Wrapper restoreSource(String db_name, String descriptor) {
+        WrapperSnapshot source = restored_sources.remove(db_name);
+        if (source == null || !source.descriptor.equals(descriptor) || !source.isValid()) return null;
+        Metrics.Counter.SOURCES_RESTORED.increment();
+        if (source.statistics != null) Metrics.setSourceRows(db_name, source.table_name, source.statistics.row_count);
+        if (debug_mode) System.out.println("> Source " + source.file_path + " restaurée depuis l'instantané.\n");
+        return source;
     }
 
     /**
-     * Exécuter une requête SQL
+     * Lire l'instantané du catalogue enregistré par une exécution précédente (avant l'ajout des sources) :
+     * chaque source ajoutée ensuite à l'identique et dont le fichier est inchangé est publiée sans intégration,
+     * les autres sont intégrées normalement ; un instantané absent ou illisible est ignoré
      *
-     * @param sql_request requête SQL
+     * @param file_path chemin de l'instantané
      */
-    public void executeSelectRequest(String sql_request) {
-        String views_request = decomposeRequest(analyzeSQLRequest(sql_request));
-        if (debug_mode) System.out.println("> Requête décomposée et optimisée : \n\n" + views_request);
-        Statement statement = JDBC.createStatement(null);
-        if (debug_mode) System.out.println("> Mise à jour de la base de données temporaire...");
-        JDBC.updateDB(statement, views_request);
-        if (debug_mode) System.out.println("> Exécution de la requête : \n\n" + sql_request + "\n");
-        List<List<String>> result = JDBC.queryDB(statement, sql_request);
-        if (debug_mode) System.out.println("> Résultats : \n");
-        JDBC.showQueryResult(result);
-        JDBC.closeConnection(null);
+    public void loadCatalog(String file_path) {
+        if (sources_count > 0) Utils.throwException("Instantané du catalogue lu après l'ajout de sources.");
+        try {
+            restored_sources.putAll(CatalogSnapshot.read(file_path, debug_mode));
+            if (debug_mode) System.out.println("> Instantané " + file_path + " : " + restored_sources.size() +
+                    " sources.\n");
+        } catch (IOException e) {
+            System.err.println("ATTENTION : Instantané du catalogue " + file_path + " illisible (" +
+                    e.getMessage() + ").");
+        }
+    }
+
+    /**
+     * Enregistrer l'instantané du catalogue une fois les sources intégrées
+     *
+     * @param file_path chemin de l'instantané
+     */
+    public void saveCatalog(String file_path) {
+        awaitSources();
+        Catalog current = catalog;
+        Map<Wrapper, List<String>> indexes = new HashMap<>();
+        for (Wrapper source : current.sources) indexes.put(source, index_advisor.getIndexes(source));
+        try {
+            CatalogSnapshot.write(file_path, current.sources, source_descriptors, indexes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Enregistrement de l'instantané du catalogue impossible.", e);
+        }
+        if (debug_mode) System.out.println("> Instantané " + file_path + " enregistré (" + current + ").");
+    }
+
+    /**
+     * Publier une source intégrée : un nouveau catalogue la contenant est publié une fois la vue matérialisée
+     * et le cache colonnaire de sa table mis à jour (les requêtes en cours conservent le catalogue précédent)
+     *
+     * @param position numéro d'ajout de la source (ordre des sources dans le catalogue)
+     * @param source   source intégrée
+     * @return source
+     */
+    private Wrapper publishSource(int position, Wrapper source) {
+        connection_pool.registerDatabase(source.db_name, source.getDatabasePath());
+        if (source.getCapabilities().contains(Wrapper.Capability.INDEX_CREATION)) {
+            if (source instanceof WrapperSnapshot)
+                index_advisor.registerSource(source, ((WrapperSnapshot) source).indexes);
+            else index_advisor.registerSource(source);
+        }
+        synchronized (catalog_lock) {
+            Catalog next_catalog = catalog.withSource(position, source);
+            refreshMaterializedView(next_catalog, source.table_name);
+            loadColumnarTables(List.of(source));
+            catalog = next_catalog;
+        }
+        return source;
     }
 
     /**
-     * Récupérer la liste des tables utiles contenues dans une requête SQL
+     * Déclarer que les sources d'une table globale sont disjointes : l'union de leurs tuples
+     * n'a alors pas besoin d'éliminer les doublons (UNION ALL)
      *
-     * @param query requête
-     * @return liste des tables utiles
+     * @param table_name nom de la table
      */
-    private List<String> retrieveSQLQueryTables(String query) {
-        int from_index = query.indexOf("FROM");
-        int where_index = query.indexOf("WHERE");
-        List<String> tables = Arrays.asList(query.substring(from_index + 5,
-                where_index > -1 ? where_index - 1 : query.length()).split(","));
-        for (int i = 0; i < tables.size(); i++)
-            tables.set(i, tables.get(i).replaceAll(" ", ""));
-        return tables;
+    public void declareDisjointSources(String table_name) {
+        synchronized (catalog_lock) {
+            disjoint_tables.add(table_name.toUpperCase());
+            catalog = catalog.invalidated();
+        }
+        // L'union sans élimination des doublons peut changer les résultats conservés
+        if (result_cache != null) result_cache.clear();
     }
 
     /**
-     * Récupérer la liste des attributs utiles contenus dans une requête SQL
+     * Déclarer un index à créer dans les sources d'une table globale (en plus des index créés automatiquement
+     * d'après les prédicats des requêtes exécutées) ; l'index est créé en arrière-plan une fois les sources intégrées
      *
-     * @param query requête
-     * @return liste des attributs utiles
+     * @param table_name nom de la table
+     * @param attributes attributs indexés, dans l'ordre de l'index
      */
-    private List<String> retrieveSQLQueryAttributes(String query) {
-        int select_index = query.indexOf("SELECT");
-        int from_index = query.indexOf("FROM");
-        int where_index = query.indexOf("WHERE");
-        int group_index = query.indexOf("GROUP BY");
-        List<String> attributes = new ArrayList<>();
-        attributes.addAll(Arrays.asList(query.substring(select_index + 7, from_index - 1).split(",")));
-        attributes.addAll(Arrays.asList(query.substring(where_index + 6,
-                group_index > -1 ? group_index - 1 : query.length() - 1).split("AND")));
-        return attributes;
+    public void declareIndex(String table_name, String... attributes) {
+        if (attributes.length == 0) Utils.throwException("Index sans attribut.");
+        List<String> index_attributes = new ArrayList<>();
+        for (String attribute : attributes) index_attributes.add(attribute.toUpperCase());
+        index_advisor.declareIndex(table_name.toUpperCase(), index_attributes);
     }
 
     /**
-     * Séparer les attributs groupés pour récupérer les sous-attributs
+     * Déclarer une table globale fréquemment interrogée : ses sources sont copiées en mémoire par colonnes typées
+     * et les requêtes de sélection simples sur cette table sont évaluées sans SQLite
      *
-     * @param attributes attributs
+     * @param table_name nom de la table
      */
-    private void splitGroupedAttributes(List<String> attributes) {
-        Map<String, List<String>> grouped_attributes = new HashMap<>();
-        for (String attribute : attributes) {
-            int lpar_pos = attribute.indexOf("(");
-            int comma_pos = attribute.indexOf(",");
-            int rpar_pos = attribute.indexOf(")");
-            if (lpar_pos > -1 && comma_pos > -1 && rpar_pos > -1) {
-                List<String> sub_attributes = Arrays.asList(attribute.substring(lpar_pos + 1, rpar_pos).split(","));
-                grouped_attributes.put(attribute, sub_attributes);
+    public void cacheTable(String table_name) {
+        // Les sources encore en cours d'intégration sont chargées lors de leur publication
+        synchronized (catalog_lock) {
+            hot_tables.add(table_name.toUpperCase());
+            loadColumnarTables(catalog.sources);
+            catalog = catalog.invalidated();
+        }
+    }
+
+    /**
+     * Charger les sources des tables fréquemment interrogées qui ne sont pas encore dans le cache colonnaire
+     *
+     * @param sources sources intégrées
+     */
+    private void loadColumnarTables(List<Wrapper> sources) {
+        for (Wrapper source : sources) {
+            if (!hot_tables.contains(source.table_name) || columnar_tables.containsKey(source)) continue;
+            Connection connection = connection_pool.borrow(List.of(source.db_name));
+            try {
+                ColumnarTable table = ColumnarTable.load(connection, source);
+                columnar_tables.put(source, table);
+                if (debug_mode) System.out.println("> Cache colonnaire " + source.table_name + " : " + table);
+            } catch (SQLException e) {
+                System.err.println("ATTENTION : Mise en cache de la source " + source.db_name + " impossible (" +
+                        e.getMessage() + ").");
+            } finally {
+                connection_pool.release(connection);
             }
         }
-        // Remplacement des attributs groupés par leur sous-attributs
-        for (Map.Entry<String, List<String>> entry : grouped_attributes.entrySet()) {
-            attributes.remove(entry.getKey());
-            attributes.addAll(entry.getValue());
+    }
+
+    /**
+     * Déclarer une vue matérialisée d'une table globale : l'union de ses sources, projetée sur ses attributs
+     * globaux, est conservée dans une table persistante et indexée, lue par les requêtes à la place des sources ;
+     * la vue est rafraîchie après chaque intégration, uniquement pour les sources dont le fichier a changé
+     *
+     * @param table_name nom de la table
+     */
+    public void materializeTable(String table_name) {
+        String table = table_name.toUpperCase();
+        // Les sources encore en cours d'intégration rafraîchissent la vue lors de leur publication
+        synchronized (catalog_lock) {
+            if (materialized_views.isEmpty())
+                connection_pool.registerDatabase(MaterializedView.DB_NAME, MaterializedView.DB_NAME + ".db");
+            materialized_views.putIfAbsent(table, new MaterializedView(table));
+            refreshMaterializedView(catalog, table);
+            catalog = catalog.invalidated();
         }
     }
 
     /**
-     * Reformater une liste d'attribut
+     * Rafraîchir la vue matérialisée d'une table à partir des sources d'un catalogue ; une vue qui ne peut pas être
+     * rafraîchie n'est pas utilisée, les requêtes lisent alors ses sources
      *
-     * @param attributes liste d'attributs
+     * @param catalog catalogue
+     * @param table   table globale
      */
-    private void reformatAttributes(List<String> attributes) {
-        for (int i = 0; i < attributes.size(); i++) {
-            String attribute = attributes.get(i).toUpperCase();
-            if (attribute.contains("("))
-                attribute = attribute.substring(attribute.indexOf("(") + 1);
-            if (attribute.contains(")"))
-                attribute = attribute.substring(0, attribute.indexOf(")"));
-            if (attribute.contains(" AS "))
-                attribute = attribute.substring(0, attribute.indexOf(" AS "));
-            if (attribute.contains("="))
-                attribute = attribute.substring(0, attribute.indexOf("="));
-            attributes.set(i, attribute.replaceAll(" ", ""));
+    private void refreshMaterializedView(Catalog catalog, String table) {
+        MaterializedView view = materialized_views.get(table);
+        List<Wrapper> table_sources = catalog.getSources(table);
+        if (view == null || table_sources.isEmpty()) return;
+        List<String> view_databases = new ArrayList<>(List.of(MaterializedView.DB_NAME));
+        for (Wrapper source : table_sources) view_databases.add(source.db_name);
+        Connection connection = connection_pool.borrow(view_databases);
+        try {
+            long start = Metrics.start();
+            view.refresh(connection, table_sources, catalog.tables_attributes.get(table), debug_mode);
+            Metrics.Stage.DDL.stop(start);
+            if (debug_mode) System.out.println("> Vue matérialisée " + view);
+        } catch (SQLException e) {
+            System.err.println("ATTENTION : Rafraîchissement de la vue " + view.table + " impossible (" +
+                    e.getMessage() + ").");
+        } finally {
+            connection_pool.release(connection);
         }
     }
 
     /**
-     * Vérifier que des attributs sont bien existants
+     * Obtenir la vue matérialisée d'une table globale, si elle peut remplacer ses sources
      *
-     * @param tables tables utiles
-     * @param attributes attributs
-     * @return attributs filtrés
+     * @param table table globale
+     * @return vue, ou null
      */
-    private Map<String, List<String>> verifyAndFilterAttributes(List<String> tables, List<String> attributes) {
-        Map<String, List<String>> filtered = new HashMap<>();
+    private MaterializedView getMaterializedView(String table) {
+        MaterializedView view = materialized_views.get(table);
+        return view != null && view.isReady() ? view : null;
+    }
 
-        // Ajout des tables dans les filtres
-        for (String table : tables)
-            if (!tables_attributes.containsKey(table)) Utils.throwException("Requête invalide.");
-            else filtered.put(table, new ArrayList<>());
+    /**
+     * Attendre la fin de l'intégration des sources ajoutées ;
+     * l'échec d'une source n'empêche pas l'intégration des autres
+     */
+    public void awaitSources() {
+        awaitSources(null);
+    }
 
-        // Filtrage des attributs
-        if (attributes.get(0).equals("*")) {
-            for (String table : tables)
-                filtered.get(table).add("*");
+    /**
+     * Attendre la fin de l'intégration des sources de certaines tables ; chaque source attendue
+     * est signalée une seule fois (échec, capacités), dans l'ordre d'ajout
+     *
+     * @param tables tables globales (null pour toutes les sources)
+     */
+    private void awaitSources(Set<String> tables) {
+        Map<String, PendingSource> awaited = new LinkedHashMap<>();
+        synchronized (pending_sources) {
+            for (Map.Entry<String, PendingSource> entry : pending_sources.entrySet())
+                if (tables == null || tables.contains(entry.getValue().table))
+                    awaited.put(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, PendingSource> entry : awaited.entrySet()) {
+            try {
+                Wrapper source = entry.getValue().integration.get();
+                // Source déjà signalée par une autre requête
+                if (pending_sources.remove(entry.getKey()) == null) continue;
+                Set<Wrapper.Capability> capabilities = source.getCapabilities();
+                if (streaming_mode && !capabilities.contains(Wrapper.Capability.STREAMING_SCAN))
+                    System.err.println("ATTENTION : La source " + entry.getKey() + " a été chargée en mémoire.");
+                if (debug_mode) System.out.println("> Source " + source.db_name + " : " + capabilities);
+            } catch (ExecutionException e) {
+                if (pending_sources.remove(entry.getKey()) == null) continue;
+                System.err.println("ATTENTION : Échec de l'intégration de la source " + entry.getKey() +
+                        " (" + e.getCause() + ").");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Utils.throwException("Intégration des sources interrompue.");
+            }
+        }
+    }
+
+    /**
+     * Obtenir les noms pouvant désigner une table dans une requête (identifiants, sans guillemets)
+     *
+     * @param sql_request requête SQL
+     * @return noms en majuscules
+     */
+    private static Set<String> getNamedTables(String sql_request) {
+        Set<String> names = new HashSet<>();
+        for (SQLTokenizer.Token token : SQLTokenizer.tokenize(sql_request)) {
+            if (token.type == SQLTokenizer.TokenType.IDENTIFIER) names.add(token.text.toUpperCase());
+            else if (token.type == SQLTokenizer.TokenType.QUOTED_IDENTIFIER && token.text.length() > 1)
+                names.add(token.text.substring(1, token.text.length() - 1).toUpperCase());
+        }
+        return names;
+    }
+
+    /**
+     * Récupérer l'exécuteur des intégrations (créé au premier ajout de source)
+     *
+     * @return exécuteur
+     */
+    private synchronized ExecutorService getIngestionExecutor() {
+        if (ingestion_executor == null) {
+            ingestion_executor = Executors.newFixedThreadPool(ingestion_threads, runnable -> {
+                // Les fils d'intégration ne doivent pas empêcher l'arrêt du programme
+                Thread thread = new Thread(runnable, "ingestion");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ingestion_executor;
+    }
+
+    /**
+     * Récupérer l'exécuteur des requêtes asynchrones (créé à la première soumission)
+     *
+     * @return exécuteur
+     */
+    private synchronized ExecutorService getAdmissionExecutor() {
+        if (admission_executor == null) {
+            BlockingQueue<Runnable> queue = queued_queries == 0 ? new SynchronousQueue<>() :
+                    new ArrayBlockingQueue<>(queued_queries);
+            admission_executor = new ThreadPoolExecutor(running_queries, running_queries, 0, TimeUnit.MILLISECONDS,
+                    queue, runnable -> {
+                Thread thread = new Thread(runnable, "query");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return admission_executor;
+    }
+
+    /**
+     * Récupérer l'exécuteur des requêtes partielles (créé à la première exécution répartie),
+     * dimensionné comme la réserve de connexions
+     *
+     * @return exécuteur
+     */
+    private synchronized ExecutorService getQueryExecutor() {
+        if (query_executor == null) {
+            query_executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "fan-out");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return query_executor;
+    }
+
+    /**
+     * Exécuter une requête SQL et afficher son résultat au fil de l'eau
+     *
+     * @param sql_request requête SQL
+     */
+    public void executeSelectRequest(String sql_request) {
+        executeSelectRequest(sql_request, new TableResultWriter(System.out));
+    }
+
+    /**
+     * Exécuter une requête SQL et écrire son résultat tuple par tuple
+     *
+     * @param sql_request requête SQL
+     * @param writer      destination du résultat
+     */
+    public void executeSelectRequest(String sql_request, ResultWriter writer) {
+        try (ResultCursor cursor = openSelectRequest(sql_request)) {
+            if (debug_mode) System.out.println("> Résultats : \n");
+            cursor.writeTo(writer);
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Exécuter une requête SQL et charger tout son résultat en mémoire
+     *
+     * @param sql_request requête SQL
+     * @return attributs suivis des tuples (null en cas d'erreur)
+     */
+    public List<List<String>> selectRequest(String sql_request) {
+        try (ResultCursor cursor = openSelectRequest(sql_request)) {
+            return readResult(cursor);
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Lire tout le résultat d'un curseur
+     *
+     * @param cursor curseur
+     * @return attributs suivis des tuples
+     */
+    private static List<List<String>> readResult(ResultCursor cursor) {
+        List<List<String>> result = new ArrayList<>();
+        result.add(cursor.getAttributes());
+        while (cursor.hasNext()) {
+            Object[] row = cursor.next();
+            List<String> tuple = new ArrayList<>(row.length);
+            for (Object value : row) tuple.add(ResultWriter.format(value));
+            result.add(tuple);
+        }
+        return result;
+    }
+
+    /**
+     * Exécuter une requête SQL de façon asynchrone et charger tout son résultat en mémoire
+     *
+     * @param sql_request requête SQL
+     * @param timeout     échéance à partir de la soumission (millisecondes, 0 si aucune)
+     * @return attributs suivis des tuples à venir (annuler le résultat annule la requête)
+     */
+    public CompletableFuture<List<List<String>>> selectRequestAsync(String sql_request, long timeout) {
+        return submitSelectRequest(sql_request, timeout, Mediator::readResult);
+    }
+
+    /**
+     * Exécuter une requête SQL de façon asynchrone et écrire son résultat tuple par tuple
+     * (le destinataire est appelé par le fil d'exécution de la requête)
+     *
+     * @param sql_request requête SQL
+     * @param writer      destination du résultat
+     * @param timeout     échéance à partir de la soumission (millisecondes, 0 si aucune)
+     * @return nombre de tuples écrits à venir (annuler le résultat annule la requête)
+     */
+    public CompletableFuture<Long> executeSelectRequestAsync(String sql_request, ResultWriter writer, long timeout) {
+        return submitSelectRequest(sql_request, timeout, cursor -> cursor.writeTo(writer));
+    }
+
+    /**
+     * Soumettre une requête à l'exécuteur des requêtes asynchrones ; si le résultat est obtenu autrement
+     * que par l'exécution (échéance, annulation par l'appelant), la requête SQLite en cours est interrompue
+     * et une requête encore en attente n'est pas exécutée
+     *
+     * @param sql_request requête SQL
+     * @param timeout     échéance à partir de la soumission (millisecondes, 0 si aucune)
+     * @param reader      lecture du résultat
+     * @param <T>         type du résultat
+     * @return résultat à venir (TimeoutException à l'échéance, RejectedExecutionException si la file est pleine)
+     */
+    private <T> CompletableFuture<T> submitSelectRequest(String sql_request, long timeout,
+                                                         java.util.function.Function<ResultCursor, T> reader) {
+        if (timeout < 0) Utils.throwException("Échéance invalide.");
+        QueryCancellation cancellation = new QueryCancellation();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((value, error) -> {
+            if (!(error instanceof CancellationException || error instanceof TimeoutException)) return;
+            Metrics.Counter.QUERIES_CANCELLED.increment();
+            cancellation.cancel();
+        });
+        try {
+            getAdmissionExecutor().execute(() -> {
+                if (result.isDone()) return;
+                try (ResultCursor cursor = openSelectRequest(sql_request, cancellation)) {
+                    result.complete(reader.apply(cursor));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Metrics.Counter.QUERIES_REJECTED.increment();
+            result.completeExceptionally(e);
+            return result;
+        }
+        if (timeout > 0) result.orTimeout(timeout, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    /**
+     * Ouvrir un curseur sur le résultat d'une requête SQL : les tuples sont lus à la demande
+     * et la connexion utilisée reste réservée jusqu'à la fin du parcours ou la fermeture du curseur
+     *
+     * @param sql_request requête SQL
+     * @return curseur (à fermer)
+     */
+    public ResultCursor openSelectRequest(String sql_request) {
+        return openSelectRequest(sql_request, new QueryCancellation());
+    }
+
+    /**
+     * Ouvrir un curseur annulable sur le résultat d'une requête SQL : l'annulation, depuis n'importe quel fil,
+     * interrompt la requête SQLite en cours et le parcours du résultat échoue à la lecture suivante
+     *
+     * @param sql_request  requête SQL
+     * @param cancellation annulation de la requête
+     * @return curseur (à fermer)
+     */
+    public ResultCursor openSelectRequest(String sql_request, QueryCancellation cancellation) {
+        // Seules les sources des tables nommées par la requête sont attendues : les autres intégrations continuent
+        awaitSources(getNamedTables(sql_request));
+        if (cancellation.isCancelled()) throw new IllegalStateException("Requête annulée.");
+        Catalog catalog = this.catalog;
+        Metrics.Counter.QUERIES.increment();
+        NormalizedQuery normalized = NormalizedQuery.of(sql_request, catalog::isIdentifier);
+        QueryPlan plan = catalog.getPlan(normalized.key);
+        if (plan == null) {
+            Metrics.Counter.PLAN_CACHE_MISSES.increment();
+            plan = compileRequest(catalog, sql_request, normalized);
+            catalog.putPlan(normalized.key, plan);
         } else {
-            for (String attribute : attributes) {
-                boolean found = false;
-                // Si c'est une chaine de caractère on passe au suivant
-                if (attribute.startsWith("\"") && attribute.endsWith("\"") ||
-                        attribute.startsWith("'") && attribute.endsWith("'")) {
-                    continue;
-                } else if (attribute.contains(".")) {
-                    // On vérifie que ce n'est pas un nombre
-                    try {
-                        Double.parseDouble(attribute);
-                        continue;
-                    } catch (NumberFormatException e) {
-                        // S'il contient un point, on a accès à la table dans laquelle il est contenu
-                        int dot_pos = attribute.indexOf(".");
-                        String possible_table = attribute.substring(0, dot_pos);
-                        attribute = attribute.substring(dot_pos + 1);
-                        if (tables_attributes.get(possible_table).contains(attribute)) {
-                            found = true;
-                            filtered.get(possible_table).add(attribute);
-                        }
-                    }
-                } else {
-                    // Sinon on recherche une table à laquelle il pourrait appartenir
-                    for (String table : tables) {
-                        LinkedHashSet<String> table_attributes = tables_attributes.get(table);
-                        if (table_attributes.contains(attribute) && !filtered.get(table).contains(attribute)) {
-                            found = true;
-                            filtered.get(table).add(attribute);
-                            break;
+            Metrics.Counter.PLAN_CACHE_HITS.increment();
+            if (debug_mode) System.out.println("> Plan d'exécution en cache.");
+        }
+        if (debug_mode) System.out.println("> Requête décomposée et optimisée : \n\n" + plan.sql + "\n");
+        if (debug_mode) System.out.println("> Paramètres : " + normalized.parameters + "\n");
+        ResultCache cache = result_cache;
+        if (cache == null || !ResultCache.isCacheable(normalized.tokens, normalized.parameters))
+            return executePlan(plan, normalized, cancellation).measured().cancellable(cancellation);
+        List<Object> key = Arrays.asList(normalized.key, normalized.parameters,
+                getSourceVersions(catalog, plan.tables));
+        ResultCursor cursor = cache.get(key);
+        if (cursor != null) {
+            if (debug_mode) System.out.println("> Résultat en cache (" + cache + ").");
+            return cursor.measured().cancellable(cancellation);
+        }
+        return cache.record(key, executePlan(plan, normalized, cancellation)).measured().cancellable(cancellation);
+    }
+
+    /**
+     * Obtenir les versions des sources des tables interrogées par une requête
+     *
+     * @param catalog catalogue lu par la requête
+     * @param tables  tables globales
+     * @return versions, dans l'ordre des sources
+     */
+    private static List<Long> getSourceVersions(Catalog catalog, Set<String> tables) {
+        List<Long> versions = new ArrayList<>();
+        for (Wrapper source : catalog.sources)
+            if (tables.contains(source.table_name)) versions.add(source.version);
+        return versions;
+    }
+
+    /**
+     * Exécuter un plan : parcours du cache colonnaire, exécution répartie ou requête SQLite
+     *
+     * @param plan         plan d'exécution
+     * @param normalized   requête normalisée
+     * @param cancellation annulation de la requête (les requêtes SQLite exécutées y sont enregistrées)
+     * @return curseur (à fermer)
+     */
+    private ResultCursor executePlan(QueryPlan plan, NormalizedQuery normalized, QueryCancellation cancellation) {
+        if (plan.columnar_scan != null) {
+            long start = Metrics.start();
+            ResultCursor cursor = plan.columnar_scan.open(normalized.parameters);
+            if (cursor != null) {
+                Metrics.Stage.EXECUTE.stop(start);
+                Metrics.Counter.COLUMNAR_SCANS.increment();
+                if (debug_mode) System.out.println("> Parcours du cache colonnaire.");
+                return cursor;
+            }
+        }
+        index_advisor.record(plan.index_candidates);
+        if (fan_out_mode && plan.partitions != null)
+            return openPartitionedRequest(plan, normalized.parameters, cancellation);
+        Connection connection = connection_pool.borrow(plan.databases);
+        try {
+            long start = Metrics.start();
+            PreparedStatement statement = connection_pool.prepare(connection, plan.sql);
+            JDBC.bindParameters(statement, normalized.parameters);
+            // L'interruption porte sur la connexion : la requête est retirée avant que la connexion ne soit rendue
+            cancellation.register(statement);
+            try {
+                ResultCursor cursor = ResultCursor.of(statement.executeQuery(), () -> {
+                    cancellation.unregister(statement);
+                    connection_pool.release(connection);
+                });
+                Metrics.Stage.EXECUTE.stop(start);
+                return cursor;
+            } catch (SQLException | RuntimeException e) {
+                cancellation.unregister(statement);
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection_pool.release(connection);
+            throw new IllegalStateException("Exécution de la requête impossible.", e);
+        }
+    }
+
+    /**
+     * Exécuter les requêtes partielles d'un plan en parallèle et concaténer leurs résultats dans l'ordre des sources
+     * (chaque résultat partiel est lu entièrement afin de rendre sa connexion au plus tôt)
+     *
+     * @param plan         plan d'exécution
+     * @param parameters   valeurs des paramètres
+     * @param cancellation annulation de la requête
+     * @return curseur (à fermer)
+     */
+    private ResultCursor openPartitionedRequest(QueryPlan plan, List<Object> parameters,
+                                                QueryCancellation cancellation) {
+        if (debug_mode) System.out.println("> Exécution répartie sur " + plan.partitions.size() + " sources.");
+        List<Future<List<Object[]>>> results = new ArrayList<>();
+        List<List<String>> attributes = new ArrayList<>();
+        for (QueryPlan.Partition partition : plan.partitions) {
+            results.add(getQueryExecutor().submit(() -> {
+                Connection connection = connection_pool.borrow(partition.databases);
+                try {
+                    long start = Metrics.start();
+                    PreparedStatement statement = connection_pool.prepare(connection, partition.sql);
+                    JDBC.bindParameters(statement, parameters);
+                    List<Object[]> rows = new ArrayList<>();
+                    cancellation.register(statement);
+                    try (ResultCursor cursor = ResultCursor.of(statement.executeQuery(), () -> {
+                    })) {
+                        Metrics.Stage.EXECUTE.stop(start);
+                        synchronized (attributes) {
+                            if (attributes.isEmpty()) attributes.add(cursor.getAttributes());
                         }
+                        while (cursor.hasNext()) rows.add(cursor.next());
+                    } finally {
+                        cancellation.unregister(statement);
                     }
+                    return rows;
+                } finally {
+                    connection_pool.release(connection);
+                }
+            }));
+        }
+        Runnable cancel = () -> {
+            for (Future<List<Object[]>> result : results) result.cancel(false);
+        };
+        Iterator<Future<List<Object[]>>> remaining_results = results.iterator();
+        List<Object[]> first_rows;
+        try {
+            first_rows = awaitPartition(remaining_results.next());
+        } catch (SQLException e) {
+            cancel.run();
+            throw new IllegalStateException("Exécution de la requête impossible.", e.getCause());
+        }
+        return new ResultCursor(attributes.get(0), new ResultCursor.RowReader() {
+            private Iterator<Object[]> rows = first_rows.iterator();
+            private long count;
+
+            @Override
+            public Object[] read() throws SQLException {
+                if (plan.partitions_limit >= 0 && count == plan.partitions_limit) return null;
+                while (!rows.hasNext()) {
+                    if (!remaining_results.hasNext()) return null;
+                    rows = awaitPartition(remaining_results.next()).iterator();
                 }
-                if (!found) Utils.throwException("Requête invalide.");
+                count++;
+                return rows.next();
             }
+        }, cancel);
+    }
+
+    /**
+     * Attendre le résultat d'une requête partielle
+     *
+     * @param result résultat à venir
+     * @return tuples
+     * @throws SQLException échec de la requête partielle
+     */
+    private static List<Object[]> awaitPartition(Future<List<Object[]>> result) throws SQLException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw new SQLException("Échec d'une requête partielle.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Attente d'une requête partielle interrompue.", e);
         }
+    }
 
-        return filtered;
+    /**
+     * Compiler le plan d'exécution d'une requête sans l'exécuter ni le conserver en cache
+     *
+     * @param sql_request requête SQL
+     * @return plan d'exécution
+     */
+    public QueryPlan compileSelectRequest(String sql_request) {
+        awaitSources(getNamedTables(sql_request));
+        Catalog catalog = this.catalog;
+        return compileRequest(catalog, sql_request, NormalizedQuery.of(sql_request, catalog::isIdentifier));
     }
 
     /**
-     * Analyser une requête SQL
+     * Compiler le plan d'exécution d'une requête
      *
+     * @param catalog     catalogue lu par la requête
      * @param sql_request requête SQL
-     * @return éléments soutirés de la requête SQL
+     * @param normalized  requête normalisée
+     * @return plan d'exécution
      */
-    private Map<String, List<String>> analyzeSQLRequest(String sql_request) {
+    private QueryPlan compileRequest(Catalog catalog, String sql_request, NormalizedQuery normalized) {
+        long start = Metrics.start();
         if (debug_mode) System.out.println("> Analyse de la requête...");
-        if (!sql_request.startsWith("SELECT") || !sql_request.contains("FROM"))
-            Utils.throwException("Requête invalide.");
+        LogicalPlan plan = SQLParser.parse(normalized.tokens, catalog.tables_attributes, aggregate_functions);
+        if (debug_mode) System.out.print("> Plan logique :\n" + plan);
+        List<LogicalPlan.Scan> scans = plan.getScans();
+        Map<String, List<String>> query_elements = retrieveQueryElements(scans);
+        // Les sous-requêtes d'une table sont partagées par tous ses parcours : seuls les prédicats
+        // d'une table parcourue une seule fois peuvent y être poussés
+        Set<LogicalPlan.Scan> single_scans = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (LogicalPlan.Scan scan : scans)
+            if (scans.stream().filter(other -> other.table.equals(scan.table)).count() == 1) single_scans.add(scan);
+        Map<String, List<Predicate>> predicates = new HashMap<>();
+        Map<SpatialPredicate, Set<LogicalPlan.Scan>> spatial_predicates = new LinkedHashMap<>();
+        Set<LogicalPlan.Scan> row_scans = collectConjuncts(plan, single_scans, predicates, spatial_predicates);
+        // Prédicats de proximité : une boîte englobante est évaluée avant la distance exacte
+        Set<String> indexed_tables = new HashSet<>();
+        Map<SQLTokenizer.Token, String> rewrites = new IdentityHashMap<>();
+        for (Map.Entry<SpatialPredicate, Set<LogicalPlan.Scan>> entry : spatial_predicates.entrySet()) {
+            SpatialPredicate spatial = entry.getKey();
+            String bounding_box = prepareSpatialPredicate(catalog, spatial, entry.getValue(), plan, query_elements,
+                    indexed_tables);
+            if (bounding_box != null) rewrites.put(spatial.first_token, bounding_box + "\nAND " + spatial.first_token.text);
+        }
+        // Ordre des jointures estimé à partir des statistiques des sources
+        JoinPlanner.JoinOrder join_order = new JoinPlanner(catalog.sources, normalized.parameters)
+                .plan(plan, indexed_tables);
+        if (debug_mode && join_order != null) System.out.println("> Ordre des jointures : " + join_order);
+        List<String> databases = new ArrayList<>();
+        Map<String, List<String[]>> source_selects = new HashMap<>();
+        Map<String, String> views = decomposeRequest(catalog, query_elements, predicates, indexed_tables, databases,
+                source_selects);
+        // Table partitionnable : parcourue une seule fois, dans le bloc principal, sans être complétée par des nulls
+        Set<String> partitionable_tables = new HashSet<>();
+        for (LogicalPlan.Scan scan : row_scans)
+            if (single_scans.contains(scan)) partitionable_tables.add(scan.table);
+        long partitions_limit = analyzePartitioning(plan);
+        List<IndexAdvisor.Candidate> index_candidates = index_advisor.advise(predicates, catalog.sources);
+        if (debug_mode && !index_candidates.isEmpty()) System.out.println("> Index candidats : " + index_candidates);
+        QueryPlan query_plan = new QueryPlan(normalized.key, views, composeRequest(normalized, scans, views, rewrites,
+                join_order), databases, compileColumnarScan(catalog, plan, scans),
+                partitions_limit == NOT_PARTITIONABLE ? null : partitionRequest(normalized, scans, views, rewrites,
+                        join_order, source_selects, partitionable_tables), partitions_limit, index_candidates,
+                query_elements.keySet());
+        Metrics.Stage.DECOMPOSE.stop(start);
+        return query_plan;
+    }
+
+    /**
+     * Obtenir les attributs utiles de chaque table à partir des parcours du plan logique
+     *
+     * @param scans parcours
+     * @return attributs par table (* si tous les attributs sont utiles)
+     */
+    private static Map<String, List<String>> retrieveQueryElements(List<LogicalPlan.Scan> scans) {
+        Map<String, List<String>> query_elements = new LinkedHashMap<>();
+        for (LogicalPlan.Scan scan : scans) {
+            List<String> attributes = query_elements.computeIfAbsent(scan.table, table -> new ArrayList<>());
+            if (!attributes.isEmpty() && attributes.get(0).equals("*")) continue;
+            // Aucun attribut référencé (COUNT(*) par exemple) : les tuples de la table restent nécessaires
+            if (scan.all_attributes || scan.attributes.isEmpty()) {
+                attributes.clear();
+                attributes.add("*");
+            } else for (String attribute : scan.attributes)
+                if (!attributes.contains(attribute)) attributes.add(attribute);
+        }
+        return query_elements;
+    }
+
+    /**
+     * Extraire les prédicats du bloc principal d'une requête (clause WHERE et conditions de jointure)
+     *
+     * @param plan               plan logique
+     * @param single_scans       parcours des tables parcourues une seule fois
+     * @param predicates         à compléter avec les prédicats à pousser dans les sources, par table
+     * @param spatial_predicates à compléter avec les prédicats de proximité et les parcours qu'ils peuvent filtrer
+     * @return parcours du bloc principal dont les tuples ne sont pas complétés par des valeurs nulles
+     * (aucun pour une opération ensembliste)
+     */
+    private static Set<LogicalPlan.Scan> collectConjuncts(LogicalPlan plan, Set<LogicalPlan.Scan> single_scans,
+                                                          Map<String, List<Predicate>> predicates,
+                                                          Map<SpatialPredicate, Set<LogicalPlan.Scan>> spatial_predicates) {
+        while (plan instanceof LogicalPlan.Limit || plan instanceof LogicalPlan.Sort) plan = plan.getInputs().get(0);
+        if (!(plan instanceof LogicalPlan.Project)) return Set.of();
+        LogicalPlan node = ((LogicalPlan.Project) plan).input;
+        List<SQLExpression> where = List.of();
+        while (node instanceof LogicalPlan.Filter || node instanceof LogicalPlan.Aggregate) {
+            if (node instanceof LogicalPlan.Filter && !((LogicalPlan.Filter) node).having)
+                where = ((LogicalPlan.Filter) node).conjuncts;
+            node = node.getInputs().isEmpty() ? null : node.getInputs().get(0);
+        }
+        if (node == null) return Set.of();
+        Set<LogicalPlan.Scan> row_scans = collectJoinConjuncts(node, single_scans, predicates, spatial_predicates);
+        addConjuncts(where, row_scans, row_scans, single_scans, predicates, spatial_predicates);
+        return row_scans;
+    }
+
+    /**
+     * Extraire les prédicats des conditions de jointure d'une clause FROM
+     *
+     * @param node               nœud de la clause FROM
+     * @param single_scans       parcours des tables parcourues une seule fois
+     * @param predicates         à compléter avec les prédicats à pousser dans les sources, par table
+     * @param spatial_predicates à compléter avec les prédicats de proximité et les parcours qu'ils peuvent filtrer
+     * @return parcours du nœud dont les tuples ne sont pas complétés par des valeurs nulles
+     */
+    private static Set<LogicalPlan.Scan> collectJoinConjuncts(LogicalPlan node, Set<LogicalPlan.Scan> single_scans,
+                                                              Map<String, List<Predicate>> predicates,
+                                                              Map<SpatialPredicate, Set<LogicalPlan.Scan>> spatial_predicates) {
+        Set<LogicalPlan.Scan> row_scans = Collections.newSetFromMap(new IdentityHashMap<>());
+        if (node instanceof LogicalPlan.Scan) row_scans.add((LogicalPlan.Scan) node);
+        if (!(node instanceof LogicalPlan.Join)) return row_scans;
+        LogicalPlan.Join join = (LogicalPlan.Join) node;
+        Set<LogicalPlan.Scan> left = collectJoinConjuncts(join.left, single_scans, predicates, spatial_predicates);
+        Set<LogicalPlan.Scan> right = collectJoinConjuncts(join.right, single_scans, predicates, spatial_predicates);
+        row_scans.addAll(left);
+        row_scans.addAll(right);
+        if (join.condition != null)
+            // Une condition de jointure externe ne filtre que le côté droit
+            addConjuncts(join.condition.splitConjuncts(), join.type.equals("LEFT") ? right : row_scans, row_scans,
+                    single_scans, predicates, spatial_predicates);
+        return join.type.equals("LEFT") ? left : row_scans;
+    }
+
+    /**
+     * Extraire les prédicats d'une conjonction
+     *
+     * @param conjuncts          termes
+     * @param targets            parcours vers lesquels un terme peut être poussé
+     * @param row_scans          parcours dont les tuples ne sont pas complétés par des valeurs nulles
+     * @param single_scans       parcours des tables parcourues une seule fois
+     * @param predicates         à compléter avec les prédicats à pousser dans les sources, par table
+     * @param spatial_predicates à compléter avec les prédicats de proximité et les parcours qu'ils peuvent filtrer
+     */
+    private static void addConjuncts(List<SQLExpression> conjuncts, Set<LogicalPlan.Scan> targets,
+                                     Set<LogicalPlan.Scan> row_scans, Set<LogicalPlan.Scan> single_scans,
+                                     Map<String, List<Predicate>> predicates,
+                                     Map<SpatialPredicate, Set<LogicalPlan.Scan>> spatial_predicates) {
+        Set<LogicalPlan.Scan> pushable = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (LogicalPlan.Scan scan : targets)
+            if (single_scans.contains(scan)) pushable.add(scan);
+        for (Map.Entry<String, List<Predicate>> entry : Predicate.extract(conjuncts, pushable).entrySet())
+            predicates.computeIfAbsent(entry.getKey(), table -> new ArrayList<>()).addAll(entry.getValue());
+        for (SpatialPredicate spatial : SpatialPredicate.extract(conjuncts, row_scans))
+            spatial_predicates.put(spatial, pushable);
+    }
+
+    /**
+     * Valeur indiquant qu'une requête ne peut pas être exécutée source par source
+     */
+    private static final long NOT_PARTITIONABLE = -2;
+
+    /**
+     * Vérifier qu'une requête peut être exécutée source par source : son résultat sur une union de sources
+     * doit être la concaténation de ses résultats sur chaque source (ni agrégation, ni élimination des doublons,
+     * ni tri, ni opération ensembliste ; une limite simple est appliquée après la fusion)
+     *
+     * @param plan plan logique
+     * @return nombre maximum de tuples (-1 sans limite), ou NOT_PARTITIONABLE
+     */
+    private static long analyzePartitioning(LogicalPlan plan) {
+        long limit = -1;
+        if (plan instanceof LogicalPlan.Limit) {
+            // Seule une limite constante est reportée sur le résultat fusionné
+            LogicalPlan.Limit node = (LogicalPlan.Limit) plan;
+            if (node.offset != null || node.limit.tokens.size() != 1
+                    || node.limit.tokens.get(0).type != SQLTokenizer.TokenType.NUMBER
+                    || !(node.limit.tokens.get(0).number() instanceof Long)) return NOT_PARTITIONABLE;
+            limit = Math.max(0, node.limit.tokens.get(0).number().longValue());
+            plan = node.input;
+        }
+        if (!(plan instanceof LogicalPlan.Project)) return NOT_PARTITIONABLE;
+        LogicalPlan.Project project = (LogicalPlan.Project) plan;
+        if (project.distinct) return NOT_PARTITIONABLE;
+        for (SQLExpression item : project.items)
+            if (item.containsWindow()) return NOT_PARTITIONABLE;
+        for (LogicalPlan node = project.input; node instanceof LogicalPlan.Filter || node instanceof LogicalPlan.Aggregate;
+             node = node.getInputs().isEmpty() ? null : node.getInputs().get(0))
+            if (node instanceof LogicalPlan.Aggregate) return NOT_PARTITIONABLE;
+        return limit;
+    }
+
+    /**
+     * Écrire les requêtes partielles d'une requête : la table dont les sources sont disjointes et les plus nombreuses
+     * est réduite à l'une de ses sources dans chaque requête partielle
+     *
+     * @param normalized           requête normalisée
+     * @param scans                parcours du plan logique
+     * @param views                sous-requêtes décomposées par table
+     * @param rewrites             textes remplaçant certains lexèmes de la requête
+     * @param join_order           ordre des jointures (null pour conserver la clause FROM)
+     * @param source_selects       sous-requêtes de chaque source et base de données, par table
+     * @param partitionable_tables tables pouvant être partitionnées
+     * @return requêtes partielles, ou null si aucune table n'a plusieurs sources disjointes
+     */
+    private List<QueryPlan.Partition> partitionRequest(NormalizedQuery normalized, List<LogicalPlan.Scan> scans,
+                                                       Map<String, String> views,
+                                                       Map<SQLTokenizer.Token, String> rewrites,
+                                                       JoinPlanner.JoinOrder join_order,
+                                                       Map<String, List<String[]>> source_selects,
+                                                       Set<String> partitionable_tables) {
+        String partitioned_table = null;
+        for (Map.Entry<String, List<String[]>> entry : source_selects.entrySet()) {
+            if (!disjoint_tables.contains(entry.getKey()) || !partitionable_tables.contains(entry.getKey())
+                    || entry.getValue().size() < 2) continue;
+            if (partitioned_table == null || entry.getValue().size() > source_selects.get(partitioned_table).size())
+                partitioned_table = entry.getKey();
+        }
+        if (partitioned_table == null) return null;
+        // Bases de données des autres tables, communes à toutes les requêtes partielles
+        List<String> shared_databases = new ArrayList<>();
+        for (Map.Entry<String, List<String[]>> entry : source_selects.entrySet())
+            if (!entry.getKey().equals(partitioned_table))
+                for (String[] select : entry.getValue()) shared_databases.add(select[1]);
+        List<QueryPlan.Partition> partitions = new ArrayList<>();
+        for (String[] select : source_selects.get(partitioned_table)) {
+            Map<String, String> partition_views = new LinkedHashMap<>(views);
+            partition_views.put(partitioned_table, select[0]);
+            List<String> partition_databases = new ArrayList<>(shared_databases);
+            partition_databases.add(select[1]);
+            partitions.add(new QueryPlan.Partition(composeRequest(normalized, scans, partition_views, rewrites,
+                    join_order), partition_databases));
+        }
+        return partitions;
+    }
+
+    /**
+     * Compiler le parcours du cache colonnaire d'une requête portant sur une table fréquemment interrogée
+     *
+     * @param catalog catalogue lu par la requête
+     * @param plan    plan logique de la requête
+     * @param scans   parcours du plan logique
+     * @return parcours, ou null si la requête doit être évaluée par SQLite
+     */
+    private ColumnarScan compileColumnarScan(Catalog catalog, LogicalPlan plan, List<LogicalPlan.Scan> scans) {
+        if (scans.size() != 1) return null;
+        String table = scans.get(0).table;
+        if (!hot_tables.contains(table)) return null;
+        List<ColumnarTable> table_sources = new ArrayList<>();
+        for (Wrapper wrapper : catalog.getSources(table)) {
+            ColumnarTable columnar_table = columnar_tables.get(wrapper);
+            if (columnar_table == null) return null;
+            table_sources.add(columnar_table);
+        }
+        // L'élimination des doublons entre sources (UNION) reste à la charge de SQLite
+        if (table_sources.isEmpty() || table_sources.size() > 1 && !disjoint_tables.contains(table)) return null;
+        return ColumnarScan.compile(plan, catalog.tables_attributes.get(table), table_sources);
+    }
+
+    /**
+     * Préparer la boîte englobante d'un prédicat de proximité : chaque table comparée doit avoir un index spatial
+     * sur toutes ses sources ; une table issue d'une seule source, dont le prédicat peut filtrer les tuples,
+     * expose alors les bornes de son index (sa sous-requête est fusionnée par SQLite dans la requête globale,
+     * ce qui permet une jointure sur l'index)
+     *
+     * @param catalog        catalogue lu par la requête
+     * @param spatial        prédicat de proximité
+     * @param targets        parcours dont le prédicat peut filtrer les tuples
+     * @param plan           plan logique
+     * @param query_elements éléments obtenus à partir de la requête SQL
+     * @param indexed_tables ensemble à compléter avec les tables exposant les bornes de leur index
+     * @return conditions de la boîte englobante, ou null si les sources ne sont pas indexées
+     */
+    private String prepareSpatialPredicate(Catalog catalog, SpatialPredicate spatial, Set<LogicalPlan.Scan> targets,
+                                           LogicalPlan plan, Map<String, List<String>> query_elements,
+                                           Set<String> indexed_tables) {
+        // Les colonnes de l'index ne doivent pas être comparées par une jointure naturelle
+        boolean exposable = !containsNaturalJoin(plan);
+        double max_latitude = 0;
+        Set<String> single_source_tables = new HashSet<>();
+        for (LogicalPlan.Scan scan : spatial.getScans()) {
+            String table = scan.table;
+            int table_sources = 0;
+            MaterializedView view = getMaterializedView(table);
+            if (view != null) {
+                // Vue sans élimination des doublons : lue comme une source unique, indexée si elle a des coordonnées
+                if (view.spatial_bounds == null || isDistinctView(catalog, table)) return null;
+                max_latitude = Math.max(max_latitude, Math.max(Math.abs(view.spatial_bounds[0]),
+                        Math.abs(view.spatial_bounds[1])));
+                table_sources = 1;
+            } else for (Wrapper wrapper : catalog.getSources(table)) {
+                if (wrapper.spatial_bounds == null) return null;
+                max_latitude = Math.max(max_latitude, Math.max(Math.abs(wrapper.spatial_bounds[0]),
+                        Math.abs(wrapper.spatial_bounds[1])));
+                table_sources++;
+            }
+            // Les colonnes de l'index ne doivent pas apparaître dans le résultat d'un SELECT *
+            if (exposable && targets.contains(scan) && table_sources == 1
+                    && !query_elements.get(table).get(0).equals("*"))
+                single_source_tables.add(table);
+        }
+        indexed_tables.addAll(single_source_tables);
+        return spatial.render(single_source_tables, max_latitude);
+    }
 
-        // Récupération des tables et attributs depuis la requête
-        List<String> tables = retrieveSQLQueryTables(sql_request);
-        List<String> attributes = retrieveSQLQueryAttributes(sql_request);
+    /**
+     * Vérifier si la lecture de la vue matérialisée d'une table doit éliminer les doublons,
+     * comme l'union de plusieurs sources non déclarées disjointes
+     *
+     * @param catalog catalogue lu par la requête
+     * @param table   table globale
+     * @return vrai si la sous-requête de la vue est un SELECT DISTINCT
+     */
+    private boolean isDistinctView(Catalog catalog, String table) {
+        if (disjoint_tables.contains(table)) return false;
+        return catalog.getSources(table).size() > 1;
+    }
 
-        // Séparation des attributs groupés (par exemple ceux dans une fonction)
-        splitGroupedAttributes(attributes);
+    /**
+     * Vérifier si un plan contient une jointure naturelle, y compris dans ses sous-requêtes
+     *
+     * @param plan plan logique
+     * @return vrai si une jointure est naturelle
+     */
+    private static boolean containsNaturalJoin(LogicalPlan plan) {
+        if (plan instanceof LogicalPlan.Join && ((LogicalPlan.Join) plan).natural) return true;
+        for (LogicalPlan input : plan.getInputs())
+            if (containsNaturalJoin(input)) return true;
+        Deque<SQLExpression> expressions = new ArrayDeque<>(plan.getExpressions());
+        while (!expressions.isEmpty()) {
+            SQLExpression expression = expressions.pop();
+            if (expression instanceof SQLExpression.Subquery && ((SQLExpression.Subquery) expression).plan != null
+                    && containsNaturalJoin(((SQLExpression.Subquery) expression).plan)) return true;
+            expressions.addAll(expression.getChildren());
+        }
+        return false;
+    }
 
-        // Reformatage des attributs
-        reformatAttributes(attributes);
+    /**
+     * Composer la requête exécutable : chaque table globale parcourue
+     * est remplacée par sa sous-requête décomposée ; si un ordre de jointure est fourni, la clause FROM
+     * est réécrite en CROSS JOIN successifs, que SQLite parcourt dans l'ordre donné
+     *
+     * @param normalized requête normalisée
+     * @param scans      parcours du plan logique
+     * @param views      sous-requêtes décomposées par table
+     * @param rewrites   textes remplaçant certains lexèmes de la requête
+     * @param join_order ordre des jointures (null pour conserver la clause FROM)
+     * @return requête exécutable
+     */
+    private String composeRequest(NormalizedQuery normalized, List<LogicalPlan.Scan> scans, Map<String, String> views,
+                                  Map<SQLTokenizer.Token, String> rewrites, JoinPlanner.JoinOrder join_order) {
+        Map<SQLTokenizer.Token, String> replacements = new IdentityHashMap<>(rewrites);
+        for (LogicalPlan.Scan scan : scans)
+            replacements.put(scan.token, "(\n" + views.get(scan.table) + "\n)" +
+                    (scan.alias == null ? " AS " + scan.token.text : ""));
+        if (join_order != null) {
+            StringJoiner from = new StringJoiner("\nCROSS JOIN ");
+            for (LogicalPlan.Scan scan : join_order.scans) from.add(render(scan.tokens, replacements));
+            // Les conditions ON des jointures internes sont évaluées une fois toutes les tables jointes
+            StringJoiner conditions = new StringJoiner(" AND ", "\nON ", "");
+            for (SQLExpression condition : join_order.conditions)
+                conditions.add("(" + render(condition.tokens, replacements) + ")");
+            String clause = from + (join_order.conditions.isEmpty() ? "" : conditions.toString());
+            for (SQLTokenizer.Token token : join_order.from_tokens) replacements.put(token, "");
+            replacements.put(join_order.from_tokens.get(0), clause);
+        }
+        List<SQLTokenizer.Token> composed = new ArrayList<>(normalized.tokens.size());
+        for (SQLTokenizer.Token token : normalized.tokens) {
+            if (replacements.containsKey(token))
+                token = new SQLTokenizer.Token(token.type, replacements.get(token), token.position);
+            composed.add(token);
+        }
+        return SQLTokenizer.splice(normalized.query, normalized.source_tokens, composed);
+    }
 
-        // Vérification et filtrage des attributs par table
-        return verifyAndFilterAttributes(tables, attributes);
+    /**
+     * Écrire une suite de lexèmes en appliquant leurs remplacements
+     *
+     * @param tokens       lexèmes
+     * @param replacements textes remplaçant certains lexèmes
+     * @return texte
+     */
+    private static String render(List<SQLTokenizer.Token> tokens, Map<SQLTokenizer.Token, String> replacements) {
+        StringJoiner sj = new StringJoiner(" ");
+        for (SQLTokenizer.Token token : tokens) sj.add(replacements.getOrDefault(token, token.text));
+        return sj.toString();
+    }
+
+    /**
+     * Fermer les connexions du médiateur
+     */
+    public void close() {
+        if (ingestion_executor != null) ingestion_executor.shutdown();
+        if (admission_executor != null) admission_executor.shutdown();
+        if (query_executor != null) query_executor.shutdown();
+        index_advisor.close();
+        connection_pool.close();
+        if (metrics_endpoint != null) metrics_endpoint.stop(0);
     }
 
     /**
      * Décomposer une requête SQL
      *
+     * @param catalog        catalogue lu par la requête
      * @param query_elements éléments obtenus à partir de la requête SQL
-     * @return requête décomposée et optimisée
+     * @param predicates     prédicats à pousser dans les sources, par table
+     * @param indexed_tables tables dont la sous-requête expose les bornes de l'index spatial
+     * @param databases      liste à remplir avec les bases de données des sources utilisées
+     * @param source_selects à remplir avec la sous-requête de chaque source et sa base de données, par table
+     * @return sous-requêtes décomposées et optimisées par table globale
      */
-    private String decomposeRequest(Map<String, List<String>> query_elements) {
+    private Map<String, String> decomposeRequest(Catalog catalog, Map<String, List<String>> query_elements,
+                                                 Map<String, List<Predicate>> predicates, Set<String> indexed_tables,
+                                                 List<String> databases, Map<String, List<String[]>> source_selects) {
         if (debug_mode) System.out.println("> Décomposition de la requête...");
-        // Initialisation des requêtes SQL pour la création des vues
-        Map<String, StringBuilder> tables_views = new HashMap<>();
+        // Initialisation des sous-requêtes de chaque table
+        Map<String, List<String>> tables_selects = new LinkedHashMap<>();
         for (String table : query_elements.keySet())
-            tables_views.put(table, new StringBuilder("CREATE TEMP VIEW " + table + " AS\n"));
+            tables_selects.put(table, new ArrayList<>());
+
+        // Tables lues dans leur vue matérialisée
+        for (String table : query_elements.keySet()) {
+            MaterializedView view = getMaterializedView(table);
+            if (view == null) continue;
+            List<Wrapper> table_sources = catalog.getSources(table);
+            Collection<String> attributes = query_elements.get(table).get(0).equals("*") ?
+                    catalog.tables_attributes.get(table) : query_elements.get(table);
+            String query = view.select(attributes, isDistinctView(catalog, table), indexed_tables.contains(table),
+                    predicates.getOrDefault(table, List.of()), table_sources);
+            tables_selects.get(table).add(query);
+            source_selects.computeIfAbsent(table, key -> new ArrayList<>())
+                    .add(new String[]{query, MaterializedView.DB_NAME});
+            databases.add(MaterializedView.DB_NAME);
+        }
 
         // Récupération des wrappers utiles pour la requête
         List<Wrapper> useful_wrappers = new ArrayList<>();
-        for (Wrapper wrapper : sources)
-            if (query_elements.containsKey(wrapper.table_name))
+        for (Wrapper wrapper : catalog.sources)
+            if (query_elements.containsKey(wrapper.table_name) && getMaterializedView(wrapper.table_name) == null)
                 useful_wrappers.add(wrapper);
 
-        // Remplissage des requêtes avec chaque wrapper et attributs utiles
+        // Tables dont une source ne peut pas projeter ses tuples : toutes les sources fournissent tous les attributs
+        Set<String> unprojected_tables = new HashSet<>();
+        for (Wrapper wrapper : useful_wrappers)
+            if (!wrapper.getCapabilities().contains(Wrapper.Capability.PROJECTION_PUSHDOWN))
+                unprojected_tables.add(wrapper.table_name);
+
+        // Remplissage des requêtes avec chaque wrapper, attributs et prédicats utiles
+        Map<String, String> empty_selects = new HashMap<>();
+        Map<String, String> empty_databases = new HashMap<>();
         for (Wrapper wrapper : useful_wrappers) {
-            StringBuilder query = tables_views.get(wrapper.table_name);
-            query.append("  SELECT ");
-            if (query_elements.get(wrapper.table_name).get(0).equals("*")) {
-                query.append("*");
-            } else {
-                for (String attribute : query_elements.get(wrapper.table_name)) {
-                    if (wrapper.attributes.contains(attribute)) query.append(attribute + ",");
-                    else query.append("NULL,");
-                }
-                query.setLength(query.length() - 1);
+            StringBuilder query = new StringBuilder("  SELECT ");
+            // Tous les attributs de la table globale : les sources doivent fournir les mêmes colonnes
+            Collection<String> attributes = query_elements.get(wrapper.table_name).get(0).equals("*")
+                    || unprojected_tables.contains(wrapper.table_name) ?
+                    catalog.tables_attributes.get(wrapper.table_name) : query_elements.get(wrapper.table_name);
+            for (String attribute : attributes) {
+                if (wrapper.attributes.contains(attribute)) query.append(attribute + ",");
+                else query.append("NULL AS " + attribute + ",");
+            }
+            query.setLength(query.length() - 1);
+            query.append("\n  FROM " + wrapper.db_name + ".");
+            // Table de la source nommée comme la table globale (les conditions désignent la table globale)
+            if (wrapper.getSourceTable().equals(wrapper.table_name)) query.append(wrapper.table_name);
+            else query.append("\"" + wrapper.getSourceTable() + "\" AS " + wrapper.table_name);
+            List<String> conditions = new ArrayList<>();
+            if (indexed_tables.contains(wrapper.table_name)) {
+                // Jointure avec l'index spatial de la source, dont les bornes sont exposées
+                query.insert(query.indexOf("\n  FROM"), "," + String.join(",", Wrapper.SPATIAL_MIN_LATITUDE,
+                        Wrapper.SPATIAL_MAX_LATITUDE, Wrapper.SPATIAL_MIN_LONGITUDE, Wrapper.SPATIAL_MAX_LONGITUDE));
+                query.append(", " + wrapper.db_name + ".\"" + wrapper.table_name + Wrapper.SPATIAL_INDEX_SUFFIX + "\"");
+                conditions.add(Wrapper.SPATIAL_ROWID + " = " + wrapper.table_name + ".ROWID");
             }
-            query.append("\n  FROM S" + sources.indexOf(wrapper) + "." + wrapper.table_name + "\nUNION\n");
-        }
-
-        // Requête finale
-        StringBuilder views_query = new StringBuilder();
 
-        // Attachement des bases de données utilisées par les vues afin de parcourir les tables utilisées
-        for (Wrapper wrapper : useful_wrappers) {
-            String db_name = "S" + sources.indexOf(wrapper);
-            views_query.append("ATTACH '" + db_name + ".db' AS " + db_name + ";\n");
+            // Une source dont les attributs ne peuvent pas satisfaire un prédicat est ignorée ; les prédicats
+            // ne sont transmis qu'aux sources qui les évaluent (la requête globale les évalue de nouveau)
+            boolean filter_pushdown = wrapper.getCapabilities().contains(Wrapper.Capability.FILTER_PUSHDOWN);
+            for (Predicate predicate : predicates.getOrDefault(wrapper.table_name, List.of())) {
+                String condition = predicate.render(wrapper.attributes);
+                if (condition == null) {
+                    conditions = null;
+                    break;
+                }
+                if (filter_pushdown) conditions.add(condition);
+            }
+            if (conditions == null) {
+                if (debug_mode) System.out.println("> Source " + wrapper.db_name + " ignorée.");
+                empty_selects.putIfAbsent(wrapper.table_name, query + "\n  WHERE 0");
+                empty_databases.putIfAbsent(wrapper.table_name, wrapper.db_name);
+                continue;
+            }
+            if (!conditions.isEmpty()) query.append("\n  WHERE " + String.join("\n    AND ", conditions));
+            tables_selects.get(wrapper.table_name).add(query.toString());
+            source_selects.computeIfAbsent(wrapper.table_name, table -> new ArrayList<>())
+                    .add(new String[]{query.toString(), wrapper.db_name});
+            databases.add(wrapper.db_name);
         }
-        views_query.append("\n");
 
-        // Regroupement de toutes les requêtes de vues
-        for (StringBuilder query : tables_views.values()) {
-            query.setLength(query.length() - 7);
-            views_query.append(query + ";\n\n");
+        // Regroupement des sous-requêtes (les bases de données utilisées sont attachées par la réserve de connexions)
+        Map<String, String> views = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : tables_selects.entrySet()) {
+            String table = entry.getKey();
+            List<String> selects = entry.getValue();
+            if (selects.isEmpty()) {
+                // Aucune source ne peut fournir de tuple : sous-requête vide conservant les attributs
+                selects.add(empty_selects.get(table));
+                databases.add(empty_databases.get(table));
+            }
+            // Une seule source ou des sources disjointes : pas d'élimination des doublons entre sources
+            String union = disjoint_tables.contains(table) ? "\nUNION ALL\n" : "\nUNION\n";
+            views.put(table, String.join(union, selects));
         }
-        views_query.setLength(views_query.length() - 1);
-
-        return views_query.toString();
+        return views;
     }
 
     /**
-     * Créer une fonction SQL
+     * Créer une fonction SQL disponible sur toutes les connexions du médiateur
      *
      * @param name     nom de la fonction
-     * @param function fonction
+     * @param function fabrique de la fonction (une instance est créée par connexion)
+     */
+    public void createSQLFunction(String name, Supplier<Function> function) {
+        if (function.get() instanceof Function.Aggregate) aggregate_functions.add(name.toUpperCase());
+        connection_pool.registerFunction(name, function);
+        if (result_cache != null) result_cache.clear();
+    }
+
+    /**
+     * Source en cours d'intégration
      */
-    public void createSQLFunction(String name, Function function) {
-        JDBC.createSQLFunction(null, name, function);
+    private static class PendingSource {
+        /**
+         * Table globale de la source
+         */
+        final String table;
+
+        /**
+         * Intégration suivie de la publication dans le catalogue
+         */
+        final Future<Wrapper> integration;
+
+        PendingSource(String _table, Future<Wrapper> _integration) {
+            table = _table;
+            integration = _integration;
+        }
     }
 }
@@ -0,0 +1,389 @@
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mesures du médiateur (durée des étapes, tuples, caches, appels de DISTANCE), toujours actives :
+ * chaque mesure est un compteur sans verrou, lu uniquement lors de l'export (JMX, point d'accès HTTP ou fichier)
+ * <p>
+ * Les durées sont cumulées par étape : une étape exécutée en parallèle (intégration des sources,
+ * exécution répartie) peut cumuler plus de temps que la durée écoulée
+ */
+public final class Metrics {
+    /**
+     * Préfixe des mesures exportées
+     */
+    private static final String PREFIX = "mediator_";
+
+    /**
+     * Nom de l'objet JMX exposant les mesures
+     */
+    public static final String MBEAN_NAME = "Mediateur:type=Metrics";
+
+    /**
+     * Chemin du point d'accès HTTP
+     */
+    public static final String ENDPOINT_PATH = "/metrics";
+
+    /**
+     * Étapes chronométrées
+     */
+    public enum Stage {
+        /**
+         * Lecture d'un fichier source chargé en mémoire
+         */
+        PARSE,
+        /**
+         * Inférence des types (première passe sur le fichier en mode flux)
+         */
+        TYPE_INFERENCE,
+        /**
+         * Construction de la requête de création de la table d'une source
+         */
+        SQL_BUILD,
+        /**
+         * Insertion des tuples d'une source (lecture du fichier comprise en mode flux)
+         */
+        LOAD,
+        /**
+         * Calcul des statistiques d'une source
+         */
+        ANALYZE,
+        /**
+         * Compilation du plan d'exécution d'une requête (analyse, décomposition, ordre des jointures)
+         */
+        DECOMPOSE,
+        /**
+         * Modification de la structure d'une base de données (tables, index, index spatiaux, vues matérialisées)
+         */
+        DDL,
+        /**
+         * Exécution d'une requête jusqu'à son premier tuple
+         */
+        EXECUTE,
+        /**
+         * Parcours du résultat d'une requête par l'appelant
+         */
+        FETCH;
+
+        /**
+         * Nombre d'exécutions de l'étape
+         */
+        private final LongAdder calls = new LongAdder();
+
+        /**
+         * Durée cumulée (nanosecondes)
+         */
+        private final LongAdder nanos = new LongAdder();
+
+        /**
+         * Durée maximale d'une exécution (nanosecondes)
+         */
+        private final LongAccumulator max_nanos = new LongAccumulator(Math::max, 0);
+
+        /**
+         * Enregistrer une exécution de l'étape
+         *
+         * @param start date de début (System.nanoTime)
+         */
+        public void stop(long start) {
+            record(System.nanoTime() - start);
+        }
+
+        /**
+         * Enregistrer une exécution de l'étape
+         *
+         * @param duration durée (nanosecondes)
+         */
+        public void record(long duration) {
+            calls.increment();
+            nanos.add(duration);
+            max_nanos.accumulate(duration);
+        }
+    }
+
+    /**
+     * Compteurs
+     */
+    public enum Counter {
+        /**
+         * Tuples insérés dans les bases de données sources
+         */
+        ROWS_LOADED,
+        /**
+         * Sources publiées depuis l'instantané du catalogue, sans intégration
+         */
+        SOURCES_RESTORED,
+        /**
+         * Tuples lus dans les résultats des requêtes
+         */
+        ROWS_FETCHED,
+        /**
+         * Requêtes exécutées
+         */
+        QUERIES,
+        /**
+         * Requêtes asynchrones annulées (par l'appelant ou à l'échéance) et rejetées par le contrôle d'admission
+         */
+        QUERIES_CANCELLED,
+        QUERIES_REJECTED,
+        /**
+         * Plans d'exécution trouvés et non trouvés dans le cache des plans
+         */
+        PLAN_CACHE_HITS,
+        PLAN_CACHE_MISSES,
+        /**
+         * Résultats trouvés et non trouvés dans le cache des résultats
+         */
+        RESULT_CACHE_HITS,
+        RESULT_CACHE_MISSES,
+        /**
+         * Requêtes évaluées par le cache colonnaire
+         */
+        COLUMNAR_SCANS,
+        /**
+         * Distances calculées (fonction SQL DISTANCE et prédicats de rayon du cache colonnaire)
+         */
+        DISTANCE_CALLS;
+
+        /**
+         * Valeur
+         */
+        private final LongAdder value = new LongAdder();
+
+        /**
+         * Incrémenter le compteur
+         */
+        public void increment() {
+            value.increment();
+        }
+
+        /**
+         * Ajouter une valeur au compteur
+         *
+         * @param delta valeur
+         */
+        public void add(long delta) {
+            value.add(delta);
+        }
+    }
+
+    /**
+     * Nombre de tuples de chaque source intégrée (source - tuples)
+     */
+    private static final Map<String, Long> SOURCE_ROWS = new ConcurrentHashMap<>();
+
+    /**
+     * Objet JMX enregistré
+     */
+    private static boolean mbean_registered;
+
+    private Metrics() {
+    }
+
+    /**
+     * Date de début d'une étape
+     *
+     * @return date (nanosecondes)
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Enregistrer le nombre de tuples d'une source intégrée
+     *
+     * @param db_name    base de données de la source
+     * @param table_name table globale
+     * @param rows       nombre de tuples
+     */
+    public static void setSourceRows(String db_name, String table_name, long rows) {
+        SOURCE_ROWS.put("source=\"" + db_name + "\",table=\"" + table_name + "\"", rows);
+    }
+
+    /**
+     * Remettre les mesures à zéro (le nombre de tuples des sources est conservé)
+     */
+    public static void reset() {
+        for (Stage stage : Stage.values()) {
+            stage.calls.reset();
+            stage.nanos.reset();
+            stage.max_nanos.reset();
+        }
+        for (Counter counter : Counter.values()) counter.value.reset();
+    }
+
+    /**
+     * Lire toutes les mesures
+     *
+     * @return mesures (nom au format Prometheus, étiquettes comprises - valeur), par étape puis par compteur
+     */
+    public static Map<String, Number> snapshot() {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            String label = "{stage=\"" + stage.name().toLowerCase() + "\"}";
+            metrics.put(PREFIX + "stage_calls_total" + label, stage.calls.sum());
+            metrics.put(PREFIX + "stage_seconds_total" + label, stage.nanos.sum() / 1e9);
+            metrics.put(PREFIX + "stage_max_seconds" + label, stage.max_nanos.get() / 1e9);
+        }
+        for (Counter counter : Counter.values())
+            metrics.put(PREFIX + counter.name().toLowerCase() + "_total", counter.value.sum());
+        metrics.put(PREFIX + "plan_cache_hit_ratio", getRatio(Counter.PLAN_CACHE_HITS, Counter.PLAN_CACHE_MISSES));
+        metrics.put(PREFIX + "result_cache_hit_ratio",
+                getRatio(Counter.RESULT_CACHE_HITS, Counter.RESULT_CACHE_MISSES));
+        for (Map.Entry<String, Long> entry : new TreeMap<>(SOURCE_ROWS).entrySet())
+            metrics.put(PREFIX + "source_rows{" + entry.getKey() + "}", entry.getValue());
+        return metrics;
+    }
+
+    /**
+     * Taux de succès d'un cache
+     *
+     * @param hits   compteur des succès
+     * @param misses compteur des échecs
+     * @return taux (0 si le cache n'a pas été consulté)
+     */
+    private static double getRatio(Counter hits, Counter misses) {
+        long total = hits.value.sum() + misses.value.sum();
+        return total == 0 ? 0 : (double) hits.value.sum() / total;
+    }
+
+    /**
+     * Écrire les mesures au format texte de Prometheus (une mesure par ligne)
+     *
+     * @param writer destination
+     */
+    public static void write(Writer writer) {
+        PrintWriter printer = new PrintWriter(writer);
+        for (Map.Entry<String, Number> metric : snapshot().entrySet())
+            printer.print(metric.getKey() + " " + metric.getValue() + "\n");
+        printer.flush();
+    }
+
+    /**
+     * Écrire les mesures dans un fichier (remplacé de façon atomique pour les lecteurs)
+     *
+     * @param file_path chemin du fichier
+     */
+    public static void writeFile(String file_path) {
+        File file = new File(file_path);
+        File temporary = new File(file.getPath() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporary), StandardCharsets.UTF_8)) {
+            write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Écriture des mesures impossible : " + file_path, e);
+        }
+        if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file)))
+            throw new IllegalStateException("Écriture des mesures impossible : " + file_path);
+    }
+
+    /**
+     * Exposer les mesures par JMX (attributs en lecture seule, nommés comme les mesures exportées)
+     */
+    public static synchronized void registerMBean() {
+        if (mbean_registered) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), new ObjectName(MBEAN_NAME));
+            mbean_registered = true;
+        } catch (JMException e) {
+            System.err.println("ATTENTION : Enregistrement JMX des mesures impossible (" + e.getMessage() + ").");
+        }
+    }
+
+    /**
+     * Démarrer un point d'accès HTTP exposant les mesures au format texte (GET /metrics), accessible
+     * depuis la machine locale seulement
+     *
+     * @param port port (0 pour un port libre)
+     * @return serveur (à arrêter)
+     * @throws IOException port indisponible
+     */
+    public static HttpServer startEndpoint(int port) throws IOException {
+        return startEndpoint(InetAddress.getLoopbackAddress(), port);
+    }
+
+    /**
+     * Démarrer un point d'accès HTTP exposant les mesures au format texte (GET /metrics)
+     *
+     * @param address adresse d'écoute
+     * @param port    port (0 pour un port libre)
+     * @return serveur (à arrêter)
+     * @throws IOException port indisponible
+     */
+    public static HttpServer startEndpoint(InetAddress address, int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        server.createContext(ENDPOINT_PATH, exchange -> {
+            StringWriter body = new StringWriter();
+            write(body);
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Objet JMX dont les attributs sont les mesures, lues à chaque consultation
+     */
+    private static class MetricsMBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = snapshot().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> metrics = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+                if (metrics.containsKey(attribute)) list.add(new Attribute(attribute, metrics.get(attribute)));
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Mesure en lecture seule : " + attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException {
+            if (action.equals("reset")) {
+                reset();
+                return null;
+            }
+            throw new ReflectionException(new NoSuchMethodException(action));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Number> metric : snapshot().entrySet())
+                attributes.add(new MBeanAttributeInfo(metric.getKey(), metric.getValue().getClass().getName(),
+                        metric.getKey(), true, false, false));
+            MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Remettre les mesures à zéro",
+                    new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+            return new MBeanInfo(Metrics.class.getName(), "Mesures du médiateur",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[]{reset}, null);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Requête normalisée : les littéraux des clauses WHERE sont remplacés par des paramètres numérotés
+ * (?1, ?2...) afin que les requêtes de même forme partagent le même plan d'exécution
+ */
+public class NormalizedQuery {
+    /**
+     * Requête d'origine
+     */
+    public final String query;
+
+    /**
+     * Lexèmes de la requête d'origine
+     */
+    public final List<SQLTokenizer.Token> source_tokens;
+
+    /**
+     * Lexèmes de la requête normalisée (mêmes positions que ceux d'origine)
+     */
+    public final List<SQLTokenizer.Token> tokens;
+
+    /**
+     * Texte normalisé (clé du cache des plans)
+     */
+    public final String key;
+
+    /**
+     * Valeurs des paramètres extraits, dans l'ordre de leur numéro
+     */
+    public final List<Object> parameters;
+
+    /**
+     * Constructeur
+     *
+     * @param _query         requête d'origine
+     * @param _source_tokens lexèmes d'origine
+     * @param _tokens        lexèmes normalisés
+     * @param _parameters    valeurs des paramètres
+     */
+    private NormalizedQuery(String _query, List<SQLTokenizer.Token> _source_tokens, List<SQLTokenizer.Token> _tokens,
+                            List<Object> _parameters) {
+        query = _query;
+        source_tokens = _source_tokens;
+        tokens = _tokens;
+        key = SQLTokenizer.splice(_query, _source_tokens, _tokens);
+        parameters = _parameters;
+    }
+
+    /**
+     * Normaliser une requête SQL : les littéraux sont paramétrés dans les clauses WHERE, y compris celles
+     * des sous-requêtes, jamais dans les clauses GROUP BY, HAVING, ORDER BY et LIMIT quelle que soit leur profondeur
+     *
+     * @param query       requête
+     * @param identifiers test d'appartenance d'un nom au catalogue : un texte entre guillemets doubles
+     *                    qui n'est ni une table, ni un attribut, ni un alias est une chaîne de caractères pour SQLite
+     * @return requête normalisée
+     */
+    public static NormalizedQuery of(String query, Predicate<String> identifiers) {
+        List<SQLTokenizer.Token> tokens = SQLTokenizer.tokenize(query);
+        Set<String> aliases = getQuotedAliases(tokens, identifiers);
+        List<SQLTokenizer.Token> normalized = new ArrayList<>(tokens.size());
+        List<Object> parameters = new ArrayList<>();
+        // Clause de chaque niveau de parenthèses englobant : une parenthèse hérite de la clause qui la contient,
+        // une sous-requête commence par sa propre clause SELECT
+        Deque<Boolean> enclosing_clauses = new ArrayDeque<>();
+        boolean in_where = false;
+        for (int i = 0; i < tokens.size(); i++) {
+            SQLTokenizer.Token token = tokens.get(i);
+            if (token.isOperator("(")) enclosing_clauses.push(in_where);
+            else if (token.isOperator(")")) {
+                if (!enclosing_clauses.isEmpty()) in_where = enclosing_clauses.pop();
+            } else if (token.type == SQLTokenizer.TokenType.IDENTIFIER) {
+                // Seuls les littéraux des filtres sont paramétrés (GROUP BY 1 ou LIMIT 10 changent la forme)
+                if (token.is("WHERE")) in_where = true;
+                else if (token.is("SELECT") || token.is("GROUP") || token.is("ORDER") || token.is("LIMIT")
+                        || token.is("HAVING") || token.is("UNION") || token.is("EXCEPT") || token.is("INTERSECT"))
+                    in_where = false;
+            }
+            Object value = null;
+            if (in_where) {
+                if (token.type == SQLTokenizer.TokenType.STRING) value = token.unquoted();
+                else if (token.type == SQLTokenizer.TokenType.NUMBER) value = token.number();
+                else if (isQuotedString(tokens, i, aliases, identifiers)) value = token.unquoted();
+            }
+            if (value != null) {
+                parameters.add(value);
+                normalized.add(new SQLTokenizer.Token(SQLTokenizer.TokenType.PARAMETER,
+                        "?" + parameters.size(), token.position));
+            } else normalized.add(token);
+        }
+        return new NormalizedQuery(query, tokens, normalized, parameters);
+    }
+
+    /**
+     * Obtenir les noms entre guillemets doubles déclarés comme alias dans une requête : qualificatifs (suivis
+     * d'un point), noms suivant AS et alias de table sans AS dans une clause FROM ou JOIN
+     *
+     * @param tokens      lexèmes de la requête
+     * @param identifiers test d'appartenance d'un nom au catalogue
+     * @return alias, en majuscules
+     */
+    private static Set<String> getQuotedAliases(List<SQLTokenizer.Token> tokens, Predicate<String> identifiers) {
+        Set<String> aliases = new HashSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            SQLTokenizer.Token token = tokens.get(i);
+            if (!isDoubleQuoted(token)) continue;
+            boolean qualifier = i + 1 < tokens.size() && tokens.get(i + 1).isOperator(".");
+            SQLTokenizer.Token previous = i > 0 ? tokens.get(i - 1) : null;
+            boolean named = previous != null && previous.is("AS");
+            boolean table_alias = i > 1 && (previous.type == SQLTokenizer.TokenType.IDENTIFIER
+                    || previous.type == SQLTokenizer.TokenType.QUOTED_IDENTIFIER)
+                    && identifiers.test(previous.unquoted()) && (tokens.get(i - 2).is("FROM")
+                    || tokens.get(i - 2).is("JOIN") || tokens.get(i - 2).isOperator(","));
+            if (qualifier || named || table_alias) aliases.add(token.unquoted().toUpperCase());
+        }
+        return aliases;
+    }
+
+    /**
+     * Vérifier si un texte entre guillemets doubles est une chaîne de caractères pour SQLite : il ne peut désigner
+     * ni une table, ni un attribut, ni un alias, et n'est ni qualifiant ni qualifié
+     *
+     * @param tokens      lexèmes de la requête
+     * @param index       position du lexème
+     * @param aliases     alias entre guillemets doubles déclarés dans la requête
+     * @param identifiers test d'appartenance d'un nom au catalogue
+     * @return vrai si le lexème est une chaîne de caractères
+     */
+    private static boolean isQuotedString(List<SQLTokenizer.Token> tokens, int index, Set<String> aliases,
+                                          Predicate<String> identifiers) {
+        SQLTokenizer.Token token = tokens.get(index);
+        if (!isDoubleQuoted(token)) return false;
+        if (index + 1 < tokens.size() && tokens.get(index + 1).isOperator(".")) return false;
+        if (index > 0 && tokens.get(index - 1).isOperator(".")) return false;
+        String name = token.unquoted();
+        return !aliases.contains(name.toUpperCase()) && !identifiers.test(name);
+    }
+
+    /**
+     * Vérifier si un lexème est un nom entre guillemets doubles
+     *
+     * @param token lexème
+     * @return vrai si le lexème est entre guillemets doubles
+     */
+    private static boolean isDoubleQuoted(SQLTokenizer.Token token) {
+        return token.type == SQLTokenizer.TokenType.QUOTED_IDENTIFIER && token.text.charAt(0) == '"';
+    }
+}
@@ -0,0 +1,207 @@
+import java.util.*;
+
+/**
+ * Prédicat de la clause WHERE ou d'une condition de jointure (terme d'une conjonction) portant sur une seule
+ * table globale, pouvant être poussé dans les sous-requêtes de ses sources
+ */
+public class Predicate {
+    /**
+     * Opérateurs pour lesquels une valeur nulle ne rejette pas forcément le tuple
+     */
+    private static final Set<String> NULL_TOLERANT_OPERATORS = Set.of("OR", "IS", "IS NOT", "ISNULL", "NOTNULL",
+            "CASE");
+
+    /**
+     * Comparaisons d'égalité pouvant être évaluées par un index
+     */
+    private static final Set<String> INDEX_EQUALITY_OPERATORS = Set.of("=", "==", "IS", "IN");
+
+    /**
+     * Comparaisons d'intervalle pouvant être évaluées par un index
+     */
+    private static final Set<String> INDEX_RANGE_OPERATORS = Set.of("<", "<=", ">", ">=", "BETWEEN");
+
+    /**
+     * Table globale concernée
+     */
+    public final String table;
+
+    /**
+     * Lexèmes du prédicat
+     */
+    private final List<SQLTokenizer.Token> tokens;
+
+    /**
+     * Position des références aux attributs dans les lexèmes (indice du lexème - attribut)
+     */
+    private final Map<Integer, String> references;
+
+    /**
+     * Indices des lexèmes de qualification à supprimer (table et point)
+     */
+    private final Set<Integer> qualifiers;
+
+    /**
+     * Le prédicat est faux ou nul dès qu'un attribut référencé est nul
+     */
+    public final boolean null_rejecting;
+
+    /**
+     * Attribut comparé à des constantes, dont les tuples peuvent être recherchés par un index (null sinon)
+     */
+    public final String index_attribute;
+
+    /**
+     * Comparaison d'égalité (=, IS, IN) : l'attribut peut précéder d'autres attributs dans un index composite
+     */
+    public final boolean equality;
+
+    /**
+     * Constructeur
+     *
+     * @param _table           table globale
+     * @param _tokens          lexèmes
+     * @param _references      références aux attributs
+     * @param _qualifiers      lexèmes de qualification
+     * @param _null_rejecting  prédicat rejetant les valeurs nulles
+     * @param _index_attribute attribut pouvant être recherché par un index (ou null)
+     * @param _equality        comparaison d'égalité
+     */
+    private Predicate(String _table, List<SQLTokenizer.Token> _tokens, Map<Integer, String> _references,
+                      Set<Integer> _qualifiers, boolean _null_rejecting, String _index_attribute, boolean _equality) {
+        table = _table;
+        tokens = _tokens;
+        references = _references;
+        qualifiers = _qualifiers;
+        null_rejecting = _null_rejecting;
+        index_attribute = _index_attribute;
+        equality = _equality;
+    }
+
+    /**
+     * Attributs référencés par le prédicat
+     *
+     * @return attributs
+     */
+    public Collection<String> getAttributes() {
+        return references.values();
+    }
+
+    /**
+     * Extraire les prédicats pouvant être poussés vers les sources, par table globale
+     *
+     * @param conjuncts termes d'une conjonction (clause WHERE ou condition de jointure)
+     * @param scans     parcours vers lesquels un terme peut être poussé
+     * @return prédicats par table
+     */
+    public static Map<String, List<Predicate>> extract(List<SQLExpression> conjuncts, Set<LogicalPlan.Scan> scans) {
+        Map<String, List<Predicate>> predicates = new HashMap<>();
+        for (SQLExpression conjunct : conjuncts) {
+            Predicate predicate = analyze(conjunct, scans);
+            if (predicate != null)
+                predicates.computeIfAbsent(predicate.table, table -> new ArrayList<>()).add(predicate);
+        }
+        return predicates;
+    }
+
+    /**
+     * Analyser un terme : il peut être poussé s'il ne référence que des attributs d'un seul parcours
+     *
+     * @param conjunct terme
+     * @param scans    parcours vers lesquels le terme peut être poussé
+     * @return prédicat, ou null s'il ne peut pas être poussé
+     */
+    private static Predicate analyze(SQLExpression conjunct, Set<LogicalPlan.Scan> scans) {
+        LogicalPlan.Scan scan = null;
+        Map<Integer, String> references = new HashMap<>();
+        Set<Integer> qualifiers = new HashSet<>();
+        boolean null_rejecting = true;
+        Deque<SQLExpression> expressions = new ArrayDeque<>(List.of(conjunct));
+        while (!expressions.isEmpty()) {
+            SQLExpression expression = expressions.pop();
+            // Sous-requête : non prise en charge
+            if (expression instanceof SQLExpression.Subquery) return null;
+            // Une fonction peut renvoyer une valeur non nulle à partir d'une valeur nulle
+            if (expression instanceof SQLExpression.Function || expression instanceof SQLExpression.Operation
+                    && NULL_TOLERANT_OPERATORS.contains(((SQLExpression.Operation) expression).operator))
+                null_rejecting = false;
+            if (expression instanceof SQLExpression.Column) {
+                SQLExpression.Column column = (SQLExpression.Column) expression;
+                // Alias du résultat ou attribut d'une sous-requête de la clause FROM
+                if (column.scan == null || scan != null && scan != column.scan) return null;
+                scan = column.scan;
+                int index = indexOf(conjunct.tokens, column.tokens.get(column.tokens.size() - 1));
+                // Lexèmes de qualification (table et point) à supprimer
+                for (int i = index - column.tokens.size() + 1; i < index; i++) qualifiers.add(i);
+                references.put(index, column.name.toUpperCase());
+            }
+            expressions.addAll(expression.getChildren());
+        }
+        if (scan == null || !scans.contains(scan)) return null;
+        SQLExpression.Column index_column = getIndexColumn(conjunct);
+        return new Predicate(scan.table, conjunct.tokens, references, qualifiers, null_rejecting,
+                index_column == null ? null : index_column.name.toUpperCase(),
+                index_column != null && INDEX_EQUALITY_OPERATORS.contains(((SQLExpression.Operation) conjunct).operator));
+    }
+
+    /**
+     * Obtenir l'attribut d'une comparaison avec des constantes pouvant être évaluée par un index
+     * (attribut = constante, attribut IN (constantes), attribut BETWEEN constante AND constante...)
+     *
+     * @param conjunct terme
+     * @return attribut, ou null
+     */
+    private static SQLExpression.Column getIndexColumn(SQLExpression conjunct) {
+        if (!(conjunct instanceof SQLExpression.Operation)) return null;
+        SQLExpression.Operation operation = (SQLExpression.Operation) conjunct;
+        if (!INDEX_EQUALITY_OPERATORS.contains(operation.operator)
+                && !INDEX_RANGE_OPERATORS.contains(operation.operator)) return null;
+        List<SQLExpression> operands = operation.operands;
+        // Comparaison binaire : l'attribut peut être de chaque côté
+        int column_index = operands.size() == 2 && !operation.operator.equals("IN")
+                && !(operands.get(0) instanceof SQLExpression.Column) ? 1 : 0;
+        if (!(operands.get(column_index) instanceof SQLExpression.Column)) return null;
+        for (int i = 0; i < operands.size(); i++) {
+            if (i == column_index) continue;
+            SQLExpression operand = operands.get(i);
+            if (operand instanceof SQLExpression.Subquery || !operand.getColumns().isEmpty()
+                    || operand.containsAggregate()) return null;
+        }
+        return (SQLExpression.Column) operands.get(column_index);
+    }
+
+    /**
+     * Position d'un lexème dans une liste (comparaison par identité)
+     *
+     * @param tokens lexèmes
+     * @param token  lexème recherché
+     * @return position
+     */
+    private static int indexOf(List<SQLTokenizer.Token> tokens, SQLTokenizer.Token token) {
+        for (int i = 0; i < tokens.size(); i++)
+            if (tokens.get(i) == token) return i;
+        throw new IllegalArgumentException(token.text);
+    }
+
+    /**
+     * Écrire le prédicat pour une source : les attributs absents de la source valent NULL
+     *
+     * @param source_attributes attributs de la source
+     * @return prédicat SQL, ou null si aucun tuple de la source ne peut le satisfaire
+     */
+    public String render(Collection<String> source_attributes) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (qualifiers.contains(i)) continue;
+            String text = tokens.get(i).text;
+            String attribute = references.get(i);
+            if (attribute != null && !source_attributes.contains(attribute)) {
+                if (null_rejecting) return null;
+                text = "NULL";
+            }
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(text);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,89 @@
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Annulation d'une requête, demandée par l'appelant ou à l'échéance de la requête : les requêtes SQLite
+ * en cours d'exécution sont interrompues et le parcours du résultat est arrêté
+ */
+public class QueryCancellation {
+    /**
+     * Requêtes SQLite en cours d'exécution (requête principale ou requêtes partielles)
+     */
+    private final Set<Statement> statements;
+
+    /**
+     * Requête annulée
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Constructeur
+     */
+    public QueryCancellation() {
+        statements = new HashSet<>();
+    }
+
+    /**
+     * Annuler la requête (sans effet si elle est déjà annulée)
+     */
+    public synchronized void cancel() {
+        if (cancelled) return;
+        cancelled = true;
+        for (Statement statement : statements) interrupt(statement);
+    }
+
+    /**
+     * Vérifier si la requête est annulée
+     *
+     * @return vrai si la requête est annulée
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Lever une exception si la requête est annulée
+     *
+     * @throws SQLException requête annulée
+     */
+    public void check() throws SQLException {
+        if (cancelled) throw new SQLException("Requête annulée.");
+    }
+
+    /**
+     * Enregistrer une requête SQLite avant son exécution : elle est interrompue si la requête est annulée
+     * (SQLite ignore une interruption demandée avant l'exécution : l'annulation antérieure est levée ici)
+     *
+     * @param statement requête SQLite
+     * @throws SQLException requête déjà annulée
+     */
+    public synchronized void register(Statement statement) throws SQLException {
+        check();
+        statements.add(statement);
+    }
+
+    /**
+     * Retirer une requête SQLite terminée, avant que sa connexion ne soit rendue
+     * (l'interruption porte sur toute la connexion : elle ne doit pas atteindre la requête suivante)
+     *
+     * @param statement requête SQLite
+     */
+    public synchronized void unregister(Statement statement) {
+        statements.remove(statement);
+    }
+
+    /**
+     * Interrompre une requête SQLite
+     *
+     * @param statement requête SQLite
+     */
+    private static void interrupt(Statement statement) {
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plan d'exécution compilé d'une forme de requête : chaque table globale est remplacée par la sous-requête
+ * décomposée sur ses sources, ce qui évite de recréer des vues à chaque exécution
+ */
+public class QueryPlan {
+    /**
+     * Requête normalisée (clé du cache)
+     */
+    public final String normalized_query;
+
+    /**
+     * Sous-requêtes décomposées par table globale
+     */
+    public final Map<String, String> views;
+
+    /**
+     * Requête exécutable (préparée une fois par connexion)
+     */
+    public final String sql;
+
+    /**
+     * Bases de données des sources utilisées
+     */
+    public final List<String> databases;
+
+    /**
+     * Parcours du cache colonnaire évaluant la requête sans SQLite (null si la requête n'y est pas éligible)
+     */
+    public final ColumnarScan columnar_scan;
+
+    /**
+     * Requêtes partielles exécutables en parallèle, une par source de la table partitionnée
+     * (null si le résultat ne peut pas être obtenu par concaténation des résultats partiels)
+     */
+    public final List<Partition> partitions;
+
+    /**
+     * Nombre maximum de tuples du résultat fusionné (-1 sans limite)
+     */
+    public final long partitions_limit;
+
+    /**
+     * Index candidats des sources, dont le gain est cumulé à chaque exécution
+     */
+    public final List<IndexAdvisor.Candidate> index_candidates;
+
+    /**
+     * Tables globales interrogées (leurs sources déterminent la validité d'un résultat conservé)
+     */
+    public final Set<String> tables;
+
+    /**
+     * Requête partielle : la table partitionnée y est réduite à l'une de ses sources
+     */
+    public static class Partition {
+        /**
+         * Requête exécutable
+         */
+        public final String sql;
+
+        /**
+         * Bases de données utilisées
+         */
+        public final List<String> databases;
+
+        /**
+         * Constructeur
+         *
+         * @param _sql       requête exécutable
+         * @param _databases bases de données utilisées
+         */
+        public Partition(String _sql, List<String> _databases) {
+            sql = _sql;
+            databases = _databases;
+        }
+    }
+
+    /**
+     * Constructeur
+     *
+     * @param _normalized_query requête normalisée
+     * @param _views            sous-requêtes décomposées
+     * @param _sql              requête exécutable
+     * @param _databases        bases de données utilisées
+     * @param _columnar_scan     parcours du cache colonnaire (ou null)
+     * @param _partitions        requêtes partielles (ou null)
+     * @param _partitions_limit  nombre maximum de tuples du résultat fusionné (-1 sans limite)
+     * @param _index_candidates  index candidats des sources
+     * @param _tables            tables globales interrogées
+     */
+    public QueryPlan(String _normalized_query, Map<String, String> _views, String _sql, List<String> _databases,
+                     ColumnarScan _columnar_scan, List<Partition> _partitions, long _partitions_limit,
+                     List<IndexAdvisor.Candidate> _index_candidates, Set<String> _tables) {
+        normalized_query = _normalized_query;
+        views = _views;
+        sql = _sql;
+        databases = _databases;
+        columnar_scan = _columnar_scan;
+        partitions = _partitions;
+        partitions_limit = _partitions_limit;
+        index_candidates = _index_candidates;
+        tables = _tables;
+    }
+}
@@ -0,0 +1,336 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Prédicat de rayon DISTANCE(latitude, longitude, attribut latitude, attribut longitude) <= N évalué sur le
+ * cache colonnaire : une boîte englobante est testée sur les tableaux de coordonnées (bande de latitudes
+ * trouvée par dichotomie, ou boucle sans branchement vectorisable), puis Utils.distance n'est calculée
+ * que pour les tuples retenus ; les tuples sont répartis par blocs entre les cœurs
+ */
+public class RadiusFilter {
+    /**
+     * Nombre de mots (64 tuples chacun) d'un bloc traité par un seul fil d'exécution
+     */
+    private static final int CHUNK_WORDS = 256;
+
+    /**
+     * Rapport minimal entre le nombre de tuples et la taille de la bande de latitudes pour la parcourir seule
+     */
+    private static final int BAND_RATIO = 8;
+
+    /**
+     * Attributs de coordonnées de la table
+     */
+    final String latitude_attribute;
+    final String longitude_attribute;
+
+    /**
+     * Position constante passée en premier à la fonction (sinon après les attributs)
+     */
+    private final boolean point_first;
+
+    /**
+     * Paramètres de la position constante et du seuil, signés (1 pour ?1, -1 pour -?1)
+     */
+    private final int[] parameters;
+    private final int[] signs;
+
+    /**
+     * Comparaison stricte (<)
+     */
+    private final boolean strict;
+
+    /**
+     * Constructeur
+     *
+     * @param _latitude_attribute  attribut latitude
+     * @param _longitude_attribute attribut longitude
+     * @param _point_first         position constante en premiers arguments
+     * @param _parameters          paramètres (latitude, longitude, seuil)
+     * @param _signs               signes des paramètres
+     * @param _strict              comparaison stricte
+     */
+    private RadiusFilter(String _latitude_attribute, String _longitude_attribute, boolean _point_first,
+                         int[] _parameters, int[] _signs, boolean _strict) {
+        latitude_attribute = _latitude_attribute;
+        longitude_attribute = _longitude_attribute;
+        point_first = _point_first;
+        parameters = _parameters;
+        signs = _signs;
+        strict = _strict;
+    }
+
+    /**
+     * Analyser un terme de la forme DISTANCE(...) <= N, DISTANCE(...) < N, N >= DISTANCE(...) ou N > DISTANCE(...)
+     * comparant une position constante aux coordonnées de la table
+     *
+     * @param conjunct         terme
+     * @param scan             parcours de la table
+     * @param table_attributes attributs de la table globale
+     * @return prédicat, ou null si le terme n'est pas un prédicat de rayon
+     */
+    static RadiusFilter analyze(SQLExpression conjunct, LogicalPlan.Scan scan, Collection<String> table_attributes) {
+        if (!(conjunct instanceof SQLExpression.Operation)) return null;
+        SQLExpression.Operation comparison = (SQLExpression.Operation) conjunct;
+        if (comparison.operands.size() != 2) return null;
+        SQLExpression call;
+        SQLExpression threshold;
+        boolean strict = comparison.operator.equals("<") || comparison.operator.equals(">");
+        if (comparison.operator.equals("<=") || comparison.operator.equals("<")) {
+            call = comparison.operands.get(0);
+            threshold = comparison.operands.get(1);
+        } else if (comparison.operator.equals(">=") || comparison.operator.equals(">")) {
+            call = comparison.operands.get(1);
+            threshold = comparison.operands.get(0);
+        } else return null;
+        if (!(call instanceof SQLExpression.Function)) return null;
+        SQLExpression.Function function = (SQLExpression.Function) call;
+        if (!function.name.equals(SpatialPredicate.DISTANCE_FUNCTION) || function.window
+                || function.arguments.size() != 4) return null;
+
+        // Arguments : deux constantes et deux attributs, dans un ordre ou dans l'autre
+        List<SQLExpression> arguments = function.arguments;
+        boolean point_first = parameter(arguments.get(0)) != 0;
+        int offset = point_first ? 0 : 2;
+        int[] parameters = new int[3];
+        int[] signs = new int[3];
+        for (int i = 0; i < 3; i++) {
+            int parameter = parameter(i < 2 ? arguments.get(offset + i) : threshold);
+            if (parameter == 0) return null;
+            parameters[i] = Math.abs(parameter) - 1;
+            signs[i] = Integer.signum(parameter);
+        }
+        String latitude = ColumnarScan.resolve(arguments.get(2 - offset), scan, table_attributes);
+        String longitude = ColumnarScan.resolve(arguments.get(3 - offset), scan, table_attributes);
+        if (latitude == null || longitude == null) return null;
+        return new RadiusFilter(latitude, longitude, point_first, parameters, signs, strict);
+    }
+
+    /**
+     * Reconnaître une constante paramétrée, éventuellement signée
+     *
+     * @param expression expression
+     * @return numéro du paramètre (négatif si la constante est précédée de -), ou 0
+     */
+    private static int parameter(SQLExpression expression) {
+        int sign = 1;
+        if (expression instanceof SQLExpression.Operation && expression.getChildren().size() == 1) {
+            String operator = ((SQLExpression.Operation) expression).operator;
+            if (!operator.equals("-") && !operator.equals("+")) return 0;
+            if (operator.equals("-")) sign = -1;
+            expression = expression.getChildren().get(0);
+        }
+        if (!(expression instanceof SQLExpression.Literal) || expression.tokens.size() != 1) return 0;
+        SQLTokenizer.Token token = expression.tokens.get(0);
+        if (token.type != SQLTokenizer.TokenType.PARAMETER || token.text.length() < 2) return 0;
+        return sign * Integer.parseInt(token.text.substring(1));
+    }
+
+    /**
+     * Lier les valeurs des paramètres
+     *
+     * @param values valeurs des paramètres de la requête
+     * @return latitude, longitude et seuil, ou null si une valeur n'est pas numérique
+     */
+    double[] bind(List<Object> values) {
+        double[] bound = new double[3];
+        for (int i = 0; i < 3; i++) {
+            Object value = values.get(parameters[i]);
+            if (!(value instanceof Number)) return null;
+            bound[i] = signs[i] * ((Number) value).doubleValue();
+        }
+        return bound;
+    }
+
+    /**
+     * Vérifier que les coordonnées d'une source sont stockées en réels
+     * (une valeur nulle y vaut 0, comme l'argument reçu par la fonction SQL)
+     *
+     * @param source source
+     * @return vrai si le prédicat peut être évalué sur le cache
+     */
+    boolean supports(ColumnarTable source) {
+        return source.getColumn(latitude_attribute) instanceof Column.DoubleColumn
+                && source.getColumn(longitude_attribute) instanceof Column.DoubleColumn;
+    }
+
+    /**
+     * Restreindre une sélection aux tuples satisfaisant le prédicat : seule la bande de latitudes utile est
+     * parcourue (positions triées par latitude) si elle est étroite, sinon tous les tuples sélectionnés
+     *
+     * @param source    source
+     * @param bound     latitude, longitude et seuil
+     * @param selection tuples sélectionnés
+     * @return tuples retenus
+     */
+    BitSet apply(ColumnarTable source, double[] bound, BitSet selection) {
+        Evaluation evaluation = new Evaluation(source, bound);
+        int[] sorted_rows = source.getSortedRows(latitude_attribute);
+        int from = evaluation.lowerBound(sorted_rows, bound[0] - evaluation.latitude_delta);
+        int to = evaluation.lowerBound(sorted_rows, Math.nextUp(bound[0] + evaluation.latitude_delta));
+        if ((long) (to - from) * BAND_RATIO < source.row_count)
+            return ForkJoinPool.commonPool().invoke(evaluation.new BandTask(sorted_rows, selection, from, to));
+        long[] words = Arrays.copyOf(selection.toLongArray(), (source.row_count + 63) >>> 6);
+        ForkJoinPool.commonPool().invoke(evaluation.new ScanTask(words, 0, words.length));
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Évaluation du prédicat sur une source : boîte englobante puis distance exacte
+     */
+    private class Evaluation {
+        final double[] latitudes;
+        final double[] longitudes;
+        final int row_count;
+        final double latitude;
+        final double longitude;
+        final double threshold;
+        final double latitude_delta;
+        final double longitude_delta;
+
+        /**
+         * Constructeur
+         *
+         * @param source source
+         * @param bound  latitude, longitude et seuil
+         */
+        Evaluation(ColumnarTable source, double[] bound) {
+            latitudes = ((Column.DoubleColumn) source.getColumn(latitude_attribute)).values;
+            longitudes = ((Column.DoubleColumn) source.getColumn(longitude_attribute)).values;
+            row_count = source.row_count;
+            latitude = bound[0];
+            longitude = bound[1];
+            threshold = bound[2];
+            // L'écart de latitude est borné par la distance, celui de longitude par la distance
+            // divisée par le cosinus minimal de la latitude moyenne
+            latitude_delta = Math.toDegrees((threshold + SpatialPredicate.MARGIN) / SpatialPredicate.EARTH_RADIUS);
+            double cosine = Math.cos(Math.toRadians(Math.min(90, Math.abs(latitude) + latitude_delta)));
+            longitude_delta = cosine > 1e-9 ? latitude_delta / cosine : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * Rechercher la première position triée dont la latitude n'est pas inférieure à une valeur
+         *
+         * @param sorted_rows positions triées par latitude
+         * @param value       latitude
+         * @return position dans le tri
+         */
+        int lowerBound(int[] sorted_rows, double value) {
+            int low = 0;
+            int high = sorted_rows.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (latitudes[sorted_rows[middle]] < value) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+        /**
+         * Calculer la distance exacte d'un tuple, comme la fonction SQL
+         *
+         * @param row position
+         * @return vrai si le tuple est dans le rayon
+         */
+        boolean matches(int row) {
+            double distance = point_first ?
+                    Utils.distance(latitude, longitude, latitudes[row], longitudes[row]) :
+                    Utils.distance(latitudes[row], longitudes[row], latitude, longitude);
+            return strict ? distance < threshold : distance <= threshold;
+        }
+
+        /**
+         * Parcours de la bande de latitudes, découpée en blocs traités en parallèle
+         */
+        @SuppressWarnings("serial")
+        private class BandTask extends RecursiveTask<BitSet> {
+            private final int[] sorted_rows;
+            private final BitSet selection;
+            private final int from;
+            private final int to;
+
+            BandTask(int[] _sorted_rows, BitSet _selection, int _from, int _to) {
+                sorted_rows = _sorted_rows;
+                selection = _selection;
+                from = _from;
+                to = _to;
+            }
+
+            @Override
+            protected BitSet compute() {
+                if (to - from > CHUNK_WORDS * 64) {
+                    int middle = (from + to) >>> 1;
+                    BandTask right = new BandTask(sorted_rows, selection, middle, to);
+                    right.fork();
+                    BitSet result = new BandTask(sorted_rows, selection, from, middle).compute();
+                    result.or(right.join());
+                    return result;
+                }
+                BitSet result = new BitSet(row_count);
+                int computed = 0;
+                for (int i = from; i < to; i++) {
+                    int row = sorted_rows[i];
+                    double longitude_gap = longitudes[row] - longitude;
+                    if (longitude_gap <= longitude_delta && longitude_gap >= -longitude_delta && selection.get(row)) {
+                        computed++;
+                        if (matches(row)) result.set(row);
+                    }
+                }
+                Metrics.Counter.DISTANCE_CALLS.add(computed);
+                return result;
+            }
+        }
+
+        /**
+         * Parcours de tous les tuples sélectionnés, par mots de 64 tuples, découpé en blocs traités en parallèle
+         */
+        @SuppressWarnings("serial")
+        private class ScanTask extends RecursiveAction {
+            private final long[] words;
+            private final int from;
+            private final int to;
+
+            ScanTask(long[] _words, int _from, int _to) {
+                words = _words;
+                from = _from;
+                to = _to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from > CHUNK_WORDS) {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new ScanTask(words, from, middle), new ScanTask(words, middle, to));
+                    return;
+                }
+                int computed = 0;
+                for (int w = from; w < to; w++) {
+                    long word = words[w];
+                    if (word == 0) continue;
+                    int base = w << 6;
+                    int count = Math.min(64, row_count - base);
+                    // Boîte englobante : comparaisons sans branchement sur des tableaux contigus
+                    long candidates = 0;
+                    for (int b = 0; b < count; b++) {
+                        double latitude_gap = latitudes[base + b] - latitude;
+                        double longitude_gap = longitudes[base + b] - longitude;
+                        boolean inside = latitude_gap <= latitude_delta & latitude_gap >= -latitude_delta
+                                & longitude_gap <= longitude_delta & longitude_gap >= -longitude_delta;
+                        candidates |= (inside ? 1L : 0L) << b;
+                    }
+                    word &= candidates;
+                    computed += Long.bitCount(word);
+                    // Distance exacte pour les seuls candidats
+                    for (long bits = word; bits != 0; bits &= bits - 1) {
+                        int row = base + Long.numberOfTrailingZeros(bits);
+                        if (!matches(row)) word &= ~(1L << (row - base));
+                    }
+                    words[w] = word;
+                }
+                Metrics.Counter.DISTANCE_CALLS.add(computed);
+            }
+        }
+    }
+}
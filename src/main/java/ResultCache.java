@@ -0,0 +1,344 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Cache des résultats des requêtes : un résultat entièrement parcouru est conservé sous la clé de sa requête
+ * normalisée, de ses paramètres et des versions des sources interrogées ; les résultats les moins récemment
+ * utilisés sont évincés au-delà de la taille maximale, et les grands résultats sont encodés dans un tableau d'octets
+ */
+public class ResultCache {
+    /**
+     * Taille estimée à partir de laquelle un résultat est encodé plutôt que conservé tuple par tuple (octets)
+     */
+    private static final long COMPACT_THRESHOLD = 256 * 1024;
+
+    /**
+     * Part maximale du cache occupée par un seul résultat (les résultats plus grands ne sont pas conservés)
+     */
+    private static final int MAX_ENTRY_RATIO = 8;
+
+    /**
+     * Fonctions SQL dont le résultat change d'une exécution à l'autre
+     */
+    private static final Set<String> VOLATILE_FUNCTIONS = Set.of("RANDOM", "RANDOMBLOB", "CHANGES",
+            "TOTAL_CHANGES", "LAST_INSERT_ROWID", "CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP");
+
+    /**
+     * Valeurs des fonctions de date désignant l'instant d'exécution
+     */
+    private static final Set<String> VOLATILE_VALUES = Set.of("NOW", "LOCALTIME");
+
+    /**
+     * Types des valeurs encodées
+     */
+    private static final byte NULL = 0, INTEGER = 1, LONG = 2, DOUBLE = 3, TEXT = 4, BLOB = 5;
+
+    /**
+     * Résultat conservé
+     */
+    private static class Entry {
+        /**
+         * Attributs du résultat
+         */
+        final List<String> attributes;
+
+        /**
+         * Tuples (null si le résultat est encodé)
+         */
+        final Object[][] rows;
+
+        /**
+         * Tuples encodés (null si le résultat est conservé tuple par tuple)
+         */
+        final byte[] encoded_rows;
+
+        /**
+         * Taille estimée (octets)
+         */
+        final long size;
+
+        /**
+         * Date d'insertion (nanosecondes)
+         */
+        final long created;
+
+        /**
+         * Constructeur
+         *
+         * @param _attributes   attributs
+         * @param _rows         tuples
+         * @param _encoded_rows tuples encodés
+         * @param _size         taille estimée
+         */
+        Entry(List<String> _attributes, Object[][] _rows, byte[] _encoded_rows, long _size) {
+            attributes = _attributes;
+            rows = _rows;
+            encoded_rows = _encoded_rows;
+            size = _size;
+            created = System.nanoTime();
+        }
+    }
+
+    /**
+     * Taille maximale (octets)
+     */
+    private final long max_size;
+
+    /**
+     * Durée de validité d'un résultat (nanosecondes, 0 si illimitée)
+     */
+    private final long ttl;
+
+    /**
+     * Résultats, du moins au plus récemment utilisé
+     */
+    private final LinkedHashMap<List<Object>, Entry> entries;
+
+    /**
+     * Taille estimée des résultats conservés (octets)
+     */
+    private long size;
+
+    /**
+     * Nombre de requêtes servies par le cache, et non servies
+     */
+    private long hits;
+    private long misses;
+
+    /**
+     * Génération du cache, incrémentée à chaque vidage : un résultat enregistré avant le vidage n'est pas conservé
+     */
+    private long generation;
+
+    /**
+     * Constructeur
+     *
+     * @param _max_size taille maximale (octets)
+     * @param _ttl      durée de validité d'un résultat (millisecondes, 0 si illimitée)
+     */
+    public ResultCache(long _max_size, long _ttl) {
+        max_size = _max_size;
+        ttl = _ttl * 1_000_000;
+        entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Vérifier si le résultat d'une requête peut être conservé : elle ne doit dépendre que des données des sources
+     *
+     * @param tokens     lexèmes de la requête normalisée
+     * @param parameters valeurs des paramètres
+     * @return vrai si le résultat ne dépend pas de l'instant d'exécution
+     */
+    public static boolean isCacheable(List<SQLTokenizer.Token> tokens, List<Object> parameters) {
+        for (SQLTokenizer.Token token : tokens) {
+            if (token.type == SQLTokenizer.TokenType.IDENTIFIER && VOLATILE_FUNCTIONS.contains(token.text.toUpperCase()))
+                return false;
+            if (token.type == SQLTokenizer.TokenType.STRING
+                    && VOLATILE_VALUES.contains(token.unquoted().trim().toUpperCase())) return false;
+        }
+        for (Object parameter : parameters)
+            if (parameter instanceof String && VOLATILE_VALUES.contains(((String) parameter).trim().toUpperCase()))
+                return false;
+        return true;
+    }
+
+    /**
+     * Ouvrir un curseur sur un résultat conservé
+     *
+     * @param key clé du résultat
+     * @return curseur, ou null si le résultat n'est pas conservé ou a expiré
+     */
+    public synchronized ResultCursor get(List<Object> key) {
+        Entry entry = entries.get(key);
+        if (entry != null && ttl > 0 && System.nanoTime() - entry.created > ttl) {
+            entries.remove(key);
+            size -= entry.size;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            Metrics.Counter.RESULT_CACHE_MISSES.increment();
+            return null;
+        }
+        hits++;
+        Metrics.Counter.RESULT_CACHE_HITS.increment();
+        if (entry.rows != null) {
+            Iterator<Object[]> rows = Arrays.asList(entry.rows).iterator();
+            // Copie de chaque tuple : l'appelant peut modifier le tableau reçu
+            return new ResultCursor(entry.attributes, () -> rows.hasNext() ? rows.next().clone() : null, () -> {
+            });
+        }
+        ByteArrayInputStream buffer = new ByteArrayInputStream(entry.encoded_rows);
+        DataInputStream input = new DataInputStream(buffer);
+        int columns = entry.attributes.size();
+        return new ResultCursor(entry.attributes, () -> buffer.available() > 0 ? decodeRow(input, columns) : null,
+                () -> {
+                });
+    }
+
+    /**
+     * Enregistrer un résultat au fil de son parcours : il est conservé une fois entièrement parcouru,
+     * sauf s'il dépasse la taille maximale d'un résultat ou contient une valeur d'un type inconnu
+     *
+     * @param key    clé du résultat
+     * @param cursor curseur sur le résultat
+     * @return curseur sur le même résultat
+     */
+    public ResultCursor record(List<Object> key, ResultCursor cursor) {
+        long max_entry_size = max_size / MAX_ENTRY_RATIO;
+        List<Object[]> rows = new ArrayList<>();
+        long[] entry_size = {0};
+        long recorded_generation;
+        synchronized (this) {
+            recorded_generation = generation;
+        }
+        return new ResultCursor(cursor.getAttributes(), () -> {
+            if (!cursor.hasNext()) {
+                if (entry_size[0] >= 0)
+                    put(key, cursor.getAttributes(), rows, entry_size[0], recorded_generation);
+                entry_size[0] = -1;
+                return null;
+            }
+            Object[] row = cursor.next();
+            if (entry_size[0] >= 0) {
+                long row_size = estimateSize(row);
+                if (row_size < 0 || entry_size[0] + row_size > max_entry_size) {
+                    entry_size[0] = -1;
+                    rows.clear();
+                } else {
+                    entry_size[0] += row_size;
+                    rows.add(row.clone());
+                }
+            }
+            return row;
+        }, cursor::close);
+    }
+
+    /**
+     * Conserver un résultat entièrement parcouru, en évinçant les moins récemment utilisés ; il est ignoré
+     * si le cache a été vidé depuis le début de son enregistrement (il peut refléter l'ancien catalogue)
+     *
+     * @param key                 clé du résultat
+     * @param attributes          attributs
+     * @param rows                tuples
+     * @param rows_size           taille estimée des tuples
+     * @param recorded_generation génération du cache au début de l'enregistrement
+     */
+    private void put(List<Object> key, List<String> attributes, List<Object[]> rows, long rows_size,
+                     long recorded_generation) {
+        synchronized (this) {
+            if (generation != recorded_generation) return;
+        }
+        Entry entry;
+        if (rows_size > COMPACT_THRESHOLD) {
+            byte[] encoded_rows = encodeRows(rows);
+            entry = new Entry(attributes, null, encoded_rows, encoded_rows.length);
+        } else entry = new Entry(attributes, rows.toArray(new Object[0][]), null, rows_size);
+        synchronized (this) {
+            if (generation != recorded_generation) return;
+            Entry previous = entries.put(key, entry);
+            if (previous != null) size -= previous.size;
+            size += entry.size;
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (size > max_size && eldest.hasNext()) {
+                size -= eldest.next().size;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Vider le cache (le résultat des requêtes peut avoir changé sans que les sources ne changent)
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Estimer la taille d'un tuple en mémoire
+     *
+     * @param row tuple
+     * @return taille (octets), ou -1 si une valeur n'est pas d'un type renvoyé par SQLite
+     */
+    private static long estimateSize(Object[] row) {
+        long row_size = 16 + 8L * row.length;
+        for (Object value : row) {
+            if (value == null) continue;
+            if (value instanceof Integer || value instanceof Long || value instanceof Double) row_size += 24;
+            else if (value instanceof String) row_size += 40 + 2L * ((String) value).length();
+            else if (value instanceof byte[]) row_size += 16 + ((byte[]) value).length;
+            else return -1;
+        }
+        return row_size;
+    }
+
+    /**
+     * Encoder des tuples (type puis valeur de chaque attribut)
+     *
+     * @param rows tuples
+     * @return tuples encodés
+     */
+    private static byte[] encodeRows(List<Object[]> rows) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(buffer)) {
+            for (Object[] row : rows)
+                for (Object value : row) {
+                    if (value == null) output.writeByte(NULL);
+                    else if (value instanceof Integer) {
+                        output.writeByte(INTEGER);
+                        output.writeInt((Integer) value);
+                    } else if (value instanceof Long) {
+                        output.writeByte(LONG);
+                        output.writeLong((Long) value);
+                    } else if (value instanceof Double) {
+                        output.writeByte(DOUBLE);
+                        output.writeDouble((Double) value);
+                    } else {
+                        byte[] bytes = value instanceof String ?
+                                ((String) value).getBytes(StandardCharsets.UTF_8) : (byte[]) value;
+                        output.writeByte(value instanceof String ? TEXT : BLOB);
+                        output.writeInt(bytes.length);
+                        output.write(bytes);
+                    }
+                }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Décoder un tuple
+     *
+     * @param input   tuples encodés
+     * @param columns nombre d'attributs
+     * @return tuple
+     */
+    private static Object[] decodeRow(DataInputStream input, int columns) {
+        Object[] row = new Object[columns];
+        try {
+            for (int i = 0; i < columns; i++) {
+                byte type = input.readByte();
+                if (type == INTEGER) row[i] = input.readInt();
+                else if (type == LONG) row[i] = input.readLong();
+                else if (type == DOUBLE) row[i] = input.readDouble();
+                else if (type == TEXT || type == BLOB) {
+                    byte[] bytes = new byte[input.readInt()];
+                    input.readFully(bytes);
+                    row[i] = type == TEXT ? new String(bytes, StandardCharsets.UTF_8) : bytes;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return row;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return entries.size() + " résultats, " + size + " octets, " + hits + " succès, " + misses + " échecs";
+    }
+}
@@ -0,0 +1,205 @@
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Curseur sur le résultat d'une requête : les tuples sont lus un à un (depuis SQLite ou le cache colonnaire)
+ * à la demande de l'appelant, sans que le résultat ne soit jamais entièrement chargé en mémoire
+ * (la connexion utilisée est rendue dès la fin du parcours ou à la fermeture du curseur)
+ */
+public class ResultCursor implements Iterator<Object[]>, AutoCloseable {
+    /**
+     * Lecture des tuples d'un résultat
+     */
+    public interface RowReader {
+        /**
+         * Lire le tuple suivant
+         *
+         * @return valeurs, ou null à la fin du résultat
+         * @throws SQLException erreur SQL
+         */
+        Object[] read() throws SQLException;
+    }
+
+    /**
+     * Lecture des tuples parcourus
+     */
+    private final RowReader reader;
+
+    /**
+     * Action exécutée à la fermeture (restitution de la connexion)
+     */
+    private final Runnable on_close;
+
+    /**
+     * Attributs du résultat
+     */
+    private final List<String> attributes;
+
+    /**
+     * Tuple lu par anticipation (null si aucun)
+     */
+    private Object[] next_row;
+
+    /**
+     * Curseur fermé
+     */
+    private boolean closed;
+
+    /**
+     * Parcours mesuré (étape FETCH) : durée de lecture des tuples et nombre de tuples lus
+     */
+    private boolean measured;
+    private long fetch_nanos;
+    private long fetched_rows;
+
+    /**
+     * Annulation de la requête, vérifiée avant chaque lecture (null si le parcours n'est pas annulable)
+     */
+    private QueryCancellation cancellation;
+
+    /**
+     * Constructeur
+     *
+     * @param _attributes attributs du résultat
+     * @param _reader     lecture des tuples
+     * @param _on_close   action exécutée à la fermeture
+     */
+    public ResultCursor(List<String> _attributes, RowReader _reader, Runnable _on_close) {
+        attributes = Collections.unmodifiableList(new ArrayList<>(_attributes));
+        reader = _reader;
+        on_close = _on_close;
+    }
+
+    /**
+     * Ouvrir un curseur sur un résultat SQL (fermé en même temps que le curseur)
+     *
+     * @param result_set résultat SQL
+     * @param on_close   action exécutée à la fermeture
+     * @return curseur
+     * @throws SQLException erreur SQL
+     */
+    public static ResultCursor of(ResultSet result_set, Runnable on_close) throws SQLException {
+        ResultSetMetaData metadata = result_set.getMetaData();
+        List<String> columns = new ArrayList<>(metadata.getColumnCount());
+        for (int i = 1; i <= metadata.getColumnCount(); i++) columns.add(metadata.getColumnName(i));
+        return new ResultCursor(columns, () -> {
+            if (!result_set.next()) return null;
+            // Valeurs typées par SQLite (Long, Double, String, byte[] ou null)
+            Object[] row = new Object[columns.size()];
+            for (int i = 0; i < row.length; i++) row[i] = result_set.getObject(i + 1);
+            return row;
+        }, () -> {
+            try {
+                result_set.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                on_close.run();
+            }
+        });
+    }
+
+    /**
+     * Attributs du résultat
+     *
+     * @return noms des colonnes
+     */
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next_row != null) return true;
+        if (closed) return false;
+        try {
+            if (cancellation != null) cancellation.check();
+            long start = measured ? System.nanoTime() : 0;
+            next_row = reader.read();
+            if (measured) fetch_nanos += System.nanoTime() - start;
+            if (next_row != null) {
+                fetched_rows++;
+                return true;
+            }
+        } catch (SQLException e) {
+            close();
+            throw new IllegalStateException("Lecture du résultat impossible.", e);
+        }
+        // Fin du résultat : la connexion est rendue sans attendre la fermeture explicite
+        close();
+        return false;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Object[] row = next_row;
+        next_row = null;
+        return row;
+    }
+
+    /**
+     * Parcourir les tuples sous forme de flux (le flux doit être fermé s'il n'est pas consommé entièrement)
+     *
+     * @return flux de tuples
+     */
+    public Stream<Object[]> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    /**
+     * Écrire tous les tuples restants, un à un
+     *
+     * @param writer destination
+     * @return nombre de tuples écrits
+     */
+    public long writeTo(ResultWriter writer) {
+        long count = 0;
+        writer.writeHeader(attributes);
+        while (hasNext()) {
+            writer.writeRow(next());
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    /**
+     * Mesurer le parcours du résultat : la durée de lecture des tuples et leur nombre
+     * sont enregistrés à la fermeture du curseur
+     *
+     * @return ce curseur
+     */
+    ResultCursor measured() {
+        measured = true;
+        return this;
+    }
+
+    /**
+     * Arrêter le parcours du résultat si la requête est annulée : la lecture suivante échoue
+     *
+     * @param _cancellation annulation de la requête
+     * @return ce curseur
+     */
+    ResultCursor cancellable(QueryCancellation _cancellation) {
+        cancellation = _cancellation;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        next_row = null;
+        if (measured) {
+            Metrics.Stage.FETCH.record(fetch_nanos);
+            Metrics.Counter.ROWS_FETCHED.add(fetched_rows);
+        }
+        on_close.run();
+    }
+}
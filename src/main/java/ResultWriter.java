@@ -0,0 +1,35 @@
+import java.util.List;
+
+/**
+ * Destination du résultat d'une requête, écrit tuple par tuple
+ */
+public interface ResultWriter {
+    /**
+     * Écrire les attributs du résultat (appelé une fois, avant les tuples)
+     *
+     * @param attributes attributs
+     */
+    void writeHeader(List<String> attributes);
+
+    /**
+     * Écrire un tuple
+     *
+     * @param row valeurs typées (null pour une valeur absente)
+     */
+    void writeRow(Object[] row);
+
+    /**
+     * Vider les tampons éventuels vers la destination
+     */
+    void flush();
+
+    /**
+     * Représentation textuelle d'une valeur
+     *
+     * @param value valeur
+     * @return texte (vide pour une valeur absente)
+     */
+    static String format(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
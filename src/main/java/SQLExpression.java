@@ -0,0 +1,227 @@
+import java.util.*;
+
+/**
+ * Expression SQL analysée : chaque nœud conserve les lexèmes qu'il couvre dans la requête
+ * (les optimisations réécrivent la requête à partir de ces lexèmes)
+ */
+public abstract class SQLExpression {
+    /**
+     * Lexèmes de l'expression
+     */
+    public final List<SQLTokenizer.Token> tokens;
+
+    /**
+     * Constructeur
+     *
+     * @param _tokens lexèmes
+     */
+    protected SQLExpression(List<SQLTokenizer.Token> _tokens) {
+        tokens = _tokens;
+    }
+
+    /**
+     * Sous-expressions (les sous-requêtes ne sont pas parcourues)
+     *
+     * @return sous-expressions
+     */
+    public List<SQLExpression> getChildren() {
+        return List.of();
+    }
+
+    /**
+     * Découper l'expression en termes de conjonction
+     *
+     * @return termes
+     */
+    public List<SQLExpression> splitConjuncts() {
+        List<SQLExpression> conjuncts = new ArrayList<>();
+        if (this instanceof Operation && ((Operation) this).operator.equals("AND"))
+            for (SQLExpression operand : getChildren()) conjuncts.addAll(operand.splitConjuncts());
+        else conjuncts.add(this);
+        return conjuncts;
+    }
+
+    /**
+     * Vérifier si l'expression contient un appel de fonction d'agrégation (hors sous-requêtes)
+     *
+     * @return vrai si l'expression agrège
+     */
+    public boolean containsAggregate() {
+        if (this instanceof Function && ((Function) this).aggregate) return true;
+        for (SQLExpression child : getChildren())
+            if (child.containsAggregate()) return true;
+        return false;
+    }
+
+    /**
+     * Vérifier si l'expression contient un appel de fonction de fenêtrage (hors sous-requêtes)
+     *
+     * @return vrai si l'expression est fenêtrée
+     */
+    public boolean containsWindow() {
+        if (this instanceof Function && ((Function) this).window) return true;
+        for (SQLExpression child : getChildren())
+            if (child.containsWindow()) return true;
+        return false;
+    }
+
+    /**
+     * Références aux attributs de l'expression (hors sous-requêtes)
+     *
+     * @return références
+     */
+    public List<Column> getColumns() {
+        List<Column> columns = new ArrayList<>();
+        if (this instanceof Column) columns.add((Column) this);
+        for (SQLExpression child : getChildren()) columns.addAll(child.getColumns());
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (SQLTokenizer.Token token : tokens) {
+            char last = sb.length() > 0 ? sb.charAt(sb.length() - 1) : '(';
+            if (last != '.' && last != '(' && !token.isOperator(".") && !token.isOperator(",")
+                    && !token.isOperator(")")) sb.append(' ');
+            sb.append(token.text);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Valeur constante : littéral, paramètre ou mot-clé (NULL, CURRENT_DATE...)
+     */
+    public static class Literal extends SQLExpression {
+        public Literal(List<SQLTokenizer.Token> _tokens) {
+            super(_tokens);
+        }
+    }
+
+    /**
+     * Référence à un attribut, éventuellement qualifiée
+     */
+    public static class Column extends SQLExpression {
+        /**
+         * Qualification (table ou alias, null si absente)
+         */
+        public final String qualifier;
+
+        /**
+         * Nom de l'attribut
+         */
+        public final String name;
+
+        /**
+         * Table parcourue à laquelle l'attribut appartient (null pour un alias du résultat
+         * ou un attribut de sous-requête)
+         */
+        public LogicalPlan.Scan scan;
+
+        public Column(List<SQLTokenizer.Token> _tokens, String _qualifier, String _name) {
+            super(_tokens);
+            qualifier = _qualifier;
+            name = _name;
+        }
+    }
+
+    /**
+     * Tous les attributs (* ou table.*)
+     */
+    public static class Star extends SQLExpression {
+        /**
+         * Qualification (null pour tous les attributs de la clause FROM)
+         */
+        public final String qualifier;
+
+        public Star(List<SQLTokenizer.Token> _tokens, String _qualifier) {
+            super(_tokens);
+            qualifier = _qualifier;
+        }
+    }
+
+    /**
+     * Appel de fonction
+     */
+    public static class Function extends SQLExpression {
+        /**
+         * Nom de la fonction (majuscules)
+         */
+        public final String name;
+
+        /**
+         * Arguments (vide pour COUNT(*))
+         */
+        public final List<SQLExpression> arguments;
+
+        /**
+         * Fonction d'agrégation
+         */
+        public final boolean aggregate;
+
+        /**
+         * Fonction de fenêtrage (clause OVER)
+         */
+        public final boolean window;
+
+        public Function(List<SQLTokenizer.Token> _tokens, String _name, List<SQLExpression> _arguments,
+                        boolean _aggregate, boolean _window) {
+            super(_tokens);
+            name = _name;
+            arguments = _arguments;
+            aggregate = _aggregate;
+            window = _window;
+        }
+
+        @Override
+        public List<SQLExpression> getChildren() {
+            return arguments;
+        }
+    }
+
+    /**
+     * Opération : opérateur unaire ou binaire, AND, OR, NOT, IS, IN, LIKE, BETWEEN, CASE, CAST, COLLATE...
+     */
+    public static class Operation extends SQLExpression {
+        /**
+         * Opérateur (mots-clés en majuscules)
+         */
+        public final String operator;
+
+        /**
+         * Opérandes
+         */
+        public final List<SQLExpression> operands;
+
+        public Operation(List<SQLTokenizer.Token> _tokens, String _operator, List<SQLExpression> _operands) {
+            super(_tokens);
+            operator = _operator;
+            operands = _operands;
+        }
+
+        @Override
+        public List<SQLExpression> getChildren() {
+            return operands;
+        }
+    }
+
+    /**
+     * Sous-requête (valeur, liste d'un IN ou EXISTS)
+     */
+    public static class Subquery extends SQLExpression {
+        /**
+         * Requête analysée, avant résolution des noms
+         */
+        final SQLParser.Statement statement;
+
+        /**
+         * Plan logique de la sous-requête (construit lors de la résolution des noms)
+         */
+        public LogicalPlan plan;
+
+        Subquery(List<SQLTokenizer.Token> _tokens, SQLParser.Statement _statement) {
+            super(_tokens);
+            statement = _statement;
+        }
+    }
+}
@@ -0,0 +1,970 @@
+import java.util.*;
+
+/**
+ * Analyseur syntaxique SQL : construit le plan logique d'une requête SELECT à partir de ses lexèmes,
+ * puis résout chaque référence d'attribut sur les tables du catalogue
+ */
+public class SQLParser {
+    /**
+     * Mots-clés qui ne peuvent pas servir d'alias implicite
+     */
+    private static final Set<String> RESERVED = Set.of("ALL", "AND", "AS", "ASC", "BETWEEN", "BY", "CASE", "CAST",
+            "COLLATE", "CROSS", "DESC", "DISTINCT", "ELSE", "END", "ESCAPE", "EXCEPT", "EXISTS", "FILTER", "FROM",
+            "FULL", "GLOB", "GROUP", "HAVING", "IN", "INDEXED", "INNER", "INTERSECT", "IS", "ISNULL", "JOIN", "LEFT",
+            "LIKE", "LIMIT", "MATCH", "NATURAL", "NOT", "NOTNULL", "NULL", "OFFSET", "ON", "OR", "ORDER", "OUTER",
+            "OVER", "REGEXP", "RIGHT", "SELECT", "THEN", "UNION", "USING", "WHEN", "WHERE", "WINDOW", "WITH");
+
+    /**
+     * Opérateurs de comparaison de motif
+     */
+    private static final Set<String> PATTERN_OPERATORS = Set.of("LIKE", "GLOB", "REGEXP", "MATCH");
+
+    /**
+     * Requête analysée, avant résolution des noms
+     */
+    static class Statement {
+        /**
+         * Blocs SELECT, reliés par des opérations ensemblistes
+         */
+        final List<Core> cores = new ArrayList<>();
+
+        /**
+         * Opérations ensemblistes entre blocs successifs
+         */
+        final List<String> operators = new ArrayList<>();
+
+        /**
+         * Clés de tri (ORDER BY)
+         */
+        final List<SQLExpression> order_keys = new ArrayList<>();
+
+        /**
+         * Ordre décroissant de chaque clé
+         */
+        final List<Boolean> descending = new ArrayList<>();
+
+        /**
+         * Limite et décalage (null si absents)
+         */
+        SQLExpression limit;
+        SQLExpression offset;
+    }
+
+    /**
+     * Bloc SELECT ... FROM ... WHERE ... GROUP BY ... HAVING
+     */
+    private static class Core {
+        boolean distinct;
+        final List<SQLExpression> items = new ArrayList<>();
+
+        /**
+         * Alias des colonnes du résultat (null si absent)
+         */
+        final List<String> aliases = new ArrayList<>();
+        FromItem from;
+
+        /**
+         * Lexèmes de la clause FROM (sans le mot-clé)
+         */
+        List<SQLTokenizer.Token> from_tokens;
+        SQLExpression where;
+        final List<SQLExpression> groups = new ArrayList<>();
+        SQLExpression having;
+    }
+
+    /**
+     * Élément de la clause FROM : table, sous-requête ou jointure
+     */
+    private static class FromItem {
+        /**
+         * Lexèmes d'une table et de son alias
+         */
+        List<SQLTokenizer.Token> tokens;
+        String table;
+        Statement statement;
+        String alias;
+        FromItem left;
+        FromItem right;
+        String join_type;
+        boolean natural;
+        SQLExpression condition;
+        final List<String> using = new ArrayList<>();
+    }
+
+    /**
+     * Table ou sous-requête visible dans une portée
+     */
+    private static class Source {
+        /**
+         * Nom désignant la source dans la requête (null pour une sous-requête sans alias)
+         */
+        final String name;
+
+        /**
+         * Parcours correspondant (null pour une sous-requête)
+         */
+        final LogicalPlan.Scan scan;
+
+        /**
+         * Attributs de la source
+         */
+        final List<String> attributes;
+
+        Source(String _name, LogicalPlan.Scan _scan, List<String> _attributes) {
+            name = _name;
+            scan = _scan;
+            attributes = _attributes;
+        }
+
+        boolean hasAttribute(String attribute) {
+            for (String a : attributes)
+                if (a.equalsIgnoreCase(attribute)) return true;
+            return false;
+        }
+    }
+
+    /**
+     * Portée de résolution des noms d'un bloc SELECT
+     */
+    private static class Scope {
+        final Scope parent;
+        final List<Source> sources = new ArrayList<>();
+
+        /**
+         * Alias des colonnes du résultat, utilisables dans les clauses suivantes
+         */
+        List<String> aliases = List.of();
+
+        Scope(Scope _parent) {
+            parent = _parent;
+        }
+    }
+
+    /**
+     * Lexèmes de la requête
+     */
+    private final List<SQLTokenizer.Token> tokens;
+
+    /**
+     * Tables du catalogue et leurs attributs
+     */
+    private final Map<String, ? extends Collection<String>> tables_attributes;
+
+    /**
+     * Fonctions d'agrégation connues (majuscules)
+     */
+    private final Set<String> aggregate_functions;
+
+    /**
+     * Position courante
+     */
+    private int position;
+
+    /**
+     * Constructeur
+     *
+     * @param _tokens              lexèmes
+     * @param _tables_attributes   tables du catalogue
+     * @param _aggregate_functions fonctions d'agrégation
+     */
+    private SQLParser(List<SQLTokenizer.Token> _tokens, Map<String, ? extends Collection<String>> _tables_attributes,
+                      Set<String> _aggregate_functions) {
+        tokens = _tokens;
+        tables_attributes = _tables_attributes;
+        aggregate_functions = _aggregate_functions;
+    }
+
+    /**
+     * Analyser une requête SELECT et construire son plan logique
+     * (une requête invalide ou une référence inconnue termine le programme, comme le reste du médiateur)
+     *
+     * @param tokens              lexèmes de la requête
+     * @param tables_attributes   tables du catalogue et leurs attributs (majuscules)
+     * @param aggregate_functions fonctions d'agrégation connues (majuscules)
+     * @return plan logique
+     */
+    public static LogicalPlan parse(List<SQLTokenizer.Token> tokens,
+                                    Map<String, ? extends Collection<String>> tables_attributes,
+                                    Set<String> aggregate_functions) {
+        SQLParser parser = new SQLParser(tokens, tables_attributes, aggregate_functions);
+        Statement statement = parser.parseStatement();
+        while (parser.acceptOperator(";")) ;
+        if (parser.peek() != null) throw parser.invalid("lexème inattendu : " + parser.peek());
+        return parser.build(statement, null);
+    }
+
+    // ----- Analyse syntaxique -----
+
+    /**
+     * Analyser une requête : blocs SELECT, opérations ensemblistes, ORDER BY et LIMIT
+     *
+     * @return requête analysée
+     */
+    private Statement parseStatement() {
+        if (peekKeyword("WITH")) throw invalid("WITH non pris en charge");
+        Statement statement = new Statement();
+        statement.cores.add(parseCore());
+        while (true) {
+            if (acceptKeyword("UNION")) statement.operators.add(acceptKeyword("ALL") ? "UNION ALL" : "UNION");
+            else if (acceptKeyword("EXCEPT")) statement.operators.add("EXCEPT");
+            else if (acceptKeyword("INTERSECT")) statement.operators.add("INTERSECT");
+            else break;
+            statement.cores.add(parseCore());
+        }
+        if (acceptKeyword("ORDER")) {
+            expectKeyword("BY");
+            do {
+                statement.order_keys.add(parseExpression());
+                boolean descending = acceptKeyword("DESC");
+                if (!descending) acceptKeyword("ASC");
+                if (acceptKeyword("NULLS") && !acceptKeyword("FIRST")) expectKeyword("LAST");
+                statement.descending.add(descending);
+            } while (acceptOperator(","));
+        }
+        if (acceptKeyword("LIMIT")) {
+            statement.limit = parseExpression();
+            if (acceptKeyword("OFFSET")) statement.offset = parseExpression();
+            else if (acceptOperator(",")) {
+                // LIMIT décalage, limite
+                statement.offset = statement.limit;
+                statement.limit = parseExpression();
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * Analyser un bloc SELECT
+     *
+     * @return bloc
+     */
+    private Core parseCore() {
+        expectKeyword("SELECT");
+        Core core = new Core();
+        core.distinct = acceptKeyword("DISTINCT");
+        if (!core.distinct) acceptKeyword("ALL");
+        do {
+            int start = position;
+            SQLTokenizer.Token token = peek();
+            if (token != null && token.isOperator("*")) {
+                position++;
+                core.items.add(new SQLExpression.Star(span(start), null));
+                core.aliases.add(null);
+            } else if (isName(token) && peek(1) != null && peek(1).isOperator(".")
+                    && peek(2) != null && peek(2).isOperator("*")) {
+                position += 3;
+                core.items.add(new SQLExpression.Star(span(start), token.unquoted()));
+                core.aliases.add(null);
+            } else {
+                core.items.add(parseExpression());
+                core.aliases.add(parseAlias());
+            }
+        } while (acceptOperator(","));
+        if (acceptKeyword("FROM")) {
+            int start = position;
+            core.from = parseFrom();
+            core.from_tokens = span(start);
+        }
+        if (acceptKeyword("WHERE")) core.where = parseExpression();
+        if (acceptKeyword("GROUP")) {
+            expectKeyword("BY");
+            do core.groups.add(parseExpression()); while (acceptOperator(","));
+        }
+        if (acceptKeyword("HAVING")) core.having = parseExpression();
+        if (peekKeyword("WINDOW")) throw invalid("WINDOW non pris en charge");
+        return core;
+    }
+
+    /**
+     * Analyser un alias facultatif (AS nom, ou nom seul s'il n'est pas un mot-clé)
+     *
+     * @return alias, ou null
+     */
+    private String parseAlias() {
+        if (acceptKeyword("AS")) {
+            SQLTokenizer.Token token = peek();
+            if (token == null || !(isName(token) || token.type == SQLTokenizer.TokenType.STRING))
+                throw invalid("alias attendu après AS");
+            position++;
+            return token.unquoted();
+        }
+        SQLTokenizer.Token token = peek();
+        if (token != null && (token.type == SQLTokenizer.TokenType.QUOTED_IDENTIFIER
+                || token.type == SQLTokenizer.TokenType.STRING
+                || (token.type == SQLTokenizer.TokenType.IDENTIFIER && !isReserved(token)))) {
+            position++;
+            return token.unquoted();
+        }
+        return null;
+    }
+
+    /**
+     * Analyser la clause FROM (jointures associatives à gauche)
+     *
+     * @return élément de la clause
+     */
+    private FromItem parseFrom() {
+        FromItem item = parseTableOrSubquery();
+        while (true) {
+            String type;
+            boolean natural = false;
+            if (acceptOperator(",")) type = "INNER";
+            else {
+                int save = position;
+                natural = acceptKeyword("NATURAL");
+                if (acceptKeyword("LEFT")) {
+                    acceptKeyword("OUTER");
+                    type = "LEFT";
+                } else if (acceptKeyword("INNER")) type = "INNER";
+                else if (acceptKeyword("CROSS")) type = "CROSS";
+                else if (peekKeyword("RIGHT") || peekKeyword("FULL"))
+                    throw invalid("jointure externe droite ou complète non prise en charge");
+                else type = "INNER";
+                if (!acceptKeyword("JOIN")) {
+                    position = save;
+                    break;
+                }
+            }
+            FromItem join = new FromItem();
+            join.left = item;
+            join.right = parseTableOrSubquery();
+            join.join_type = type;
+            join.natural = natural;
+            if (acceptKeyword("ON")) join.condition = parseExpression();
+            else if (acceptKeyword("USING")) {
+                expectOperator("(");
+                do join.using.add(expectName().unquoted()); while (acceptOperator(","));
+                expectOperator(")");
+            }
+            item = join;
+        }
+        return item;
+    }
+
+    /**
+     * Analyser une table, une sous-requête ou une jointure entre parenthèses
+     *
+     * @return élément de la clause FROM
+     */
+    private FromItem parseTableOrSubquery() {
+        if (acceptOperator("(")) {
+            FromItem item;
+            if (peekKeyword("SELECT") || peekKeyword("WITH")) {
+                item = new FromItem();
+                item.statement = parseStatement();
+                expectOperator(")");
+                item.alias = parseAlias();
+            } else {
+                item = parseFrom();
+                expectOperator(")");
+            }
+            return item;
+        }
+        int start = position;
+        SQLTokenizer.Token token = expectName();
+        if (peek() != null && peek().isOperator("."))
+            throw invalid("table qualifiée non prise en charge : " + token.unquoted());
+        if (peek() != null && peek().isOperator("("))
+            throw invalid("fonction de table non prise en charge : " + token.unquoted());
+        FromItem item = new FromItem();
+        item.table = token.unquoted().toUpperCase();
+        if (!tables_attributes.containsKey(item.table)) throw invalid("table inconnue : " + token.unquoted());
+        item.alias = parseAlias();
+        item.tokens = span(start);
+        if (peekKeyword("INDEXED") || peekKeyword("NOT")) throw invalid("INDEXED BY non pris en charge");
+        return item;
+    }
+
+    /**
+     * Analyser une expression
+     *
+     * @return expression
+     */
+    private SQLExpression parseExpression() {
+        int start = position;
+        SQLExpression left = parseAnd();
+        while (acceptKeyword("OR")) left = operation(start, "OR", left, parseAnd());
+        return left;
+    }
+
+    private SQLExpression parseAnd() {
+        int start = position;
+        SQLExpression left = parseNot();
+        while (acceptKeyword("AND")) left = operation(start, "AND", left, parseNot());
+        return left;
+    }
+
+    private SQLExpression parseNot() {
+        int start = position;
+        if (acceptKeyword("NOT")) return operation(start, "NOT", parseNot());
+        return parseEquality();
+    }
+
+    /**
+     * Analyser les opérateurs de même priorité que l'égalité (=, IS, IN, LIKE, BETWEEN...)
+     *
+     * @return expression
+     */
+    private SQLExpression parseEquality() {
+        int start = position;
+        SQLExpression left = parseComparison();
+        while (peek() != null) {
+            SQLTokenizer.Token token = peek();
+            if (token.isOperator("=") || token.isOperator("==") || token.isOperator("!=")
+                    || token.isOperator("<>")) {
+                position++;
+                left = operation(start, token.text, left, parseComparison());
+                continue;
+            }
+            if (acceptKeyword("IS")) {
+                boolean not = acceptKeyword("NOT");
+                if (acceptKeyword("DISTINCT")) {
+                    expectKeyword("FROM");
+                    not = !not;
+                }
+                left = operation(start, not ? "IS NOT" : "IS", left, parseComparison());
+                continue;
+            }
+            if (acceptKeyword("ISNULL")) {
+                left = operation(start, "ISNULL", left);
+                continue;
+            }
+            if (acceptKeyword("NOTNULL")) {
+                left = operation(start, "NOTNULL", left);
+                continue;
+            }
+            int save = position;
+            boolean not = acceptKeyword("NOT");
+            if (not && acceptKeyword("NULL")) {
+                left = operation(start, "NOTNULL", left);
+                continue;
+            }
+            if (acceptKeyword("IN")) {
+                List<SQLExpression> operands = new ArrayList<>();
+                operands.add(left);
+                int list_start = position;
+                expectOperator("(");
+                if (peekKeyword("SELECT") || peekKeyword("WITH")) {
+                    Statement statement = parseStatement();
+                    expectOperator(")");
+                    operands.add(new SQLExpression.Subquery(span(list_start), statement));
+                } else {
+                    if (!peekOperator(")"))
+                        do operands.add(parseExpression()); while (acceptOperator(","));
+                    expectOperator(")");
+                }
+                left = new SQLExpression.Operation(span(start), not ? "NOT IN" : "IN", operands);
+                continue;
+            }
+            SQLTokenizer.Token pattern = peek();
+            if (pattern != null && pattern.type == SQLTokenizer.TokenType.IDENTIFIER
+                    && PATTERN_OPERATORS.contains(pattern.text.toUpperCase())) {
+                position++;
+                List<SQLExpression> operands = new ArrayList<>(List.of(left, parseComparison()));
+                if (acceptKeyword("ESCAPE")) operands.add(parseComparison());
+                String operator = pattern.text.toUpperCase();
+                left = new SQLExpression.Operation(span(start), not ? "NOT " + operator : operator, operands);
+                continue;
+            }
+            if (acceptKeyword("BETWEEN")) {
+                SQLExpression low = parseComparison();
+                expectKeyword("AND");
+                SQLExpression high = parseComparison();
+                left = new SQLExpression.Operation(span(start), not ? "NOT BETWEEN" : "BETWEEN",
+                        List.of(left, low, high));
+                continue;
+            }
+            position = save;
+            break;
+        }
+        return left;
+    }
+
+    private SQLExpression parseComparison() {
+        int start = position;
+        SQLExpression left = parseBitwise();
+        String operator;
+        while ((operator = acceptOperator("<", "<=", ">", ">=")) != null)
+            left = operation(start, operator, left, parseBitwise());
+        return left;
+    }
+
+    private SQLExpression parseBitwise() {
+        int start = position;
+        SQLExpression left = parseAdditive();
+        String operator;
+        while ((operator = acceptOperator("&", "|", "<<", ">>")) != null)
+            left = operation(start, operator, left, parseAdditive());
+        return left;
+    }
+
+    private SQLExpression parseAdditive() {
+        int start = position;
+        SQLExpression left = parseMultiplicative();
+        String operator;
+        while ((operator = acceptOperator("+", "-")) != null)
+            left = operation(start, operator, left, parseMultiplicative());
+        return left;
+    }
+
+    private SQLExpression parseMultiplicative() {
+        int start = position;
+        SQLExpression left = parseConcatenation();
+        String operator;
+        while ((operator = acceptOperator("*", "/", "%")) != null)
+            left = operation(start, operator, left, parseConcatenation());
+        return left;
+    }
+
+    private SQLExpression parseConcatenation() {
+        int start = position;
+        SQLExpression left = parseUnary();
+        while (acceptOperator("||")) left = operation(start, "||", left, parseUnary());
+        return left;
+    }
+
+    private SQLExpression parseUnary() {
+        int start = position;
+        String operator = acceptOperator("-", "+", "~");
+        if (operator != null) return operation(start, operator, parseUnary());
+        SQLExpression expression = parsePrimary();
+        while (acceptKeyword("COLLATE")) {
+            expectName();
+            expression = operation(start, "COLLATE", expression);
+        }
+        return expression;
+    }
+
+    /**
+     * Analyser une expression élémentaire : littéral, attribut, appel de fonction, CASE, CAST,
+     * sous-requête ou expression entre parenthèses
+     *
+     * @return expression
+     */
+    private SQLExpression parsePrimary() {
+        int start = position;
+        SQLTokenizer.Token token = peek();
+        if (token == null) throw invalid("expression attendue");
+        switch (token.type) {
+            case NUMBER:
+            case STRING:
+            case PARAMETER:
+                position++;
+                return new SQLExpression.Literal(span(start));
+            case OPERATOR:
+                if (!acceptOperator("(")) throw invalid("lexème inattendu : " + token);
+                if (peekKeyword("SELECT") || peekKeyword("WITH")) {
+                    Statement statement = parseStatement();
+                    expectOperator(")");
+                    return new SQLExpression.Subquery(span(start), statement);
+                }
+                List<SQLExpression> operands = new ArrayList<>();
+                do operands.add(parseExpression()); while (acceptOperator(","));
+                expectOperator(")");
+                return new SQLExpression.Operation(span(start), "()", operands);
+            default:
+                break;
+        }
+        if (token.type == SQLTokenizer.TokenType.IDENTIFIER) {
+            String keyword = token.text.toUpperCase();
+            switch (keyword) {
+                case "NULL":
+                case "TRUE":
+                case "FALSE":
+                case "CURRENT_DATE":
+                case "CURRENT_TIME":
+                case "CURRENT_TIMESTAMP":
+                    position++;
+                    return new SQLExpression.Literal(span(start));
+                case "CAST": {
+                    position++;
+                    expectOperator("(");
+                    SQLExpression operand = parseExpression();
+                    expectKeyword("AS");
+                    while (peek() != null && !peekOperator(")")) position++;
+                    expectOperator(")");
+                    return operation(start, "CAST", operand);
+                }
+                case "CASE": {
+                    position++;
+                    List<SQLExpression> operands = new ArrayList<>();
+                    if (!peekKeyword("WHEN")) operands.add(parseExpression());
+                    if (!peekKeyword("WHEN")) throw invalid("WHEN attendu");
+                    while (acceptKeyword("WHEN")) {
+                        operands.add(parseExpression());
+                        expectKeyword("THEN");
+                        operands.add(parseExpression());
+                    }
+                    if (acceptKeyword("ELSE")) operands.add(parseExpression());
+                    expectKeyword("END");
+                    return new SQLExpression.Operation(span(start), "CASE", operands);
+                }
+                case "EXISTS": {
+                    position++;
+                    int subquery_start = position;
+                    expectOperator("(");
+                    Statement statement = parseStatement();
+                    expectOperator(")");
+                    return operation(start, "EXISTS", new SQLExpression.Subquery(span(subquery_start), statement));
+                }
+                default:
+                    if (isReserved(token)) throw invalid("lexème inattendu : " + token);
+                    break;
+            }
+            if (peek(1) != null && peek(1).isOperator("(")) return parseFunction();
+        }
+        if (!isName(token)) throw invalid("lexème inattendu : " + token);
+        position++;
+        String qualifier = null;
+        String name = token.unquoted();
+        if (acceptOperator(".")) {
+            qualifier = name;
+            name = expectName().unquoted();
+            if (acceptOperator(".")) {
+                // base.table.attribut : la base est ignorée
+                qualifier = name;
+                name = expectName().unquoted();
+            }
+        }
+        return new SQLExpression.Column(span(start), qualifier, name);
+    }
+
+    /**
+     * Analyser un appel de fonction, avec ses clauses FILTER et OVER
+     *
+     * @return expression
+     */
+    private SQLExpression parseFunction() {
+        int start = position;
+        String name = peek().text.toUpperCase();
+        position += 2;
+        List<SQLExpression> arguments = new ArrayList<>();
+        boolean star = acceptOperator("*");
+        if (!star && !peekOperator(")")) {
+            acceptKeyword("DISTINCT");
+            do arguments.add(parseExpression()); while (acceptOperator(","));
+        }
+        expectOperator(")");
+        int argument_count = arguments.size();
+        if (acceptKeyword("FILTER")) {
+            expectOperator("(");
+            expectKeyword("WHERE");
+            arguments.add(parseExpression());
+            expectOperator(")");
+        }
+        boolean window = acceptKeyword("OVER");
+        if (window) {
+            if (acceptOperator("(")) {
+                if (isName(peek()) && !peekKeyword("PARTITION") && !peekKeyword("ORDER")) position++;
+                if (acceptKeyword("PARTITION")) {
+                    expectKeyword("BY");
+                    do arguments.add(parseExpression()); while (acceptOperator(","));
+                }
+                if (acceptKeyword("ORDER")) {
+                    expectKeyword("BY");
+                    do {
+                        arguments.add(parseExpression());
+                        if (!acceptKeyword("ASC")) acceptKeyword("DESC");
+                        if (acceptKeyword("NULLS") && !acceptKeyword("FIRST")) expectKeyword("LAST");
+                    } while (acceptOperator(","));
+                }
+                // Cadre de la fenêtre (ROWS BETWEEN ...) : constantes uniquement
+                int depth = 1;
+                while (peek() != null && depth > 0) {
+                    if (peekOperator("(")) depth++;
+                    else if (peekOperator(")")) depth--;
+                    if (depth > 0) position++;
+                }
+                expectOperator(")");
+            } else expectName();
+        }
+        // MIN et MAX à plusieurs arguments sont des fonctions scalaires
+        boolean aggregate = !window && aggregate_functions.contains(name)
+                && (star || argument_count == 1 || !(name.equals("MIN") || name.equals("MAX")));
+        return new SQLExpression.Function(span(start), name, arguments, aggregate, window);
+    }
+
+    // ----- Résolution des noms et construction du plan -----
+
+    /**
+     * Construire le plan logique d'une requête
+     *
+     * @param statement requête analysée
+     * @param parent    portée englobante (sous-requête corrélée), ou null
+     * @return plan logique
+     */
+    private LogicalPlan build(Statement statement, Scope parent) {
+        boolean compound = statement.cores.size() > 1;
+        LogicalPlan plan = null;
+        List<String> names = null;
+        for (int i = 0; i < statement.cores.size(); i++) {
+            LogicalPlan.Project core = buildCore(statement.cores.get(i), new Scope(parent),
+                    compound ? List.of() : statement.order_keys);
+            if (plan == null) {
+                plan = core;
+                names = core.names;
+            } else plan = new LogicalPlan.SetOperation(plan, core, statement.operators.get(i - 1));
+        }
+        if (!statement.order_keys.isEmpty()) {
+            if (compound) {
+                // Les clés de tri d'une requête composée désignent les colonnes du résultat
+                Scope scope = new Scope(parent);
+                scope.aliases = names;
+                for (SQLExpression key : statement.order_keys) resolve(key, scope, true);
+            }
+            plan = new LogicalPlan.Sort(plan, statement.order_keys, statement.descending);
+        }
+        if (statement.limit != null) {
+            Scope scope = new Scope(parent);
+            resolve(statement.limit, scope, false);
+            if (statement.offset != null) resolve(statement.offset, scope, false);
+            plan = new LogicalPlan.Limit(plan, statement.limit, statement.offset);
+        }
+        return plan;
+    }
+
+    /**
+     * Construire le plan d'un bloc SELECT
+     *
+     * @param core       bloc
+     * @param scope      portée du bloc
+     * @param order_keys clés de tri résolues dans la portée du bloc
+     * @return projection du bloc
+     */
+    private LogicalPlan.Project buildCore(Core core, Scope scope, List<SQLExpression> order_keys) {
+        LogicalPlan input = core.from == null ? null : buildFrom(core.from, scope);
+        List<String> aliases = new ArrayList<>();
+        for (String alias : core.aliases) if (alias != null) aliases.add(alias);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < core.items.size(); i++) {
+            SQLExpression item = core.items.get(i);
+            if (item instanceof SQLExpression.Star) {
+                String qualifier = ((SQLExpression.Star) item).qualifier;
+                boolean found = false;
+                for (Source source : scope.sources) {
+                    if (qualifier != null && !qualifier.equalsIgnoreCase(source.name)) continue;
+                    found = true;
+                    if (source.scan != null) source.scan.all_attributes = true;
+                    names.addAll(source.attributes);
+                }
+                if (!found) throw invalid(qualifier == null ? "* sans clause FROM" : "table inconnue : " + qualifier);
+            } else {
+                resolve(item, scope, false);
+                String alias = core.aliases.get(i);
+                names.add(alias != null ? alias : item instanceof SQLExpression.Column ?
+                        ((SQLExpression.Column) item).name : item.toString());
+            }
+        }
+        scope.aliases = aliases;
+        if (core.where != null) resolve(core.where, scope, true);
+        for (SQLExpression group : core.groups) resolve(group, scope, true);
+        if (core.having != null) resolve(core.having, scope, true);
+        for (SQLExpression key : order_keys) resolve(key, scope, true);
+
+        boolean aggregated = !core.groups.isEmpty() || core.having != null;
+        for (SQLExpression item : core.items) aggregated |= item.containsAggregate();
+        for (SQLExpression key : order_keys) aggregated |= key.containsAggregate();
+        LogicalPlan plan = input;
+        if (core.where != null) plan = new LogicalPlan.Filter(plan, core.where.splitConjuncts(), false);
+        if (aggregated) plan = new LogicalPlan.Aggregate(plan, core.groups);
+        if (core.having != null) plan = new LogicalPlan.Filter(plan, core.having.splitConjuncts(), true);
+        return new LogicalPlan.Project(plan, core.items, names, core.distinct, core.from_tokens);
+    }
+
+    /**
+     * Construire le plan de la clause FROM et déclarer ses sources dans la portée
+     *
+     * @param item  élément de la clause
+     * @param scope portée
+     * @return plan
+     */
+    private LogicalPlan buildFrom(FromItem item, Scope scope) {
+        if (item.table != null) {
+            LogicalPlan.Scan scan = new LogicalPlan.Scan(item.table, item.alias, item.tokens);
+            scope.sources.add(new Source(scan.getName(), scan, new ArrayList<>(tables_attributes.get(item.table))));
+            return scan;
+        }
+        if (item.statement != null) {
+            LogicalPlan input = build(item.statement, scope.parent);
+            scope.sources.add(new Source(item.alias, null, getOutputNames(input)));
+            return new LogicalPlan.Derived(input, item.alias);
+        }
+        LogicalPlan left = buildFrom(item.left, scope);
+        int left_sources = scope.sources.size();
+        LogicalPlan right = buildFrom(item.right, scope);
+        List<Source> left_side = new ArrayList<>(scope.sources.subList(0, left_sources));
+        List<Source> right_side = new ArrayList<>(scope.sources.subList(left_sources, scope.sources.size()));
+        List<String> using = new ArrayList<>(item.using);
+        if (item.natural)
+            for (Source source : right_side)
+                for (String attribute : source.attributes)
+                    if (left_side.stream().anyMatch(s -> s.hasAttribute(attribute))
+                            && using.stream().noneMatch(attribute::equalsIgnoreCase)) using.add(attribute);
+        for (String attribute : using) {
+            boolean found = false;
+            for (List<Source> side : List.of(left_side, right_side))
+                for (Source source : side)
+                    if (source.hasAttribute(attribute)) {
+                        found = true;
+                        if (source.scan != null) source.scan.attributes.add(attribute.toUpperCase());
+                    }
+            if (!found) throw invalid("attribut inconnu : " + attribute);
+        }
+        if (item.condition != null) resolve(item.condition, scope, false);
+        if (item.join_type.equals("LEFT"))
+            for (LogicalPlan.Scan scan : right.getScans()) scan.null_supplying = true;
+        return new LogicalPlan.Join(left, right, item.join_type, item.condition, using, item.natural);
+    }
+
+    /**
+     * Noms des colonnes du résultat d'un plan
+     *
+     * @param plan plan
+     * @return noms
+     */
+    private static List<String> getOutputNames(LogicalPlan plan) {
+        while (!(plan instanceof LogicalPlan.Project)) plan = plan.getInputs().get(0);
+        return ((LogicalPlan.Project) plan).names;
+    }
+
+    /**
+     * Résoudre les références d'une expression et construire le plan de ses sous-requêtes
+     *
+     * @param expression expression
+     * @param scope      portée
+     * @param aliases    les alias du résultat sont utilisables
+     */
+    private void resolve(SQLExpression expression, Scope scope, boolean aliases) {
+        if (expression instanceof SQLExpression.Column) resolveColumn((SQLExpression.Column) expression, scope, aliases);
+        else if (expression instanceof SQLExpression.Subquery) {
+            SQLExpression.Subquery subquery = (SQLExpression.Subquery) expression;
+            subquery.plan = build(subquery.statement, scope);
+        }
+        for (SQLExpression child : expression.getChildren()) resolve(child, scope, aliases);
+    }
+
+    /**
+     * Résoudre une référence d'attribut : sources de la portée, alias du résultat, puis portées englobantes
+     * (un texte entre guillemets doubles qui ne désigne rien est une chaîne de caractères pour SQLite)
+     *
+     * @param column  référence
+     * @param scope   portée
+     * @param aliases les alias du résultat sont utilisables
+     */
+    private void resolveColumn(SQLExpression.Column column, Scope scope, boolean aliases) {
+        for (Scope current = scope; current != null; current = current.parent, aliases = true) {
+            Source match = null;
+            for (Source source : current.sources) {
+                if (column.qualifier != null) {
+                    if (!column.qualifier.equalsIgnoreCase(source.name)) continue;
+                    if (!source.hasAttribute(column.name))
+                        throw invalid("attribut inconnu : " + column.qualifier + "." + column.name);
+                } else if (!source.hasAttribute(column.name)) continue;
+                if (match != null) throw invalid("attribut ambigu : " + column.name);
+                match = source;
+            }
+            if (match != null) {
+                column.scan = match.scan;
+                if (match.scan != null) match.scan.attributes.add(column.name.toUpperCase());
+                return;
+            }
+            if (column.qualifier == null && aliases
+                    && current.aliases.stream().anyMatch(column.name::equalsIgnoreCase)) return;
+        }
+        SQLTokenizer.Token token = column.tokens.get(0);
+        if (column.qualifier == null && token.type == SQLTokenizer.TokenType.QUOTED_IDENTIFIER
+                && token.text.charAt(0) == '"') return;
+        throw invalid("attribut inconnu : " + (column.qualifier != null ? column.qualifier + "." : "") + column.name);
+    }
+
+    // ----- Lexèmes -----
+
+    private SQLTokenizer.Token peek() {
+        return peek(0);
+    }
+
+    private SQLTokenizer.Token peek(int offset) {
+        return position + offset < tokens.size() ? tokens.get(position + offset) : null;
+    }
+
+    private boolean peekKeyword(String keyword) {
+        return peek() != null && peek().is(keyword);
+    }
+
+    private boolean peekOperator(String operator) {
+        return peek() != null && peek().isOperator(operator);
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if (!peekKeyword(keyword)) return false;
+        position++;
+        return true;
+    }
+
+    private boolean acceptOperator(String operator) {
+        if (!peekOperator(operator)) return false;
+        position++;
+        return true;
+    }
+
+    /**
+     * Consommer l'un des opérateurs donnés
+     *
+     * @param operators opérateurs
+     * @return opérateur consommé, ou null
+     */
+    private String acceptOperator(String... operators) {
+        for (String operator : operators)
+            if (acceptOperator(operator)) return operator;
+        return null;
+    }
+
+    private void expectKeyword(String keyword) {
+        if (!acceptKeyword(keyword)) throw invalid(keyword + " attendu");
+    }
+
+    private void expectOperator(String operator) {
+        if (!acceptOperator(operator)) throw invalid("'" + operator + "' attendu");
+    }
+
+    private SQLTokenizer.Token expectName() {
+        SQLTokenizer.Token token = peek();
+        if (!isName(token)) throw invalid("nom attendu");
+        position++;
+        return token;
+    }
+
+    private static boolean isName(SQLTokenizer.Token token) {
+        return token != null && (token.type == SQLTokenizer.TokenType.IDENTIFIER
+                || token.type == SQLTokenizer.TokenType.QUOTED_IDENTIFIER);
+    }
+
+    private static boolean isReserved(SQLTokenizer.Token token) {
+        return token.type == SQLTokenizer.TokenType.IDENTIFIER && RESERVED.contains(token.text.toUpperCase());
+    }
+
+    /**
+     * Lexèmes consommés depuis une position
+     *
+     * @param start position de départ
+     * @return lexèmes
+     */
+    private List<SQLTokenizer.Token> span(int start) {
+        return tokens.subList(start, position);
+    }
+
+    private SQLExpression operation(int start, String operator, SQLExpression... operands) {
+        return new SQLExpression.Operation(span(start), operator, List.of(operands));
+    }
+
+    /**
+     * Signaler une requête invalide
+     *
+     * @param reason motif
+     * @return exception à lever (jamais atteinte : le programme se termine)
+     */
+    private RuntimeException invalid(String reason) {
+        Utils.throwException("Requête invalide (" + reason + ").");
+        return new IllegalStateException(reason);
+    }
+}
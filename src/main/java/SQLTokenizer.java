@@ -0,0 +1,289 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analyseur lexical SQL (un seul parcours de la requête)
+ */
+public class SQLTokenizer {
+    /**
+     * Types de lexèmes
+     */
+    public enum TokenType {
+        IDENTIFIER,
+        QUOTED_IDENTIFIER,
+        STRING,
+        NUMBER,
+        PARAMETER,
+        OPERATOR
+    }
+
+    /**
+     * Lexème
+     */
+    public static class Token {
+        /**
+         * Type du lexème
+         */
+        public final TokenType type;
+
+        /**
+         * Texte du lexème tel qu'il apparaît dans la requête
+         */
+        public final String text;
+
+        /**
+         * Position dans la requête
+         */
+        public final int position;
+
+        /**
+         * Constructeur
+         *
+         * @param _type     type
+         * @param _text     texte
+         * @param _position position
+         */
+        public Token(TokenType _type, String _text, int _position) {
+            type = _type;
+            text = _text;
+            position = _position;
+        }
+
+        /**
+         * Vérifier si le lexème est un mot-clé ou un identifiant donné (insensible à la casse)
+         *
+         * @param keyword mot-clé
+         * @return vrai si le lexème correspond
+         */
+        public boolean is(String keyword) {
+            return type == TokenType.IDENTIFIER && text.equalsIgnoreCase(keyword);
+        }
+
+        /**
+         * Vérifier si le lexème est un opérateur donné
+         *
+         * @param operator opérateur
+         * @return vrai si le lexème correspond
+         */
+        public boolean isOperator(String operator) {
+            return type == TokenType.OPERATOR && text.equals(operator);
+        }
+
+        /**
+         * Obtenir la valeur d'un littéral ou le nom d'un identifiant sans guillemets
+         *
+         * @return valeur
+         */
+        public String unquoted() {
+            switch (type) {
+                case STRING:
+                    return text.substring(1, text.length() - 1).replace("''", "'");
+                case QUOTED_IDENTIFIER:
+                    char quote = text.charAt(0);
+                    String content = text.substring(1, text.length() - 1);
+                    return quote == '"' ? content.replace("\"\"", "\"") : content;
+                default:
+                    return text;
+            }
+        }
+
+        /**
+         * Obtenir la valeur d'un littéral numérique
+         *
+         * @return entier long ou réel
+         */
+        public Number number() {
+            if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    // Entier trop grand : valeur réelle
+                }
+            }
+            return Double.parseDouble(text);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Découper une requête SQL en lexèmes (les espaces et commentaires sont ignorés)
+     *
+     * @param query requête
+     * @return lexèmes
+     */
+    public static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int length = query.length();
+        int i = 0;
+        while (i < length) {
+            char c = query.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '-' && i + 1 < length && query.charAt(i + 1) == '-') {
+                // Commentaire jusqu'à la fin de la ligne
+                while (i < length && query.charAt(i) != '\n') i++;
+            } else if (c == '/' && i + 1 < length && query.charAt(i + 1) == '*') {
+                int end = query.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (c == '\'' || c == '"' || c == '`') {
+                i = skipQuoted(query, i, c);
+                tokens.add(new Token(c == '\'' ? TokenType.STRING : TokenType.QUOTED_IDENTIFIER,
+                        query.substring(start, i), start));
+            } else if (c == '[') {
+                int end = query.indexOf(']', i);
+                if (end < 0) Utils.throwException("Requête invalide (crochet non fermé).");
+                i = end + 1;
+                tokens.add(new Token(TokenType.QUOTED_IDENTIFIER, query.substring(start, i), start));
+            } else if (isDigit(c) || (c == '.' && i + 1 < length && isDigit(query.charAt(i + 1)))) {
+                i = skipNumber(query, i);
+                tokens.add(new Token(TokenType.NUMBER, query.substring(start, i), start));
+            } else if (isIdentifierStart(c)) {
+                while (i < length && isIdentifierPart(query.charAt(i))) i++;
+                tokens.add(new Token(TokenType.IDENTIFIER, query.substring(start, i), start));
+            } else if (c == '?') {
+                i++;
+                while (i < length && isDigit(query.charAt(i))) i++;
+                tokens.add(new Token(TokenType.PARAMETER, query.substring(start, i), start));
+            } else if ((c == ':' || c == '@' || c == '$') && i + 1 < length && isIdentifierStart(query.charAt(i + 1))) {
+                i++;
+                while (i < length && isIdentifierPart(query.charAt(i))) i++;
+                tokens.add(new Token(TokenType.PARAMETER, query.substring(start, i), start));
+            } else {
+                i += operatorLength(query, i);
+                tokens.add(new Token(TokenType.OPERATOR, query.substring(start, i), start));
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Remplacer des lexèmes dans le texte d'une requête en conservant le reste à l'identique
+     * (les noms des colonnes du résultat dépendent du texte exact de la requête)
+     *
+     * @param query    requête d'origine
+     * @param original lexèmes d'origine
+     * @param replaced lexèmes de remplacement (même taille, identiques là où rien ne change)
+     * @return requête modifiée
+     */
+    public static String splice(String query, List<Token> original, List<Token> replaced) {
+        StringBuilder sb = new StringBuilder(query.length());
+        int last = 0;
+        for (int i = 0; i < original.size(); i++) {
+            Token token = original.get(i);
+            Token replacement = replaced.get(i);
+            if (token == replacement) continue;
+            sb.append(query, last, token.position).append(replacement.text);
+            last = token.position + token.text.length();
+        }
+        sb.append(query, last, query.length());
+        return sb.toString();
+    }
+
+    /**
+     * Avancer après une chaîne entre guillemets (un guillemet doublé est échappé)
+     *
+     * @param query requête
+     * @param i     position du guillemet ouvrant
+     * @param quote guillemet
+     * @return position après le guillemet fermant
+     */
+    private static int skipQuoted(String query, int i, char quote) {
+        int length = query.length();
+        i++;
+        while (i < length) {
+            if (query.charAt(i) == quote) {
+                if (i + 1 < length && query.charAt(i + 1) == quote) i += 2;
+                else return i + 1;
+            } else i++;
+        }
+        Utils.throwException("Requête invalide (guillemet non fermé).");
+        return length;
+    }
+
+    /**
+     * Avancer après un littéral numérique
+     *
+     * @param query requête
+     * @param i     position du premier caractère
+     * @return position après le nombre
+     */
+    private static int skipNumber(String query, int i) {
+        int length = query.length();
+        while (i < length && isDigit(query.charAt(i))) i++;
+        if (i < length && query.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(query.charAt(i))) i++;
+        }
+        if (i < length && (query.charAt(i) == 'e' || query.charAt(i) == 'E')) {
+            int exponent = i + 1;
+            if (exponent < length && (query.charAt(exponent) == '+' || query.charAt(exponent) == '-')) exponent++;
+            if (exponent < length && isDigit(query.charAt(exponent))) {
+                i = exponent;
+                while (i < length && isDigit(query.charAt(i))) i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Longueur de l'opérateur à une position donnée
+     *
+     * @param query requête
+     * @param i     position
+     * @return longueur (1 ou 2)
+     */
+    private static int operatorLength(String query, int i) {
+        if (i + 1 < query.length()) {
+            String operator = query.substring(i, i + 2);
+            switch (operator) {
+                case "<=":
+                case ">=":
+                case "<>":
+                case "!=":
+                case "==":
+                case "||":
+                case "<<":
+                case ">>":
+                    return 2;
+                default:
+                    break;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Vérifier qu'un caractère est un chiffre ASCII
+     *
+     * @param c caractère
+     * @return vrai si c'est un chiffre
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Vérifier qu'un caractère peut commencer un identifiant
+     *
+     * @param c caractère
+     * @return vrai si c'est une lettre ou un tiret bas
+     */
+    private static boolean isIdentifierStart(char c) {
+        return Character.isLetter(c) || c == '_';
+    }
+
+    /**
+     * Vérifier qu'un caractère peut faire partie d'un identifiant
+     *
+     * @param c caractère
+     * @return vrai si c'est une lettre, un chiffre, un tiret bas ou un dollar
+     */
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,113 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Empreinte d'un fichier source (taille, date de modification, hash du contenu)
+ */
+public class SourceFingerprint {
+    /**
+     * Chemin du fichier
+     */
+    public final String file_path;
+
+    /**
+     * Taille du fichier (octets)
+     */
+    public final long size;
+
+    /**
+     * Date de dernière modification (ms)
+     */
+    public final long modified;
+
+    /**
+     * Hash SHA-256 du contenu (calculé à la demande)
+     */
+    private String hash;
+
+    /**
+     * Constructeur
+     *
+     * @param _file_path chemin du fichier
+     * @param _size      taille du fichier
+     * @param _modified  date de dernière modification
+     * @param _hash      hash du contenu (null s'il n'est pas encore calculé)
+     */
+    public SourceFingerprint(String _file_path, long _size, long _modified, String _hash) {
+        file_path = _file_path;
+        size = _size;
+        modified = _modified;
+        hash = _hash;
+    }
+
+    /**
+     * Lire la taille et la date de modification d'un fichier sans le parcourir
+     *
+     * @param file_path chemin du fichier
+     * @return empreinte (sans hash)
+     */
+    public static SourceFingerprint of(String file_path) {
+        URL url = Utils.getFileURL(file_path);
+        if (url == null) throw new IllegalStateException("Fichier introuvable : " + file_path);
+        long size = -1;
+        long modified = 0;
+        try {
+            URLConnection connection = url.openConnection();
+            size = connection.getContentLengthLong();
+            modified = connection.getLastModified();
+            // La connexion ouvre un flux sur le fichier qu'il faut refermer
+            connection.getInputStream().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return new SourceFingerprint(file_path, size, modified, null);
+    }
+
+    /**
+     * Obtenir le hash du contenu du fichier (calculé au premier appel)
+     *
+     * @return hash hexadécimal
+     */
+    public String getHash() {
+        if (hash == null) {
+            try (InputStream input = Utils.getFileURL(file_path).openStream()) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] buffer = new byte[1 << 16];
+                int read;
+                while ((read = input.read(buffer)) > 0) digest.update(buffer, 0, read);
+                StringBuilder sb = new StringBuilder();
+                for (byte b : digest.digest()) sb.append(String.format("%02x", b));
+                hash = sb.toString();
+            } catch (IOException | NoSuchAlgorithmException e) {
+                e.printStackTrace();
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Obtenir le hash du contenu du fichier s'il est déjà calculé, sans parcourir le fichier
+     *
+     * @return hash hexadécimal, ou null
+     */
+    public String getKnownHash() {
+        return hash;
+    }
+
+    /**
+     * Vérifier si le fichier n'a pas été modifié depuis une empreinte enregistrée
+     * (le hash n'est calculé que si la taille ou la date ne suffisent pas à conclure)
+     *
+     * @param stored empreinte enregistrée
+     * @return vrai si le contenu est identique
+     */
+    public boolean matches(SourceFingerprint stored) {
+        if (stored == null || !file_path.equals(stored.file_path) || size != stored.size) return false;
+        if (modified == stored.modified) return true;
+        return getHash().equals(stored.hash);
+    }
+}
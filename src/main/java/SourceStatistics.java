@@ -0,0 +1,346 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * Statistiques d'une source, calculées sur la table intégrée (nombre de tuples, valeurs nulles et distinctes,
+ * bornes et histogramme des attributs numériques) et conservées dans sa base de données
+ * afin d'estimer la sélectivité des prédicats et le coût des jointures
+ */
+public class SourceStatistics {
+    /**
+     * Table des statistiques dans chaque base de données source
+     */
+    static final String STATISTICS_TABLE = "_STATISTICS";
+
+    /**
+     * Nombre de classes des histogrammes (classes d'effectifs égaux)
+     */
+    private static final int HISTOGRAM_BUCKETS = 16;
+
+    /**
+     * Statistiques d'un attribut
+     */
+    public static class Attribute {
+        /**
+         * Nombre de valeurs nulles
+         */
+        public final long null_count;
+
+        /**
+         * Nombre de valeurs distinctes non nulles
+         */
+        public final long distinct_count;
+
+        /**
+         * Bornes des valeurs (null si l'attribut n'est pas numérique)
+         */
+        public final Double min;
+        public final Double max;
+
+        /**
+         * Bornes supérieures des classes d'effectifs égaux, croissantes (null si l'attribut n'est pas numérique)
+         */
+        public final double[] histogram;
+
+        /**
+         * Constructeur
+         *
+         * @param _null_count     valeurs nulles
+         * @param _distinct_count valeurs distinctes
+         * @param _min            minimum
+         * @param _max            maximum
+         * @param _histogram      histogramme
+         */
+        public Attribute(long _null_count, long _distinct_count, Double _min, Double _max, double[] _histogram) {
+            null_count = _null_count;
+            distinct_count = _distinct_count;
+            min = _min;
+            max = _max;
+            histogram = _histogram;
+        }
+
+        /**
+         * Estimer la proportion des valeurs non nulles inférieures (ou égales) à une valeur,
+         * par interpolation linéaire dans la classe de l'histogramme qui la contient
+         *
+         * @param value valeur
+         * @return proportion (entre 0 et 1), ou -1 sans histogramme
+         */
+        public double getCumulativeFraction(double value) {
+            if (histogram == null || histogram.length == 0) return -1;
+            if (value < min) return 0;
+            if (value >= max) return 1;
+            double lower = min;
+            for (int i = 0; i < histogram.length; i++) {
+                double upper = histogram[i];
+                if (value < upper) {
+                    double within = upper > lower ? (value - lower) / (upper - lower) : 0;
+                    return (i + within) / histogram.length;
+                }
+                lower = upper;
+            }
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return null_count + " nulles, " + distinct_count + " distinctes" +
+                    (min != null ? ", min " + min + ", max " + max : "") +
+                    (histogram != null ? ", histogramme " + Arrays.toString(histogram) : "");
+        }
+    }
+
+    /**
+     * Nombre de tuples
+     */
+    public final long row_count;
+
+    /**
+     * Statistiques des attributs (attribut - statistiques)
+     */
+    private final Map<String, Attribute> attributes;
+
+    /**
+     * Constructeur
+     *
+     * @param _row_count  nombre de tuples
+     * @param _attributes statistiques des attributs
+     */
+    private SourceStatistics(long _row_count, Map<String, Attribute> _attributes) {
+        row_count = _row_count;
+        attributes = _attributes;
+    }
+
+    /**
+     * Obtenir les statistiques d'un attribut
+     *
+     * @param attribute attribut
+     * @return statistiques, ou null si la source n'a pas cet attribut
+     */
+    public Attribute getAttribute(String attribute) {
+        return attributes.get(attribute);
+    }
+
+    /**
+     * Calculer les statistiques d'une table : une passe d'agrégation pour tous les attributs,
+     * puis une passe triée par attribut numérique pour son histogramme
+     *
+     * @param connection       connexion à la base de données de la source
+     * @param table_name       table
+     * @param table_attributes attributs
+     * @param attributes_types types SQL des attributs
+     * @return statistiques
+     * @throws SQLException erreur SQL
+     */
+    public static SourceStatistics compute(Connection connection, String table_name, List<String> table_attributes,
+                                           List<String> attributes_types) throws SQLException {
+        String table = "\"" + table_name + "\"";
+        StringBuilder query = new StringBuilder("SELECT COUNT(*)");
+        for (String attribute : table_attributes)
+            query.append(", COUNT(" + attribute + "), COUNT(DISTINCT " + attribute + "), MIN(" + attribute +
+                    "), MAX(" + attribute + ")");
+        query.append(" FROM " + table);
+        Map<String, Attribute> attributes = new LinkedHashMap<>();
+        long row_count;
+        try (Statement statement = connection.createStatement()) {
+            long[][] counts = new long[table_attributes.size()][];
+            Double[][] bounds = new Double[table_attributes.size()][];
+            try (ResultSet rs = statement.executeQuery(query.toString())) {
+                row_count = rs.getLong(1);
+                for (int i = 0; i < table_attributes.size(); i++) {
+                    int column = 2 + 4 * i;
+                    counts[i] = new long[]{rs.getLong(column), rs.getLong(column + 1)};
+                    bounds[i] = new Double[]{rs.getObject(column + 2) == null ? null : rs.getDouble(column + 2),
+                            rs.getObject(column + 3) == null ? null : rs.getDouble(column + 3)};
+                }
+            }
+            for (int i = 0; i < table_attributes.size(); i++) {
+                String attribute = table_attributes.get(i);
+                boolean numeric = (attributes_types.get(i).startsWith("INTEGER")
+                        || attributes_types.get(i).startsWith("REAL")) && counts[i][0] > 0;
+                attributes.put(attribute, new Attribute(row_count - counts[i][0], counts[i][1],
+                        numeric ? bounds[i][0] : null, numeric ? bounds[i][1] : null,
+                        numeric ? computeHistogram(statement, table, attribute) : null));
+            }
+        }
+        return new SourceStatistics(row_count, attributes);
+    }
+
+    /**
+     * Calculer l'histogramme d'un attribut numérique (bornes supérieures de classes d'effectifs égaux)
+     *
+     * @param statement  requête
+     * @param table      table
+     * @param attribute  attribut
+     * @return histogramme
+     * @throws SQLException erreur SQL
+     */
+    private static double[] computeHistogram(Statement statement, String table, String attribute)
+            throws SQLException {
+        List<Double> bounds = new ArrayList<>();
+        try (ResultSet rs = statement.executeQuery("SELECT MAX(" + attribute + ") FROM (SELECT " + attribute +
+                ", NTILE(" + HISTOGRAM_BUCKETS + ") OVER (ORDER BY " + attribute + ") AS BUCKET FROM " + table +
+                " WHERE " + attribute + " IS NOT NULL) GROUP BY BUCKET ORDER BY BUCKET")) {
+            while (rs.next()) bounds.add(rs.getDouble(1));
+        }
+        double[] histogram = new double[bounds.size()];
+        for (int i = 0; i < histogram.length; i++) histogram[i] = bounds.get(i);
+        return histogram;
+    }
+
+    /**
+     * Enregistrer les statistiques d'une table dans la base de données de la source
+     *
+     * @param connection connexion à la base de données de la source
+     * @param table_name table
+     * @throws SQLException erreur SQL
+     */
+    public void save(Connection connection, String table_name) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            createTable(statement);
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + STATISTICS_TABLE +
+                    " WHERE TABLE_NAME = ?")) {
+                delete.setString(1, table_name);
+                delete.executeUpdate();
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + STATISTICS_TABLE +
+                " (TABLE_NAME, ATTRIBUTE, ROW_COUNT, NULL_COUNT, DISTINCT_COUNT, MIN_VALUE, MAX_VALUE, HISTOGRAM) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (Map.Entry<String, Attribute> entry : attributes.entrySet()) {
+                Attribute attribute = entry.getValue();
+                insert.setString(1, table_name);
+                insert.setString(2, entry.getKey());
+                insert.setLong(3, row_count);
+                insert.setLong(4, attribute.null_count);
+                insert.setLong(5, attribute.distinct_count);
+                insert.setObject(6, attribute.min);
+                insert.setObject(7, attribute.max);
+                StringJoiner histogram = new StringJoiner(" ");
+                if (attribute.histogram != null)
+                    for (double bound : attribute.histogram) histogram.add(Double.toString(bound));
+                insert.setString(8, attribute.histogram == null ? null : histogram.toString());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    /**
+     * Lire les statistiques d'une table enregistrées dans la base de données de la source
+     *
+     * @param connection       connexion à la base de données de la source
+     * @param table_name       table
+     * @param table_attributes attributs attendus
+     * @return statistiques, ou null si elles sont absentes ou ne correspondent plus aux attributs
+     * @throws SQLException erreur SQL
+     */
+    public static SourceStatistics load(Connection connection, String table_name, List<String> table_attributes)
+            throws SQLException {
+        Map<String, Attribute> attributes = new LinkedHashMap<>();
+        long row_count = 0;
+        try (Statement statement = connection.createStatement()) {
+            createTable(statement);
+        }
+        try (PreparedStatement select = connection.prepareStatement("SELECT ATTRIBUTE, ROW_COUNT, NULL_COUNT, " +
+                "DISTINCT_COUNT, MIN_VALUE, MAX_VALUE, HISTOGRAM FROM " + STATISTICS_TABLE + " WHERE TABLE_NAME = ?")) {
+            select.setString(1, table_name);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    row_count = rs.getLong(2);
+                    double[] histogram = null;
+                    String bounds = rs.getString(7);
+                    if (bounds != null) {
+                        String[] values = bounds.isEmpty() ? new String[0] : bounds.split(" ");
+                        histogram = new double[values.length];
+                        for (int i = 0; i < values.length; i++) histogram[i] = Double.parseDouble(values[i]);
+                    }
+                    attributes.put(rs.getString(1), new Attribute(rs.getLong(3), rs.getLong(4),
+                            rs.getObject(5) == null ? null : rs.getDouble(5),
+                            rs.getObject(6) == null ? null : rs.getDouble(6), histogram));
+                }
+            }
+        }
+        if (!attributes.keySet().equals(new HashSet<>(table_attributes))) return null;
+        return new SourceStatistics(row_count, attributes);
+    }
+
+    /**
+     * Écrire les statistiques dans l'instantané du catalogue (bornes absentes écrites NaN :
+     * SQLite ne renvoie jamais NaN comme minimum ou maximum)
+     *
+     * @param output flux de l'instantané
+     * @throws IOException erreur d'écriture
+     */
+    void write(DataOutputStream output) throws IOException {
+        output.writeLong(row_count);
+        output.writeInt(attributes.size());
+        for (Map.Entry<String, Attribute> entry : attributes.entrySet()) {
+            Attribute attribute = entry.getValue();
+            CatalogSnapshot.writeString(output, entry.getKey());
+            output.writeLong(attribute.null_count);
+            output.writeLong(attribute.distinct_count);
+            output.writeDouble(attribute.min == null ? Double.NaN : attribute.min);
+            output.writeDouble(attribute.max == null ? Double.NaN : attribute.max);
+            output.writeInt(attribute.histogram == null ? -1 : attribute.histogram.length);
+            if (attribute.histogram != null)
+                for (double bound : attribute.histogram) output.writeDouble(bound);
+        }
+    }
+
+    /**
+     * Lire des statistiques dans l'instantané du catalogue
+     *
+     * @param buffer contenu de l'instantané, positionné sur les statistiques
+     * @return statistiques
+     */
+    static SourceStatistics read(ByteBuffer buffer) {
+        long row_count = buffer.getLong();
+        int attributes_count = buffer.getInt();
+        Map<String, Attribute> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < attributes_count; i++) {
+            String attribute = CatalogSnapshot.readString(buffer);
+            long null_count = buffer.getLong();
+            long distinct_count = buffer.getLong();
+            double min = buffer.getDouble();
+            double max = buffer.getDouble();
+            int buckets = buffer.getInt();
+            double[] histogram = null;
+            if (buckets >= 0) {
+                histogram = new double[buckets];
+                buffer.asDoubleBuffer().get(histogram);
+                buffer.position(buffer.position() + Double.BYTES * buckets);
+            }
+            attributes.put(attribute, new Attribute(null_count, distinct_count, Double.isNaN(min) ? null : min,
+                    Double.isNaN(max) ? null : max, histogram));
+        }
+        return new SourceStatistics(row_count, attributes);
+    }
+
+    /**
+     * Créer la table des statistiques si elle n'existe pas
+     *
+     * @param statement requête
+     * @throws SQLException erreur SQL
+     */
+    private static void createTable(Statement statement) throws SQLException {
+        statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + STATISTICS_TABLE + " (TABLE_NAME TEXT, " +
+                "ATTRIBUTE TEXT, ROW_COUNT INTEGER, NULL_COUNT INTEGER, DISTINCT_COUNT INTEGER, MIN_VALUE REAL, " +
+                "MAX_VALUE REAL, HISTOGRAM TEXT, PRIMARY KEY (TABLE_NAME, ATTRIBUTE))");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(row_count + " tuples");
+        for (Map.Entry<String, Attribute> entry : attributes.entrySet())
+            sb.append("\n  ").append(entry.getKey()).append(" : ").append(entry.getValue());
+        return sb.toString();
+    }
+}
@@ -0,0 +1,107 @@
+import org.sqlite.Function;
+
+import java.sql.SQLException;
+
+/**
+ * Fonctions SQL de proximité entre coordonnées GPS :
+ * DISTANCE(latitude 1, longitude 1, latitude 2, longitude 2) calcule la distance arrondie au mètre (Utils.distance)
+ * et WITHIN_DISTANCE(latitude 1, longitude 1, latitude 2, longitude 2, rayon) vaut 1 si elle ne dépasse pas le rayon,
+ * en écartant d'abord sans trigonométrie les coordonnées trop éloignées en degrés
+ * <p>
+ * Une instance est créée par connexion (appels séquentiels) : elle conserve, sans allocation, la dernière distance
+ * calculée (une même distance peut être évaluée plusieurs fois par tuple, dans la clause WHERE puis dans
+ * la projection ou le tri) ; dans une requête du médiateur, un prédicat de rayon est précédé d'une boîte
+ * englobante évaluée par SQLite (SpatialPredicate), qui évite la plupart des appels
+ */
+public final class SpatialFunctions {
+    /**
+     * Nom de la fonction de distance
+     */
+    public static final String DISTANCE = SpatialPredicate.DISTANCE_FUNCTION;
+
+    /**
+     * Nom du prédicat de rayon
+     */
+    public static final String WITHIN_DISTANCE = SpatialPredicate.WITHIN_DISTANCE_FUNCTION;
+
+    private SpatialFunctions() {
+    }
+
+    /**
+     * Créer les fonctions de proximité sur toutes les connexions d'un médiateur
+     *
+     * @param mediator médiateur
+     */
+    public static void register(Mediator mediator) {
+        mediator.createSQLFunction(DISTANCE, Distance::new);
+        mediator.createSQLFunction(WITHIN_DISTANCE, WithinDistance::new);
+    }
+
+    /**
+     * Fonction DISTANCE
+     */
+    public static class Distance extends Function {
+        /**
+         * Coordonnées du dernier calcul et distance obtenue
+         */
+        private double last_lat1 = Double.NaN, last_lon1, last_lat2, last_lon2, last_distance;
+
+        @Override
+        protected void xFunc() throws SQLException {
+            if (args() != 4) throw new SQLException("Nombre d'arguments invalides.");
+            result(distance(value_double(0), value_double(1), value_double(2), value_double(3)));
+        }
+
+        /**
+         * Calculer la distance entre deux coordonnées, sans la recalculer si elles sont celles de l'appel précédent
+         *
+         * @param lat1 latitude 1
+         * @param lon1 longitude 1
+         * @param lat2 latitude 2
+         * @param lon2 longitude 2
+         * @return distance (m), identique à Utils.distance
+         */
+        double distance(double lat1, double lon1, double lat2, double lon2) {
+            if (lat1 == last_lat1 && lon1 == last_lon1 && lat2 == last_lat2 && lon2 == last_lon2) return last_distance;
+            Metrics.Counter.DISTANCE_CALLS.increment();
+            last_lat1 = lat1;
+            last_lon1 = lon1;
+            last_lat2 = lat2;
+            last_lon2 = lon2;
+            last_distance = Utils.distance(lat1, lon1, lat2, lon2);
+            return last_distance;
+        }
+    }
+
+    /**
+     * Fonction WITHIN_DISTANCE
+     */
+    public static class WithinDistance extends Function {
+        /**
+         * Calcul exact des distances non écartées
+         */
+        private final Distance distance = new Distance();
+
+        @Override
+        protected void xFunc() throws SQLException {
+            if (args() != 5) throw new SQLException("Nombre d'arguments invalides.");
+            result(isWithinDistance(value_double(0), value_double(1), value_double(2), value_double(3),
+                    value_double(4)) ? 1 : 0);
+        }
+
+        /**
+         * Vérifier que la distance entre deux coordonnées ne dépasse pas un rayon
+         *
+         * @param lat1   latitude 1
+         * @param lon1   longitude 1
+         * @param lat2   latitude 2
+         * @param lon2   longitude 2
+         * @param meters rayon (m)
+         * @return vrai si la distance ne dépasse pas le rayon (comme Utils.isWithinDistance)
+         */
+        boolean isWithinDistance(double lat1, double lon1, double lat2, double lon2, double meters) {
+            if (!Utils.isWithinBound(lat1, lon1, lat2, lon2, meters)) return false;
+            return distance.distance(lat1, lon1, lat2, lon2) <= meters;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import java.util.*;
+
+/**
+ * Prédicat de proximité DISTANCE(latitude 1, longitude 1, latitude 2, longitude 2) <= N
+ * ou WITHIN_DISTANCE(latitude 1, longitude 1, latitude 2, longitude 2, N) de la clause WHERE,
+ * précédé lors de la composition d'une boîte englobante (filtre conservatif pouvant utiliser l'index spatial
+ * des sources) afin que la distance exacte ne soit calculée que pour les couples proches
+ */
+public class SpatialPredicate {
+    /**
+     * Nom de la fonction SQL de distance (calculée par Utils.distance)
+     */
+    public static final String DISTANCE_FUNCTION = "DISTANCE";
+
+    /**
+     * Nom de la fonction SQL de rayon (vaut 1 si la distance ne dépasse pas son dernier argument)
+     */
+    public static final String WITHIN_DISTANCE_FUNCTION = "WITHIN_DISTANCE";
+
+    /**
+     * Rayon de la terre utilisé par Utils.distance (m)
+     */
+    static final double EARTH_RADIUS = 6373000.0;
+
+    /**
+     * Marge ajoutée au seuil (m) : la distance calculée est arrondie au mètre
+     */
+    static final int MARGIN = 1;
+
+    /**
+     * Position GPS d'un argument de la fonction : attributs d'une table ou valeurs constantes
+     */
+    private static class Point {
+        /**
+         * Parcours de la table globale (null pour une position constante)
+         */
+        final LogicalPlan.Scan scan;
+
+        /**
+         * Table globale (null pour une position constante)
+         */
+        final String table;
+
+        /**
+         * Expressions SQL de la latitude et de la longitude
+         */
+        final String latitude;
+        final String longitude;
+
+        Point(LogicalPlan.Scan _scan, String _latitude, String _longitude) {
+            scan = _scan;
+            table = _scan == null ? null : _scan.table;
+            latitude = _latitude;
+            longitude = _longitude;
+        }
+    }
+
+    /**
+     * Premier lexème du prédicat (la boîte englobante est insérée devant)
+     */
+    public final SQLTokenizer.Token first_token;
+
+    /**
+     * Expression SQL du seuil de distance (m)
+     */
+    private final String threshold;
+
+    /**
+     * Positions comparées
+     */
+    private final Point[] points;
+
+    /**
+     * Constructeur
+     *
+     * @param _first_token premier lexème
+     * @param _threshold   seuil de distance
+     * @param _points      positions comparées
+     */
+    private SpatialPredicate(SQLTokenizer.Token _first_token, String _threshold, Point[] _points) {
+        first_token = _first_token;
+        threshold = _threshold;
+        points = _points;
+    }
+
+    /**
+     * Parcours dont les coordonnées sont comparées
+     *
+     * @return parcours
+     */
+    public List<LogicalPlan.Scan> getScans() {
+        List<LogicalPlan.Scan> scans = new ArrayList<>();
+        for (Point point : points)
+            if (point.scan != null) scans.add(point.scan);
+        return scans;
+    }
+
+    /**
+     * Extraire les prédicats de proximité d'une conjonction
+     *
+     * @param conjuncts termes d'une conjonction (clause WHERE ou condition de jointure)
+     * @param scans     parcours dont les attributs ne sont pas complétés par des valeurs nulles
+     *                  lors de l'évaluation des termes
+     * @return prédicats de proximité
+     */
+    public static List<SpatialPredicate> extract(List<SQLExpression> conjuncts, Set<LogicalPlan.Scan> scans) {
+        List<SpatialPredicate> predicates = new ArrayList<>();
+        for (SQLExpression conjunct : conjuncts) {
+            SpatialPredicate predicate = analyze(conjunct, scans);
+            if (predicate != null) predicates.add(predicate);
+        }
+        return predicates;
+    }
+
+    /**
+     * Analyser un terme de la forme DISTANCE(...) <= N, DISTANCE(...) < N, N >= DISTANCE(...), N > DISTANCE(...)
+     * ou WITHIN_DISTANCE(..., N)
+     *
+     * @param conjunct terme
+     * @param scans    parcours dont les attributs ne sont pas complétés par des valeurs nulles
+     * @return prédicat, ou null si le terme n'est pas un prédicat de proximité
+     */
+    private static SpatialPredicate analyze(SQLExpression conjunct, Set<LogicalPlan.Scan> scans) {
+        SQLExpression call;
+        SQLExpression threshold;
+        if (conjunct instanceof SQLExpression.Function) {
+            // WITHIN_DISTANCE(..., N)
+            call = conjunct;
+            SQLExpression.Function function = (SQLExpression.Function) conjunct;
+            if (!function.name.equals(WITHIN_DISTANCE_FUNCTION) || function.arguments.size() != 5) return null;
+            threshold = function.arguments.get(4);
+        } else if (conjunct instanceof SQLExpression.Operation) {
+            SQLExpression.Operation comparison = (SQLExpression.Operation) conjunct;
+            if (comparison.operands.size() != 2) return null;
+            if (comparison.operator.equals("<=") || comparison.operator.equals("<")) {
+                // DISTANCE(...) <= N
+                call = comparison.operands.get(0);
+                threshold = comparison.operands.get(1);
+            } else if (comparison.operator.equals(">=") || comparison.operator.equals(">")) {
+                // N >= DISTANCE(...)
+                call = comparison.operands.get(1);
+                threshold = comparison.operands.get(0);
+            } else return null;
+            if (!(call instanceof SQLExpression.Function)
+                    || !((SQLExpression.Function) call).name.equals(DISTANCE_FUNCTION)
+                    || ((SQLExpression.Function) call).arguments.size() != 4) return null;
+        } else return null;
+        SQLExpression.Function function = (SQLExpression.Function) call;
+        if (function.window || !isConstant(threshold.tokens)) return null;
+
+        Point[] points = new Point[2];
+        for (int i = 0; i < 2; i++) {
+            SQLExpression latitude = function.arguments.get(2 * i);
+            SQLExpression longitude = function.arguments.get(2 * i + 1);
+            if (isConstant(latitude.tokens) && isConstant(longitude.tokens)) {
+                points[i] = new Point(null, join(latitude.tokens), join(longitude.tokens));
+                continue;
+            }
+            // Attributs de coordonnées d'un même parcours
+            if (!(latitude instanceof SQLExpression.Column) || !(longitude instanceof SQLExpression.Column))
+                return null;
+            LogicalPlan.Scan scan = ((SQLExpression.Column) latitude).scan;
+            if (scan == null || scan != ((SQLExpression.Column) longitude).scan || !scans.contains(scan)
+                    || !((SQLExpression.Column) latitude).name.equalsIgnoreCase(Wrapper.LATITUDE_ATTRIBUTE)
+                    || !((SQLExpression.Column) longitude).name.equalsIgnoreCase(Wrapper.LONGITUDE_ATTRIBUTE))
+                return null;
+            points[i] = new Point(scan, scan.getName() + "." + Wrapper.LATITUDE_ATTRIBUTE,
+                    scan.getName() + "." + Wrapper.LONGITUDE_ATTRIBUTE);
+        }
+        if (points[0].scan == null && points[1].scan == null) return null;
+        if (points[0].scan == points[1].scan) return null;
+        return new SpatialPredicate(conjunct.tokens.get(0), join(threshold.tokens), points);
+    }
+
+    /**
+     * Vérifier qu'une expression est une constante numérique (nombre ou paramètre, éventuellement signé)
+     *
+     * @param tokens lexèmes de l'expression
+     * @return vrai si l'expression est constante
+     */
+    private static boolean isConstant(List<SQLTokenizer.Token> tokens) {
+        if (tokens.isEmpty()) return false;
+        int i = 0;
+        if (tokens.size() == 2 && (tokens.get(0).isOperator("-") || tokens.get(0).isOperator("+"))) i++;
+        if (i != tokens.size() - 1) return false;
+        SQLTokenizer.TokenType type = tokens.get(i).type;
+        return type == SQLTokenizer.TokenType.NUMBER || type == SQLTokenizer.TokenType.PARAMETER;
+    }
+
+    /**
+     * Recomposer le texte d'une expression
+     *
+     * @param tokens lexèmes
+     * @return texte
+     */
+    private static String join(List<SQLTokenizer.Token> tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (SQLTokenizer.Token token : tokens) sb.append(token.text);
+        return sb.toString();
+    }
+
+    /**
+     * Écrire la boîte englobante du prédicat : l'écart de latitude est borné par la distance,
+     * l'écart de longitude par la distance divisée par le cosinus de la latitude moyenne,
+     * minoré à partir de la plus grande latitude (en valeur absolue) des tables comparées
+     *
+     * @param indexed_tables tables dont la sous-requête expose les bornes de l'index spatial
+     * @param max_latitude   plus grande latitude (en valeur absolue) des tables comparées
+     * @return conditions SQL
+     */
+    public String render(Set<String> indexed_tables, double max_latitude) {
+        String distance = "(" + threshold + " + " + MARGIN + ")";
+        double degrees_per_meter = Math.toDegrees(1 / EARTH_RADIUS);
+        String latitude_delta = distance + " * " + degrees_per_meter;
+        // La latitude moyenne d'un couple retenu s'écarte au plus d'une demi-boîte de la plus grande latitude,
+        // et le cosinus est 1-lipschitzien
+        String cosine = Math.cos(Math.toRadians(Math.min(Math.abs(max_latitude), 90))) + " - " +
+                distance + " * " + (1 / (2 * EARTH_RADIUS));
+        String longitude_delta = "(CASE WHEN " + cosine + " > 0 THEN " + distance + " * " + degrees_per_meter +
+                " / (" + cosine + ") ELSE 360 END)";
+
+        List<String> conditions = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Point point = points[i];
+            Point other = points[1 - i];
+            if (point.table == null || !indexed_tables.contains(point.table)) continue;
+            // Recouvrement entre la boîte de l'index et celle de l'autre position
+            String prefix = point.scan.getName() + ".";
+            conditions.add(prefix + Wrapper.SPATIAL_MIN_LATITUDE + " <= (" + other.latitude + ") + " + latitude_delta);
+            conditions.add(prefix + Wrapper.SPATIAL_MAX_LATITUDE + " >= (" + other.latitude + ") - " + latitude_delta);
+            conditions.add(prefix + Wrapper.SPATIAL_MIN_LONGITUDE + " <= (" + other.longitude + ") + " + longitude_delta);
+            conditions.add(prefix + Wrapper.SPATIAL_MAX_LONGITUDE + " >= (" + other.longitude + ") - " + longitude_delta);
+        }
+        if (conditions.isEmpty()) {
+            // Aucun index disponible : filtre sur les coordonnées, moins coûteux que la distance exacte
+            Point point = points[0].table != null ? points[0] : points[1];
+            Point other = point == points[0] ? points[1] : points[0];
+            conditions.add(point.latitude + " BETWEEN (" + other.latitude + ") - " + latitude_delta +
+                    " AND (" + other.latitude + ") + " + latitude_delta);
+            conditions.add(point.longitude + " BETWEEN (" + other.longitude + ") - " + longitude_delta +
+                    " AND (" + other.longitude + ") + " + longitude_delta);
+        }
+        return String.join("\nAND ", conditions);
+    }
+}
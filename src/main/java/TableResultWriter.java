@@ -0,0 +1,106 @@
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Affichage d'un résultat sous forme de tableau : la largeur des colonnes est calculée sur les premiers tuples,
+ * mis en attente, puis les suivants sont affichés au fil de l'eau
+ */
+public class TableResultWriter implements ResultWriter {
+    /**
+     * Nombre de tuples par défaut utilisés pour calculer la largeur des colonnes
+     */
+    public static final int DEFAULT_SIZING_ROWS = 1000;
+
+    /**
+     * Flux de sortie
+     */
+    private final PrintStream output;
+
+    /**
+     * Nombre de tuples utilisés pour calculer la largeur des colonnes
+     */
+    private final int sizing_rows;
+
+    /**
+     * Lignes en attente (attributs puis premiers tuples) tant que la largeur n'est pas fixée
+     */
+    private List<String[]> pending;
+
+    /**
+     * Largeur des colonnes (null tant qu'elle n'est pas fixée)
+     */
+    private int[] column_spaces;
+
+    /**
+     * Constructeur
+     *
+     * @param _output      flux de sortie
+     * @param _sizing_rows nombre de tuples utilisés pour calculer la largeur des colonnes
+     */
+    public TableResultWriter(PrintStream _output, int _sizing_rows) {
+        output = _output;
+        sizing_rows = _sizing_rows;
+        pending = new ArrayList<>();
+    }
+
+    /**
+     * Constructeur
+     *
+     * @param _output flux de sortie
+     */
+    public TableResultWriter(PrintStream _output) {
+        this(_output, DEFAULT_SIZING_ROWS);
+    }
+
+    @Override
+    public void writeHeader(List<String> attributes) {
+        pending.add(attributes.toArray(new String[0]));
+    }
+
+    @Override
+    public void writeRow(Object[] row) {
+        String[] line = new String[row.length];
+        for (int i = 0; i < row.length; i++) line[i] = ResultWriter.format(row[i]);
+        if (column_spaces != null) {
+            print(line);
+            return;
+        }
+        pending.add(line);
+        // Attributs et premiers tuples reçus : la largeur est fixée
+        if (pending.size() > sizing_rows) flushPending();
+    }
+
+    @Override
+    public void flush() {
+        if (column_spaces == null) flushPending();
+        output.flush();
+    }
+
+    /**
+     * Fixer la largeur des colonnes et afficher les lignes en attente
+     */
+    private void flushPending() {
+        column_spaces = new int[pending.isEmpty() ? 0 : pending.get(0).length];
+        for (String[] line : pending)
+            for (int i = 0; i < line.length; i++)
+                column_spaces[i] = Math.max(column_spaces[i], line[i].length());
+        for (String[] line : pending) print(line);
+        pending = null;
+    }
+
+    /**
+     * Afficher une ligne
+     *
+     * @param line valeurs
+     */
+    private void print(String[] line) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < line.length; i++) {
+            // Une valeur plus large que la colonne (tuple reçu après le calcul) décale la ligne
+            int remaining_length = Math.max(column_spaces[i] - line[i].length(), 0) + 3;
+            sb.append("| ").append(line[i]).append(" ".repeat(remaining_length));
+        }
+        output.println(sb);
+    }
+}
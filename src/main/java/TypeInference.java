@@ -0,0 +1,266 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moteur d'inférence des types des attributs
+ * (une seule passe sur les tuples, analyse caractère par caractère sans expression régulière)
+ */
+public class TypeInference {
+    /**
+     * Statistiques des attributs
+     */
+    private final List<AttributeStatistics> statistics;
+
+    /**
+     * Nombre de tuples analysés
+     */
+    private long count;
+
+    /**
+     * Constructeur
+     *
+     * @param attributes liste des attributs
+     */
+    public TypeInference(List<String> attributes) {
+        statistics = new ArrayList<>(attributes.size());
+        for (String attribute : attributes)
+            statistics.add(new AttributeStatistics(attribute));
+    }
+
+    /**
+     * Ajouter un attribut découvert en cours d'analyse (source sans en-tête fixe) :
+     * sa valeur est manquante dans les tuples déjà analysés
+     *
+     * @param attribute attribut
+     */
+    public void addAttribute(String attribute) {
+        AttributeStatistics attribute_statistics = new AttributeStatistics(attribute);
+        attribute_statistics.count = count;
+        attribute_statistics.null_count = count;
+        statistics.add(attribute_statistics);
+    }
+
+    /**
+     * Analyser des tuples
+     *
+     * @param tuples      tuples
+     * @param sample_size nombre maximum de tuples analysés (0 pour tous)
+     */
+    public void addTuples(Iterable<String[]> tuples, int sample_size) {
+        for (String[] tuple : tuples) {
+            addTuple(tuple);
+            if (count == sample_size) break;
+        }
+    }
+
+    /**
+     * Analyser un tuple (les attributs absents d'un tuple incomplet sont des valeurs manquantes,
+     * insérées à NULL lors du chargement)
+     *
+     * @param tuple tuple
+     */
+    public void addTuple(String[] tuple) {
+        for (int i = 0; i < statistics.size(); i++)
+            addValue(statistics.get(i), i < tuple.length ? tuple[i] : "");
+        count++;
+    }
+
+    /**
+     * Analyser une valeur
+     *
+     * @param attribute statistiques de l'attribut
+     * @param value     valeur
+     */
+    private static void addValue(AttributeStatistics attribute, String value) {
+        attribute.count++;
+        int length = value.length();
+        if (length == 0) {
+            attribute.null_count++;
+            return;
+        }
+        if (length < attribute.min_length) attribute.min_length = length;
+        if (length > attribute.max_length) attribute.max_length = length;
+
+        switch (scanNumber(value)) {
+            case INTEGER:
+                attribute.integer_count++;
+                updateBounds(attribute, value);
+                break;
+            case REAL:
+                attribute.real_count++;
+                updateBounds(attribute, value);
+                break;
+            default:
+                if (isBoolean(value)) attribute.boolean_count++;
+                else if (isDate(value)) attribute.date_count++;
+        }
+    }
+
+    /**
+     * Mettre à jour les bornes numériques d'un attribut
+     *
+     * @param attribute statistiques de l'attribut
+     * @param value     valeur numérique
+     */
+    private static void updateBounds(AttributeStatistics attribute, String value) {
+        double number = Double.parseDouble(value);
+        if (number < attribute.min) attribute.min = number;
+        if (number > attribute.max) attribute.max = number;
+    }
+
+    /**
+     * Obtenir le nombre de tuples analysés
+     *
+     * @return nombre de tuples
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Obtenir les statistiques des attributs
+     *
+     * @return statistiques
+     */
+    public List<AttributeStatistics> getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Analyser une valeur numérique : [+-]chiffres[.chiffres][(e|E)[+-]chiffres]
+     * (un entier avec un zéro non significatif est considéré comme un code textuel)
+     *
+     * @param value valeur non vide
+     * @return INTEGER, REAL ou TEXT si la valeur n'est pas numérique
+     */
+    static AttributeStatistics.Type scanNumber(String value) {
+        int length = value.length();
+        int i = 0;
+        char c = value.charAt(0);
+        if (c == '+' || c == '-') i++;
+        int integer_start = i;
+        while (i < length && isDigit(value.charAt(i))) i++;
+        int integer_digits = i - integer_start;
+        if (i == length) {
+            if (integer_digits == 0) return AttributeStatistics.Type.TEXT;
+            // Les codes tels que "01234" ne doivent pas perdre leur zéro
+            if (integer_digits > 1 && value.charAt(integer_start) == '0') return AttributeStatistics.Type.TEXT;
+            // Au-delà de 18 chiffres, la valeur ne tient plus dans un entier SQLite
+            return integer_digits > 18 ? AttributeStatistics.Type.REAL : AttributeStatistics.Type.INTEGER;
+        }
+        int fraction_digits = 0;
+        if (value.charAt(i) == '.') {
+            i++;
+            int fraction_start = i;
+            while (i < length && isDigit(value.charAt(i))) i++;
+            fraction_digits = i - fraction_start;
+        }
+        if (integer_digits + fraction_digits == 0) return AttributeStatistics.Type.TEXT;
+        if (i < length && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (value.charAt(i) == '+' || value.charAt(i) == '-')) i++;
+            int exponent_start = i;
+            while (i < length && isDigit(value.charAt(i))) i++;
+            if (i == exponent_start) return AttributeStatistics.Type.TEXT;
+        }
+        return i == length ? AttributeStatistics.Type.REAL : AttributeStatistics.Type.TEXT;
+    }
+
+    /**
+     * Vérifier si une valeur est un booléen (Oui/Non, True/False)
+     *
+     * @param value valeur non vide
+     * @return vrai si la valeur est booléenne
+     */
+    static boolean isBoolean(String value) {
+        switch (value.length()) {
+            case 3:
+                return value.equalsIgnoreCase("oui") || value.equalsIgnoreCase("non");
+            case 4:
+                return value.equalsIgnoreCase("true");
+            case 5:
+                return value.equalsIgnoreCase("false");
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Vérifier si une valeur est une date :
+     * AAAA-MM-JJ[(T| )HH:MM[:SS[.fff]][Z|(+|-)HH:MM]] ou JJ/MM/AAAA
+     *
+     * @param value valeur non vide
+     * @return vrai si la valeur est une date
+     */
+    static boolean isDate(String value) {
+        int length = value.length();
+        if (length == 10 && value.charAt(2) == '/' && value.charAt(5) == '/')
+            return areDigits(value, 0, 2) && areDigits(value, 3, 5) && areDigits(value, 6, 10)
+                    && isDayAndMonth(value, 0, 3);
+        if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') return false;
+        if (!areDigits(value, 0, 4) || !areDigits(value, 5, 7) || !areDigits(value, 8, 10)
+                || !isDayAndMonth(value, 8, 5)) return false;
+        if (length == 10) return true;
+
+        // Heure
+        char separator = value.charAt(10);
+        if (separator != 'T' && separator != ' ') return false;
+        if (length < 16 || !areDigits(value, 11, 13) || value.charAt(13) != ':' || !areDigits(value, 14, 16))
+            return false;
+        int i = 16;
+        if (i + 3 <= length && value.charAt(i) == ':') {
+            if (!areDigits(value, i + 1, i + 3)) return false;
+            i += 3;
+            if (i < length && value.charAt(i) == '.') {
+                int fraction_start = ++i;
+                while (i < length && isDigit(value.charAt(i))) i++;
+                if (i == fraction_start) return false;
+            }
+        }
+        if (i == length) return true;
+
+        // Fuseau horaire
+        char zone = value.charAt(i);
+        if (zone == 'Z') return i + 1 == length;
+        return (zone == '+' || zone == '-') && i + 6 == length && areDigits(value, i + 1, i + 3)
+                && value.charAt(i + 3) == ':' && areDigits(value, i + 4, i + 6);
+    }
+
+    /**
+     * Vérifier que le jour et le mois d'une date sont plausibles
+     *
+     * @param value     valeur
+     * @param day_pos   position du jour
+     * @param month_pos position du mois
+     * @return vrai si le jour et le mois sont valides
+     */
+    private static boolean isDayAndMonth(String value, int day_pos, int month_pos) {
+        int day = (value.charAt(day_pos) - '0') * 10 + value.charAt(day_pos + 1) - '0';
+        int month = (value.charAt(month_pos) - '0') * 10 + value.charAt(month_pos + 1) - '0';
+        return day >= 1 && day <= 31 && month >= 1 && month <= 12;
+    }
+
+    /**
+     * Vérifier qu'une portion de chaîne ne contient que des chiffres
+     *
+     * @param value valeur
+     * @param start début (inclus)
+     * @param end   fin (exclue)
+     * @return vrai si tous les caractères sont des chiffres
+     */
+    private static boolean areDigits(String value, int start, int end) {
+        for (int i = start; i < end; i++)
+            if (!isDigit(value.charAt(i))) return false;
+        return true;
+    }
+
+    /**
+     * Vérifier qu'un caractère est un chiffre ASCII
+     *
+     * @param c caractère
+     * @return vrai si c'est un chiffre
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,9 +1,18 @@
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+
 import static java.lang.Math.*;
 
 /**
  * Fonctions utilitaires
  */
 public class Utils {
+    /**
+     * Distance d'un degré de latitude pour le rayon de la terre utilisé par distance (m)
+     */
+    private static final double METERS_PER_DEGREE = 6373000.0 * PI / 180;
+
     /**
      * Lever une exception
      *
@@ -18,6 +27,25 @@ public class Utils {
         }
     }
 
+    /**
+     * Localiser un fichier source : chemin sur le disque s'il contient un dossier, ressource sinon
+     *
+     * @param file_path chemin du fichier
+     * @return URL du fichier (null s'il est introuvable)
+     */
+    public static URL getFileURL(String file_path) {
+        if (file_path.lastIndexOf("/") > 0) {
+            File file = new File(file_path);
+            try {
+                return file.exists() ? file.toURI().toURL() : null;
+            } catch (MalformedURLException e) {
+                e.printStackTrace();
+                return null;
+            }
+        }
+        return Utils.class.getClassLoader().getResource(file_path);
+    }
+
     /**
      * Calculer la distance approximative en mètres entre deux coordonnées GPS
      * (source : https://www.movable-type.co.uk/scripts/latlong.html)
@@ -44,4 +72,54 @@ public class Utils {
         // Distance en mètres
         return round(sqrt(x * x + y * y) * R * 1000);
     }
+
+    /**
+     * Vérifier que la distance entre deux coordonnées GPS ne dépasse pas un rayon (même résultat que
+     * distance(...) <= rayon) : les coordonnées trop éloignées en degrés sont écartées avant tout calcul
+     * trigonométrique
+     *
+     * @param lat1   latitude 1
+     * @param lon1   longitude 1
+     * @param lat2   latitude 2
+     * @param lon2   longitude 2
+     * @param meters rayon (m)
+     * @return vrai si la distance ne dépasse pas le rayon
+     */
+    public static boolean isWithinDistance(double lat1, double lon1, double lat2, double lon2, double meters) {
+        return isWithinBound(lat1, lon1, lat2, lon2, meters) && distance(lat1, lon1, lat2, lon2) <= meters;
+    }
+
+    /**
+     * Vérifier, sans calcul trigonométrique, que deux coordonnées GPS peuvent être à moins d'un rayon :
+     * le carré de leur écart en degrés est comparé au carré du rayon (filtre conservatif)
+     *
+     * @param lat1   latitude 1
+     * @param lon1   longitude 1
+     * @param lat2   latitude 2
+     * @param lon2   longitude 2
+     * @param meters rayon (m)
+     * @return faux si la distance dépasse certainement le rayon
+     */
+    public static boolean isWithinBound(double lat1, double lon1, double lat2, double lon2, double meters) {
+        // Rayon en degrés de latitude, avec une marge d'un mètre (la distance est arrondie au mètre)
+        double limit = (meters + 1) / METERS_PER_DEGREE;
+        double d_lat = lat2 - lat1;
+        double d_lon = (lon2 - lon1) * getMinCosine(max(abs(lat1), abs(lat2)));
+        return d_lat * d_lat + d_lon * d_lon <= limit * limit;
+    }
+
+    /**
+     * Minorant du cosinus des latitudes comprises entre 0 et une latitude maximale, par paliers : l'écart
+     * de longitude réduit par ce minorant ne dépasse pas celui de distance, réduit par le cosinus
+     * de la latitude moyenne (au moins celui de la plus grande latitude)
+     *
+     * @param latitude latitude maximale, en valeur absolue
+     * @return minorant du cosinus
+     */
+    private static double getMinCosine(double latitude) {
+        if (latitude <= 45) return 0.7071;
+        if (latitude <= 60) return 0.5;
+        if (latitude <= 75) return 0.2588;
+        return 0;
+    }
 }
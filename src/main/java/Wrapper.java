@@ -1,10 +1,80 @@
+import java.sql.*;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Wrapper SQL abstrait
  */
 public abstract class Wrapper {
+    /**
+     * Capacités d'un wrapper, consultées par le médiateur lors de la décomposition des requêtes
+     */
+    public enum Capability {
+        /**
+         * Les prédicats des requêtes peuvent être évalués par la source
+         */
+        FILTER_PUSHDOWN,
+        /**
+         * La source peut ne fournir que les attributs utiles à une requête
+         */
+        PROJECTION_PUSHDOWN,
+        /**
+         * Le nombre de tuples et les statistiques des attributs de la source sont connus
+         */
+        ROW_COUNT_ESTIMATE,
+        /**
+         * La source est parcourue au fil de l'eau, sans être chargée entièrement en mémoire
+         */
+        STREAMING_SCAN,
+        /**
+         * Des index peuvent être créés dans la base de données de la source
+         */
+        INDEX_CREATION
+    }
+
+    /**
+     * Taille par défaut des lots d'insertion
+     */
+    public static final int DEFAULT_BATCH_SIZE = 5000;
+
+    /**
+     * Table des métadonnées (empreintes des fichiers) dans chaque base de données source
+     */
+    protected static final String METADATA_TABLE = "_METADATA";
+
+    /**
+     * Table temporaire de transit utilisée lors d'une intégration incrémentale
+     */
+    private static final String STAGING_TABLE = "_STAGING";
+
+    /**
+     * Dernière version attribuée à une source
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    /**
+     * Attributs des coordonnées GPS indexées spatialement
+     */
+    public static final String LATITUDE_ATTRIBUTE = "LATITUDE";
+    public static final String LONGITUDE_ATTRIBUTE = "LONGITUDE";
+
+    /**
+     * Suffixe de l'index spatial (R-tree) d'une table
+     */
+    public static final String SPATIAL_INDEX_SUFFIX = "_SPATIAL";
+
+    /**
+     * Colonnes de l'index spatial : identifiant du tuple (rowid) puis bornes de chaque coordonnée
+     */
+    public static final String SPATIAL_ROWID = "_ROWID";
+    public static final String SPATIAL_MIN_LATITUDE = "_MIN_LATITUDE";
+    public static final String SPATIAL_MAX_LATITUDE = "_MAX_LATITUDE";
+    public static final String SPATIAL_MIN_LONGITUDE = "_MIN_LONGITUDE";
+    public static final String SPATIAL_MAX_LONGITUDE = "_MAX_LONGITUDE";
+
     /**
      * Mode de débugage
      */
@@ -31,24 +101,64 @@ public abstract class Wrapper {
     protected List<String> attributes;
 
     /**
-     * Données du fichier
+     * Types SQL des attributs
+     */
+    protected List<String> attributes_types;
+
+    /**
+     * Statistiques des attributs calculées lors de l'inférence des types
+     */
+    protected List<AttributeStatistics> attributes_statistics;
+
+    /**
+     * Données du fichier (null en mode flux, les données ne sont alors jamais matérialisées)
      */
     protected List<String[]> values;
 
+    /**
+     * Nombre de tuples insérés par lot
+     */
+    protected final int batch_size;
+
+    /**
+     * Version de la source, distincte à chaque intégration (clé des résultats conservés par le médiateur)
+     */
+    protected final long version = VERSIONS.incrementAndGet();
+
+    /**
+     * Empreinte du fichier source
+     */
+    protected SourceFingerprint fingerprint;
+
+    /**
+     * Emprise des coordonnées indexées (latitude min, latitude max, longitude min, longitude max),
+     * null si la source n'a pas d'index spatial
+     */
+    protected double[] spatial_bounds;
+
+    /**
+     * Statistiques de la table intégrée (estimation des coûts des requêtes)
+     */
+    protected SourceStatistics statistics;
+
     /**
      * Constructeur
      *
      * @param _db_name    nom de la base de données
      * @param _table_name nom de la table
      * @param _file_path  chemin du fichier
+     * @param _batch_size nombre de tuples insérés par lot
      * @param _debug_mode mode de débugage
      */
-    protected Wrapper(String _db_name, String _table_name, String _file_path, boolean _debug_mode) {
+    protected Wrapper(String _db_name, String _table_name, String _file_path, int _batch_size, boolean _debug_mode) {
         debug_mode = _debug_mode;
         file_path = _file_path;
         db_name = _db_name;
         table_name = _table_name;
+        batch_size = _batch_size;
         attributes = new ArrayList<>();
+        attributes_types = new ArrayList<>();
+        attributes_statistics = new ArrayList<>();
         values = new ArrayList<>();
     }
 
@@ -61,27 +171,382 @@ public abstract class Wrapper {
     protected abstract void readFile(String file_path, String... args);
 
     /**
-     * Convertir les données d'un fichier en une requête SQL
-     * permettant de créer la table associée aux données et de la remplir
+     * Obtenir les capacités du wrapper : la source est intégrée dans sa base de données SQLite,
+     * qui évalue les prédicats et projections et dans laquelle des index peuvent être créés
+     *
+     * @return capacités
+     */
+    public Set<Capability> getCapabilities() {
+        Set<Capability> capabilities = EnumSet.of(Capability.FILTER_PUSHDOWN, Capability.PROJECTION_PUSHDOWN,
+                Capability.INDEX_CREATION);
+        if (statistics != null) capabilities.add(Capability.ROW_COUNT_ESTIMATE);
+        if (values == null) capabilities.add(Capability.STREAMING_SCAN);
+        return capabilities;
+    }
+
+    /**
+     * Obtenir le chemin de la base de données SQLite contenant la table de la source
+     *
+     * @return chemin du fichier
+     */
+    public String getDatabasePath() {
+        return db_name + ".db";
+    }
+
+    /**
+     * Obtenir le nom de la table de la source dans sa base de données
+     *
+     * @return nom de la table (celui de la table globale pour une source intégrée)
+     */
+    public String getSourceTable() {
+        return table_name;
+    }
+
+    /**
+     * Convertir la structure des données d'un fichier en une requête SQL
+     * permettant de créer la table associée aux données
      *
      * @return requête SQL
      */
-    protected abstract String convertDataToSQL();
+    protected String convertDataToSQL() {
+        if (debug_mode) System.out.println("> Création de la requête SQL...");
+        StringBuilder sb = new StringBuilder();
+        // Suppression et création table
+        sb.append("DROP TABLE IF EXISTS \"" + table_name + "\";\n");
+        sb.append("CREATE TABLE \"" + table_name + "\" (\n");
+        sb.append(attributes.get(0) + " " + attributes_types.get(0) + " PRIMARY KEY");
+        for (int i = 1; i < attributes.size(); i++)
+            sb.append(",\n" + attributes.get(i) + " " + attributes_types.get(i));
+        sb.append(");\n");
+        return sb.toString();
+    }
 
     /**
-     * Obtenir la liste des valeurs d'un attribut
+     * Obtenir la requête paramétrée d'insertion d'un tuple dans une table
      *
-     * @param attribute attribut
-     * @return liste des valeurs
+     * @param target_table table cible
+     * @return requête SQL
      */
-    protected List<String> getAttributeData(String attribute) {
-        int attribute_index = attributes.indexOf(attribute);
-        if (attribute_index > -1) {
-            List<String> data = new ArrayList<>();
-            for (String[] value : values) data.add(value[attribute_index]);
-            return data;
+    protected String getInsertQuery(String target_table) {
+        StringBuilder query = new StringBuilder("INSERT INTO " + target_table + " (");
+        query.append(String.join(",", attributes));
+        query.append(") VALUES (");
+        query.append("?,".repeat(attributes.size()));
+        query.setLength(query.length() - 1);
+        query.append(")");
+        return query.toString();
+    }
+
+    /**
+     * Charger les données dans la base de données par lots
+     *
+     * @param tuples tuples à insérer (liste en mémoire ou itérateur sur le fichier)
+     * @throws IllegalStateException chargement impossible (aucun tuple n'est inséré)
+     */
+    protected void loadData(Iterable<? extends Object[]> tuples) {
+        if (debug_mode) System.out.println("> Insertion des données dans la BDD " + db_name + "...");
+        long count;
+        try {
+            count = JDBC.batchUpdateDB(db_name, getInsertQuery("\"" + table_name + "\""), tuples, batch_size);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Chargement des données dans la BDD " + db_name + " impossible", e);
         }
-        return null;
+        Metrics.Counter.ROWS_LOADED.add(count);
+        if (debug_mode) System.out.println("> " + count + " tuples insérés.");
+    }
+
+    /**
+     * Intégrer les données dans la base de données : si la table existe déjà avec la même structure,
+     * seules les modifications (insertions, mises à jour, suppressions) sont appliquées,
+     * sinon la table est recréée ; l'empreinte du fichier n'est enregistrée qu'une fois les données intégrées
+     *
+     * @param tuples tuples du fichier (textes ou valeurs typées)
+     * @throws IllegalStateException intégration impossible (la table sera réintégrée à la prochaine exécution)
+     */
+    protected void integrateData(Iterable<? extends Object[]> tuples) {
+        // Une intégration interrompue ne doit pas laisser croire que la table est à jour
+        deleteFingerprint();
+        List<String> stored_attributes = new ArrayList<>();
+        List<String> stored_types = new ArrayList<>();
+        readStoredSchema(stored_attributes, stored_types);
+        if (stored_attributes.equals(attributes) && stored_types.equals(attributes_types)) {
+            long start = Metrics.start();
+            applyChanges(tuples);
+            Metrics.Stage.LOAD.stop(start);
+        } else {
+            long start = Metrics.start();
+            String query = convertDataToSQL();
+            Metrics.Stage.SQL_BUILD.stop(start);
+            if (debug_mode) System.out.println("> Mise à jour de la BDD " + db_name + "...");
+            start = Metrics.start();
+            JDBC.updateDB(db_name, query);
+            Metrics.Stage.DDL.stop(start);
+            start = Metrics.start();
+            loadData(tuples);
+            Metrics.Stage.LOAD.stop(start);
+        }
+        saveFingerprint();
+        long start = Metrics.start();
+        buildSpatialIndex();
+        Metrics.Stage.DDL.stop(start);
+        updateStatistics(true);
+    }
+
+    /**
+     * Vérifier si le fichier source est inchangé depuis la dernière intégration ;
+     * le cas échéant, les attributs et leurs types sont récupérés depuis la base de données
+     *
+     * @return vrai si l'intégration peut être ignorée
+     */
+    protected boolean isUpToDate() {
+        fingerprint = SourceFingerprint.of(file_path);
+        SourceFingerprint stored = null;
+        Connection connection = JDBC.getDBConnection(db_name);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + METADATA_TABLE + " (" +
+                    "TABLE_NAME TEXT PRIMARY KEY, FILE_PATH TEXT, FILE_SIZE INTEGER, " +
+                    "FILE_MODIFIED INTEGER, FILE_HASH TEXT)");
+            try (PreparedStatement select = connection.prepareStatement("SELECT FILE_PATH, FILE_SIZE, " +
+                    "FILE_MODIFIED, FILE_HASH FROM " + METADATA_TABLE + " WHERE TABLE_NAME = ?")) {
+                select.setString(1, table_name);
+                ResultSet rs = select.executeQuery();
+                if (rs.next()) stored = new SourceFingerprint(rs.getString(1), rs.getLong(2),
+                        rs.getLong(3), rs.getString(4));
+                rs.close();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        JDBC.closeConnection(db_name);
+        if (!fingerprint.matches(stored)) return false;
+
+        // Fichier inchangé : la structure est relue depuis la table existante
+        readStoredSchema(attributes, attributes_types);
+        if (attributes.isEmpty()) return false;
+        // Fichier simplement touché : la nouvelle date est enregistrée pour éviter de recalculer le hash
+        if (fingerprint.modified != stored.modified) saveFingerprint();
+        values = null;
+        if (!readSpatialBounds()) {
+            long start = Metrics.start();
+            buildSpatialIndex();
+            Metrics.Stage.DDL.stop(start);
+        }
+        updateStatistics(false);
+        return true;
+    }
+
+    /**
+     * Lire la structure de la table enregistrée dans la base de données
+     *
+     * @param stored_attributes liste à remplir avec les attributs
+     * @param stored_types      liste à remplir avec les types des attributs
+     */
+    private void readStoredSchema(List<String> stored_attributes, List<String> stored_types) {
+        stored_attributes.clear();
+        stored_types.clear();
+        List<List<String>> columns = JDBC.queryDB(db_name, "PRAGMA table_info(\"" + table_name + "\")");
+        if (columns == null) return;
+        // Colonnes : cid, name, type, notnull, dflt_value, pk
+        for (List<String> column : columns.subList(1, columns.size())) {
+            stored_attributes.add(column.get(1));
+            stored_types.add(column.get(2) + (column.get(3).equals("1") ? " NOT NULL" : ""));
+        }
+    }
+
+    /**
+     * Appliquer uniquement les modifications du fichier à la table existante,
+     * en identifiant les tuples par le premier attribut (clé primaire)
+     *
+     * @param tuples tuples du fichier
+     */
+    private void applyChanges(Iterable<? extends Object[]> tuples) {
+        if (debug_mode) System.out.println("> Intégration incrémentale dans la BDD " + db_name + "...");
+        String table = "main.\"" + table_name + "\"";
+        String staging = "temp." + STAGING_TABLE;
+        String key = attributes.get(0);
+        Connection connection = JDBC.getDBConnection(db_name);
+        try (Statement statement = connection.createStatement()) {
+            // Chargement du fichier dans une table de transit avec les mêmes affinités de types
+            statement.executeUpdate("DROP TABLE IF EXISTS " + staging);
+            statement.executeUpdate("CREATE TEMP TABLE " + STAGING_TABLE + " AS SELECT * FROM " + table + " WHERE 0");
+            long loaded = JDBC.batchUpdateDB(connection, getInsertQuery(staging), tuples, batch_size);
+            Metrics.Counter.ROWS_LOADED.add(loaded);
+            long staged;
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + staging)) {
+                staged = rs.getLong(1);
+            }
+            if (staged != loaded)
+                throw new SQLException(staged + " tuples en transit pour " + loaded + " tuples lus");
+
+            // Application des différences en une transaction (anti-jointures NOT EXISTS : une clé nulle
+            // ne correspond à aucun tuple, au lieu d'annuler toute la comparaison comme NOT IN)
+            StringBuilder assignments = new StringBuilder();
+            StringBuilder differences = new StringBuilder();
+            for (String attribute : attributes.subList(1, attributes.size())) {
+                assignments.append(attribute + " = S." + attribute + ",");
+                differences.append(table_name + "." + attribute + " IS NOT S." + attribute + " OR ");
+            }
+            connection.setAutoCommit(false);
+            try {
+                int deleted = statement.executeUpdate("DELETE FROM " + table + " WHERE NOT EXISTS (SELECT 1 FROM " +
+                        staging + " AS S WHERE S." + key + " = " + table_name + "." + key + ")");
+                int updated = 0;
+                if (attributes.size() > 1) {
+                    assignments.setLength(assignments.length() - 1);
+                    differences.setLength(differences.length() - 4);
+                    updated = statement.executeUpdate("UPDATE " + table + " SET " + assignments + " FROM " +
+                            staging + " AS S WHERE " + table_name + "." + key + " = S." + key +
+                            " AND (" + differences + ")");
+                }
+                int inserted = statement.executeUpdate("INSERT INTO " + table + " SELECT * FROM " + staging +
+                        " AS S WHERE NOT EXISTS (SELECT 1 FROM " + table + " AS T WHERE T." + key + " = S." + key +
+                        ")");
+                connection.commit();
+                if (debug_mode) System.out.println("> " + inserted + " tuples insérés, " + updated +
+                        " mis à jour, " + deleted + " supprimés.");
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            statement.executeUpdate("DROP TABLE " + staging);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Intégration incrémentale dans la BDD " + db_name + " impossible", e);
+        } finally {
+            JDBC.closeConnection(db_name);
+        }
+    }
+
+    /**
+     * Supprimer l'empreinte du fichier source de la table des métadonnées
+     */
+    private void deleteFingerprint() {
+        Connection connection = JDBC.getDBConnection(db_name);
+        try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + METADATA_TABLE +
+                " WHERE TABLE_NAME = ?")) {
+            statement.setString(1, table_name);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        JDBC.closeConnection(db_name);
+    }
+
+    /**
+     * Enregistrer l'empreinte du fichier source dans la table des métadonnées
+     */
+    private void saveFingerprint() {
+        Connection connection = JDBC.getDBConnection(db_name);
+        try (PreparedStatement statement = connection.prepareStatement("INSERT OR REPLACE INTO " +
+                METADATA_TABLE + " (TABLE_NAME, FILE_PATH, FILE_SIZE, FILE_MODIFIED, FILE_HASH) " +
+                "VALUES (?, ?, ?, ?, ?)")) {
+            statement.setString(1, table_name);
+            statement.setString(2, fingerprint.file_path);
+            statement.setLong(3, fingerprint.size);
+            statement.setLong(4, fingerprint.modified);
+            statement.setString(5, fingerprint.getHash());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        JDBC.closeConnection(db_name);
+    }
+
+    /**
+     * Vérifier si la table possède des coordonnées GPS numériques pouvant être indexées
+     *
+     * @return vrai si la latitude et la longitude sont des attributs numériques
+     */
+    protected boolean hasCoordinates() {
+        for (String attribute : List.of(LATITUDE_ATTRIBUTE, LONGITUDE_ATTRIBUTE)) {
+            String type = getAttributeType(attribute);
+            if (type == null || !(type.startsWith("INTEGER") || type.startsWith("REAL"))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * (Re)construire l'index spatial R-tree des coordonnées GPS de la table
+     * (les tuples sans coordonnées ne sont pas indexés)
+     */
+    private void buildSpatialIndex() {
+        spatial_bounds = null;
+        String index = "\"" + table_name + SPATIAL_INDEX_SUFFIX + "\"";
+        Connection connection = JDBC.getDBConnection(db_name);
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DROP TABLE IF EXISTS " + index);
+            if (hasCoordinates()) {
+                if (debug_mode) System.out.println("> Construction de l'index spatial de la BDD " + db_name + "...");
+                statement.executeUpdate("CREATE VIRTUAL TABLE " + index + " USING rtree(" + SPATIAL_ROWID + ", " +
+                        SPATIAL_MIN_LATITUDE + ", " + SPATIAL_MAX_LATITUDE + ", " +
+                        SPATIAL_MIN_LONGITUDE + ", " + SPATIAL_MAX_LONGITUDE + ")");
+                statement.executeUpdate("INSERT INTO " + index + " SELECT ROWID, " +
+                        LATITUDE_ATTRIBUTE + ", " + LATITUDE_ATTRIBUTE + ", " +
+                        LONGITUDE_ATTRIBUTE + ", " + LONGITUDE_ATTRIBUTE + " FROM \"" + table_name + "\" WHERE " +
+                        LATITUDE_ATTRIBUTE + " IS NOT NULL AND " + LONGITUDE_ATTRIBUTE + " IS NOT NULL");
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        JDBC.closeConnection(db_name);
+        readSpatialBounds();
+    }
+
+    /**
+     * Lire l'emprise des coordonnées depuis l'index spatial existant
+     *
+     * @return faux si l'index est absent alors que la table possède des coordonnées
+     */
+    private boolean readSpatialBounds() {
+        spatial_bounds = null;
+        if (!hasCoordinates()) return true;
+        Connection connection = JDBC.getDBConnection(db_name);
+        boolean exists = false;
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE name = '" +
+                    table_name + SPATIAL_INDEX_SUFFIX + "'")) {
+                exists = rs.getInt(1) > 0;
+            }
+            if (exists) {
+                try (ResultSet rs = statement.executeQuery("SELECT MIN(" + SPATIAL_MIN_LATITUDE + "), MAX(" +
+                        SPATIAL_MAX_LATITUDE + "), MIN(" + SPATIAL_MIN_LONGITUDE + "), MAX(" +
+                        SPATIAL_MAX_LONGITUDE + ") FROM \"" + table_name + SPATIAL_INDEX_SUFFIX + "\"")) {
+                    // Index vide : aucune emprise
+                    if (rs.getObject(1) != null)
+                        spatial_bounds = new double[]{rs.getDouble(1), rs.getDouble(2), rs.getDouble(3), rs.getDouble(4)};
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        JDBC.closeConnection(db_name);
+        return exists;
+    }
+
+    /**
+     * Calculer et enregistrer les statistiques de la table, ou les relire si elles sont déjà enregistrées
+     *
+     * @param recompute données modifiées depuis le dernier calcul
+     */
+    private void updateStatistics(boolean recompute) {
+        statistics = null;
+        Connection connection = JDBC.getDBConnection(db_name);
+        try {
+            if (!recompute) statistics = SourceStatistics.load(connection, table_name, attributes);
+            if (statistics == null) {
+                if (debug_mode) System.out.println("> Calcul des statistiques de la BDD " + db_name + "...");
+                long start = Metrics.start();
+                statistics = SourceStatistics.compute(connection, table_name, attributes, attributes_types);
+                statistics.save(connection, table_name);
+                Metrics.Stage.ANALYZE.stop(start);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        JDBC.closeConnection(db_name);
+        if (statistics != null) Metrics.setSourceRows(db_name, table_name, statistics.row_count);
+        if (debug_mode && statistics != null) System.out.println("> Statistiques de " + db_name + " : " + statistics);
     }
 
     /**
@@ -91,25 +556,37 @@ public abstract class Wrapper {
      * @return type de l'attribut
      */
     protected String getAttributeType(String attribute) {
-        List<String> attribute_data = getAttributeData(attribute);
-        String attribute_type = "TEXT";
-        boolean onlyFloating = true;
-        boolean onlyInteger = true;
-
-        for (String string : attribute_data) {
-            if (!onlyFloating && !onlyInteger)
-                break;
-            if (onlyFloating && !string.matches("[-+]?[0-9]*\\.?[0-9]+"))
-                onlyFloating = false;
-            if (!string.matches("[0-9]+"))
-                onlyInteger = false;
-        }
-
-        if (onlyFloating) attribute_type = "REAL";
-        else if (onlyInteger) attribute_type = "INTEGER";
+        int attribute_index = attributes.indexOf(attribute);
+        return attribute_index > -1 ? attributes_types.get(attribute_index) : null;
+    }
 
-        if (!attribute_data.contains("")) attribute_type += " NOT NULL";
+    /**
+     * Inférer le type des attributs en une seule passe sur les tuples, sans conserver les données
+     *
+     * @param tuples      tuples à parcourir
+     * @param sample_size nombre maximum de tuples analysés (0 pour tous)
+     */
+    protected void inferAttributeTypes(Iterable<String[]> tuples, int sample_size) {
+        long start = Metrics.start();
+        TypeInference inference = new TypeInference(attributes);
+        inference.addTuples(tuples, sample_size);
+        setAttributeTypes(inference, sample_size > 0);
+        Metrics.Stage.TYPE_INFERENCE.stop(start);
+    }
 
-        return attribute_type;
+    /**
+     * Fixer le type des attributs à partir d'une inférence terminée
+     *
+     * @param inference inférence des types
+     * @param sampled   types inférés sur un échantillon (aucun attribut n'est alors déclaré non nul)
+     */
+    protected void setAttributeTypes(TypeInference inference, boolean sampled) {
+        attributes_statistics = inference.getStatistics();
+        attributes_types = new ArrayList<>();
+        for (AttributeStatistics statistics : attributes_statistics)
+            attributes_types.add(statistics.getSQLType(sampled));
+        if (debug_mode)
+            for (AttributeStatistics statistics : attributes_statistics)
+                System.out.println("  " + statistics);
     }
 }
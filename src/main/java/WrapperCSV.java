@@ -3,29 +3,56 @@ import com.opencsv.CSVParserBuilder;
 import com.opencsv.CSVReader;
 import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvException;
+import com.opencsv.exceptions.CsvValidationException;
 
 import java.io.*;
+import java.net.URL;
 import java.util.Arrays;
 
 /**
  * Wrapper CSV vers SQL
  */
 public class WrapperCSV extends Wrapper {
+    /**
+     * Mode flux : les tuples sont lus au fil de l'eau et insérés directement dans la base de données
+     */
+    private final boolean streaming_mode;
+
+    /**
+     * Nombre de tuples analysés pour inférer les types en mode flux (0 pour une première passe complète)
+     */
+    private final int sample_size;
+
     /**
      * Constructeur
      *
-     * @param db_name    nom de la base de données
-     * @param table_name nom de la table
-     * @param file_path  chemin vers le fichier
-     * @param delimiter  délimiteur
-     * @param debug_mode mode de débugage
+     * @param db_name         nom de la base de données
+     * @param table_name      nom de la table
+     * @param file_path       chemin vers le fichier
+     * @param delimiter       délimiteur
+     * @param batch_size      nombre de tuples insérés par lot
+     * @param _streaming_mode mode flux
+     * @param _sample_size    nombre de tuples analysés pour inférer les types en mode flux
+     * @param debug_mode      mode de débugage
      */
-    public WrapperCSV(String db_name, String table_name, String file_path, char delimiter, boolean debug_mode) {
-        super(db_name, table_name, file_path, debug_mode);
+    public WrapperCSV(String db_name, String table_name, String file_path, char delimiter, int batch_size,
+                      boolean _streaming_mode, int _sample_size, boolean debug_mode) {
+        super(db_name, table_name, file_path, batch_size, debug_mode);
+        streaming_mode = _streaming_mode;
+        sample_size = _sample_size;
+        if (isUpToDate()) {
+            if (debug_mode) System.out.println("> Source " + file_path + " inchangée, intégration ignorée.\n");
+            return;
+        }
         readFile(file_path, delimiter + "");
-        String query = convertDataToSQL();
-        if (debug_mode) System.out.println("> Mise à jour de la BDD " + db_name + "...");
-        JDBC.updateDB(db_name, query);
+        if (streaming_mode) {
+            // Seconde passe sur le fichier : insertion directe des tuples
+            try (CSVReader csv_reader = openFile(file_path, delimiter, 1)) {
+                integrateData(csv_reader);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else integrateData(values);
         if (debug_mode) System.out.println("> Intégration terminée.\n");
     }
 
@@ -34,60 +61,55 @@ public class WrapperCSV extends Wrapper {
         // Vérification des arguments
         if (args.length != 1 || args[0].length() > 1) Utils.throwException("Arguments invalides.");
         if (debug_mode) System.out.println("> Lecture du fichier : " + file_path + "...");
-        CSVParser parser = new CSVParserBuilder().withSeparator(args[0].charAt(0)).build();
-        Reader reader = null;
-        if (file_path.lastIndexOf("/") > 0) {
-            try {
-                reader = new FileReader(file_path);
-            } catch (IOException e) {
+        char delimiter = args[0].charAt(0);
+        if (streaming_mode) {
+            // Les tuples ne sont pas conservés : seuls les attributs et leurs types sont extraits
+            values = null;
+            try (CSVReader csv_reader = openFile(file_path, delimiter, 0)) {
+                String[] header = csv_reader.readNext();
+                if (header == null) throw new IllegalStateException("Fichier CSV vide : " + file_path);
+                attributes = Arrays.asList(header);
+                if (debug_mode) System.out.println("> Inférence des types" +
+                        (sample_size > 0 ? " sur " + sample_size + " tuples" : "") + "...");
+                inferAttributeTypes(csv_reader, sample_size);
+            } catch (IOException | CsvValidationException e) {
                 e.printStackTrace();
             }
         } else {
-            InputStream input = WrapperCSV.class.getClassLoader().getResourceAsStream(file_path);
-            if (input != null) reader = new InputStreamReader(input);
-            else Utils.throwException("Fichier CSV introuvable.");
-        }
-        if (reader != null) {
-            CSVReader csv_reader = new CSVReaderBuilder(reader).withCSVParser(parser).build();
-            try {
+            long start = Metrics.start();
+            try (CSVReader csv_reader = openFile(file_path, delimiter, 0)) {
                 values = csv_reader.readAll();
             } catch (IOException | CsvException e) {
                 e.printStackTrace();
             }
+            Metrics.Stage.PARSE.stop(start);
+            // Récupération des attributs et de leurs types
+            attributes = Arrays.asList(values.get(0));
+            values.remove(0);
+            if (debug_mode) System.out.println("> Inférence des types...");
+            inferAttributeTypes(values, 0);
         }
     }
 
-    @Override
-    protected String convertDataToSQL() {
-        if (debug_mode) System.out.println("> Création de la requête SQL...");
-        StringBuilder sb = new StringBuilder();
-        // Suppression et création table
-        sb.append("DROP TABLE IF EXISTS \"" + table_name + "\";\n");
-        sb.append("CREATE TABLE \"" + table_name + "\" (\n");
-
-        // Récupération des attributs
-        attributes = Arrays.asList(values.get(0));
-        values.remove(0);
-        sb.append(attributes.get(0) + " " + getAttributeType(attributes.get(0)) + " PRIMARY KEY");
-        for (int i = 1; i < attributes.size(); i++)
-            sb.append(",\n" + attributes.get(i) + " " + getAttributeType(attributes.get(i)));
-        sb.append(");\n");
-
-        // Préparation requête insertion
-        StringBuilder begin_insert_query = new StringBuilder("INSERT INTO \"" + table_name + "\" (");
-        for (String attribute : attributes)
-            begin_insert_query.append(attribute + ",");
-        begin_insert_query.setLength(begin_insert_query.length() - 1);
-        begin_insert_query.append(") VALUES (");
-
-        // Création des requêtes d'insertion
-        for (String[] tuple : values) {
-            sb.append(begin_insert_query);
-            for (String value : tuple)
-                sb.append(value.isEmpty() ? "NULL," : "'" + value.replaceAll("'", "''") + "',");
-            sb.setLength(sb.length() - 1);
-            sb.append(");\n");
+    /**
+     * Ouvrir un fichier CSV en lecture
+     *
+     * @param file_path  chemin du fichier
+     * @param delimiter  délimiteur
+     * @param skip_lines nombre de lignes à ignorer en début de fichier
+     * @return lecteur CSV
+     */
+    private CSVReader openFile(String file_path, char delimiter, int skip_lines) {
+        CSVParser parser = new CSVParserBuilder().withSeparator(delimiter).build();
+        URL url = Utils.getFileURL(file_path);
+        Reader reader = null;
+        if (url == null) throw new IllegalStateException("Fichier CSV introuvable : " + file_path);
+        try {
+            reader = new InputStreamReader(url.openStream());
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        return sb.toString();
+        return new CSVReaderBuilder(new BufferedReader(reader)).withCSVParser(parser)
+                .withSkipLines(skip_lines).build();
     }
 }
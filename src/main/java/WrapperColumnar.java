@@ -0,0 +1,280 @@
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Wrapper de fichier binaire colonnaire vers SQL : les attributs et leurs types sont décrits dans l'en-tête,
+ * les tuples sont rangés par blocs dont chaque colonne est contiguë ; les valeurs sont insérées déjà typées,
+ * sans analyse de texte ni inférence des types
+ * <p>
+ * Format (entiers gros-boutistes) : en-tête (signature, version, nombre d'attributs puis nom et type de chacun),
+ * blocs (nombre de tuples, puis pour chaque colonne le masque des valeurs nulles et les valeurs non nulles),
+ * bloc vide final suivi du nombre total de tuples
+ */
+public class WrapperColumnar extends Wrapper {
+    /**
+     * Signature des fichiers colonnaires ("MWCL")
+     */
+    private static final int MAGIC = 0x4D57434C;
+
+    /**
+     * Version du format
+     */
+    private static final short FORMAT_VERSION = 1;
+
+    /**
+     * Nombre de tuples par bloc à l'écriture
+     */
+    public static final int BLOCK_SIZE = 4096;
+
+    /**
+     * Types des colonnes (indice : code du type dans le fichier)
+     */
+    private static final List<String> TYPES = List.of("INTEGER", "REAL", "TEXT");
+    private static final byte INTEGER = 0, REAL = 1, TEXT = 2;
+
+    /**
+     * Codes des types des attributs
+     */
+    private byte[] type_codes;
+
+    /**
+     * Constructeur
+     *
+     * @param db_name    nom de la base de données
+     * @param table_name nom de la table
+     * @param file_path  chemin vers le fichier
+     * @param batch_size nombre de tuples insérés par lot
+     * @param debug_mode mode de débugage
+     */
+    public WrapperColumnar(String db_name, String table_name, String file_path, int batch_size, boolean debug_mode) {
+        super(db_name, table_name, file_path, batch_size, debug_mode);
+        if (isUpToDate()) {
+            if (debug_mode) System.out.println("> Source " + file_path + " inchangée, intégration ignorée.\n");
+            return;
+        }
+        readFile(file_path);
+        try (DataInputStream input = openFile(file_path)) {
+            readHeader(input);
+            integrateData((Iterable<Object[]>) () -> readBlocks(input));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (debug_mode) System.out.println("> Intégration terminée.\n");
+    }
+
+    @Override
+    protected void readFile(String file_path, String... args) {
+        if (args.length != 0) Utils.throwException("Arguments invalides.");
+        if (debug_mode) System.out.println("> Lecture de l'en-tête du fichier : " + file_path + "...");
+        // Seul l'en-tête est lu : les blocs sont insérés au fil de la lecture
+        values = null;
+        try (DataInputStream input = openFile(file_path)) {
+            readHeader(input);
+        } catch (IOException e) {
+            throw new IllegalStateException("Lecture du fichier colonnaire impossible : " + file_path, e);
+        }
+        if (debug_mode)
+            for (int i = 0; i < attributes.size(); i++)
+                System.out.println("  " + attributes.get(i) + " " + attributes_types.get(i));
+    }
+
+    /**
+     * Ouvrir un fichier colonnaire en lecture
+     *
+     * @param file_path chemin du fichier
+     * @return flux de lecture
+     * @throws IOException erreur de lecture
+     */
+    private static DataInputStream openFile(String file_path) throws IOException {
+        URL url = Utils.getFileURL(file_path);
+        if (url == null) throw new IllegalStateException("Fichier colonnaire introuvable : " + file_path);
+        return new DataInputStream(new BufferedInputStream(url.openStream(), 1 << 16));
+    }
+
+    /**
+     * Lire l'en-tête : attributs et types
+     *
+     * @param input flux positionné au début du fichier
+     * @throws IOException erreur de lecture ou fichier invalide
+     */
+    private void readHeader(DataInputStream input) throws IOException {
+        if (input.readInt() != MAGIC) throw new IOException("signature invalide");
+        short version = input.readShort();
+        if (version != FORMAT_VERSION) throw new IOException("version " + version + " non supportée");
+        int attributes_count = input.readInt();
+        attributes = new ArrayList<>(attributes_count);
+        attributes_types = new ArrayList<>(attributes_count);
+        type_codes = new byte[attributes_count];
+        for (int i = 0; i < attributes_count; i++) {
+            attributes.add(input.readUTF().toUpperCase());
+            type_codes[i] = input.readByte();
+            if (type_codes[i] < 0 || type_codes[i] >= TYPES.size())
+                throw new IOException("type inconnu pour " + attributes.get(i));
+            attributes_types.add(TYPES.get(type_codes[i]));
+        }
+        if (attributes.isEmpty()) throw new IOException("aucun attribut");
+    }
+
+    /**
+     * Parcourir les tuples, bloc par bloc (un seul bloc est décodé en mémoire)
+     *
+     * @param input flux positionné après l'en-tête
+     * @return itérateur sur les tuples typés (Long, Double, String ou null)
+     */
+    private Iterator<Object[]> readBlocks(DataInputStream input) {
+        return new Iterator<>() {
+            private Object[][] block = new Object[0][];
+            private int position;
+            private boolean finished;
+
+            @Override
+            public boolean hasNext() {
+                while (position == block.length && !finished) {
+                    try {
+                        block = readBlock(input);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    position = 0;
+                    finished = block.length == 0;
+                }
+                return position < block.length;
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return block[position++];
+            }
+        };
+    }
+
+    /**
+     * Décoder un bloc
+     *
+     * @param input flux positionné au début d'un bloc
+     * @return tuples du bloc (aucun pour le bloc final)
+     * @throws IOException erreur de lecture
+     */
+    private Object[][] readBlock(DataInputStream input) throws IOException {
+        int rows_count = input.readInt();
+        Object[][] rows = new Object[rows_count][attributes.size()];
+        byte[] nulls = new byte[(rows_count + 7) / 8];
+        for (int column = 0; column < attributes.size(); column++) {
+            input.readFully(nulls);
+            for (int row = 0; row < rows_count; row++) {
+                if ((nulls[row >> 3] & (1 << (row & 7))) != 0) continue;
+                switch (type_codes[column]) {
+                    case INTEGER:
+                        rows[row][column] = input.readLong();
+                        break;
+                    case REAL:
+                        rows[row][column] = input.readDouble();
+                        break;
+                    default:
+                        byte[] bytes = new byte[input.readInt()];
+                        input.readFully(bytes);
+                        rows[row][column] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Écrire des tuples dans un fichier colonnaire
+     *
+     * @param file_path        chemin du fichier
+     * @param table_attributes attributs
+     * @param types            types SQL des attributs (INTEGER et REAL sont conservés, les autres sont du texte)
+     * @param tuples           tuples (valeurs typées ou textes, texte vide ou null pour une valeur manquante)
+     * @return nombre de tuples écrits
+     * @throws IOException erreur d'écriture, ou valeur non convertible dans le type de son attribut
+     */
+    public static long write(String file_path, List<String> table_attributes, List<String> types,
+                             Iterable<? extends Object[]> tuples) throws IOException {
+        byte[] codes = new byte[types.size()];
+        for (int i = 0; i < codes.length; i++)
+            codes[i] = types.get(i).startsWith("INTEGER") ? INTEGER : types.get(i).startsWith("REAL") ? REAL : TEXT;
+        long count = 0;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file_path), 1 << 16))) {
+            output.writeInt(MAGIC);
+            output.writeShort(FORMAT_VERSION);
+            output.writeInt(table_attributes.size());
+            for (int i = 0; i < codes.length; i++) {
+                output.writeUTF(table_attributes.get(i));
+                output.writeByte(codes[i]);
+            }
+            List<Object[]> block = new ArrayList<>(BLOCK_SIZE);
+            for (Object[] tuple : tuples) {
+                block.add(tuple);
+                if (block.size() == BLOCK_SIZE) {
+                    count += writeBlock(output, codes, block);
+                    block.clear();
+                }
+            }
+            if (!block.isEmpty()) count += writeBlock(output, codes, block);
+            output.writeInt(0);
+            output.writeLong(count);
+        }
+        return count;
+    }
+
+    /**
+     * Écrire un bloc de tuples, colonne par colonne
+     *
+     * @param output flux d'écriture
+     * @param codes  codes des types des attributs
+     * @param block  tuples du bloc
+     * @return nombre de tuples écrits
+     * @throws IOException erreur d'écriture ou valeur non convertible
+     */
+    private static int writeBlock(DataOutputStream output, byte[] codes, List<Object[]> block) throws IOException {
+        output.writeInt(block.size());
+        byte[] nulls = new byte[(block.size() + 7) / 8];
+        for (int column = 0; column < codes.length; column++) {
+            Arrays.fill(nulls, (byte) 0);
+            for (int row = 0; row < block.size(); row++)
+                if (getValue(block.get(row), column) == null) nulls[row >> 3] |= 1 << (row & 7);
+            output.write(nulls);
+            for (Object[] tuple : block) {
+                Object value = getValue(tuple, column);
+                if (value == null) continue;
+                try {
+                    switch (codes[column]) {
+                        case INTEGER:
+                            output.writeLong(value instanceof Number ? ((Number) value).longValue() :
+                                    Long.parseLong(value.toString().trim()));
+                            break;
+                        case REAL:
+                            output.writeDouble(value instanceof Number ? ((Number) value).doubleValue() :
+                                    Double.parseDouble(value.toString().trim()));
+                            break;
+                        default:
+                            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+                            output.writeInt(bytes.length);
+                            output.write(bytes);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException("Valeur non numérique : " + value, e);
+                }
+            }
+        }
+        return block.size();
+    }
+
+    /**
+     * Obtenir une valeur d'un tuple
+     *
+     * @param tuple  tuple
+     * @param column indice de l'attribut
+     * @return valeur, ou null si elle est manquante
+     */
+    private static Object getValue(Object[] tuple, int column) {
+        Object value = column < tuple.length ? tuple[column] : null;
+        return "".equals(value) ? null : value;
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.Map;
+
+/**
+ * Fabrique des wrappers d'un format de source, enregistrée auprès du médiateur sous le nom du format
+ */
+@FunctionalInterface
+public interface WrapperFactory {
+    /**
+     * Paramètres d'intégration fixés par le médiateur lors de l'ajout d'une source
+     */
+    class Settings {
+        /**
+         * Nombre de tuples insérés par lot
+         */
+        public final int batch_size;
+
+        /**
+         * Mode flux demandé : la source ne doit pas être chargée entièrement en mémoire
+         */
+        public final boolean streaming_mode;
+
+        /**
+         * Nombre de tuples analysés pour inférer les types en mode flux (0 pour une première passe complète)
+         */
+        public final int sample_size;
+
+        /**
+         * Mode de débugage
+         */
+        public final boolean debug_mode;
+
+        /**
+         * Constructeur
+         *
+         * @param _batch_size     taille des lots
+         * @param _streaming_mode mode flux
+         * @param _sample_size    taille de l'échantillon
+         * @param _debug_mode     mode de débugage
+         */
+        public Settings(int _batch_size, boolean _streaming_mode, int _sample_size, boolean _debug_mode) {
+            batch_size = _batch_size;
+            streaming_mode = _streaming_mode;
+            sample_size = _sample_size;
+            debug_mode = _debug_mode;
+        }
+    }
+
+    /**
+     * Créer et intégrer une source (appelé dans un fil d'intégration du médiateur)
+     *
+     * @param db_name    nom de la base de données attribuée à la source
+     * @param table_name table globale
+     * @param location   emplacement de la source (chemin du fichier)
+     * @param options    options propres au format
+     * @param settings   paramètres d'intégration
+     * @return wrapper de la source intégrée
+     */
+    Wrapper create(String db_name, String table_name, String location, Map<String, String> options,
+                   Settings settings);
+}
@@ -0,0 +1,321 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Wrapper JSON Lines vers SQL : un objet JSON par ligne, dont les clés sont les attributs ;
+ * le fichier est toujours lu en flux (une passe pour les attributs et leurs types, une passe d'insertion)
+ */
+public class WrapperJSON extends Wrapper {
+    /**
+     * Constructeur
+     *
+     * @param db_name    nom de la base de données
+     * @param table_name nom de la table
+     * @param file_path  chemin vers le fichier
+     * @param batch_size nombre de tuples insérés par lot
+     * @param debug_mode mode de débugage
+     */
+    public WrapperJSON(String db_name, String table_name, String file_path, int batch_size, boolean debug_mode) {
+        super(db_name, table_name, file_path, batch_size, debug_mode);
+        if (isUpToDate()) {
+            if (debug_mode) System.out.println("> Source " + file_path + " inchangée, intégration ignorée.\n");
+            return;
+        }
+        readFile(file_path);
+        // Seconde passe sur le fichier : insertion directe des tuples
+        try (BufferedReader reader = openFile(file_path)) {
+            integrateData((Iterable<String[]>) () -> readTuples(reader));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (debug_mode) System.out.println("> Intégration terminée.\n");
+    }
+
+    @Override
+    protected void readFile(String file_path, String... args) {
+        if (args.length != 0) Utils.throwException("Arguments invalides.");
+        if (debug_mode) System.out.println("> Lecture du fichier : " + file_path + "...");
+        // Les clés peuvent apparaître à n'importe quelle ligne : la première passe est toujours complète
+        values = null;
+        long start = Metrics.start();
+        attributes = new ArrayList<>();
+        TypeInference inference = new TypeInference(attributes);
+        try (BufferedReader reader = openFile(file_path)) {
+            int line_number = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line_number++;
+                if (line.isBlank()) continue;
+                Map<String, String> object = parseObject(line, line_number);
+                for (String key : object.keySet())
+                    if (!attributes.contains(key)) {
+                        attributes.add(key);
+                        inference.addAttribute(key);
+                    }
+                inference.addTuple(toTuple(object));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (attributes.isEmpty()) throw new IllegalStateException("Fichier JSON vide : " + file_path);
+        if (debug_mode) System.out.println("> Inférence des types...");
+        setAttributeTypes(inference, false);
+        Metrics.Stage.TYPE_INFERENCE.stop(start);
+    }
+
+    /**
+     * Ouvrir un fichier JSON Lines en lecture
+     *
+     * @param file_path chemin du fichier
+     * @return lecteur
+     * @throws IOException erreur de lecture
+     */
+    private BufferedReader openFile(String file_path) throws IOException {
+        URL url = Utils.getFileURL(file_path);
+        if (url == null) throw new IllegalStateException("Fichier JSON introuvable : " + file_path);
+        return new BufferedReader(new InputStreamReader(url.openStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parcourir les tuples d'un fichier, dans l'ordre des attributs (valeur vide si la clé est absente)
+     *
+     * @param reader lecteur positionné au début du fichier
+     * @return itérateur sur les tuples
+     */
+    private Iterator<String[]> readTuples(BufferedReader reader) {
+        return new Iterator<>() {
+            private String[] next_tuple;
+            private int line_number;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    String line;
+                    while (next_tuple == null && (line = reader.readLine()) != null) {
+                        line_number++;
+                        if (!line.isBlank()) next_tuple = toTuple(parseObject(line, line_number));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return next_tuple != null;
+            }
+
+            @Override
+            public String[] next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                String[] tuple = next_tuple;
+                next_tuple = null;
+                return tuple;
+            }
+        };
+    }
+
+    /**
+     * Convertir un objet en tuple, dans l'ordre des attributs connus
+     *
+     * @param object objet (clé - valeur textuelle)
+     * @return tuple (valeur vide si la clé est absente ou nulle)
+     */
+    private String[] toTuple(Map<String, String> object) {
+        String[] tuple = new String[attributes.size()];
+        for (int i = 0; i < tuple.length; i++) {
+            String value = object.get(attributes.get(i));
+            tuple[i] = value == null ? "" : value;
+        }
+        return tuple;
+    }
+
+    /**
+     * Analyser un objet JSON plat : les chaînes, nombres et booléens sont convertis en texte,
+     * les objets et tableaux imbriqués sont conservés sous forme de texte JSON
+     *
+     * @param line        ligne
+     * @param line_number numéro de la ligne (messages d'erreur)
+     * @return valeurs par clé (en majuscules, comme les attributs des autres sources), null pour une valeur nulle
+     */
+    static Map<String, String> parseObject(String line, int line_number) {
+        JSONParser parser = new JSONParser(line, line_number);
+        Map<String, String> object = new LinkedHashMap<>();
+        parser.expect('{');
+        if (!parser.consume('}')) {
+            do {
+                String key = parser.readString().toUpperCase();
+                parser.expect(':');
+                object.putIfAbsent(key, parser.readValue());
+            } while (parser.consume(','));
+            parser.expect('}');
+        }
+        if (parser.peek() != 0) throw parser.error("fin de ligne attendue");
+        return object;
+    }
+
+    /**
+     * Lecture d'une ligne JSON, caractère par caractère
+     */
+    private static class JSONParser {
+        /**
+         * Texte analysé
+         */
+        private final String text;
+
+        /**
+         * Numéro de la ligne
+         */
+        private final int line_number;
+
+        /**
+         * Position courante
+         */
+        private int position;
+
+        /**
+         * Constructeur
+         *
+         * @param _text        texte
+         * @param _line_number numéro de la ligne
+         */
+        JSONParser(String _text, int _line_number) {
+            text = _text;
+            line_number = _line_number;
+        }
+
+        /**
+         * Prochain caractère significatif, sans le consommer
+         *
+         * @return caractère, ou 0 en fin de ligne
+         */
+        char peek() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        /**
+         * Consommer un caractère s'il est le prochain caractère significatif
+         *
+         * @param c caractère
+         * @return vrai si le caractère a été consommé
+         */
+        boolean consume(char c) {
+            if (peek() != c) return false;
+            position++;
+            return true;
+        }
+
+        /**
+         * Consommer un caractère obligatoire
+         *
+         * @param c caractère
+         */
+        void expect(char c) {
+            if (!consume(c)) throw error("'" + c + "' attendu");
+        }
+
+        /**
+         * Lire une valeur
+         *
+         * @return texte de la valeur, ou null pour une valeur nulle
+         */
+        String readValue() {
+            char c = peek();
+            if (c == '"') return readString();
+            if (c == '{' || c == '[') return readNested();
+            int start = position;
+            while (position < text.length() && ",}]".indexOf(text.charAt(position)) < 0
+                    && !Character.isWhitespace(text.charAt(position))) position++;
+            String literal = text.substring(start, position);
+            if (literal.isEmpty()) throw error("valeur attendue");
+            if (literal.equals("null")) return null;
+            if (!literal.equals("true") && !literal.equals("false")
+                    && TypeInference.scanNumber(literal) == AttributeStatistics.Type.TEXT)
+                throw error("valeur invalide " + literal);
+            return literal;
+        }
+
+        /**
+         * Lire une chaîne de caractères
+         *
+         * @return chaîne décodée
+         */
+        String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (c == '"') return sb.toString();
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (position == text.length()) break;
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) throw error("séquence \\u incomplète");
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("séquence \\u invalide");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        sb.append(escaped);
+                }
+            }
+            throw error("chaîne non terminée");
+        }
+
+        /**
+         * Lire un objet ou un tableau imbriqué sans l'analyser
+         *
+         * @return texte JSON de la valeur
+         */
+        String readNested() {
+            int start = position;
+            int depth = 0;
+            boolean in_string = false;
+            while (position < text.length()) {
+                char c = text.charAt(position++);
+                if (in_string) {
+                    if (c == '\\') position++;
+                    else if (c == '"') in_string = false;
+                } else if (c == '"') in_string = true;
+                else if (c == '{' || c == '[') depth++;
+                else if ((c == '}' || c == ']') && --depth == 0) return text.substring(start, position);
+            }
+            throw error("valeur imbriquée non terminée");
+        }
+
+        /**
+         * Erreur de syntaxe à la position courante
+         *
+         * @param message description
+         * @return exception
+         */
+        IllegalStateException error(String message) {
+            return new IllegalStateException("JSON invalide ligne " + line_number + ", colonne " + (position + 1) +
+                    " : " + message + ".");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Wrapper d'une table d'une base de données SQLite externe : la table n'est pas copiée,
+ * la base de données est attachée telle quelle aux connexions du médiateur et interrogée en place
+ */
+public class WrapperSQLite extends Wrapper {
+    /**
+     * Préfixe des URL JDBC acceptées
+     */
+    public static final String JDBC_PREFIX = "jdbc:sqlite:";
+
+    /**
+     * Table interrogée dans la base de données externe
+     */
+    private final String source_table;
+
+    /**
+     * Constructeur
+     *
+     * @param db_name      nom sous lequel la base de données est attachée
+     * @param table_name   nom de la table globale
+     * @param location     chemin du fichier de la base de données, ou URL JDBC SQLite
+     * @param source_table table de la base de données (celle de la table globale si null)
+     * @param debug_mode   mode de débugage
+     */
+    public WrapperSQLite(String db_name, String table_name, String location, String source_table, boolean debug_mode) {
+        super(db_name, table_name, getFilePath(location), 0, debug_mode);
+        this.source_table = source_table == null ? table_name : source_table;
+        fingerprint = SourceFingerprint.of(file_path);
+        readFile(file_path);
+        if (debug_mode) System.out.println("> Table " + this.source_table + " de " + file_path + " attachée.\n");
+    }
+
+    /**
+     * Obtenir le chemin du fichier d'une base de données SQLite
+     *
+     * @param location chemin ou URL JDBC
+     * @return chemin du fichier
+     */
+    private static String getFilePath(String location) {
+        if (location.startsWith(JDBC_PREFIX)) return location.substring(JDBC_PREFIX.length());
+        if (location.startsWith("jdbc:"))
+            throw new IllegalStateException("Seules les bases de données SQLite sont supportées : " + location);
+        return location;
+    }
+
+    @Override
+    protected void readFile(String file_path, String... args) {
+        if (args.length != 0) Utils.throwException("Arguments invalides.");
+        if (debug_mode) System.out.println("> Lecture de la structure de la table " + source_table + "...");
+        values = null;
+        SQLiteConfig config = new SQLiteConfig();
+        config.setReadOnly(true);
+        try (Connection connection = config.createConnection(JDBC_PREFIX + file_path);
+             Statement statement = connection.createStatement()) {
+            // Colonnes : cid, name, type, notnull, dflt_value, pk
+            try (ResultSet rs = statement.executeQuery("PRAGMA table_info(\"" + source_table + "\")")) {
+                while (rs.next()) {
+                    attributes.add(rs.getString(2).toUpperCase());
+                    attributes_types.add(getAffinity(rs.getString(3)) + (rs.getBoolean(4) ? " NOT NULL" : ""));
+                }
+            }
+            if (attributes.isEmpty())
+                throw new IllegalStateException("Table " + source_table + " introuvable dans " + file_path);
+            // Statistiques calculées à chaque ouverture : la base de données externe n'est pas modifiée
+            long start = Metrics.start();
+            statistics = SourceStatistics.compute(connection, source_table, attributes, attributes_types);
+            Metrics.Stage.ANALYZE.stop(start);
+            Metrics.setSourceRows(db_name, table_name, statistics.row_count);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Lecture de la base de données impossible : " + file_path, e);
+        }
+        if (debug_mode) {
+            for (int i = 0; i < attributes.size(); i++)
+                System.out.println("  " + attributes.get(i) + " " + attributes_types.get(i));
+            System.out.println("> Statistiques de " + db_name + " : " + statistics);
+        }
+    }
+
+    /**
+     * Obtenir l'affinité SQLite d'un type déclaré (règles de détermination de l'affinité de SQLite)
+     *
+     * @param declared_type type déclaré de la colonne
+     * @return INTEGER, TEXT, BLOB, REAL ou NUMERIC
+     */
+    private static String getAffinity(String declared_type) {
+        String type = declared_type == null ? "" : declared_type.toUpperCase();
+        if (type.contains("INT")) return "INTEGER";
+        if (type.contains("CHAR") || type.contains("CLOB") || type.contains("TEXT")) return "TEXT";
+        if (type.isEmpty() || type.contains("BLOB")) return "BLOB";
+        if (type.contains("REAL") || type.contains("FLOA") || type.contains("DOUB")) return "REAL";
+        return "NUMERIC";
+    }
+
+    /**
+     * Obtenir les capacités du wrapper : la base de données externe évalue les prédicats et projections,
+     * mais elle n'est jamais modifiée (aucun index ni index spatial)
+     *
+     * @return capacités
+     */
+    @Override
+    public Set<Capability> getCapabilities() {
+        return EnumSet.of(Capability.FILTER_PUSHDOWN, Capability.PROJECTION_PUSHDOWN,
+                Capability.ROW_COUNT_ESTIMATE, Capability.STREAMING_SCAN);
+    }
+
+    @Override
+    public String getDatabasePath() {
+        return file_path;
+    }
+
+    @Override
+    public String getSourceTable() {
+        return source_table;
+    }
+}
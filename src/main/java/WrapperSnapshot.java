@@ -0,0 +1,108 @@
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Source restaurée depuis l'instantané du catalogue : attributs, types, statistiques, emprise et index sont ceux
+ * de la dernière intégration, sans lecture du fichier source ni de sa base de données ; la source n'est utilisée
+ * que si son fichier est inchangé et sa base de données toujours présente
+ */
+public class WrapperSnapshot extends Wrapper {
+    /**
+     * Description de la source ajoutée (format, emplacement, table et options)
+     */
+    public final String descriptor;
+
+    /**
+     * Index présents dans la base de données de la source
+     */
+    public final List<String> indexes;
+
+    /**
+     * Capacités du wrapper d'origine
+     */
+    private final Set<Capability> capabilities;
+
+    /**
+     * Chemin de la base de données SQLite contenant la table de la source
+     */
+    private final String database_path;
+
+    /**
+     * Nom de la table de la source dans sa base de données
+     */
+    private final String source_table;
+
+    /**
+     * Constructeur
+     *
+     * @param _descriptor       description de la source ajoutée
+     * @param _db_name          nom de la base de données
+     * @param _table_name       nom de la table globale
+     * @param _file_path        chemin du fichier source
+     * @param _database_path    chemin de la base de données
+     * @param _source_table     table de la source dans sa base de données
+     * @param _capabilities     capacités du wrapper d'origine
+     * @param _attributes       attributs
+     * @param _attributes_types types SQL des attributs
+     * @param _fingerprint      empreinte du fichier source
+     * @param _spatial_bounds   emprise des coordonnées indexées (null sans index spatial)
+     * @param _statistics       statistiques de la table (null si inconnues)
+     * @param _indexes          index présents dans la base de données
+     * @param _debug_mode       mode de débugage
+     */
+    public WrapperSnapshot(String _descriptor, String _db_name, String _table_name, String _file_path,
+                           String _database_path, String _source_table, Set<Capability> _capabilities,
+                           List<String> _attributes, List<String> _attributes_types, SourceFingerprint _fingerprint,
+                           double[] _spatial_bounds, SourceStatistics _statistics, List<String> _indexes,
+                           boolean _debug_mode) {
+        super(_db_name, _table_name, _file_path, DEFAULT_BATCH_SIZE, _debug_mode);
+        descriptor = _descriptor;
+        database_path = _database_path;
+        source_table = _source_table;
+        capabilities = _capabilities;
+        attributes = _attributes;
+        attributes_types = _attributes_types;
+        fingerprint = _fingerprint;
+        spatial_bounds = _spatial_bounds;
+        statistics = _statistics;
+        indexes = _indexes;
+        values = null;
+    }
+
+    @Override
+    protected void readFile(String file_path, String... args) {
+        Utils.throwException("Source restaurée depuis l'instantané du catalogue : fichier non relu.");
+    }
+
+    /**
+     * Vérifier que la source restaurée peut remplacer son intégration : sa base de données existe toujours
+     * et son fichier est inchangé (taille et date, le hash n'étant calculé que si la date a changé)
+     *
+     * @return vrai si la source peut être publiée telle quelle
+     */
+    public boolean isValid() {
+        if (!new File(database_path).isFile()) return false;
+        try {
+            return SourceFingerprint.of(file_path).matches(fingerprint);
+        } catch (IllegalStateException e) {
+            // Fichier source introuvable
+            return false;
+        }
+    }
+
+    @Override
+    public Set<Capability> getCapabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public String getDatabasePath() {
+        return database_path;
+    }
+
+    @Override
+    public String getSourceTable() {
+        return source_table;
+    }
+}